@@ -0,0 +1,212 @@
+package io.github.czelabueno.jai.workflow;
+
+import io.github.czelabueno.jai.workflow.node.Node;
+import lombok.NonNull;
+
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.Collections;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Schedule of the nodes of a workflow derived from the fields they declare to read and write, as run in
+ * {@link ExecutionMode#DATAFLOW} mode.
+ * <p>
+ * A node depends on an earlier node, in edge order, when one writes a field the other reads or writes. A node that does
+ * not declare its fields depends on all the earlier nodes and all the later nodes depend on it. The nodes of a stage
+ * only depend on nodes of earlier stages, and the critical path is the longest chain of dependencies, which bounds the
+ * duration of a run whatever the parallelism.
+ * </p>
+ * <pre>{@code
+ * Dataflow schedule: 4 nodes in 3 stages, up to 2 concurrent nodes
+ *   stage 1: rewrite [reads question, writes query]
+ *   stage 2: web_search [reads query, writes web_documents] after rewrite
+ *   stage 2: vector_search [reads query, writes vector_documents] after rewrite
+ *   stage 3: generate [reads web_documents, vector_documents, writes generation] after web_search, vector_search
+ *   critical path: rewrite -> web_search -> generate
+ * }</pre>
+ */
+public final class DataflowSchedule {
+
+    /**
+     * A node of the schedule.
+     *
+     * @param node      the name of the node
+     * @param reads     the declared read fields
+     * @param writes    the declared written fields
+     * @param declared  false if the node does not declare its fields and runs alone
+     * @param dependsOn the names of the nodes that must be done before the node runs, without the transitive ones
+     * @param stage     the stage of the node, from 1
+     */
+    public record Step(String node, Set<String> reads, Set<String> writes, boolean declared, List<String> dependsOn, int stage) {
+    }
+
+    private final List<Step> steps;
+    private final int[][] dependencies; // indexes of the direct dependencies of each step
+    private final int stageCount;
+    private final int maxParallelism;
+    private final List<String> criticalPath;
+
+    private DataflowSchedule(List<Step> steps, int[][] dependencies, List<String> criticalPath) {
+        this.steps = Collections.unmodifiableList(steps);
+        this.dependencies = dependencies;
+        this.criticalPath = Collections.unmodifiableList(criticalPath);
+        int[] stageSizes = new int[steps.size() + 1];
+        int stages = 0;
+        int parallelism = 0;
+        for (Step step : steps) {
+            stages = Math.max(stages, step.stage());
+            parallelism = Math.max(parallelism, ++stageSizes[step.stage()]);
+        }
+        this.stageCount = stages;
+        this.maxParallelism = parallelism;
+    }
+
+    /**
+     * Derives the schedule of nodes from their declared fields.
+     *
+     * @param nodes the nodes in edge order
+     * @return the schedule
+     */
+    public static DataflowSchedule derive(@NonNull List<? extends Node<?, ?>> nodes) {
+        int size = nodes.size();
+        int[] stages = new int[size];
+        int[][] dependencies = new int[size][];
+        BitSet[] ancestors = new BitSet[size];
+        List<Step> steps = new ArrayList<>(size);
+        for (int i = 0; i < size; i++) {
+            Node<?, ?> node = nodes.get(i);
+            BitSet conflicts = new BitSet(size);
+            for (int j = 0; j < i; j++) {
+                if (conflict(nodes.get(j), node)) {
+                    conflicts.set(j);
+                }
+            }
+            // a conflict reached through another dependency is implied by it
+            BitSet implied = new BitSet(size);
+            conflicts.stream().forEach(j -> implied.or(ancestors[j]));
+            BitSet direct = (BitSet) conflicts.clone();
+            direct.andNot(implied);
+            ancestors[i] = (BitSet) conflicts.clone();
+            ancestors[i].or(implied);
+
+            dependencies[i] = direct.stream().toArray();
+            List<String> dependsOn = new ArrayList<>();
+            int stage = 1;
+            for (int dependency : dependencies[i]) {
+                dependsOn.add(nodes.get(dependency).getName());
+                stage = Math.max(stage, stages[dependency] + 1);
+            }
+            stages[i] = stage;
+            steps.add(new Step(node.getName(), node.getReads(), node.getWrites(), node.declaresFieldAccess(),
+                    Collections.unmodifiableList(dependsOn), stage));
+        }
+        return new DataflowSchedule(steps, dependencies, criticalPath(nodes, stages, dependencies));
+    }
+
+    private static boolean conflict(Node<?, ?> earlier, Node<?, ?> later) {
+        if (!earlier.declaresFieldAccess() || !later.declaresFieldAccess()) {
+            return true;
+        }
+        return !Collections.disjoint(earlier.getWrites(), later.getReads())
+                || !Collections.disjoint(earlier.getReads(), later.getWrites())
+                || !Collections.disjoint(earlier.getWrites(), later.getWrites());
+    }
+
+    private static List<String> criticalPath(List<? extends Node<?, ?>> nodes, int[] stages, int[][] dependencies) {
+        List<String> path = new ArrayList<>();
+        int current = -1;
+        for (int i = 0; i < stages.length; i++) {
+            if (current < 0 || stages[i] > stages[current]) {
+                current = i;
+            }
+        }
+        while (current >= 0) {
+            path.add(0, nodes.get(current).getName());
+            int previous = -1;
+            for (int dependency : dependencies[current]) {
+                if (stages[dependency] == stages[current] - 1) {
+                    previous = dependency;
+                    break;
+                }
+            }
+            current = previous;
+        }
+        return path;
+    }
+
+    /**
+     * Returns the nodes of the schedule, in edge order.
+     *
+     * @return the steps of the schedule
+     */
+    public List<Step> steps() {
+        return steps;
+    }
+
+    /**
+     * Returns the number of stages, i.e. the number of nodes on the critical path.
+     *
+     * @return the number of stages
+     */
+    public int stageCount() {
+        return stageCount;
+    }
+
+    /**
+     * Returns the largest number of nodes of a same stage, which may run concurrently.
+     *
+     * @return the maximum parallelism
+     */
+    public int maxParallelism() {
+        return maxParallelism;
+    }
+
+    /**
+     * Returns the longest chain of dependent nodes.
+     *
+     * @return the names of the nodes of the critical path, in run order
+     */
+    public List<String> criticalPath() {
+        return criticalPath;
+    }
+
+    /**
+     * Returns the indexes of the direct dependencies of a step.
+     */
+    int[] dependencies(int step) {
+        return dependencies[step];
+    }
+
+    /**
+     * Returns a multi-line report of the schedule.
+     *
+     * @return the report
+     */
+    @Override
+    public String toString() {
+        StringBuilder report = new StringBuilder("Dataflow schedule: ")
+                .append(steps.size()).append(" nodes in ").append(stageCount).append(" stages, up to ")
+                .append(maxParallelism).append(" concurrent nodes");
+        for (int stage = 1; stage <= stageCount; stage++) {
+            for (Step step : steps) {
+                if (step.stage() != stage) {
+                    continue;
+                }
+                report.append("\n  stage ").append(stage).append(": ").append(step.node()).append(" [");
+                if (step.declared()) {
+                    report.append("reads ").append(String.join(", ", step.reads()))
+                            .append(", writes ").append(String.join(", ", step.writes()));
+                } else {
+                    report.append("undeclared fields, runs alone");
+                }
+                report.append("]");
+                if (!step.dependsOn().isEmpty()) {
+                    report.append(" after ").append(String.join(", ", step.dependsOn()));
+                }
+            }
+        }
+        return report.append("\n  critical path: ").append(String.join(" -> ", criticalPath)).toString();
+    }
+}
@@ -4,10 +4,21 @@ import io.github.czelabueno.jai.workflow.graph.Format;
 import io.github.czelabueno.jai.workflow.graph.StyleAttribute;
 import io.github.czelabueno.jai.workflow.node.Conditional;
 import io.github.czelabueno.jai.workflow.node.Node;
+import io.github.czelabueno.jai.workflow.node.NodeInterceptor;
+import io.github.czelabueno.jai.workflow.state.ChannelState;
+import io.github.czelabueno.jai.workflow.state.OffHeapArena;
+import io.github.czelabueno.jai.workflow.state.OffHeapStateful;
+import io.github.czelabueno.jai.workflow.state.StateSnapshot;
+import io.github.czelabueno.jai.workflow.state.StateSnapshotter;
 import io.github.czelabueno.jai.workflow.transition.ComputedTransition;
 import io.github.czelabueno.jai.workflow.transition.Transition;
+import io.github.czelabueno.jai.workflow.graph.CachingGraphImageGenerator;
+import io.github.czelabueno.jai.workflow.graph.ExecutionHeatMap;
 import io.github.czelabueno.jai.workflow.graph.GraphImageGenerator;
+import io.github.czelabueno.jai.workflow.graph.RenderCache;
+import io.github.czelabueno.jai.workflow.graph.RenderQueue;
 import io.github.czelabueno.jai.workflow.graph.graphviz.GraphvizImageGenerator;
+import io.github.czelabueno.jai.workflow.graph.text.GraphTextExporter;
 import io.github.czelabueno.jai.workflow.transition.TransitionState;
 import lombok.*;
 import org.slf4j.Logger;
@@ -15,12 +26,27 @@ import org.slf4j.LoggerFactory;
 
 import java.awt.image.BufferedImage;
 import java.io.IOException;
+import java.io.OutputStream;
+import java.io.Writer;
 import java.nio.file.InvalidPathException;
 import java.nio.file.Path;
 import java.nio.file.Paths;
 import java.util.*;
+import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.locks.ReentrantLock;
 import java.util.function.Consumer;
+import java.util.function.Supplier;
 
 import static java.util.stream.Collectors.toList;
 import static java.util.stream.Collectors.toUnmodifiableList;
@@ -37,6 +63,24 @@ public class DefaultStateWorkflow<T> implements StateWorkflow<T> {
     private int executionOrder;
     private final List<ComputedTransition> computedTransitions; // computed transitions after running
     private final GraphImageGenerator graphImageGenerator;
+    private final RenderCache renderCache;
+    private final List<NodeInterceptor> nodeInterceptors;
+    private final ExecutionMode executionMode;
+    private final StateSnapshotter<? super T> stateSnapshotter; // null when snapshots are not captured
+    private StateSnapshot lastStateSnapshot;
+    private final boolean releaseOffHeapAtRunEnd;
+    private volatile List<Node<T, ?>> dataflowOrder; // nodes in edge order, in DATAFLOW mode only
+    private volatile DataflowSchedule dataflowSchedule;
+    private final Executor dataflowExecutor; // runs the nodes in DATAFLOW mode only
+    private final Executor branchExecutor; // runs the parallel branches, null for a virtual thread per branch
+    // the default dataflow executor in DATAFLOW mode, else the default branch executor before Java 21, null when unused
+    private final ThreadPoolExecutor workerPool;
+    private final ReentrantLock workerPoolLock = new ReentrantLock();
+    // a lock instead of a monitor, so that a virtual thread blocked in a node does not pin its carrier thread
+    private final ReentrantLock statefulBeanLock = new ReentrantLock();
+    private static final AtomicInteger RUN_THREAD_COUNTER = new AtomicInteger();
+    private static final AtomicInteger WORKER_THREAD_COUNTER = new AtomicInteger();
+    private static final long WORKER_KEEP_ALIVE_SECONDS = 30;
 
     protected DefaultStateWorkflow(Builder<T> builder) {
         if (builder.statefulBean == null) {
@@ -52,6 +96,21 @@ public class DefaultStateWorkflow<T> implements StateWorkflow<T> {
         this.computedTransitions = Collections.synchronizedList(new ArrayList<>());
 
         this.graphImageGenerator = builder.graphImageGenerator != null ? builder.graphImageGenerator : GraphvizImageGenerator.builder().build();
+        this.renderCache = builder.renderCache != null ? builder.renderCache : RenderCache.getDefault();
+        this.nodeInterceptors = List.copyOf(builder.nodeInterceptors);
+        this.executionMode = builder.executionMode != null ? builder.executionMode : ExecutionMode.CALLER_THREAD;
+        this.stateSnapshotter = builder.stateSnapshotter;
+        this.releaseOffHeapAtRunEnd = builder.releaseOffHeapAtRunEnd;
+        if (this.executionMode == ExecutionMode.VIRTUAL_THREAD && !VirtualThreads.isSupported()) {
+            throw new IllegalArgumentException("Execution mode VIRTUAL_THREAD requires Java 21 or later");
+        }
+        boolean dataflow = this.executionMode == ExecutionMode.DATAFLOW;
+        boolean needsWorkerPool = dataflow
+                ? builder.dataflowExecutor == null
+                : builder.branchExecutor == null && !VirtualThreads.isSupported();
+        this.workerPool = needsWorkerPool ? newWorkerPool() : null;
+        this.dataflowExecutor = builder.dataflowExecutor != null ? builder.dataflowExecutor : dataflow ? this.workerPool : null;
+        this.branchExecutor = builder.branchExecutor != null ? builder.branchExecutor : dataflow ? null : this.workerPool;
 
         // build transitions definition
         this.transitionsPerState = new ConcurrentHashMap<>();
@@ -60,6 +119,7 @@ public class DefaultStateWorkflow<T> implements StateWorkflow<T> {
         // build validation
         this.compiledStates = Collections.synchronizedList(new ArrayList<>());
         compileValidation(WorkflowStateName.START);
+        deriveDataflowSchedule();
     }
 
     private void buildDefinitionTransitions(List<Transition> edges, List<Node<T, ?>> nodes) {
@@ -190,6 +250,82 @@ public class DefaultStateWorkflow<T> implements StateWorkflow<T> {
         // This constraint requires runtime behavior, so it should be implemented in the `runNode` method.
     }
 
+    /**
+     * Orders the reachable nodes along the edges and derives their schedule from their declared fields, in
+     * {@link ExecutionMode#DATAFLOW} mode.
+     */
+    @SuppressWarnings("unchecked")
+    private void deriveDataflowSchedule() {
+        if (this.executionMode != ExecutionMode.DATAFLOW) {
+            return;
+        }
+        Map<TransitionState, Integer> inputTransitions = new HashMap<>();
+        Set<TransitionState> reachable = new LinkedHashSet<>();
+        Deque<TransitionState> toVisit = new ArrayDeque<>(this.adjList.getOrDefault(WorkflowStateName.START, List.of()));
+        while (!toVisit.isEmpty()) {
+            TransitionState state = toVisit.poll();
+            if (state instanceof Conditional) {
+                throw new IllegalArgumentException("Execution mode DATAFLOW does not support the conditional state '" + state.graphName() + "'");
+            }
+            if (state instanceof Node && reachable.add(state)) {
+                for (TransitionState next : this.adjList.getOrDefault(state, List.of())) {
+                    inputTransitions.merge(next, 1, Integer::sum);
+                    toVisit.add(next);
+                }
+            }
+        }
+        // Kahn's algorithm, so that a node comes after all the nodes with an edge to it
+        List<Node<T, ?>> order = new ArrayList<>();
+        Deque<TransitionState> ready = new ArrayDeque<>();
+        reachable.stream().filter(state -> !inputTransitions.containsKey(state)).forEach(ready::add);
+        while (!ready.isEmpty()) {
+            TransitionState state = ready.poll();
+            order.add((Node<T, ?>) state);
+            for (TransitionState next : this.adjList.getOrDefault(state, List.of())) {
+                if (next instanceof Node && inputTransitions.merge(next, -1, Integer::sum) == 0) {
+                    ready.add(next);
+                }
+            }
+        }
+        if (order.size() != reachable.size()) {
+            throw new IllegalArgumentException("Execution mode DATAFLOW requires a workflow without cycles");
+        }
+        this.dataflowOrder = List.copyOf(order);
+        this.dataflowSchedule = DataflowSchedule.derive(order);
+        if (this.workerPool != null) {
+            growWorkerPool(this.dataflowSchedule.maxParallelism());
+        }
+        log.debug("{}", this.dataflowSchedule);
+    }
+
+    /**
+     * Creates the default dataflow or branch executor, whose idle threads stop so that an unused workflow holds no
+     * thread.
+     */
+    private static ThreadPoolExecutor newWorkerPool() {
+        ThreadPoolExecutor pool = new ThreadPoolExecutor(1, 1, WORKER_KEEP_ALIVE_SECONDS, TimeUnit.SECONDS,
+                new LinkedBlockingQueue<>(), runnable -> {
+            Thread thread = new Thread(runnable, "jai-workflow-worker-" + WORKER_THREAD_COUNTER.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+        pool.allowCoreThreadTimeOut(true);
+        return pool;
+    }
+
+    private void growWorkerPool(int threads) {
+        this.workerPoolLock.lock();
+        try {
+            // the core size may never exceed the maximum size
+            if (threads > this.workerPool.getMaximumPoolSize()) {
+                this.workerPool.setMaximumPoolSize(threads);
+                this.workerPool.setCorePoolSize(threads);
+            }
+        } finally {
+            this.workerPoolLock.unlock();
+        }
+    }
+
     @Override
     public void addNode(Node<T, ?> node) {
         adjList.putIfAbsent(node, Collections.synchronizedList(new ArrayList<>()));
@@ -224,6 +360,7 @@ public class DefaultStateWorkflow<T> implements StateWorkflow<T> {
             buildDefinitionTransitions(this.transitions, List.of()); // rebuild transitions, no nodes to add
             this.compiledStates.clear();
             compileValidation(WorkflowStateName.START); // recompile validation
+            deriveDataflowSchedule();
         }
     }
 
@@ -235,32 +372,102 @@ public class DefaultStateWorkflow<T> implements StateWorkflow<T> {
 
     @Override
     public Node<T, ?> getLastNode() {
+        List<Node<T, ?>> lastNodes = getLastNodes();
+        return lastNodes.get(lastNodes.size() - 1);
+    }
+
+    /**
+     * Returns all the nodes that transition to the END state.
+     * Workflows with conditional branches may have more than one last node.
+     *
+     * @return the last nodes defined in the workflow
+     * @throws IllegalStateException if no nodes were added to the workflow
+     */
+    public List<Node<T, ?>> getLastNodes() {
         if (this.adjList.isEmpty() || this.adjList == null)
             throw new IllegalStateException("No nodes added to the workflow");
 
-        return this.adjList.entrySet().stream()
+        List<Node<T, ?>> lastNodes = this.adjList.entrySet().stream()
                 .filter(entry -> entry.getValue().contains(WorkflowStateName.END))
                 .map(Map.Entry::getKey)
                 .filter(Node.class::isInstance)
                 .<Node<T, ?>>map(node -> (Node<T, ?>) node)
-                .reduce((first, second) -> second)
-                .orElseGet(() -> this.transitionsPerState.entrySet().stream()
-                                .filter(counter -> counter.getValue().getOutputTransitions() == 0)
-                                .map(Map.Entry::getKey)
-                                .filter(Node.class::isInstance)
-                                .reduce((first, second) -> second)
-                                .map(node -> (Node<T, ?>) node)
-                                .orElseThrow(() -> new IllegalStateException("No nodes added to the workflow")));
+                .collect(toList());
+        if (lastNodes.isEmpty()) {
+            lastNodes = this.transitionsPerState.entrySet().stream()
+                    .filter(counter -> counter.getValue().getOutputTransitions() == 0)
+                    .map(Map.Entry::getKey)
+                    .filter(Node.class::isInstance)
+                    .<Node<T, ?>>map(node -> (Node<T, ?>) node)
+                    .collect(toList());
+        }
+        if (lastNodes.isEmpty()) {
+            throw new IllegalStateException("No nodes added to the workflow");
+        }
+        return lastNodes;
     }
 
     @Override
     public T run() {
-        return run(this.startNode, null);
+        return runInExecutionMode(() -> run(this.startNode, null));
     }
 
     @Override
     public T runStream(Consumer<Node<T, ?>> eventConsumer) {
-        return run(this.startNode, eventConsumer);
+        return runInExecutionMode(() -> run(this.startNode, eventConsumer));
+    }
+
+    /**
+     * Returns the execution mode of the workflow.
+     *
+     * @return the execution mode
+     */
+    public ExecutionMode getExecutionMode() {
+        return this.executionMode;
+    }
+
+    /**
+     * Returns the schedule of the nodes derived from their declared fields.
+     *
+     * @return the dataflow schedule
+     * @throws IllegalStateException if the execution mode is not {@link ExecutionMode#DATAFLOW}
+     */
+    public DataflowSchedule getDataflowSchedule() {
+        if (this.executionMode != ExecutionMode.DATAFLOW) {
+            throw new IllegalStateException("The dataflow schedule is only derived in execution mode DATAFLOW");
+        }
+        return this.dataflowSchedule;
+    }
+
+    private T runInExecutionMode(Supplier<T> run) {
+        if (this.executionMode != ExecutionMode.VIRTUAL_THREAD) {
+            return run.get();
+        }
+        AtomicReference<T> result = new AtomicReference<>();
+        AtomicReference<Throwable> failure = new AtomicReference<>();
+        Thread runThread = VirtualThreads.start("jai-workflow-run-" + RUN_THREAD_COUNTER.incrementAndGet(), () -> {
+            try {
+                result.set(run.get());
+            } catch (Throwable e) {
+                failure.set(e);
+            }
+        });
+        try {
+            runThread.join();
+        } catch (InterruptedException e) {
+            runThread.interrupt();
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while waiting for the workflow run", e);
+        }
+        Throwable error = failure.get();
+        if (error instanceof RuntimeException runtimeException) {
+            throw runtimeException;
+        } else if (error instanceof Error e) {
+            throw e;
+        } else if (error != null) {
+            throw new RuntimeException(error);
+        }
+        return result.get();
     }
 
     private T run(Node<T,?> node, Consumer<Node<T, ?>> eventConsumer) {
@@ -274,11 +481,23 @@ public class DefaultStateWorkflow<T> implements StateWorkflow<T> {
                 .filter(transitionState -> transitionState instanceof Node)
                 .map(transitionState -> (Node) transitionState)
                 .toList();
-        node = determineStartNode(node, startNodes);
+        if (this.executionMode != ExecutionMode.DATAFLOW) {
+            node = determineStartNode(node, startNodes);
+        }
 
         resetWorkflowState();
         log.debug("STARTING workflow{}..", eventConsumer != null ? " in stream mode" : "");
-        runNode(node, eventConsumer);
+        try {
+            if (this.executionMode == ExecutionMode.DATAFLOW) {
+                runDataflow(eventConsumer);
+            } else {
+                runNode(node, eventConsumer);
+            }
+        } finally {
+            if (this.statefulBean instanceof OffHeapStateful offHeapStateful) {
+                releaseOffHeap(offHeapStateful.offHeapArena());
+            }
+        }
         log.debug("END workflow..");
         return statefulBean;
     }
@@ -296,43 +515,56 @@ public class DefaultStateWorkflow<T> implements StateWorkflow<T> {
         return node;
     }
 
+    private void releaseOffHeap(OffHeapArena arena) {
+        log.debug("Run stored {} off-heap bytes, {} bytes at peak, {} bytes held", arena.storedBytes(), arena.peakBytes(), arena.allocatedBytes());
+        if (this.releaseOffHeapAtRunEnd) {
+            arena.release();
+        }
+    }
+
     private void resetWorkflowState() {
         this.computedTransitions.clear(); // clean previous transitions
         this.executionOrder=1;
+        this.lastStateSnapshot = StateSnapshot.empty();
     }
 
     private void runNode(Node<T,?> node, Consumer<Node<T, ?>> eventConsumer) {
         log.debug("Running node name: " + node.getName() + "..");
-        synchronized (this.statefulBean){
-            node.execute(this.statefulBean);
-        }
+        Map<String, Object> metadata = executeNode(node);
         if (eventConsumer != null) {
             eventConsumer.accept(node);
         }
-        List<TransitionState> nextNodes;
-        synchronized (this.adjList) {
-            nextNodes = this.adjList.get(node);
+        StateSnapshot stateSnapshot = captureStateSnapshot(this.statefulBean, this.lastStateSnapshot);
+        this.lastStateSnapshot = stateSnapshot;
+        // snapshot of the adjacent states, safe to iterate while edges are added
+        List<TransitionState> nextNodes = List.copyOf(this.adjList.getOrDefault(node, List.of()));
+        if (node.hasLabel("Split") && this.statefulBean instanceof ChannelState channelState
+                && nextNodes.stream().allMatch(Node.class::isInstance)) {
+            // parallel branches on their own forks of the state, the merge node runs once on the merged state
+            Node<T, ?> mergeNode = runParallelBranches(node, metadata, nextNodes, channelState, stateSnapshot, eventConsumer);
+            runNode(mergeNode, eventConsumer);
+            return;
         }
         for (TransitionState nextNode : nextNodes) {
             if (nextNode instanceof WorkflowStateName next) {
                 if (next == WorkflowStateName.END) {
                     log.debug("Reached END state");
-                    computeTransition(this.executionOrder, node, next);
+                    computeTransition(this.executionOrder, node, next, stateSnapshot, metadata);
                     this.executionOrder++;
                     return;
                 }
             } else if (nextNode instanceof Node next) {
-                computeTransition(this.executionOrder,node, next);
+                computeTransition(this.executionOrder,node, next, stateSnapshot, metadata);
                 this.executionOrder++;
                 runNode(next, eventConsumer);
             } else if (nextNode instanceof Conditional next) {
-                computeTransition(this.executionOrder, node, next);
+                computeTransition(this.executionOrder, node, next, stateSnapshot, metadata);
                 this.executionOrder++;
                 Node<T,?> conditionalNode = next.evaluate(this.statefulBean);
                 if (conditionalNode == null) {
                     throw new IllegalStateException("Conditional node returned null");
                 } else {
-                    computeTransition(this.executionOrder, next, conditionalNode);
+                    computeTransition(this.executionOrder, next, conditionalNode, stateSnapshot, Map.of());
                     this.executionOrder++;
                     runNode(conditionalNode, eventConsumer);
                 }
@@ -340,12 +572,284 @@ public class DefaultStateWorkflow<T> implements StateWorkflow<T> {
         }
     }
 
-    private void computeTransition(Integer order, TransitionState from, TransitionState to) {
+    @SuppressWarnings("unchecked")
+    private Node<T, ?> runParallelBranches(Node<T, ?> splitNode, Map<String, Object> splitMetadata, List<TransitionState> branchStarts,
+                                           ChannelState state, StateSnapshot splitStateSnapshot, Consumer<Node<T, ?>> eventConsumer) {
+        List<List<Node<T, ?>>> branches = new ArrayList<>();
+        Node<T, ?> mergeNode = null;
+        for (TransitionState branchStart : branchStarts) {
+            List<Node<T, ?>> branch = new ArrayList<>();
+            TransitionState current = branchStart;
+            while (current instanceof Node<?, ?> parallelNode && !parallelNode.hasLabel("Merge")) {
+                branch.add((Node<T, ?>) parallelNode);
+                List<TransitionState> next = this.adjList.getOrDefault(parallelNode, List.of());
+                if (next.size() != 1) {
+                    throw new IllegalStateException("The parallel node '" + parallelNode.getName() + "' must have a single adjacent node");
+                }
+                current = next.get(0);
+            }
+            if (!(current instanceof Node<?, ?> branchMergeNode)) {
+                throw new IllegalStateException("The parallel branch '" + branchStart.graphName() + "' of the split node '" + splitNode.getName() + "' must end in a merge node");
+            }
+            if (mergeNode == null) {
+                mergeNode = (Node<T, ?>) branchMergeNode;
+            } else if (!mergeNode.equals(branchMergeNode)) {
+                throw new IllegalStateException("The parallel branches of the split node '" + splitNode.getName() + "' must end in the same merge node");
+            }
+            branches.add(branch);
+        }
+
+        List<ChannelState> forks = new ArrayList<>();
+        Throwable[] failures = new Throwable[branches.size()];
+        List<List<StateSnapshot>> branchSnapshots = new ArrayList<>();
+        List<List<Map<String, Object>>> branchMetadata = new ArrayList<>();
+        List<FutureTask<Void>> branchTasks = new ArrayList<>();
+        if (this.branchExecutor == this.workerPool && this.workerPool != null) {
+            growWorkerPool(branches.size()); // the branches of a split node run side by side
+        }
+        for (int i = 0; i < branches.size(); i++) {
+            int branchIndex = i;
+            ChannelState fork = state.fork();
+            forks.add(fork);
+            List<StateSnapshot> snapshots = new ArrayList<>();
+            branchSnapshots.add(snapshots);
+            List<Map<String, Object>> metadata = new ArrayList<>();
+            branchMetadata.add(metadata);
+            FutureTask<Void> branchTask = new FutureTask<>(() -> {
+                try {
+                    StateSnapshot previousSnapshot = splitStateSnapshot;
+                    for (Node<T, ?> parallelNode : branches.get(branchIndex)) {
+                        log.debug("Running parallel node name: " + parallelNode.getName() + "..");
+                        metadata.add(executeNode(parallelNode, (T) fork, false));
+                        previousSnapshot = captureStateSnapshot((T) fork, previousSnapshot);
+                        snapshots.add(previousSnapshot);
+                    }
+                } catch (Throwable e) {
+                    failures[branchIndex] = e;
+                }
+            }, null);
+            try {
+                branchExecutor(splitNode.getName() + "-branch-" + i).execute(branchTask);
+                branchTasks.add(branchTask);
+            } catch (RejectedExecutionException e) {
+                failures[branchIndex] = e;
+            }
+        }
+        try {
+            for (FutureTask<Void> branchTask : branchTasks) {
+                branchTask.get();
+            }
+        } catch (InterruptedException e) {
+            branchTasks.forEach(branchTask -> branchTask.cancel(true));
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while waiting for the parallel branches of '" + splitNode.getName() + "'", e);
+        } catch (ExecutionException e) {
+            throw new IllegalStateException(e.getCause()); // unreachable, the branches record their failures
+        }
+        for (Throwable failure : failures) {
+            if (failure instanceof RuntimeException runtimeException) {
+                throw runtimeException;
+            } else if (failure instanceof Error error) {
+                throw error;
+            } else if (failure != null) {
+                throw new RuntimeException(failure);
+            }
+        }
+        state.merge(forks);
+
+        // transitions and events are reported in branch declaration order, whatever the completion order
+        for (int i = 0; i < branches.size(); i++) {
+            TransitionState previous = splitNode;
+            StateSnapshot previousSnapshot = splitStateSnapshot;
+            Map<String, Object> previousMetadata = splitMetadata;
+            for (int j = 0; j < branches.get(i).size(); j++) {
+                Node<T, ?> parallelNode = branches.get(i).get(j);
+                computeTransition(this.executionOrder, previous, parallelNode, previousSnapshot, previousMetadata);
+                this.executionOrder++;
+                if (eventConsumer != null) {
+                    eventConsumer.accept(parallelNode);
+                }
+                previous = parallelNode;
+                previousSnapshot = branchSnapshots.get(i).get(j);
+                previousMetadata = branchMetadata.get(i).get(j);
+            }
+            computeTransition(this.executionOrder, previous, mergeNode, previousSnapshot, previousMetadata);
+            this.executionOrder++;
+        }
+        return mergeNode;
+    }
+
+    /**
+     * Submits each node to the dataflow executor once the nodes it depends on are done, so that a node runs as soon as
+     * possible and no executor thread waits for another node. The nodes of a failed node are skipped, and the
+     * transitions are computed in edge order once all nodes are done.
+     */
+    private void runDataflow(Consumer<Node<T, ?>> eventConsumer) {
+        DataflowRun dataflowRun = new DataflowRun(this.dataflowOrder, this.dataflowSchedule, eventConsumer);
+        dataflowRun.start();
+        try {
+            dataflowRun.finished.await();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while waiting for the dataflow nodes", e);
+        }
+        for (Throwable failure : dataflowRun.failures) {
+            if (failure instanceof RuntimeException runtimeException) {
+                throw runtimeException;
+            } else if (failure instanceof Error error) {
+                throw error;
+            } else if (failure != null) {
+                throw new RuntimeException(failure);
+            }
+        }
+        List<Node<T, ?>> nodes = dataflowRun.nodes;
+        for (int i = 0; i < nodes.size(); i++) {
+            for (TransitionState next : List.copyOf(this.adjList.getOrDefault(nodes.get(i), List.of()))) {
+                computeTransition(this.executionOrder, nodes.get(i), next, dataflowRun.snapshots[i], dataflowRun.metadata[i]);
+                this.executionOrder++;
+            }
+        }
+    }
+
+    /**
+     * State of one run in {@link ExecutionMode#DATAFLOW} mode: a node is submitted when its last dependency finishes.
+     */
+    private final class DataflowRun {
+        private final List<Node<T, ?>> nodes;
+        private final DataflowSchedule schedule;
+        private final Consumer<Node<T, ?>> eventConsumer;
+        private final Throwable[] failures;
+        private final boolean[] done; // false for a failed or skipped node
+        private final StateSnapshot[] snapshots;
+        private final Map<String, Object>[] metadata;
+        private final AtomicInteger[] pendingDependencies;
+        private final List<List<Integer>> dependents;
+        private final CountDownLatch finished;
+        // events and snapshots of concurrent nodes are taken one at a time
+        private final ReentrantLock reportLock = new ReentrantLock();
+
+        @SuppressWarnings("unchecked")
+        private DataflowRun(List<Node<T, ?>> nodes, DataflowSchedule schedule, Consumer<Node<T, ?>> eventConsumer) {
+            this.nodes = nodes;
+            this.schedule = schedule;
+            this.eventConsumer = eventConsumer;
+            this.failures = new Throwable[nodes.size()];
+            this.done = new boolean[nodes.size()];
+            this.snapshots = new StateSnapshot[nodes.size()];
+            this.metadata = new Map[nodes.size()];
+            this.pendingDependencies = new AtomicInteger[nodes.size()];
+            this.dependents = new ArrayList<>(nodes.size());
+            for (int i = 0; i < nodes.size(); i++) {
+                this.dependents.add(new ArrayList<>());
+            }
+            for (int i = 0; i < nodes.size(); i++) {
+                int[] dependencies = schedule.dependencies(i);
+                this.pendingDependencies[i] = new AtomicInteger(dependencies.length);
+                for (int dependency : dependencies) {
+                    this.dependents.get(dependency).add(i);
+                }
+            }
+            this.finished = new CountDownLatch(nodes.size());
+        }
+
+        private void start() {
+            for (int i = 0; i < nodes.size(); i++) {
+                if (schedule.dependencies(i).length == 0) {
+                    submit(i);
+                }
+            }
+        }
+
+        private void submit(int index) {
+            for (int dependency : schedule.dependencies(index)) {
+                if (!done[dependency]) {
+                    finish(index); // skipped
+                    return;
+                }
+            }
+            try {
+                dataflowExecutor.execute(() -> run(index));
+            } catch (RejectedExecutionException e) {
+                failures[index] = e;
+                finish(index);
+            }
+        }
+
+        private void run(int index) {
+            Node<T, ?> node = nodes.get(index);
+            try {
+                log.debug("Running dataflow node name: " + node.getName() + "..");
+                metadata[index] = executeNode(node, statefulBean, false);
+                reportLock.lock();
+                try {
+                    lastStateSnapshot = snapshots[index] = captureStateSnapshot(statefulBean, lastStateSnapshot);
+                    if (eventConsumer != null) {
+                        eventConsumer.accept(node);
+                    }
+                } finally {
+                    reportLock.unlock();
+                }
+                done[index] = true;
+            } catch (Throwable e) {
+                failures[index] = e;
+            }
+            finish(index);
+        }
+
+        private void finish(int index) {
+            // the countdown publishes the outcome of the node to the dependents and to the caller
+            for (int dependent : dependents.get(index)) {
+                if (pendingDependencies[dependent].decrementAndGet() == 0) {
+                    submit(dependent);
+                }
+            }
+            finished.countDown();
+        }
+    }
+
+    private Executor branchExecutor(String threadName) {
+        return this.branchExecutor != null ? this.branchExecutor : branch -> VirtualThreads.start(threadName, branch);
+    }
+
+    private Map<String, Object> executeNode(Node<T,?> node) {
+        return executeNode(node, this.statefulBean, true);
+    }
+
+    // returns the metadata of this execution, which the node may share with concurrent runs
+    private Map<String, Object> executeNode(Node<T,?> node, T input, boolean exclusive) {
+        Map<String, Object> metadata = new LinkedHashMap<>();
+        Supplier<?> execution = () -> {
+            if (!exclusive) {
+                return node.execute(input, metadata);
+            }
+            this.statefulBeanLock.lock();
+            try {
+                return node.execute(input, metadata);
+            } finally {
+                this.statefulBeanLock.unlock();
+            }
+        };
+        // the first registered interceptor is the outermost
+        for (int i = this.nodeInterceptors.size() - 1; i >= 0; i--) {
+            NodeInterceptor interceptor = this.nodeInterceptors.get(i);
+            Supplier<?> next = execution;
+            execution = () -> interceptor.intercept(node, next);
+        }
+        execution.get();
+        return metadata;
+    }
+
+    private StateSnapshot captureStateSnapshot(T state, StateSnapshot previous) {
+        return this.stateSnapshotter != null ? this.stateSnapshotter.snapshot(state, previous) : null;
+    }
+
+    private void computeTransition(Integer order, TransitionState from, TransitionState to, StateSnapshot stateSnapshot,
+                                   Map<String, Object> fromMetadata) {
         this.transitions.stream()
                 .filter(transition -> transition.from().equals(from) && transition.to().equals(to))
                 .findAny()
                 .ifPresent(transition -> {
-                    this.computedTransitions.add(ComputedTransition.from(order, transition));
+                    this.computedTransitions.add(ComputedTransition.from(order, transition, stateSnapshot, fromMetadata));
                 });
     }
 
@@ -370,7 +874,7 @@ public class DefaultStateWorkflow<T> implements StateWorkflow<T> {
 
     @Override
     public void generateComputedWorkflowImage(Format format, String outputPath, List<StyleAttribute> styleAttributes) throws IOException {
-        GraphvizImageGenerator graphImageGenerator = GraphvizImageGenerator.builder()
+        GraphvizImageGenerator graphImageGenerator = derivedGraphvizImageGenerator()
                 .computedTransitions(getComputedTransitions())
                 .build();
         imageGenerator(graphImageGenerator, format, outputPath, styleAttributes);
@@ -378,7 +882,7 @@ public class DefaultStateWorkflow<T> implements StateWorkflow<T> {
 
     @Override
     public BufferedImage generateComputedWorkflowBufferedImage(Format format, List<StyleAttribute> styleAttributes) throws RuntimeException {
-        GraphvizImageGenerator graphImageGenerator = GraphvizImageGenerator.builder()
+        GraphvizImageGenerator graphImageGenerator = derivedGraphvizImageGenerator()
                 .computedTransitions(getComputedTransitions())
                 .build();
         return imageGenerator(graphImageGenerator, format, styleAttributes);
@@ -413,9 +917,93 @@ public class DefaultStateWorkflow<T> implements StateWorkflow<T> {
         return imageGenerator(this.graphImageGenerator, format, styleAttributes);
     }
 
+    /**
+     * Writes the graph source of the workflow, e.g. DOT or Mermaid, without rendering it. The transitions computed by the
+     * last run are highlighted, if any.
+     *
+     * @param exporter the exporter of the graph source, such as
+     *                 {@link io.github.czelabueno.jai.workflow.graph.text.MermaidExporter}
+     * @param writer   the writer to write the graph source to, which is neither flushed nor closed
+     * @param styles   optional styles to apply to the graph (e.g., orientation)
+     * @throws IOException if the writer fails
+     */
+    public void exportWorkflowGraph(@NonNull GraphTextExporter exporter, @NonNull Writer writer, StyleAttribute... styles) throws IOException {
+        List<Transition> transitions = this.transitions.stream().toList();
+        exporter.export(transitions, wasRun() ? getComputedTransitions() : null, writer, styles);
+    }
+
+    /**
+     * Streams an image of the workflow to the given stream, e.g. the body of an HTTP response, without writing a file
+     * or rasterizing it to a BufferedImage.
+     *
+     * @param out    the stream to write the workflow image to, which is neither flushed nor closed
+     * @param format the format of the image
+     * @param styles optional styles to apply to the graph (e.g., sketchy, orientation)
+     * @throws IOException if an I/O error occurs during image generation or while writing to the stream
+     */
+    public void writeWorkflowImage(@NonNull OutputStream out, Format format, StyleAttribute... styles) throws IOException {
+        List<Transition> transitions = this.transitions.stream().toList();
+        cached(this.graphImageGenerator).writeImage(transitions, out, format, styles);
+    }
+
+    /**
+     * Streams an image of the computed workflow to the given stream, e.g. the body of an HTTP response, without writing
+     * a file or rasterizing it to a BufferedImage.
+     *
+     * @param out    the stream to write the computed workflow image to, which is neither flushed nor closed
+     * @param format the format of the image
+     * @param styles optional styles to apply to the graph (e.g., sketchy, orientation)
+     * @throws IOException if an I/O error occurs during image generation or while writing to the stream
+     * @throws RuntimeException if the workflow has not been run yet
+     */
+    public void writeComputedWorkflowImage(@NonNull OutputStream out, Format format, StyleAttribute... styles) throws IOException {
+        GraphvizImageGenerator graphImageGenerator = derivedGraphvizImageGenerator()
+                .computedTransitions(getComputedTransitions())
+                .build();
+        List<Transition> transitions = this.transitions.stream().toList();
+        cached(graphImageGenerator).writeImage(transitions, out, format, styles);
+    }
+
+    /**
+     * Streams a heat map of the runs recorded by the given heat map over the workflow graph: the edges are thicker and
+     * redder the more often they were taken, and the nodes are colored by their p95 latency. The heat map is rendered
+     * with the engine pool and the collapser of the configured {@link GraphvizImageGenerator}, if any.
+     *
+     * @param heatMap the runs of this workflow, aggregated by {@link ExecutionHeatMap#record(List)}
+     * @param out     the stream to write the heat map image to, which is neither flushed nor closed
+     * @param format  the format of the image
+     * @param styles  optional styles to apply to the graph (e.g., sketchy, orientation)
+     * @throws IOException if an I/O error occurs during image generation or while writing to the stream
+     */
+    public void writeHeatMapImage(@NonNull ExecutionHeatMap heatMap, @NonNull OutputStream out, Format format, StyleAttribute... styles) throws IOException {
+        GraphvizImageGenerator graphImageGenerator = derivedGraphvizImageGenerator()
+                .heatMap(heatMap)
+                .build();
+        List<Transition> transitions = this.transitions.stream().toList();
+        graphImageGenerator.writeImage(transitions, out, format, styles);
+    }
+
+    /**
+     * Queues the render of an image of the computed workflow, so that tracing a run does not delay its caller. The
+     * computed transitions are taken when this method is called, a next run does not change the image.
+     *
+     * @param renderQueue the queue rendering the image in the background
+     * @param format      the format of the image
+     * @param styles      optional styles to apply to the graph (e.g., sketchy, orientation)
+     * @return the future of the image bytes, cancelled if the queue drops the render and failed if it rejects it
+     * @throws RuntimeException if the workflow has not been run yet
+     */
+    public CompletableFuture<byte[]> renderComputedWorkflowImageAsync(@NonNull RenderQueue renderQueue, Format format, StyleAttribute... styles) {
+        GraphvizImageGenerator graphImageGenerator = derivedGraphvizImageGenerator()
+                .computedTransitions(getComputedTransitions())
+                .build();
+        List<Transition> transitions = this.transitions.stream().toList();
+        return renderQueue.submit(cached(graphImageGenerator), transitions, format, styles);
+    }
+
     private BufferedImage imageGenerator(GraphImageGenerator graphImageGenerator, Format format, List<StyleAttribute> styleAttributes) throws RuntimeException {
         List<Transition> transitions = this.transitions.stream().toList();
-        return graphImageGenerator.generateBufferedImage(
+        return cached(graphImageGenerator).generateBufferedImage(
                 transitions,
                 format,
                 styleAttributes.toArray(new StyleAttribute[0]));
@@ -423,6 +1011,7 @@ public class DefaultStateWorkflow<T> implements StateWorkflow<T> {
 
     private void imageGenerator(GraphImageGenerator graphImageGenerator, Format format, String outputPath, List<StyleAttribute> styleAttributes) throws IOException {
         List<Transition> transitions = this.transitions.stream().toList();
+        graphImageGenerator = cached(graphImageGenerator);
         try {
             Path path = Paths.get(outputPath);
             graphImageGenerator.generateImage(
@@ -439,6 +1028,40 @@ public class DefaultStateWorkflow<T> implements StateWorkflow<T> {
         }
     }
 
+    // Keeps the engine pool and the collapser of the configured Graphviz generator for the images of the runs
+    private GraphvizImageGenerator.GraphvizImageGeneratorBuilder derivedGraphvizImageGenerator() {
+        GraphImageGenerator configured = this.graphImageGenerator instanceof CachingGraphImageGenerator caching
+                ? caching.delegate()
+                : this.graphImageGenerator;
+        if (!(configured instanceof GraphvizImageGenerator graphvizImageGenerator)) {
+            return GraphvizImageGenerator.builder();
+        }
+        return graphvizImageGenerator.toBuilder()
+                .dotFormat(null) // a custom dot format shows neither the runs nor the heat map
+                .computedTransitions(null)
+                .heatMap(null);
+    }
+
+    // Serves the images of a same definition, or of a same run, from the render cache of the workflow
+    private GraphImageGenerator cached(GraphImageGenerator graphImageGenerator) {
+        if (graphImageGenerator instanceof CachingGraphImageGenerator || graphImageGenerator.renderFingerprint() == null) {
+            return graphImageGenerator;
+        }
+        return CachingGraphImageGenerator.builder()
+                .delegate(graphImageGenerator)
+                .cache(this.renderCache)
+                .build();
+    }
+
+    /**
+     * Returns the cache of the images rendered by this workflow.
+     *
+     * @return the render cache
+     */
+    public RenderCache getRenderCache() {
+        return this.renderCache;
+    }
+
     /**
      * Creates a new builder for the DefaultStateWorkflow class.
      *
@@ -459,6 +1082,13 @@ public class DefaultStateWorkflow<T> implements StateWorkflow<T> {
         private List<Transition> addEdges = new ArrayList<>();
         private List<Node<T, ?>> addNodes = new ArrayList<>();
         private GraphImageGenerator graphImageGenerator;
+        private RenderCache renderCache;
+        private List<NodeInterceptor> nodeInterceptors = new ArrayList<>();
+        private ExecutionMode executionMode;
+        private StateSnapshotter<? super T> stateSnapshotter;
+        private boolean releaseOffHeapAtRunEnd;
+        private Executor dataflowExecutor;
+        private Executor branchExecutor;
 
         /**
          * Constructs a new builder with the specified stateful bean.
@@ -503,6 +1133,106 @@ public class DefaultStateWorkflow<T> implements StateWorkflow<T> {
             return this;
         }
 
+        /**
+         * Sets the cache of the workflow images, keyed by their content, so that the images of a same definition or a
+         * same run are rendered once. A cache may be shared by several workflows. Defaults to the in-memory
+         * {@link RenderCache#getDefault() default cache} of 8 MiB shared by all the workflows, so that a workflow
+         * created per request does not hold a cache of its own; a cache of zero bytes disables it.
+         *
+         * @param renderCache the render cache
+         * @return this builder
+         */
+        public Builder<T> renderCache(RenderCache renderCache) {
+            this.renderCache = renderCache;
+            return this;
+        }
+
+        /**
+         * Adds the specified interceptors to wrap every node execution of the workflow.
+         * The first interceptor added is the outermost.
+         *
+         * @param nodeInterceptors the node interceptors to add to the workflow
+         * @return this builder
+         */
+        public Builder<T> nodeInterceptors(NodeInterceptor... nodeInterceptors) {
+            this.nodeInterceptors.addAll(Arrays.asList(nodeInterceptors));
+            return this;
+        }
+
+        /**
+         * Sets the threads on which the workflow runs its nodes. Defaults to {@link ExecutionMode#CALLER_THREAD}.
+         *
+         * @param executionMode the execution mode of the workflow
+         * @return this builder
+         */
+        public Builder<T> executionMode(ExecutionMode executionMode) {
+            this.executionMode = executionMode;
+            return this;
+        }
+
+        /**
+         * Captures a snapshot of the stateful bean on each computed transition with the default
+         * {@link StateSnapshotter}. Disabled by default.
+         *
+         * @param captureStateSnapshots true to capture the state snapshots
+         * @return this builder
+         */
+        public Builder<T> captureStateSnapshots(boolean captureStateSnapshots) {
+            this.stateSnapshotter = captureStateSnapshots ? StateSnapshotter.defaultSnapshotter() : null;
+            return this;
+        }
+
+        /**
+         * Captures a snapshot of the stateful bean on each computed transition with the specified snapshotter.
+         * Disabled by default.
+         *
+         * @param stateSnapshotter the snapshotter of the stateful bean
+         * @return this builder
+         */
+        public Builder<T> stateSnapshotter(StateSnapshotter<? super T> stateSnapshotter) {
+            this.stateSnapshotter = stateSnapshotter;
+            return this;
+        }
+
+        /**
+         * Releases the off-heap payloads of an {@link OffHeapStateful} stateful bean when a run ends, successfully or not.
+         * Enable it when the caller does not read these payloads after the run. Defaults to false.
+         *
+         * @param releaseOffHeapAtRunEnd true to release the off-heap payloads at the end of each run
+         * @return this builder
+         */
+        public Builder<T> releaseOffHeapAtRunEnd(boolean releaseOffHeapAtRunEnd) {
+            this.releaseOffHeapAtRunEnd = releaseOffHeapAtRunEnd;
+            return this;
+        }
+
+        /**
+         * Sets the executor running the nodes in {@link ExecutionMode#DATAFLOW} mode. A node is only submitted once the
+         * nodes it depends on are done, so an executor of any size runs the workflow. Defaults to a pool of the
+         * workflow bounded by the maximum parallelism of its schedule, whose idle threads stop after 30 seconds.
+         *
+         * @param dataflowExecutor the executor of the dataflow nodes
+         * @return this builder
+         */
+        public Builder<T> dataflowExecutor(Executor dataflowExecutor) {
+            this.dataflowExecutor = dataflowExecutor;
+            return this;
+        }
+
+        /**
+         * Sets the executor running the parallel branches of the split nodes, which the run waits for. An executor
+         * with fewer threads than branches runs them in turn. Defaults to a virtual thread per branch on Java 21 and
+         * later, and before Java 21 to a pool of the workflow bounded by the largest number of branches of a split
+         * node, whose idle threads stop after 30 seconds.
+         *
+         * @param branchExecutor the executor of the parallel branches
+         * @return this builder
+         */
+        public Builder<T> branchExecutor(Executor branchExecutor) {
+            this.branchExecutor = branchExecutor;
+            return this;
+        }
+
         /**
          * Builds a new DefaultStateWorkflow instance with the specified stateful bean.
          *
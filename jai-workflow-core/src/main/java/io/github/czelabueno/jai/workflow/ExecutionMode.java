@@ -0,0 +1,28 @@
+package io.github.czelabueno.jai.workflow;
+
+/**
+ * Enum representing the threads on which a {@link DefaultStateWorkflow} runs its nodes.
+ */
+public enum ExecutionMode {
+    /**
+     * The nodes run on the thread calling {@code run} or {@code runStream}.
+     */
+    CALLER_THREAD,
+
+    /**
+     * Each run gets its own virtual thread, the calling thread waiting for its end.
+     * A node blocking on a model call unmounts its virtual thread instead of holding a carrier thread,
+     * so a few carrier threads can serve thousands of concurrent runs. Requires Java 21 or later.
+     */
+    VIRTUAL_THREAD,
+
+    /**
+     * The edges give the order of the nodes, and the fields that the nodes declare to read and write give their
+     * dependencies: a node runs as soon as the earlier nodes writing a field it reads or writes, or reading a field it
+     * writes, are done. Independent nodes run concurrently on the same stateful bean, on a bounded executor set with
+     * {@code dataflowExecutor}, conflicting nodes in edge order.
+     * The derived schedule is reported by {@link DefaultStateWorkflow#getDataflowSchedule()}.
+     * Conditional edges are not supported.
+     */
+    DATAFLOW
+}
@@ -0,0 +1,55 @@
+package io.github.czelabueno.jai.workflow;
+
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+
+/**
+ * Starts virtual threads through reflection, the library being compiled for Java 17.
+ */
+final class VirtualThreads {
+
+    private static final Method START_VIRTUAL_THREAD = startVirtualThreadMethod();
+
+    private VirtualThreads() {
+    }
+
+    /**
+     * Returns true if the runtime supports virtual threads.
+     *
+     * @return true on Java 21 or later
+     */
+    static boolean isSupported() {
+        return START_VIRTUAL_THREAD != null;
+    }
+
+    /**
+     * Starts a virtual thread running the given task.
+     *
+     * @param name the name of the thread
+     * @param task the task to run
+     * @return the started thread
+     * @throws UnsupportedOperationException if the runtime does not support virtual threads
+     */
+    static Thread start(String name, Runnable task) {
+        if (START_VIRTUAL_THREAD == null) {
+            throw new UnsupportedOperationException("Virtual threads require Java 21 or later");
+        }
+        try {
+            Thread thread = (Thread) START_VIRTUAL_THREAD.invoke(null, task);
+            thread.setName(name);
+            return thread;
+        } catch (IllegalAccessException e) {
+            throw new IllegalStateException("Cannot start a virtual thread", e);
+        } catch (InvocationTargetException e) {
+            throw new IllegalStateException("Cannot start a virtual thread", e.getCause());
+        }
+    }
+
+    private static Method startVirtualThreadMethod() {
+        try {
+            return Thread.class.getMethod("startVirtualThread", Runnable.class);
+        } catch (NoSuchMethodException e) {
+            return null;
+        }
+    }
+}
@@ -0,0 +1,81 @@
+package io.github.czelabueno.jai.workflow.codec;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+/**
+ * Reads the primitive encodings written by a {@link BinaryWriter}.
+ */
+final class BinaryReader {
+
+    private final byte[] buffer;
+    private int position;
+
+    BinaryReader(byte[] buffer) {
+        this.buffer = buffer;
+    }
+
+    int readByte() {
+        ensureAvailable(1);
+        return buffer[position++];
+    }
+
+    long readUnsignedVarLong() {
+        long value = 0;
+        for (int shift = 0; shift < 64; shift += 7) {
+            int b = readByte();
+            value |= (long) (b & 0x7F) << shift;
+            if ((b & 0x80) == 0) {
+                return value;
+            }
+        }
+        throw new IllegalStateException("Malformed variable-length integer at byte " + position);
+    }
+
+    long readVarLong() {
+        long value = readUnsignedVarLong();
+        return (value >>> 1) ^ -(value & 1);
+    }
+
+    long readFixedLong() {
+        ensureAvailable(8);
+        long value = 0;
+        for (int i = 0; i < 8; i++) {
+            value = (value << 8) | (buffer[position++] & 0xFF);
+        }
+        return value;
+    }
+
+    byte[] readBytes() {
+        int length = readLength();
+        byte[] bytes = Arrays.copyOfRange(buffer, position, position + length);
+        position += length;
+        return bytes;
+    }
+
+    String readString() {
+        int length = readLength();
+        String value = new String(buffer, position, length, StandardCharsets.UTF_8);
+        position += length;
+        return value;
+    }
+
+    int readLength() {
+        long length = readUnsignedVarLong();
+        if (length > buffer.length - position) {
+            throw new IllegalStateException("Truncated input: length " + length + " at byte " + position
+                    + " exceeds the " + (buffer.length - position) + " remaining bytes");
+        }
+        return (int) length;
+    }
+
+    boolean hasRemaining() {
+        return position < buffer.length;
+    }
+
+    private void ensureAvailable(int bytes) {
+        if (position + bytes > buffer.length) {
+            throw new IllegalStateException("Truncated input at byte " + position);
+        }
+    }
+}
@@ -0,0 +1,75 @@
+package io.github.czelabueno.jai.workflow.codec;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+/**
+ * Growable byte buffer with the primitive encodings of the {@link BinaryStateCodec}: integers are written as
+ * variable-length zigzag integers, so small values take a single byte whatever their type.
+ */
+final class BinaryWriter {
+
+    private byte[] buffer = new byte[256];
+    private int position;
+
+    void writeByte(int value) {
+        ensureCapacity(1);
+        buffer[position++] = (byte) value;
+    }
+
+    void writeUnsignedVarLong(long value) {
+        ensureCapacity(10);
+        while ((value & ~0x7FL) != 0) {
+            buffer[position++] = (byte) ((value & 0x7F) | 0x80);
+            value >>>= 7;
+        }
+        buffer[position++] = (byte) value;
+    }
+
+    void writeVarLong(long value) {
+        writeUnsignedVarLong((value << 1) ^ (value >> 63));
+    }
+
+    void writeFixedLong(long value) {
+        ensureCapacity(8);
+        for (int shift = 56; shift >= 0; shift -= 8) {
+            buffer[position++] = (byte) (value >>> shift);
+        }
+    }
+
+    void writeBytes(byte[] bytes) {
+        writeUnsignedVarLong(bytes.length);
+        ensureCapacity(bytes.length);
+        System.arraycopy(bytes, 0, buffer, position, bytes.length);
+        position += bytes.length;
+    }
+
+    void writeString(String value) {
+        int length = value.length();
+        ensureCapacity(length + 5);
+        int start = position;
+        writeUnsignedVarLong(length);
+        int offset = position;
+        for (int i = 0; i < length; i++) {
+            char c = value.charAt(i);
+            if (c >= 0x80) {
+                // not ASCII, rewrite the string as UTF-8 with its length in bytes
+                position = start;
+                writeBytes(value.getBytes(StandardCharsets.UTF_8));
+                return;
+            }
+            buffer[offset + i] = (byte) c;
+        }
+        position = offset + length;
+    }
+
+    byte[] toByteArray() {
+        return Arrays.copyOf(buffer, position);
+    }
+
+    private void ensureCapacity(int bytes) {
+        if (position + bytes > buffer.length) {
+            buffer = Arrays.copyOf(buffer, Math.max(buffer.length * 2, position + bytes));
+        }
+    }
+}
@@ -0,0 +1,220 @@
+package io.github.czelabueno.jai.workflow.codec;
+
+import io.github.czelabueno.jai.workflow.state.TransientState;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.Constructor;
+import java.lang.reflect.Field;
+import java.lang.reflect.Modifier;
+import java.lang.reflect.RecordComponent;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.List;
+
+/**
+ * Fields of a record or bean class as encoded by the {@link BinaryStateCodec}, derived once per class.
+ * <p>
+ * The fields of a record are its components, created through the canonical constructor. The fields of a bean are its
+ * non-static, non-transient fields from the top superclass down, set on an instance created by the no-argument
+ * constructor, as for a Lombok {@code @Data} class. The accessors are method handles adapted to {@code Object}, so
+ * encoding does not go through reflection.
+ * </p>
+ */
+final class ClassSchema {
+
+    private static final MethodType GETTER_TYPE = MethodType.methodType(Object.class, Object.class);
+    private static final MethodType SETTER_TYPE = MethodType.methodType(void.class, Object.class, Object.class);
+
+    private static final ClassValue<ClassSchema> SCHEMAS = new ClassValue<>() {
+        @Override
+        protected ClassSchema computeValue(Class<?> type) {
+            return new ClassSchema(type);
+        }
+    };
+
+    private final Class<?> type;
+    private final String[] names;
+    private final Class<?>[] types;
+    private final MethodHandle[] getters;
+    private final MethodHandle[] setters; // null for a record
+    private final MethodHandle constructor;
+    private final long fingerprint;
+    private final String unsupportedReason; // null when the class can be encoded
+
+    private ClassSchema(Class<?> type) {
+        this.type = type;
+        String[] names = new String[0];
+        Class<?>[] types = new Class<?>[0];
+        MethodHandle[] getters = new MethodHandle[0];
+        MethodHandle[] setters = null;
+        MethodHandle constructor = null;
+        String unsupportedReason = unsupportedReason(type);
+        if (unsupportedReason == null) {
+            MethodHandles.Lookup lookup = MethodHandles.lookup();
+            try {
+                if (type.isRecord()) {
+                    RecordComponent[] components = type.getRecordComponents();
+                    names = new String[components.length];
+                    types = new Class<?>[components.length];
+                    getters = new MethodHandle[components.length];
+                    for (int i = 0; i < components.length; i++) {
+                        names[i] = components[i].getName();
+                        types[i] = components[i].getType();
+                        components[i].getAccessor().setAccessible(true);
+                        getters[i] = lookup.unreflect(components[i].getAccessor()).asType(GETTER_TYPE);
+                    }
+                    Constructor<?> canonical = type.getDeclaredConstructor(types);
+                    canonical.setAccessible(true);
+                    constructor = lookup.unreflectConstructor(canonical)
+                            .asType(MethodType.methodType(Object.class, types).generic())
+                            .asSpreader(Object[].class, components.length);
+                } else {
+                    List<Field> fields = beanFields(type);
+                    names = new String[fields.size()];
+                    types = new Class<?>[fields.size()];
+                    getters = new MethodHandle[fields.size()];
+                    setters = new MethodHandle[fields.size()];
+                    for (int i = 0; i < fields.size(); i++) {
+                        Field field = fields.get(i);
+                        field.setAccessible(true);
+                        names[i] = field.getName();
+                        types[i] = field.getType();
+                        getters[i] = lookup.unreflectGetter(field).asType(GETTER_TYPE);
+                        setters[i] = lookup.unreflectSetter(field).asType(SETTER_TYPE);
+                    }
+                    Constructor<?> noArgs = type.getDeclaredConstructor();
+                    noArgs.setAccessible(true);
+                    constructor = lookup.unreflectConstructor(noArgs).asType(MethodType.methodType(Object.class));
+                }
+            } catch (NoSuchMethodException e) {
+                unsupportedReason = "it has no no-argument constructor";
+            } catch (IllegalAccessException | RuntimeException e) {
+                // InaccessibleObjectException when the package is not opened
+                unsupportedReason = "its fields are not accessible: " + e.getMessage();
+            }
+        }
+        this.names = names;
+        this.types = types;
+        this.getters = getters;
+        this.setters = setters;
+        this.constructor = constructor;
+        this.unsupportedReason = unsupportedReason;
+        this.fingerprint = fingerprint(type, names, types);
+    }
+
+    static ClassSchema of(Class<?> type) {
+        return SCHEMAS.get(type);
+    }
+
+    Class<?> type() {
+        return type;
+    }
+
+    int size() {
+        return names.length;
+    }
+
+    String name(int field) {
+        return names[field];
+    }
+
+    Class<?> type(int field) {
+        return types[field];
+    }
+
+    long fingerprint() {
+        return fingerprint;
+    }
+
+    boolean isSupported() {
+        return unsupportedReason == null;
+    }
+
+    String unsupportedReason() {
+        return unsupportedReason;
+    }
+
+    Object get(Object instance, int field) {
+        try {
+            return (Object) getters[field].invokeExact(instance);
+        } catch (Throwable e) {
+            throw new IllegalStateException("Cannot read field '" + names[field] + "' of " + type.getName(), e);
+        }
+    }
+
+    /**
+     * Creates an instance with the given field values, in the order of the schema.
+     */
+    Object newInstance(Object[] values) {
+        Object instance;
+        try {
+            if (setters == null) {
+                return (Object) constructor.invokeExact(values);
+            }
+            instance = (Object) constructor.invokeExact();
+        } catch (Throwable e) {
+            throw new IllegalStateException("Cannot create an instance of " + type.getName(), e);
+        }
+        for (int i = 0; i < setters.length; i++) {
+            try {
+                setters[i].invokeExact(instance, values[i]);
+            } catch (Throwable e) {
+                throw new IllegalStateException("Cannot set field '" + names[i] + "' of " + type.getName(), e);
+            }
+        }
+        return instance;
+    }
+
+    private static String unsupportedReason(Class<?> type) {
+        if (type.isInterface() || Modifier.isAbstract(type.getModifiers())) {
+            return "it is abstract";
+        }
+        if (type.isHidden() || type.isAnonymousClass() || type.isSynthetic() || type.isArray()) {
+            return "it cannot be loaded by name";
+        }
+        if (type.getName().startsWith("java.") || type.getName().startsWith("javax.")) {
+            return "it is not a data class";
+        }
+        if (type.isMemberClass() && !Modifier.isStatic(type.getModifiers())) {
+            return "it is an inner class";
+        }
+        return null;
+    }
+
+    private static List<Field> beanFields(Class<?> type) {
+        Deque<Class<?>> hierarchy = new ArrayDeque<>();
+        for (Class<?> current = type; current != null && current != Object.class; current = current.getSuperclass()) {
+            hierarchy.push(current);
+        }
+        List<Field> fields = new ArrayList<>();
+        for (Class<?> current : hierarchy) {
+            for (Field field : current.getDeclaredFields()) {
+                int modifiers = field.getModifiers();
+                if (!Modifier.isStatic(modifiers) && !Modifier.isTransient(modifiers) && !field.isSynthetic()
+                        && !field.isAnnotationPresent(TransientState.class)) {
+                    fields.add(field);
+                }
+            }
+        }
+        return fields;
+    }
+
+    /**
+     * FNV-1a hash of the field names and types, to detect a class that changed between encoding and decoding.
+     */
+    private static long fingerprint(Class<?> type, String[] names, Class<?>[] types) {
+        long hash = 0xcbf29ce484222325L;
+        StringBuilder signature = new StringBuilder(type.isRecord() ? "record" : "bean");
+        for (int i = 0; i < names.length; i++) {
+            signature.append(';').append(names[i]).append(':').append(types[i].getName());
+        }
+        for (int i = 0; i < signature.length(); i++) {
+            hash ^= signature.charAt(i);
+            hash *= 0x100000001b3L;
+        }
+        return hash;
+    }
+}
@@ -0,0 +1,106 @@
+package io.github.czelabueno.jai.workflow.codec;
+
+import io.github.czelabueno.jai.workflow.transition.ComputedTransition;
+import lombok.NonNull;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.ServiceLoader;
+
+/**
+ * Converts stateful beans and workflow traces to bytes and back, e.g. to checkpoint a run, to hand its state to
+ * another process or to export its computed transitions.
+ * <p>
+ * The built-in codec is the {@link BinaryStateCodec}, named {@value BinaryStateCodec#NAME}. Other codecs are plugged in
+ * as {@link ServiceLoader} providers of this interface and looked up by name:
+ * </p>
+ * <pre>{@code
+ * StateCodec codec = StateCodec.load("binary");
+ * byte[] checkpoint = codec.encode(statefulBean);
+ * MyStatefulBean restored = codec.decode(checkpoint, MyStatefulBean.class);
+ * byte[] trace = codec.encodeTrace(workflow.getComputedTransitions());
+ * }</pre>
+ */
+public interface StateCodec {
+
+    /**
+     * Returns the name of the codec, used to look it up with {@link #load(String)}.
+     *
+     * @return the name of the codec
+     */
+    String name();
+
+    /**
+     * Encodes a value, e.g. a stateful bean.
+     *
+     * @param value the value to encode, may be null
+     * @return the encoded value
+     * @throws IllegalArgumentException if the value, or a value it holds, cannot be encoded by this codec
+     */
+    byte[] encode(Object value);
+
+    /**
+     * Decodes a value encoded by {@link #encode(Object)}.
+     *
+     * @param bytes the encoded value
+     * @param type  the expected type of the value
+     * @param <T>   the type of the value
+     * @return the decoded value, or null if null was encoded
+     * @throws IllegalStateException if the bytes are not a valid encoding of a value of the given type
+     */
+    <T> T decode(byte[] bytes, Class<T> type);
+
+    /**
+     * Encodes the computed transitions of a run as a list of {@link TransitionTrace}.
+     *
+     * @param computedTransitions the computed transitions, in order
+     * @return the encoded trace
+     * @throws IllegalArgumentException if a payload, metadata or state value cannot be encoded by this codec
+     */
+    default byte[] encodeTrace(@NonNull List<ComputedTransition> computedTransitions) {
+        List<TransitionTrace> trace = new ArrayList<>(computedTransitions.size());
+        for (ComputedTransition computedTransition : computedTransitions) {
+            trace.add(TransitionTrace.from(computedTransition));
+        }
+        return encode(trace);
+    }
+
+    /**
+     * Decodes a trace encoded by {@link #encodeTrace(List)}.
+     *
+     * @param bytes the encoded trace
+     * @return the transitions of the trace, in order
+     * @throws IllegalStateException if the bytes are not a valid encoding of a trace
+     */
+    @SuppressWarnings("unchecked")
+    default List<TransitionTrace> decodeTrace(byte[] bytes) {
+        List<?> trace = decode(bytes, List.class);
+        for (Object transition : trace) {
+            if (!(transition instanceof TransitionTrace)) {
+                throw new IllegalStateException("Not a trace, found an element of type "
+                        + (transition == null ? "null" : transition.getClass().getName()));
+            }
+        }
+        return (List<TransitionTrace>) trace;
+    }
+
+    /**
+     * Returns the codec with the given name, the built-in {@link BinaryStateCodec} or a codec provided through
+     * {@link ServiceLoader}.
+     *
+     * @param name the name of the codec
+     * @return the codec
+     * @throws IllegalArgumentException if no codec has this name
+     */
+    static StateCodec load(@NonNull String name) {
+        if (BinaryStateCodec.NAME.equals(name)) {
+            return BinaryStateCodec.defaultCodec();
+        }
+        for (StateCodec codec : ServiceLoader.load(StateCodec.class)) {
+            if (name.equals(codec.name())) {
+                return codec;
+            }
+        }
+        throw new IllegalArgumentException("No state codec named '" + name + "'");
+    }
+}
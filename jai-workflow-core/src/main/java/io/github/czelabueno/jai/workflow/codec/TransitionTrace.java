@@ -0,0 +1,49 @@
+package io.github.czelabueno.jai.workflow.codec;
+
+import io.github.czelabueno.jai.workflow.transition.ComputedTransition;
+import lombok.NonNull;
+
+import java.time.LocalDateTime;
+import java.util.Map;
+import java.util.UUID;
+
+/**
+ * Serializable form of a {@link ComputedTransition}: the nodes are referred to by their graph name, as the nodes
+ * themselves hold functions.
+ *
+ * @param id         the id of the computed transition
+ * @param order      the order of the transition in the run
+ * @param from       the graph name of the starting state
+ * @param to         the graph name of the ending state
+ * @param computedAt the time the transition was computed
+ * @param payload    the output of the starting state
+ * @param metadata   the metadata recorded by the starting state
+ * @param state      the fields of the stateful bean after the starting state ran, or null if not captured
+ */
+public record TransitionTrace(UUID id,
+                              int order,
+                              String from,
+                              String to,
+                              LocalDateTime computedAt,
+                              Object payload,
+                              Map<String, Object> metadata,
+                              Map<String, Object> state) {
+
+    /**
+     * Creates the trace of a computed transition.
+     *
+     * @param computedTransition the computed transition
+     * @return a new TransitionTrace instance
+     */
+    public static TransitionTrace from(@NonNull ComputedTransition computedTransition) {
+        return new TransitionTrace(
+                computedTransition.getId(),
+                computedTransition.getOrder(),
+                computedTransition.getTransition().from().graphName(),
+                computedTransition.getTransition().to().graphName(),
+                computedTransition.getComputedAt(),
+                computedTransition.getPayload(),
+                computedTransition.getMetadata(),
+                computedTransition.getStateSnapshot() == null ? null : computedTransition.getStateSnapshot().toMap());
+    }
+}
@@ -0,0 +1,303 @@
+package io.github.czelabueno.jai.workflow.graph;
+
+import io.github.czelabueno.jai.workflow.transition.Transition;
+import io.github.czelabueno.jai.workflow.transition.TransitionState;
+import lombok.NonNull;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.imageio.ImageIO;
+import java.awt.Graphics2D;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.HexFormat;
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * {@link GraphImageGenerator} serving the images of another generator from a {@link RenderCache}.
+ * <p>
+ * The images are keyed by a SHA-256 digest of the transitions, the graph names and labels of their states, the format,
+ * the styles and the {@link GraphImageGenerator#renderFingerprint() settings} of the generator, so that the same
+ * workflow definition is only laid out and rendered once. The images of a generator without settings fingerprint are
+ * not cached.
+ * </p>
+ * <p>
+ * The buffered images are cached as PNG bytes and decoded to their original type on each call, so that callers may
+ * draw on them.
+ * </p>
+ */
+public class CachingGraphImageGenerator implements GraphImageGenerator {
+
+    private static final Logger log = LoggerFactory.getLogger(CachingGraphImageGenerator.class);
+
+    private final GraphImageGenerator delegate;
+    private final RenderCache cache;
+
+    private CachingGraphImageGenerator(CachingGraphImageGeneratorBuilder builder) {
+        this.delegate = builder.delegate;
+        this.cache = builder.cache != null ? builder.cache : RenderCache.getDefault();
+    }
+
+    /**
+     * Returns a new builder instance for creating a {@link CachingGraphImageGenerator}.
+     *
+     * @return a new {@link CachingGraphImageGeneratorBuilder} instance
+     */
+    public static CachingGraphImageGeneratorBuilder builder() {
+        return new CachingGraphImageGeneratorBuilder();
+    }
+
+    /**
+     * Writes the cached image, rendered by the delegate generator on a miss, to the specified output path. Like the
+     * Graphviz renderer, it creates the missing parent directories and appends the extension of the format to a file
+     * name without extension.
+     *
+     * @param transitions the list of transitions to generate the graph image from
+     * @param outputPath  the path to save the generated graph image
+     * @param format      the format of the generated image (e.g., SVG, PNG)
+     * @param styles      optional styles to apply to the graph (e.g., sketchy, orientation)
+     * @throws IOException if an I/O error occurs during image generation
+     * @throws IllegalArgumentException if the output path is null or empty
+     */
+    @Override
+    public void generateImage(List<Transition> transitions, String outputPath, Format format, StyleAttribute... styles) throws IOException {
+        if (outputPath == null || outputPath.isEmpty()) {
+            throw new IllegalArgumentException("Output path can not be null or empty. Cannot generate image.");
+        }
+        if (delegate.renderFingerprint() == null) {
+            delegate.generateImage(transitions, outputPath, format, styles);
+            return;
+        }
+        Path target = Path.of(outputPath);
+        String fileName = target.getFileName().toString();
+        if (!fileName.contains(".")) {
+            target = target.resolveSibling(fileName + "." + format.name().toLowerCase(Locale.ROOT));
+        }
+        Path parent = target.toAbsolutePath().getParent();
+        if (parent != null) {
+            Files.createDirectories(parent);
+        }
+        Files.write(target, generateImageBytes(transitions, format, styles));
+        log.debug("Workflow image saved to: " + target);
+    }
+
+    /**
+     * Returns the cached image, rendered by the delegate generator on a miss.
+     *
+     * @param transitions the list of transitions to generate the graph image from
+     * @param format the format of the generated image (e.g., SVG, PNG)
+     * @param styles optional styles to apply to the graph (e.g., sketchy, orientation)
+     * @return the bytes of the image, which must not be modified
+     * @throws IOException if an I/O error occurs during image generation
+     */
+    @Override
+    public byte[] generateImageBytes(List<Transition> transitions, Format format, StyleAttribute... styles) throws IOException {
+        String fingerprint = delegate.renderFingerprint();
+        if (fingerprint == null) {
+            return delegate.generateImageBytes(transitions, format, styles);
+        }
+        return cache.get(key("bytes", fingerprint, transitions, format, styles),
+                () -> delegate.generateImageBytes(transitions, format, styles));
+    }
+
+    /**
+     * Returns a read-only buffer over the cached image, rendered by the delegate generator on a miss, without copying it.
+     *
+     * @param transitions the list of transitions to generate the graph image from
+     * @param format the format of the generated image (e.g., SVG, PNG)
+     * @param styles optional styles to apply to the graph (e.g., sketchy, orientation)
+     * @return a read-only buffer over the bytes of the image
+     * @throws IOException if an I/O error occurs during image generation
+     */
+    @Override
+    public ByteBuffer generateImageBuffer(List<Transition> transitions, Format format, StyleAttribute... styles) throws IOException {
+        if (delegate.renderFingerprint() == null) {
+            return delegate.generateImageBuffer(transitions, format, styles);
+        }
+        return ByteBuffer.wrap(generateImageBytes(transitions, format, styles)).asReadOnlyBuffer();
+    }
+
+    /**
+     * Writes the cached image to the given stream, rendered by the delegate generator on a miss.
+     *
+     * @param transitions the list of transitions to generate the graph image from
+     * @param out the stream to write the image to, which is neither flushed nor closed
+     * @param format the format of the generated image (e.g., SVG, PNG)
+     * @param styles optional styles to apply to the graph (e.g., sketchy, orientation)
+     * @throws IOException if an I/O error occurs during image generation or while writing to the stream
+     */
+    @Override
+    public void writeImage(List<Transition> transitions, @NonNull OutputStream out, Format format, StyleAttribute... styles) throws IOException {
+        if (delegate.renderFingerprint() == null) {
+            delegate.writeImage(transitions, out, format, styles);
+            return;
+        }
+        out.write(generateImageBytes(transitions, format, styles));
+    }
+
+    /**
+     * Returns a copy of the cached image, rendered by the delegate generator on a miss.
+     *
+     * @param transitions the list of transitions to generate the graph image from
+     * @param format the format of the generated image (e.g., SVG, PNG)
+     * @param styles optional styles to apply to the graph (e.g., sketchy, orientation)
+     * @return the generated BufferedImage representation of the workflow graph
+     * @throws RuntimeException if an error occurs during image generation
+     */
+    @Override
+    public BufferedImage generateBufferedImage(List<Transition> transitions, Format format, StyleAttribute... styles) throws RuntimeException {
+        String fingerprint = delegate.renderFingerprint();
+        if (fingerprint == null) {
+            return delegate.generateBufferedImage(transitions, format, styles);
+        }
+        try {
+            byte[] cached = cache.get(key("image", fingerprint, transitions, format, styles), () -> {
+                BufferedImage image = delegate.generateBufferedImage(transitions, format, styles);
+                ByteArrayOutputStream out = new ByteArrayOutputStream();
+                out.write(image.getType()); // PNG decoding does not restore the image type
+                ImageIO.write(image, "png", out);
+                return out.toByteArray();
+            });
+            BufferedImage decoded = ImageIO.read(new ByteArrayInputStream(cached, 1, cached.length - 1));
+            int type = cached[0];
+            if (type == BufferedImage.TYPE_CUSTOM || decoded.getType() == type) {
+                return decoded;
+            }
+            BufferedImage image = new BufferedImage(decoded.getWidth(), decoded.getHeight(), type);
+            Graphics2D graphics = image.createGraphics();
+            graphics.drawImage(decoded, 0, 0, null);
+            graphics.dispose();
+            return image;
+        } catch (IOException e) {
+            throw new UncheckedIOException("Failed to read the cached workflow image", e);
+        }
+    }
+
+    /**
+     * Returns the settings of the delegate generator.
+     *
+     * @return the settings fingerprint of the delegate generator
+     */
+    @Override
+    public String renderFingerprint() {
+        return delegate.renderFingerprint();
+    }
+
+    /**
+     * Returns the generator rendering the images missing from the cache.
+     *
+     * @return the delegate generator
+     */
+    public GraphImageGenerator delegate() {
+        return delegate;
+    }
+
+    /**
+     * Returns the cache of this generator.
+     *
+     * @return the render cache
+     */
+    public RenderCache cache() {
+        return cache;
+    }
+
+    /**
+     * Computes the cache key of an image.
+     *
+     * @param target      what the image is rendered to, bytes or buffered image
+     * @param fingerprint the settings of the generator
+     * @param transitions the transitions of the graph
+     * @param format      the format of the image
+     * @param styles      the styles of the image
+     * @return the hex SHA-256 digest of the image content
+     */
+    static String key(String target, String fingerprint, List<Transition> transitions, Format format, StyleAttribute... styles) {
+        StringBuilder content = new StringBuilder(target).append('\n')
+                .append(fingerprint).append('\n')
+                .append(format).append('\n');
+        if (styles != null) {
+            for (StyleAttribute style : styles) {
+                content.append(style == null ? "null" : style.getClass().getName() + ":" + style.getCode()).append(';');
+            }
+        }
+        content.append('\n');
+        if (transitions != null) {
+            for (Transition transition : transitions) {
+                appendState(content, transition.from());
+                content.append(" -> ");
+                appendState(content, transition.to());
+                content.append('\n');
+            }
+        }
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            return HexFormat.of().formatHex(digest.digest(content.toString().getBytes(StandardCharsets.UTF_8)));
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 is not available", e);
+        }
+    }
+
+    private static void appendState(StringBuilder content, TransitionState state) {
+        content.append(state.getClass().getSimpleName()).append('(').append(state.graphName());
+        List<String> labels = state.labels();
+        if (labels != null && !labels.isEmpty()) {
+            content.append(' ').append(labels);
+        }
+        content.append(')');
+    }
+
+    /**
+     * Builder class for {@link CachingGraphImageGenerator}.
+     */
+    public static class CachingGraphImageGeneratorBuilder {
+        private GraphImageGenerator delegate;
+        private RenderCache cache;
+
+        /**
+         * Sets the generator rendering the images missing from the cache.
+         *
+         * @param delegate the generator to cache
+         * @return the current {@link CachingGraphImageGeneratorBuilder} instance
+         */
+        public CachingGraphImageGeneratorBuilder delegate(@NonNull GraphImageGenerator delegate) {
+            this.delegate = delegate;
+            return this;
+        }
+
+        /**
+         * Sets the cache of the rendered images, which may be shared by several generators. Defaults to the shared
+         * {@link RenderCache#getDefault() default cache}.
+         *
+         * @param cache the render cache
+         * @return the current {@link CachingGraphImageGeneratorBuilder} instance
+         */
+        public CachingGraphImageGeneratorBuilder cache(RenderCache cache) {
+            this.cache = cache;
+            return this;
+        }
+
+        /**
+         * Builds and returns a new {@link CachingGraphImageGenerator} instance.
+         *
+         * @return a new {@link CachingGraphImageGenerator} instance
+         * @throws IllegalArgumentException if the delegate generator is not set
+         */
+        public CachingGraphImageGenerator build() {
+            if (delegate == null) {
+                throw new IllegalArgumentException("The delegate graph image generator is required");
+            }
+            return new CachingGraphImageGenerator(this);
+        }
+    }
+}
@@ -0,0 +1,107 @@
+package io.github.czelabueno.jai.workflow.graph;
+
+import io.github.czelabueno.jai.workflow.transition.ComputedTransition;
+import io.github.czelabueno.jai.workflow.transition.Transition;
+import io.github.czelabueno.jai.workflow.transition.TransitionState;
+import lombok.NonNull;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Transitions of a workflow whose groups of states were replaced by {@link CollapsedState}s, as returned by
+ * {@link GraphCollapser#collapse(List)}.
+ */
+public final class CollapsedGraph {
+
+    private final List<Transition> transitions;
+    private final List<CollapsedState> groups;
+    private final Map<TransitionState, CollapsedState> representatives;
+
+    CollapsedGraph(List<Transition> transitions, List<CollapsedState> groups, Map<TransitionState, CollapsedState> representatives) {
+        this.transitions = List.copyOf(transitions);
+        this.groups = List.copyOf(groups);
+        this.representatives = Map.copyOf(representatives);
+    }
+
+    /**
+     * Returns the collapsed transitions: the transitions between the states of a same group are removed, the others
+     * are redirected to the groups of their states, without duplicates.
+     *
+     * @return the collapsed transitions
+     */
+    public List<Transition> transitions() {
+        return transitions;
+    }
+
+    /**
+     * Returns the collapsed groups, in order of appearance in the transitions.
+     *
+     * @return the collapsed groups
+     */
+    public List<CollapsedState> groups() {
+        return groups;
+    }
+
+    /**
+     * Returns the state standing for the given state in the collapsed graph.
+     *
+     * @param state a state of the workflow
+     * @return the group of the state if it was collapsed, otherwise the state itself
+     */
+    public TransitionState representative(@NonNull TransitionState state) {
+        CollapsedState group = representatives.get(state);
+        return group != null ? group : state;
+    }
+
+    /**
+     * Returns the transition standing for the given transition in the collapsed graph.
+     *
+     * @param transition a transition of the workflow
+     * @return the collapsed transition, or null if both states are in the same group
+     */
+    public Transition collapse(@NonNull Transition transition) {
+        TransitionState from = representative(transition.from());
+        TransitionState to = representative(transition.to());
+        if (from == to) {
+            return null;
+        }
+        if (from == transition.from() && to == transition.to()) {
+            return transition;
+        }
+        return Transition.from(from, to);
+    }
+
+    /**
+     * Maps the transitions computed by a run to the collapsed graph, dropping the transitions within a group, to
+     * highlight the run on the collapsed graph.
+     *
+     * @param computedTransitions the transitions computed by a run
+     * @return the collapsed computed transitions, in the same order
+     */
+    public List<ComputedTransition> collapseComputed(@NonNull List<ComputedTransition> computedTransitions) {
+        List<ComputedTransition> collapsed = new ArrayList<>(computedTransitions.size());
+        for (ComputedTransition computedTransition : computedTransitions) {
+            Transition transition = collapse(computedTransition.getTransition());
+            if (transition == computedTransition.getTransition()) {
+                collapsed.add(computedTransition);
+            } else if (transition != null) {
+                collapsed.add(ComputedTransition.from(computedTransition.getOrder(), transition));
+            }
+        }
+        return collapsed;
+    }
+
+    /**
+     * Folds the runs aggregated by a heat map onto the collapsed graph, to render the heat map of the collapsed graph:
+     * a collapsed transition counts the executions of the transitions it replaces, and the latency percentiles of a
+     * group are those of all the executions of its members.
+     *
+     * @param heatMap the heat map of the workflow
+     * @return a new heat map of the collapsed graph
+     */
+    public ExecutionHeatMap collapseHeatMap(@NonNull ExecutionHeatMap heatMap) {
+        return heatMap.collapse(this);
+    }
+}
@@ -0,0 +1,77 @@
+package io.github.czelabueno.jai.workflow.graph;
+
+import io.github.czelabueno.jai.workflow.transition.TransitionState;
+import lombok.NonNull;
+
+import java.util.List;
+
+/**
+ * Summary state standing for a group of states collapsed by a {@link GraphCollapser}. It only exists in the rendered
+ * graph and is never executed.
+ */
+public final class CollapsedState implements TransitionState {
+
+    private final String name;
+    private final List<TransitionState> members;
+
+    CollapsedState(@NonNull String name, @NonNull List<TransitionState> members) {
+        this.name = name;
+        this.members = List.copyOf(members);
+    }
+
+    /**
+     * Returns the name of the group, used to expand it with {@link GraphCollapser#expanding(String...)}.
+     *
+     * @return the name of the group
+     */
+    public String name() {
+        return name;
+    }
+
+    /**
+     * Returns the collapsed states, in order of appearance in the transitions.
+     *
+     * @return the states of the group
+     */
+    public List<TransitionState> members() {
+        return members;
+    }
+
+    @Override
+    public String graphName() {
+        return name;
+    }
+
+    @Override
+    public List<String> labels() {
+        return List.of("Collapsed");
+    }
+
+    @Override
+    public Object input() {
+        return null;
+    }
+
+    @Override
+    public Object output() {
+        return null;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (o == null || getClass() != o.getClass()) return false;
+        CollapsedState that = (CollapsedState) o;
+        return name.equals(that.name) && members.equals(that.members);
+    }
+
+    @Override
+    public int hashCode() {
+        return 31 * name.hashCode() + members.hashCode();
+    }
+
+    @Override
+    public String toString() {
+        return "CollapsedState{name=" + name + ", members=" + members.size() + "}";
+    }
+}
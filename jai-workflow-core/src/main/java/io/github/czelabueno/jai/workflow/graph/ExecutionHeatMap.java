@@ -0,0 +1,256 @@
+package io.github.czelabueno.jai.workflow.graph;
+
+import io.github.czelabueno.jai.workflow.WorkflowStateName;
+import io.github.czelabueno.jai.workflow.transition.ComputedTransition;
+import io.github.czelabueno.jai.workflow.transition.Transition;
+import io.github.czelabueno.jai.workflow.transition.TransitionState;
+import lombok.NonNull;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * Aggregates the computed transitions of many runs of a workflow into the number of times each transition was taken
+ * and the latency percentiles of each node, to find its hot paths and slow nodes.
+ * <p>
+ * The latency of a node is estimated from the computation times of the transitions: it is the time between the
+ * transition entering the node and the transition leaving it in the same run, so the first node after
+ * {@link WorkflowStateName#START} has no latency. Each node keeps a uniform sample of at most
+ * {@link ExecutionHeatMapBuilder#maxSamplesPerNode(int)} latencies, which makes the percentiles exact up to that number
+ * of executions and estimates beyond.
+ * </p>
+ * <pre>{@code
+ * ExecutionHeatMap heatMap = ExecutionHeatMap.builder().build();
+ * heatMap.record(workflow.getComputedTransitions()); // after each run
+ * workflow.writeHeatMapImage(heatMap, out, Format.SVG);
+ * }</pre>
+ * The heat map is thread-safe.
+ */
+public final class ExecutionHeatMap {
+
+    private static final class Samples {
+        private final long[] nanos;
+        private int size;
+        private long count;
+
+        private Samples(int capacity) {
+            this.nanos = new long[capacity];
+        }
+
+        private void add(long sample) {
+            count++;
+            if (size < nanos.length) {
+                nanos[size++] = sample;
+            } else {
+                // reservoir sampling: every latency has the same probability to be kept
+                long slot = ThreadLocalRandom.current().nextLong(count);
+                if (slot < nanos.length) {
+                    nanos[(int) slot] = sample;
+                }
+            }
+        }
+
+        private long percentile(double percentile) {
+            long[] sorted = Arrays.copyOf(nanos, size);
+            Arrays.sort(sorted);
+            int rank = (int) Math.ceil(percentile / 100 * sorted.length); // nearest rank
+            return sorted[Math.max(0, rank - 1)];
+        }
+    }
+
+    private final int maxSamplesPerNode;
+    private final Map<Transition, Long> transitionCounts = new HashMap<>(); // guarded by this
+    private final Map<TransitionState, Samples> latencies = new HashMap<>(); // guarded by this
+    private long runs; // guarded by this
+
+    private ExecutionHeatMap(ExecutionHeatMapBuilder builder) {
+        if (builder.maxSamplesPerNode <= 0) {
+            throw new IllegalArgumentException("maxSamplesPerNode must be greater than zero");
+        }
+        this.maxSamplesPerNode = builder.maxSamplesPerNode;
+    }
+
+    /**
+     * Returns a new builder instance for creating an {@link ExecutionHeatMap}.
+     *
+     * @return a new {@link ExecutionHeatMapBuilder} instance
+     */
+    public static ExecutionHeatMapBuilder builder() {
+        return new ExecutionHeatMapBuilder();
+    }
+
+    /**
+     * Folds the computed transitions of a run into the heat map.
+     *
+     * @param computedTransitions the transitions computed by a run, in any order
+     */
+    public void record(@NonNull List<ComputedTransition> computedTransitions) {
+        List<ComputedTransition> run = new ArrayList<>(computedTransitions);
+        run.sort(Comparator.comparing(ComputedTransition::getOrder));
+        // the latencies are computed before taking the lock
+        Map<TransitionState, LocalDateTime> entered = new HashMap<>();
+        List<Map.Entry<TransitionState, Long>> runLatencies = new ArrayList<>();
+        for (ComputedTransition computedTransition : run) {
+            Transition transition = computedTransition.getTransition();
+            LocalDateTime enteredAt = entered.get(transition.from());
+            if (enteredAt != null) {
+                long nanos = Duration.between(enteredAt, computedTransition.getComputedAt()).toNanos();
+                runLatencies.add(Map.entry(transition.from(), Math.max(0, nanos)));
+            }
+            entered.put(transition.to(), computedTransition.getComputedAt());
+        }
+        synchronized (this) {
+            runs++;
+            for (ComputedTransition computedTransition : run) {
+                transitionCounts.merge(computedTransition.getTransition(), 1L, Long::sum);
+            }
+            for (Map.Entry<TransitionState, Long> latency : runLatencies) {
+                recordLatency(latency.getKey(), latency.getValue());
+            }
+        }
+    }
+
+    synchronized void recordLatency(TransitionState state, long nanos) {
+        latencies.computeIfAbsent(state, key -> new Samples(maxSamplesPerNode)).add(nanos);
+    }
+
+    synchronized int sampleCount(TransitionState state) {
+        Samples samples = latencies.get(state);
+        return samples == null ? 0 : samples.size;
+    }
+
+    /**
+     * Returns a copy of this heat map folded onto a collapsed graph: the counts of the transitions redirected to a
+     * same collapsed transition are summed, and the latencies of the members of a group are sampled as the latencies
+     * of the group.
+     */
+    synchronized ExecutionHeatMap collapse(CollapsedGraph graph) {
+        ExecutionHeatMap collapsed = builder().maxSamplesPerNode(maxSamplesPerNode).build();
+        collapsed.runs = runs;
+        transitionCounts.forEach((transition, count) -> {
+            Transition collapsedTransition = graph.collapse(transition);
+            if (collapsedTransition != null) {
+                collapsed.transitionCounts.merge(collapsedTransition, count, Long::sum);
+            }
+        });
+        latencies.forEach((state, samples) -> {
+            Samples collapsedSamples = collapsed.latencies.computeIfAbsent(graph.representative(state), key -> new Samples(maxSamplesPerNode));
+            for (int i = 0; i < samples.size; i++) {
+                collapsedSamples.add(samples.nanos[i]);
+            }
+        });
+        return collapsed;
+    }
+
+    /**
+     * Returns the number of runs recorded.
+     *
+     * @return the number of runs
+     */
+    public synchronized long runs() {
+        return runs;
+    }
+
+    /**
+     * Returns the number of times a transition was computed by the recorded runs.
+     *
+     * @param transition the transition
+     * @return the number of times the transition was computed
+     */
+    public synchronized long count(@NonNull Transition transition) {
+        return transitionCounts.getOrDefault(transition, 0L);
+    }
+
+    /**
+     * Returns a copy of the number of times each computed transition was taken.
+     *
+     * @return the count of each computed transition
+     */
+    public synchronized Map<Transition, Long> transitionCounts() {
+        return Map.copyOf(transitionCounts);
+    }
+
+    /**
+     * Returns the given latency percentile of a node, e.g. 95 for its p95.
+     *
+     * @param state      the node
+     * @param percentile the percentile, between 0 exclusive and 100 inclusive
+     * @return the latency percentile, or empty if the node latency was never measured
+     * @throws IllegalArgumentException if the percentile is out of range
+     */
+    public synchronized Optional<Duration> latencyPercentile(@NonNull TransitionState state, double percentile) {
+        checkPercentile(percentile);
+        Samples samples = latencies.get(state);
+        return samples == null ? Optional.empty() : Optional.of(Duration.ofNanos(samples.percentile(percentile)));
+    }
+
+    /**
+     * Returns the given latency percentile of every measured node, e.g. 95 for their p95.
+     *
+     * @param percentile the percentile, between 0 exclusive and 100 inclusive
+     * @return the latency percentile of each measured node
+     * @throws IllegalArgumentException if the percentile is out of range
+     */
+    public synchronized Map<TransitionState, Duration> latencyPercentiles(double percentile) {
+        checkPercentile(percentile);
+        Map<TransitionState, Duration> percentiles = new HashMap<>();
+        latencies.forEach((state, samples) -> percentiles.put(state, Duration.ofNanos(samples.percentile(percentile))));
+        return percentiles;
+    }
+
+    /**
+     * Forgets all the recorded runs.
+     */
+    public synchronized void clear() {
+        transitionCounts.clear();
+        latencies.clear();
+        runs = 0;
+    }
+
+    @Override
+    public synchronized String toString() {
+        return "ExecutionHeatMap{runs=" + runs + ", transitions=" + transitionCounts.size() + ", nodes=" + latencies.size() + "}";
+    }
+
+    private static void checkPercentile(double percentile) {
+        if (!(percentile > 0 && percentile <= 100)) {
+            throw new IllegalArgumentException("percentile must be greater than 0 and at most 100");
+        }
+    }
+
+    /**
+     * Builder class for {@link ExecutionHeatMap}.
+     */
+    public static class ExecutionHeatMapBuilder {
+        private int maxSamplesPerNode = 1024;
+
+        /**
+         * Sets the number of latencies sampled per node to compute its percentiles. Defaults to 1024.
+         *
+         * @param maxSamplesPerNode the number of latencies kept per node
+         * @return the current {@link ExecutionHeatMapBuilder} instance
+         */
+        public ExecutionHeatMapBuilder maxSamplesPerNode(int maxSamplesPerNode) {
+            this.maxSamplesPerNode = maxSamplesPerNode;
+            return this;
+        }
+
+        /**
+         * Builds and returns a new {@link ExecutionHeatMap} instance.
+         *
+         * @return a new {@link ExecutionHeatMap} instance
+         * @throws IllegalArgumentException if the number of samples per node is not positive
+         */
+        public ExecutionHeatMap build() {
+            return new ExecutionHeatMap(this);
+        }
+    }
+}
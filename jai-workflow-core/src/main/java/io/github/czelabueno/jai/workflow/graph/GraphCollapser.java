@@ -0,0 +1,320 @@
+package io.github.czelabueno.jai.workflow.graph;
+
+import io.github.czelabueno.jai.workflow.WorkflowStateName;
+import io.github.czelabueno.jai.workflow.node.Conditional;
+import io.github.czelabueno.jai.workflow.node.Node;
+import io.github.czelabueno.jai.workflow.transition.Transition;
+import io.github.czelabueno.jai.workflow.transition.TransitionState;
+import lombok.NonNull;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+
+/**
+ * Collapses groups of states of a large workflow into summary {@link CollapsedState}s before it is laid out, so that
+ * the size of the rendered graph, and thus its render time, stays bounded however many nodes the workflow has.
+ * <p>
+ * Three kinds of groups are collapsed, each state belonging to one group at most:
+ * <ul>
+ *     <li>the groups declared with {@link GraphCollapserBuilder#group(String, TransitionState...)}, first;</li>
+ *     <li>the parallel branches of a split node, named {@code "<split> parallel"}: the nodes labeled
+ *     {@code Parallel}, or only reached from the split, up to the merge node;</li>
+ *     <li>the branches of a conditional node, named {@code "<conditional> branches"}: its target nodes only reached
+ *     from it, when there are at least {@link GraphCollapserBuilder#minFanOut(int)} of them.</li>
+ * </ul>
+ * A collapsed group is expanded on demand by rendering again with {@link #expanding(String...)}.
+ * <pre>{@code
+ * GraphCollapser collapser = GraphCollapser.builder().collapseAbove(50).build();
+ * GraphImageGenerator overview = GraphvizImageGenerator.builder().collapser(collapser).build();
+ * GraphImageGenerator detail = GraphvizImageGenerator.builder().collapser(collapser.expanding("retrieve parallel")).build();
+ * }</pre>
+ * The collapser is immutable.
+ */
+public final class GraphCollapser {
+
+    private static final String PARALLEL_SUFFIX = " parallel";
+    private static final String BRANCHES_SUFFIX = " branches";
+
+    private final Map<String, List<TransitionState>> groups;
+    private final boolean collapseParallel;
+    private final boolean collapseConditionals;
+    private final int minFanOut;
+    private final Set<String> expanded;
+    private final int collapseAbove;
+
+    private GraphCollapser(GraphCollapserBuilder builder) {
+        if (builder.minFanOut < 2) {
+            throw new IllegalArgumentException("minFanOut must be at least 2");
+        }
+        if (builder.collapseAbove < 0) {
+            throw new IllegalArgumentException("collapseAbove cannot be negative");
+        }
+        this.groups = Collections.unmodifiableMap(new LinkedHashMap<>(builder.groups));
+        this.collapseParallel = builder.collapseParallel;
+        this.collapseConditionals = builder.collapseConditionals;
+        this.minFanOut = builder.minFanOut;
+        this.expanded = Set.copyOf(builder.expanded);
+        this.collapseAbove = builder.collapseAbove;
+    }
+
+    /**
+     * Returns a new builder instance for creating a {@link GraphCollapser}.
+     *
+     * @return a new {@link GraphCollapserBuilder} instance
+     */
+    public static GraphCollapserBuilder builder() {
+        return new GraphCollapserBuilder();
+    }
+
+    /**
+     * Returns a copy of this collapser keeping the given groups expanded, to drill down into them.
+     *
+     * @param groups the names of the groups to expand, as returned by {@link CollapsedState#name()}
+     * @return a new {@link GraphCollapser} instance
+     */
+    public GraphCollapser expanding(@NonNull String... groups) {
+        GraphCollapserBuilder builder = toBuilder();
+        builder.expand(groups);
+        return builder.build();
+    }
+
+    /**
+     * Returns a builder initialized with the settings of this collapser.
+     *
+     * @return a new {@link GraphCollapserBuilder} instance
+     */
+    public GraphCollapserBuilder toBuilder() {
+        GraphCollapserBuilder builder = new GraphCollapserBuilder();
+        builder.groups.putAll(groups);
+        builder.expanded.addAll(expanded);
+        return builder.collapseParallel(collapseParallel)
+                .collapseConditionals(collapseConditionals)
+                .minFanOut(minFanOut)
+                .collapseAbove(collapseAbove);
+    }
+
+    /**
+     * Collapses the groups of the given transitions.
+     *
+     * @param transitions the transitions of the workflow
+     * @return the collapsed graph, with the same transitions when the workflow has at most
+     * {@link GraphCollapserBuilder#collapseAbove(int)} states
+     */
+    public CollapsedGraph collapse(@NonNull List<Transition> transitions) {
+        Map<TransitionState, List<TransitionState>> successors = new LinkedHashMap<>();
+        Map<TransitionState, List<TransitionState>> predecessors = new HashMap<>();
+        for (Transition transition : transitions) {
+            successors.computeIfAbsent(transition.from(), state -> new ArrayList<>()).add(transition.to());
+            successors.computeIfAbsent(transition.to(), state -> new ArrayList<>());
+            predecessors.computeIfAbsent(transition.to(), state -> new ArrayList<>()).add(transition.from());
+        }
+        if (successors.size() <= collapseAbove) {
+            return new CollapsedGraph(transitions, List.of(), Map.of());
+        }
+
+        Map<TransitionState, String> assigned = new HashMap<>();
+        Map<String, List<TransitionState>> found = new LinkedHashMap<>();
+        groups.forEach((name, members) -> {
+            List<TransitionState> present = new ArrayList<>();
+            for (TransitionState member : members) {
+                if (successors.containsKey(member) && !assigned.containsKey(member)) {
+                    present.add(member);
+                }
+            }
+            addGroup(name, present, 1, assigned, found);
+        });
+        for (TransitionState state : successors.keySet()) {
+            if (collapseParallel && isSplit(state, successors)) {
+                addGroup(state.graphName() + PARALLEL_SUFFIX, parallelBranches(state, successors, predecessors, assigned), 2, assigned, found);
+            } else if (collapseConditionals && state instanceof Conditional) {
+                List<TransitionState> branches = new ArrayList<>();
+                for (TransitionState target : new LinkedHashSet<>(successors.get(state))) {
+                    if (target instanceof Node && !assigned.containsKey(target) && predecessors.get(target).stream().allMatch(state::equals)) {
+                        branches.add(target);
+                    }
+                }
+                addGroup(state.graphName() + BRANCHES_SUFFIX, branches, minFanOut, assigned, found);
+            }
+        }
+
+        Map<TransitionState, CollapsedState> representatives = new HashMap<>();
+        List<CollapsedState> collapsed = new ArrayList<>();
+        found.forEach((name, members) -> {
+            CollapsedState group = new CollapsedState(name, members);
+            collapsed.add(group);
+            members.forEach(member -> representatives.put(member, group));
+        });
+        Set<Transition> rewritten = new LinkedHashSet<>();
+        for (Transition transition : transitions) {
+            TransitionState from = representatives.get(transition.from());
+            TransitionState to = representatives.get(transition.to());
+            if (from == null && to == null) {
+                rewritten.add(transition);
+            } else if (from == null || from != to) {
+                rewritten.add(Transition.from(from != null ? from : transition.from(), to != null ? to : transition.to()));
+            }
+        }
+        return new CollapsedGraph(new ArrayList<>(rewritten), collapsed, representatives);
+    }
+
+    private void addGroup(String name, List<TransitionState> members, int minMembers,
+                          Map<TransitionState, String> assigned, Map<String, List<TransitionState>> found) {
+        if (expanded.contains(name) || members.size() < minMembers || found.containsKey(name)) {
+            return;
+        }
+        members.forEach(member -> assigned.put(member, name));
+        found.put(name, members);
+    }
+
+    private static boolean isSplit(TransitionState state, Map<TransitionState, List<TransitionState>> successors) {
+        return state.hasLabel("Split") || (state instanceof Node && successors.get(state).size() > 1);
+    }
+
+    /**
+     * Returns the nodes reached from the split node before the merge node: the nodes labeled {@code Parallel}, and the
+     * nodes whose only predecessors are already in the branches.
+     */
+    private static List<TransitionState> parallelBranches(TransitionState split,
+                                                          Map<TransitionState, List<TransitionState>> successors,
+                                                          Map<TransitionState, List<TransitionState>> predecessors,
+                                                          Map<TransitionState, String> assigned) {
+        Set<TransitionState> branches = new LinkedHashSet<>();
+        Deque<TransitionState> next = new ArrayDeque<>(successors.get(split));
+        while (!next.isEmpty()) {
+            TransitionState state = next.poll();
+            if (!(state instanceof Node) || branches.contains(state) || assigned.containsKey(state)
+                    || state.hasLabel("Merge") || state.hasLabel("Split")) {
+                continue;
+            }
+            boolean onlyReachedFromBranches = predecessors.get(state).stream()
+                    .allMatch(predecessor -> predecessor.equals(split) || branches.contains(predecessor));
+            if (!state.hasLabel("Parallel") && !onlyReachedFromBranches) {
+                continue;
+            }
+            branches.add(state);
+            next.addAll(successors.get(state));
+        }
+        return new ArrayList<>(branches);
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder description = new StringBuilder("GraphCollapser{parallel=").append(collapseParallel)
+                .append(", conditionals=").append(collapseConditionals)
+                .append(", minFanOut=").append(minFanOut)
+                .append(", collapseAbove=").append(collapseAbove)
+                .append(", expanded=").append(new TreeSet<>(expanded));
+        groups.forEach((name, members) -> {
+            description.append(", group ").append(name).append('=');
+            members.forEach(member -> description.append(member.graphName()).append(';'));
+        });
+        return description.append('}').toString();
+    }
+
+    /**
+     * Builder class for {@link GraphCollapser}.
+     */
+    public static class GraphCollapserBuilder {
+        private final Map<String, List<TransitionState>> groups = new LinkedHashMap<>();
+        private final Set<String> expanded = new LinkedHashSet<>();
+        private boolean collapseParallel = true;
+        private boolean collapseConditionals = true;
+        private int minFanOut = 3;
+        private int collapseAbove;
+
+        /**
+         * Declares a group of states collapsed into one summary node, e.g. a sub-workflow. The declared groups are
+         * collapsed before the parallel and conditional groups. Defaults to none.
+         *
+         * @param name    the name of the group, shown on its summary node
+         * @param members the states of the group
+         * @return the current {@link GraphCollapserBuilder} instance
+         * @throws IllegalArgumentException if a member is the start or end state
+         */
+        public GraphCollapserBuilder group(@NonNull String name, @NonNull TransitionState... members) {
+            for (TransitionState member : members) {
+                if (member == WorkflowStateName.START || member == WorkflowStateName.END) {
+                    throw new IllegalArgumentException("The " + member.graphName() + " state cannot be collapsed");
+                }
+            }
+            this.groups.put(name, List.of(members));
+            return this;
+        }
+
+        /**
+         * Sets whether the parallel branches of split nodes are collapsed. Defaults to true.
+         *
+         * @param collapseParallel true to collapse the parallel branches
+         * @return the current {@link GraphCollapserBuilder} instance
+         */
+        public GraphCollapserBuilder collapseParallel(boolean collapseParallel) {
+            this.collapseParallel = collapseParallel;
+            return this;
+        }
+
+        /**
+         * Sets whether the branches of conditional nodes are collapsed. Defaults to true.
+         *
+         * @param collapseConditionals true to collapse the conditional branches
+         * @return the current {@link GraphCollapserBuilder} instance
+         */
+        public GraphCollapserBuilder collapseConditionals(boolean collapseConditionals) {
+            this.collapseConditionals = collapseConditionals;
+            return this;
+        }
+
+        /**
+         * Sets the minimum number of branches of a conditional node to collapse them. Defaults to 3.
+         *
+         * @param minFanOut the minimum number of collapsed branches, at least 2
+         * @return the current {@link GraphCollapserBuilder} instance
+         */
+        public GraphCollapserBuilder minFanOut(int minFanOut) {
+            this.minFanOut = minFanOut;
+            return this;
+        }
+
+        /**
+         * Keeps the given groups expanded. Defaults to none.
+         *
+         * @param groups the names of the groups to expand
+         * @return the current {@link GraphCollapserBuilder} instance
+         */
+        public GraphCollapserBuilder expand(@NonNull String... groups) {
+            this.expanded.addAll(Arrays.asList(groups));
+            return this;
+        }
+
+        /**
+         * Sets the number of states up to which a workflow is rendered without collapsing. Defaults to 0, always
+         * collapsing.
+         *
+         * @param states the maximum number of states of a workflow rendered as is
+         * @return the current {@link GraphCollapserBuilder} instance
+         */
+        public GraphCollapserBuilder collapseAbove(int states) {
+            this.collapseAbove = states;
+            return this;
+        }
+
+        /**
+         * Builds and returns a new {@link GraphCollapser} instance.
+         *
+         * @return a new {@link GraphCollapser} instance
+         * @throws IllegalArgumentException if minFanOut is lower than 2 or collapseAbove is negative
+         */
+        public GraphCollapser build() {
+            return new GraphCollapser(this);
+        }
+    }
+}
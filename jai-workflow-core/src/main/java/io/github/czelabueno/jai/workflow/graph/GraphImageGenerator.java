@@ -6,6 +6,11 @@ import io.github.czelabueno.jai.workflow.transition.Transition;
 
 import java.awt.image.BufferedImage;
 import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.WritableByteChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
 import java.util.List;
 
 /**
@@ -112,4 +117,80 @@ public interface GraphImageGenerator {
     default BufferedImage generateBufferedImage(List<Transition> transitions) throws RuntimeException {
         return generateBufferedImage(transitions, Format.SVG);
     }
+
+    /**
+     * Generates a graph image from the given list of transitions and returns its bytes in the given format.
+     * The default implementation writes the image to a temporary file.
+     *
+     * @param transitions the list of transitions to generate the graph image from
+     * @param format the format of the generated image (e.g., SVG, PNG)
+     * @param styles optional styles to apply to the graph (e.g., sketchy, orientation)
+     * @return the bytes of the generated image
+     * @throws IOException if an I/O error occurs during image generation
+     */
+    default byte[] generateImageBytes(List<Transition> transitions, Format format, StyleAttribute... styles) throws IOException {
+        Path file = Files.createTempFile("workflow-image", "." + format.name().toLowerCase());
+        try {
+            generateImage(transitions, file.toString(), format, styles);
+            return Files.readAllBytes(file);
+        } finally {
+            Files.deleteIfExists(file);
+        }
+    }
+
+    /**
+     * Generates a graph image from the given list of transitions and returns its bytes in the given format as a
+     * read-only buffer, e.g. to be written to a channel or handed to a non-blocking server.
+     *
+     * @param transitions the list of transitions to generate the graph image from
+     * @param format the format of the generated image (e.g., SVG, PNG)
+     * @param styles optional styles to apply to the graph (e.g., sketchy, orientation)
+     * @return a read-only buffer over the bytes of the generated image
+     * @throws IOException if an I/O error occurs during image generation
+     */
+    default ByteBuffer generateImageBuffer(List<Transition> transitions, Format format, StyleAttribute... styles) throws IOException {
+        return ByteBuffer.wrap(generateImageBytes(transitions, format, styles)).asReadOnlyBuffer();
+    }
+
+    /**
+     * Generates a graph image from the given list of transitions and writes its bytes in the given format to the given
+     * stream, e.g. the body of an HTTP response.
+     *
+     * @param transitions the list of transitions to generate the graph image from
+     * @param out the stream to write the generated image to, which is neither flushed nor closed
+     * @param format the format of the generated image (e.g., SVG, PNG)
+     * @param styles optional styles to apply to the graph (e.g., sketchy, orientation)
+     * @throws IOException if an I/O error occurs during image generation or while writing to the stream
+     */
+    default void writeImage(List<Transition> transitions, OutputStream out, Format format, StyleAttribute... styles) throws IOException {
+        out.write(generateImageBytes(transitions, format, styles));
+    }
+
+    /**
+     * Generates a graph image from the given list of transitions and writes its bytes in the given format to the given
+     * channel.
+     *
+     * @param transitions the list of transitions to generate the graph image from
+     * @param channel the channel to write the generated image to, which is not closed
+     * @param format the format of the generated image (e.g., SVG, PNG)
+     * @param styles optional styles to apply to the graph (e.g., sketchy, orientation)
+     * @throws IOException if an I/O error occurs during image generation or while writing to the channel
+     */
+    default void writeImage(List<Transition> transitions, WritableByteChannel channel, Format format, StyleAttribute... styles) throws IOException {
+        ByteBuffer image = generateImageBuffer(transitions, format, styles);
+        while (image.hasRemaining()) {
+            channel.write(image);
+        }
+    }
+
+    /**
+     * Returns a description of the settings of this generator that change its images for the same transitions, format
+     * and styles, used by {@link CachingGraphImageGenerator} to key the images. Returns null by default, meaning that
+     * the images of this generator are not cached.
+     *
+     * @return the settings of this generator, or null if its images cannot be cached
+     */
+    default String renderFingerprint() {
+        return null;
+    }
 }
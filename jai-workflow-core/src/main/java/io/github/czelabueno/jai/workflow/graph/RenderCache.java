@@ -0,0 +1,403 @@
+package io.github.czelabueno.jai.workflow.graph;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.FileTime;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Stream;
+
+/**
+ * Content-addressed cache of rendered workflow images, used by {@link CachingGraphImageGenerator}.
+ * <p>
+ * The rendered bytes are kept in memory up to {@link RenderCacheBuilder#maxBytes(long)}, evicting the least recently used
+ * images first. With a {@link RenderCacheBuilder#diskDirectory(Path) disk directory}, the images are also written to one
+ * file per key, so that they survive the evictions and the restarts; beyond
+ * {@link RenderCacheBuilder#maxDiskBytes(long)}, the least recently used files are deleted down to 90% of it, so that
+ * the directory is not listed again on the next writes.
+ * </p>
+ * <p>
+ * The keys are hex digests of everything that changes an image, so a cached image is never stale, and a cache can
+ * be shared by any number of workflows: those created without a cache share {@link #getDefault()}.
+ * </p>
+ */
+public final class RenderCache {
+
+    private static final Logger log = LoggerFactory.getLogger(RenderCache.class);
+    private static final String FILE_SUFFIX = ".img";
+    private static final double DISK_LOW_WATER_RATIO = 0.9;
+    private static final RenderCache DEFAULT = RenderCache.builder().build();
+
+    /**
+     * Renders the bytes of an image on a cache miss.
+     */
+    @FunctionalInterface
+    public interface Render {
+        /**
+         * Renders the image.
+         *
+         * @return the rendered bytes
+         * @throws IOException if the image cannot be rendered
+         */
+        byte[] render() throws IOException;
+    }
+
+    private final long maxBytes;
+    private final Path diskDirectory;
+    private final long maxDiskBytes;
+    private final LinkedHashMap<String, byte[]> entries = new LinkedHashMap<>(16, 0.75f, true); // access order
+    private long bytes;
+    private long diskBytes;
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong diskHits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+    private final AtomicLong evictions = new AtomicLong();
+
+    private RenderCache(RenderCacheBuilder builder) {
+        if (builder.maxBytes < 0) {
+            throw new IllegalArgumentException("maxBytes cannot be negative");
+        }
+        if (builder.maxDiskBytes <= 0) {
+            throw new IllegalArgumentException("maxDiskBytes must be greater than zero");
+        }
+        this.maxBytes = builder.maxBytes;
+        this.diskDirectory = builder.diskDirectory;
+        this.maxDiskBytes = builder.maxDiskBytes;
+        if (diskDirectory != null) {
+            try {
+                Files.createDirectories(diskDirectory);
+                try (Stream<Path> files = cacheFiles()) {
+                    diskBytes = files.mapToLong(RenderCache::sizeOf).sum();
+                }
+            } catch (IOException e) {
+                throw new IllegalArgumentException("Cannot use " + diskDirectory + " as render cache directory", e);
+            }
+        }
+    }
+
+    /**
+     * Returns the in-memory cache of the default size shared by the workflows and generators created without a cache,
+     * so that creating a workflow per request does not create a cache per request.
+     *
+     * @return the default render cache
+     */
+    public static RenderCache getDefault() {
+        return DEFAULT;
+    }
+
+    /**
+     * Returns a new builder instance for creating a {@link RenderCache}.
+     *
+     * @return a new {@link RenderCacheBuilder} instance
+     */
+    public static RenderCacheBuilder builder() {
+        return new RenderCacheBuilder();
+    }
+
+    /**
+     * Returns the bytes cached for the key, or renders and caches them.
+     * <p>
+     * Concurrent misses of a same key may render it more than once, the renders do not hold any lock of the cache.
+     * </p>
+     *
+     * @param key    the content key, made of hex digits
+     * @param render renders the bytes on a miss
+     * @return the cached or rendered bytes, which must not be modified
+     * @throws IOException if the render fails
+     */
+    public byte[] get(String key, Render render) throws IOException {
+        validateKey(key);
+        byte[] cached = fromMemory(key);
+        if (cached != null) {
+            hits.incrementAndGet();
+            return cached;
+        }
+        cached = fromDisk(key);
+        if (cached != null) {
+            diskHits.incrementAndGet();
+            toMemory(key, cached);
+            return cached;
+        }
+        misses.incrementAndGet();
+        byte[] rendered = render.render();
+        if (rendered == null) {
+            throw new IllegalStateException("The render of " + key + " returned no bytes");
+        }
+        toMemory(key, rendered);
+        toDisk(key, rendered);
+        return rendered;
+    }
+
+    /**
+     * Removes all the cached images, from memory and disk.
+     */
+    public void clear() {
+        synchronized (entries) {
+            entries.clear();
+            bytes = 0;
+        }
+        if (diskDirectory != null) {
+            try (Stream<Path> files = cacheFiles()) {
+                files.forEach(RenderCache::delete);
+            } catch (IOException e) {
+                log.warn("Cannot clear the render cache directory {}: {}", diskDirectory, e.getMessage());
+            }
+            synchronized (this) {
+                diskBytes = 0;
+            }
+        }
+    }
+
+    /**
+     * Returns the number of images held in memory.
+     *
+     * @return the number of cached images
+     */
+    public int size() {
+        synchronized (entries) {
+            return entries.size();
+        }
+    }
+
+    /**
+     * Returns the number of bytes held in memory.
+     *
+     * @return the cached bytes
+     */
+    public long bytes() {
+        synchronized (entries) {
+            return bytes;
+        }
+    }
+
+    /**
+     * Returns the number of images served from memory.
+     *
+     * @return the memory hits
+     */
+    public long hits() {
+        return hits.get();
+    }
+
+    /**
+     * Returns the number of images served from the disk directory.
+     *
+     * @return the disk hits
+     */
+    public long diskHits() {
+        return diskHits.get();
+    }
+
+    /**
+     * Returns the number of bytes of the images written to the disk directory.
+     */
+    synchronized long diskBytes() {
+        return diskBytes;
+    }
+
+    /**
+     * Returns the number of images rendered because they were not cached.
+     *
+     * @return the misses
+     */
+    public long misses() {
+        return misses.get();
+    }
+
+    /**
+     * Returns the number of images evicted from memory.
+     *
+     * @return the evictions
+     */
+    public long evictions() {
+        return evictions.get();
+    }
+
+    @Override
+    public String toString() {
+        return "RenderCache{images=" + size() + ", bytes=" + bytes() + ", hits=" + hits + ", diskHits=" + diskHits
+                + ", misses=" + misses + ", evictions=" + evictions + "}";
+    }
+
+    private byte[] fromMemory(String key) {
+        synchronized (entries) {
+            return entries.get(key);
+        }
+    }
+
+    private void toMemory(String key, byte[] value) {
+        if (value.length > maxBytes) {
+            return; // would evict everything else
+        }
+        synchronized (entries) {
+            byte[] previous = entries.put(key, value);
+            bytes += value.length - (previous != null ? previous.length : 0);
+            Iterator<Map.Entry<String, byte[]>> eldest = entries.entrySet().iterator();
+            while (bytes > maxBytes && eldest.hasNext()) {
+                Map.Entry<String, byte[]> entry = eldest.next();
+                bytes -= entry.getValue().length;
+                eldest.remove();
+                evictions.incrementAndGet();
+            }
+        }
+    }
+
+    private byte[] fromDisk(String key) {
+        if (diskDirectory == null) {
+            return null;
+        }
+        Path file = diskDirectory.resolve(key + FILE_SUFFIX);
+        try {
+            byte[] value = Files.readAllBytes(file);
+            Files.setLastModifiedTime(file, FileTime.fromMillis(System.currentTimeMillis())); // most recently used
+            return value;
+        } catch (IOException e) {
+            return null; // not cached, or deleted concurrently
+        }
+    }
+
+    private void toDisk(String key, byte[] value) {
+        if (diskDirectory == null || value.length > maxDiskBytes) {
+            return;
+        }
+        Path file = diskDirectory.resolve(key + FILE_SUFFIX);
+        long replacedBytes;
+        try {
+            Path temporary = Files.createTempFile(diskDirectory, key, ".tmp");
+            Files.write(temporary, value);
+            replacedBytes = sizeOf(file); // written meanwhile by a concurrent miss of the same key
+            try {
+                Files.move(temporary, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            } catch (AtomicMoveNotSupportedException e) {
+                Files.move(temporary, file, StandardCopyOption.REPLACE_EXISTING);
+            }
+        } catch (IOException e) {
+            log.warn("Cannot write the rendered image {} to {}: {}", key, diskDirectory, e.getMessage());
+            return;
+        }
+        synchronized (this) {
+            diskBytes += value.length - replacedBytes;
+            if (diskBytes > maxDiskBytes) {
+                trimDisk();
+            }
+        }
+    }
+
+    // Deletes the least recently used files down to the low-water mark, guarded by this
+    private void trimDisk() {
+        long lowWaterBytes = (long) (maxDiskBytes * DISK_LOW_WATER_RATIO);
+        try (Stream<Path> files = cacheFiles()) {
+            List<Path> oldestFirst = files
+                    .sorted(Comparator.comparing(RenderCache::lastModified))
+                    .toList();
+            long total = oldestFirst.stream().mapToLong(RenderCache::sizeOf).sum();
+            for (Path file : oldestFirst) {
+                if (total <= lowWaterBytes) {
+                    break;
+                }
+                total -= sizeOf(file);
+                delete(file);
+            }
+            diskBytes = total;
+        } catch (IOException e) {
+            log.warn("Cannot trim the render cache directory {}: {}", diskDirectory, e.getMessage());
+        }
+    }
+
+    private Stream<Path> cacheFiles() throws IOException {
+        return Files.list(diskDirectory).filter(file -> file.getFileName().toString().endsWith(FILE_SUFFIX));
+    }
+
+    private static long sizeOf(Path file) {
+        try {
+            return Files.size(file);
+        } catch (IOException e) {
+            return 0;
+        }
+    }
+
+    private static FileTime lastModified(Path file) {
+        try {
+            return Files.getLastModifiedTime(file);
+        } catch (IOException e) {
+            return FileTime.fromMillis(0);
+        }
+    }
+
+    private static void delete(Path file) {
+        try {
+            Files.deleteIfExists(file);
+        } catch (IOException e) {
+            log.debug("Cannot delete {}: {}", file, e.getMessage());
+        }
+    }
+
+    private static void validateKey(String key) {
+        if (key == null || key.isEmpty() || !key.chars().allMatch(c -> Character.digit(c, 16) >= 0)) {
+            throw new IllegalArgumentException("Render cache key must be made of hex digits, got: " + key);
+        }
+    }
+
+    /**
+     * Builder class for {@link RenderCache}.
+     */
+    public static class RenderCacheBuilder {
+        private long maxBytes = 8L * 1024 * 1024;
+        private Path diskDirectory;
+        private long maxDiskBytes = 256L * 1024 * 1024;
+
+        /**
+         * Sets the maximum number of bytes of the images held in memory. Zero keeps no image in memory. Defaults to 8 MiB.
+         *
+         * @param maxBytes the maximum number of bytes in memory
+         * @return the current {@link RenderCacheBuilder} instance
+         */
+        public RenderCacheBuilder maxBytes(long maxBytes) {
+            this.maxBytes = maxBytes;
+            return this;
+        }
+
+        /**
+         * Sets the directory where the images are also written, and read back after an eviction or a restart.
+         * Defaults to none, the images are only kept in memory.
+         *
+         * @param diskDirectory the cache directory, created if missing
+         * @return the current {@link RenderCacheBuilder} instance
+         */
+        public RenderCacheBuilder diskDirectory(Path diskDirectory) {
+            this.diskDirectory = diskDirectory;
+            return this;
+        }
+
+        /**
+         * Sets the maximum number of bytes of the images written to the disk directory. Defaults to 256 MiB.
+         *
+         * @param maxDiskBytes the maximum number of bytes on disk
+         * @return the current {@link RenderCacheBuilder} instance
+         */
+        public RenderCacheBuilder maxDiskBytes(long maxDiskBytes) {
+            this.maxDiskBytes = maxDiskBytes;
+            return this;
+        }
+
+        /**
+         * Builds and returns a new {@link RenderCache} instance.
+         *
+         * @return a new {@link RenderCache} instance
+         * @throws IllegalArgumentException if the disk directory cannot be created or read
+         */
+        public RenderCache build() {
+            return new RenderCache(this);
+        }
+    }
+}
@@ -0,0 +1,357 @@
+package io.github.czelabueno.jai.workflow.graph;
+
+import io.github.czelabueno.jai.workflow.transition.Transition;
+import lombok.NonNull;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Bounded queue rendering workflow images in the background, so that tracing a run never adds its render time to the
+ * answer of the run.
+ * <p>
+ * The renders are queued in submission order and run by {@link RenderQueueBuilder#workers(int)} daemon threads. A
+ * render submitted with the key of a pending render is coalesced with it: each caller gets its own future of the
+ * shared render, so that cancelling it leaves the others rendering, and the render is skipped once every caller
+ * cancelled it. When
+ * {@link RenderQueueBuilder#capacity(int)} renders are pending, a new render either drops the oldest pending render,
+ * whose future is cancelled, or is rejected, see {@link OverflowPolicy}.
+ * </p>
+ * <pre>{@code
+ * RenderQueue renderQueue = RenderQueue.builder().build();
+ * workflow.run();
+ * workflow.renderComputedWorkflowImageAsync(renderQueue, Format.SVG)
+ *         .thenAccept(svg -> traces.save(runId, svg));
+ * }</pre>
+ */
+public final class RenderQueue implements AutoCloseable {
+
+    private static final Logger log = LoggerFactory.getLogger(RenderQueue.class);
+    private static final AtomicInteger QUEUE_COUNTER = new AtomicInteger();
+
+    /**
+     * What a full queue does with a new render.
+     */
+    public enum OverflowPolicy {
+        /** Cancels the oldest pending render to queue the new one, keeping the most recent traces. */
+        DROP_OLDEST,
+        /** Fails the new render with a {@link RejectedExecutionException}, keeping the pending ones. */
+        REJECT
+    }
+
+    private static final class Pending {
+        private final RenderCache.Render render;
+        private final CompletableFuture<byte[]> future = new CompletableFuture<>(); // shared by the callers, never returned
+        private final List<CompletableFuture<byte[]>> callers = new ArrayList<>(); // guarded by the pending renders
+
+        private Pending(RenderCache.Render render) {
+            this.render = render;
+        }
+
+        private CompletableFuture<byte[]> newCaller() {
+            CompletableFuture<byte[]> caller = future.copy();
+            callers.add(caller);
+            return caller;
+        }
+
+        private boolean isCancelledByEveryCaller() {
+            return callers.stream().allMatch(CompletableFuture::isDone);
+        }
+    }
+
+    private final int capacity;
+    private final OverflowPolicy overflowPolicy;
+    private final ExecutorService workers;
+    private final LinkedHashMap<String, Pending> pending = new LinkedHashMap<>(); // submission order, guarded by itself
+    private final AtomicLong anonymousKeys = new AtomicLong();
+    private final AtomicLong rendered = new AtomicLong();
+    private final AtomicLong failed = new AtomicLong();
+    private final AtomicLong coalesced = new AtomicLong();
+    private final AtomicLong dropped = new AtomicLong();
+    private volatile boolean shutdown;
+
+    private RenderQueue(RenderQueueBuilder builder) {
+        if (builder.workers <= 0) {
+            throw new IllegalArgumentException("workers must be greater than zero");
+        }
+        if (builder.capacity <= 0) {
+            throw new IllegalArgumentException("capacity must be greater than zero");
+        }
+        this.capacity = builder.capacity;
+        this.overflowPolicy = builder.overflowPolicy;
+        int queue = QUEUE_COUNTER.incrementAndGet();
+        AtomicInteger threadCounter = new AtomicInteger();
+        this.workers = Executors.newFixedThreadPool(builder.workers, runnable -> {
+            Thread thread = new Thread(runnable, "jai-render-queue-" + queue + "-" + threadCounter.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    /**
+     * Returns a new builder instance for creating a {@link RenderQueue}.
+     *
+     * @return a new {@link RenderQueueBuilder} instance
+     */
+    public static RenderQueueBuilder builder() {
+        return new RenderQueueBuilder();
+    }
+
+    /**
+     * Queues the render of a graph image, coalesced with the pending render of the same image when the generator
+     * describes its settings with a {@link GraphImageGenerator#renderFingerprint() fingerprint}.
+     *
+     * @param generator   the generator of the image
+     * @param transitions the list of transitions to generate the graph image from
+     * @param format      the format of the generated image (e.g., SVG, PNG)
+     * @param styles      optional styles to apply to the graph (e.g., sketchy, orientation)
+     * @return the future of the rendered bytes, cancelled if the render is dropped and failed if it is rejected
+     * @throws IllegalStateException if the queue is shut down
+     */
+    public CompletableFuture<byte[]> submit(@NonNull GraphImageGenerator generator, List<Transition> transitions, Format format, StyleAttribute... styles) {
+        String fingerprint = generator.renderFingerprint();
+        String key = fingerprint != null ? CachingGraphImageGenerator.key("bytes", fingerprint, transitions, format, styles) : null;
+        return submit(key, () -> generator.generateImageBytes(transitions, format, styles));
+    }
+
+    /**
+     * Queues a render, which is never coalesced with another one.
+     *
+     * @param render the render of the image
+     * @return the future of the rendered bytes, cancelled if the render is dropped and failed if it is rejected
+     * @throws IllegalStateException if the queue is shut down
+     */
+    public CompletableFuture<byte[]> submit(@NonNull RenderCache.Render render) {
+        return submit(null, render);
+    }
+
+    /**
+     * Queues a render, or joins the pending render of the same key.
+     *
+     * @param key    the key of the rendered image, such as a digest of its content, or null to never coalesce the
+     *               render
+     * @param render the render of the image
+     * @return the future of the rendered bytes, cancelled if the render is dropped and failed if it is rejected
+     * @throws IllegalStateException if the queue is shut down
+     */
+    public CompletableFuture<byte[]> submit(String key, @NonNull RenderCache.Render render) {
+        Pending dropped = null;
+        CompletableFuture<byte[]> queued;
+        synchronized (pending) {
+            if (shutdown) {
+                throw new IllegalStateException("The render queue is shut down");
+            }
+            if (key != null) {
+                Pending existing = pending.get(key);
+                if (existing != null) {
+                    coalesced.incrementAndGet();
+                    return existing.newCaller();
+                }
+            }
+            if (pending.size() >= capacity) {
+                if (overflowPolicy == OverflowPolicy.REJECT) {
+                    this.dropped.incrementAndGet();
+                    return CompletableFuture.failedFuture(new RejectedExecutionException("The render queue is full"));
+                }
+                Iterator<Pending> oldest = pending.values().iterator();
+                dropped = oldest.next();
+                oldest.remove();
+                this.dropped.incrementAndGet();
+            }
+            Pending next = new Pending(render);
+            queued = next.newCaller();
+            pending.put(key != null ? key : "#" + anonymousKeys.incrementAndGet(), next);
+            // dispatched under the lock, so that a concurrent shutdown cannot reject it once the render is queued
+            workers.execute(this::renderNext); // renders the oldest pending render, which may not be this one
+        }
+        if (dropped != null) {
+            log.debug("Render queue full, dropping the oldest render");
+            CancellationException cancellation = new CancellationException("Dropped by a newer render");
+            dropped.callers.forEach(caller -> caller.completeExceptionally(cancellation));
+            dropped.future.completeExceptionally(cancellation);
+        }
+        return queued;
+    }
+
+    private void renderNext() {
+        Pending next;
+        synchronized (pending) {
+            Iterator<Map.Entry<String, Pending>> oldest = pending.entrySet().iterator();
+            if (!oldest.hasNext()) {
+                return; // dropped or already rendered by another worker
+            }
+            next = oldest.next().getValue();
+            oldest.remove();
+        }
+        if (next.isCancelledByEveryCaller()) {
+            next.future.cancel(false);
+            return;
+        }
+        try {
+            next.future.complete(next.render.render());
+            rendered.incrementAndGet();
+        } catch (Throwable e) {
+            failed.incrementAndGet();
+            log.warn("Background render failed: {}", e.getMessage());
+            next.future.completeExceptionally(e);
+        }
+    }
+
+    /**
+     * Returns the number of renders waiting for a worker.
+     *
+     * @return the number of pending renders
+     */
+    public int pending() {
+        synchronized (pending) {
+            return pending.size();
+        }
+    }
+
+    /**
+     * Returns the number of renders completed successfully.
+     *
+     * @return the number of rendered images
+     */
+    public long rendered() {
+        return rendered.get();
+    }
+
+    /**
+     * Returns the number of renders that failed.
+     *
+     * @return the number of failed renders
+     */
+    public long failed() {
+        return failed.get();
+    }
+
+    /**
+     * Returns the number of submissions joined to a pending render of the same key.
+     *
+     * @return the number of coalesced submissions
+     */
+    public long coalesced() {
+        return coalesced.get();
+    }
+
+    /**
+     * Returns the number of renders dropped or rejected because the queue was full.
+     *
+     * @return the number of dropped renders
+     */
+    public long dropped() {
+        return dropped.get();
+    }
+
+    /**
+     * Returns true if the queue was shut down.
+     *
+     * @return true if the queue is shut down
+     */
+    public boolean isShutdown() {
+        return shutdown;
+    }
+
+    /**
+     * Stops accepting renders and waits for the pending ones to complete.
+     */
+    public void shutdown() {
+        synchronized (pending) {
+            if (shutdown) {
+                return;
+            }
+            shutdown = true;
+        }
+        workers.shutdown();
+        try {
+            if (!workers.awaitTermination(30, TimeUnit.SECONDS)) {
+                workers.shutdownNow();
+            }
+        } catch (InterruptedException e) {
+            workers.shutdownNow();
+            Thread.currentThread().interrupt();
+        }
+        log.debug("Render queue shut down");
+    }
+
+    /**
+     * Same as {@link #shutdown()}.
+     */
+    @Override
+    public void close() {
+        shutdown();
+    }
+
+    @Override
+    public String toString() {
+        return "RenderQueue{pending=" + pending() + ", rendered=" + rendered + ", failed=" + failed
+                + ", coalesced=" + coalesced + ", dropped=" + dropped + "}";
+    }
+
+    /**
+     * Builder class for {@link RenderQueue}.
+     */
+    public static class RenderQueueBuilder {
+        private int workers = 1;
+        private int capacity = 64;
+        private OverflowPolicy overflowPolicy = OverflowPolicy.DROP_OLDEST;
+
+        /**
+         * Sets the number of threads running the renders. Defaults to 1, the renders of Graphviz images being
+         * parallelized by their {@link io.github.czelabueno.jai.workflow.graph.graphviz.GraphvizEnginePool}.
+         *
+         * @param workers the number of render threads
+         * @return the current {@link RenderQueueBuilder} instance
+         */
+        public RenderQueueBuilder workers(int workers) {
+            this.workers = workers;
+            return this;
+        }
+
+        /**
+         * Sets the maximum number of pending renders. Defaults to 64.
+         *
+         * @param capacity the maximum number of pending renders
+         * @return the current {@link RenderQueueBuilder} instance
+         */
+        public RenderQueueBuilder capacity(int capacity) {
+            this.capacity = capacity;
+            return this;
+        }
+
+        /**
+         * Sets what a full queue does with a new render. Defaults to {@link OverflowPolicy#DROP_OLDEST}.
+         *
+         * @param overflowPolicy the overflow policy
+         * @return the current {@link RenderQueueBuilder} instance
+         */
+        public RenderQueueBuilder overflowPolicy(@NonNull OverflowPolicy overflowPolicy) {
+            this.overflowPolicy = overflowPolicy;
+            return this;
+        }
+
+        /**
+         * Builds and returns a new {@link RenderQueue} instance.
+         *
+         * @return a new {@link RenderQueue} instance
+         * @throws IllegalArgumentException if the number of workers or the capacity is not positive
+         */
+        public RenderQueue build() {
+            return new RenderQueue(this);
+        }
+    }
+}
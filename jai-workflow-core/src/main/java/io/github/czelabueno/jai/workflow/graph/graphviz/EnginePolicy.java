@@ -0,0 +1,20 @@
+package io.github.czelabueno.jai.workflow.graph.graphviz;
+
+/**
+ * Selects the Graphviz engine laying out the images of a {@link GraphvizEnginePool}.
+ */
+public enum EnginePolicy {
+    /**
+     * The native {@code dot} executable if it is found on the search path, otherwise the embedded JavaScript engine.
+     */
+    AUTO,
+    /**
+     * The native {@code dot} executable, several times faster than the JavaScript engine on large graphs. The pool
+     * fails to build if the executable is not found on the search path.
+     */
+    NATIVE,
+    /**
+     * The embedded GraalJS engine, which needs no Graphviz installation.
+     */
+    JAVASCRIPT
+}
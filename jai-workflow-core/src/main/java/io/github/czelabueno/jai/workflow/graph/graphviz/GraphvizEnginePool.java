@@ -0,0 +1,424 @@
+package io.github.czelabueno.jai.workflow.graph.graphviz;
+
+import guru.nidi.graphviz.engine.Format;
+import guru.nidi.graphviz.engine.Graphviz;
+import guru.nidi.graphviz.engine.GraphvizCmdLineEngine;
+import guru.nidi.graphviz.engine.GraphvizEngine;
+import guru.nidi.graphviz.engine.GraphvizJdkEngine;
+import guru.nidi.graphviz.engine.JdkJavascriptEngine;
+import guru.nidi.graphviz.rough.FillStyle;
+import guru.nidi.graphviz.rough.Roughifyer;
+import lombok.NonNull;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.InvalidPathException;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Pool of warm render threads shared by {@link GraphvizImageGenerator}s.
+ * <p>
+ * The Graphviz JDK engine keeps a GraalJS context per thread and the sketchy style needs another one for its
+ * {@link Roughifyer}, each costing hundreds of milliseconds to initialize. The pool installs the engine once and renders
+ * on a fixed set of platform threads whose contexts and Roughifyers are created on their first render, or up front by
+ * {@link #warmUp()}, and reused by the next renders. A warm render only costs the layout time.
+ * </p>
+ * <p>
+ * By default the layout runs on the native {@code dot} executable when it is on the search path, which is several times
+ * faster than the JavaScript engine on graphs of a hundred nodes, and on GraalJS otherwise (see {@link EnginePolicy}).
+ * Each render thread runs at most one {@code dot} process at a time, so the number of threads also bounds the native
+ * processes, which are killed after the native timeout. The engine is installed for the whole JVM by the first pool to
+ * render: the pools created while it is in use render on the same engine.
+ * </p>
+ * <pre>{@code
+ * GraphvizEnginePool.shared().warmUp(); // at startup
+ * GraphvizImageGenerator generator = GraphvizImageGenerator.builder().build(); // renders on the shared pool
+ * }</pre>
+ */
+public final class GraphvizEnginePool implements AutoCloseable {
+
+    private static final Logger log = LoggerFactory.getLogger(GraphvizEnginePool.class);
+    private static final String WARMUP_GRAPH = "digraph warmup { a -> b; }";
+    private static final Object ENGINE_LOCK = new Object();
+    private static final AtomicInteger POOL_COUNTER = new AtomicInteger();
+    private static int enginePools; // pools having installed the engine, guarded by ENGINE_LOCK
+    private static EnginePolicy installedEngine; // guarded by ENGINE_LOCK
+    private static GraphvizEnginePool shared;
+
+    private final int threads;
+    private final String searchPath;
+    private final Duration nativeTimeout;
+    private volatile EnginePolicy engine;
+    private final ExecutorService executor;
+    private final ThreadLocal<Roughifyer> roughifyers = new ThreadLocal<>();
+    private final List<Roughifyer> createdRoughifyers = new ArrayList<>();
+    private final Object lock = new Object();
+    // the warmup tasks of two overlapping calls would each hold part of the threads waiting for the others
+    private final ReentrantLock warmUpLock = new ReentrantLock();
+    private boolean engineInstalled;
+    private volatile boolean shutdown;
+
+    private GraphvizEnginePool(GraphvizEnginePoolBuilder builder) {
+        if (builder.threads <= 0) {
+            throw new IllegalArgumentException("threads must be greater than zero");
+        }
+        if (builder.nativeTimeout == null || builder.nativeTimeout.isNegative() || builder.nativeTimeout.isZero()) {
+            throw new IllegalArgumentException("nativeTimeout must be positive");
+        }
+        this.threads = builder.threads;
+        this.searchPath = builder.searchPath;
+        this.nativeTimeout = builder.nativeTimeout;
+        this.engine = resolveEngine(builder.engine, builder.searchPath);
+        int pool = POOL_COUNTER.incrementAndGet();
+        AtomicInteger threadCounter = new AtomicInteger();
+        this.executor = Executors.newFixedThreadPool(threads, runnable -> {
+            Thread thread = new Thread(runnable, "jai-graphviz-" + pool + "-" + threadCounter.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    /**
+     * Returns a new builder instance for creating a {@link GraphvizEnginePool}.
+     *
+     * @return a new {@link GraphvizEnginePoolBuilder} instance
+     */
+    public static GraphvizEnginePoolBuilder builder() {
+        return new GraphvizEnginePoolBuilder();
+    }
+
+    /**
+     * Returns the pool used by the generators built without a pool, created on first use and shut down with the JVM.
+     *
+     * @return the shared pool
+     */
+    public static synchronized GraphvizEnginePool shared() {
+        if (shared == null || shared.shutdown) {
+            GraphvizEnginePool pool = builder().build();
+            Runtime.getRuntime().addShutdownHook(new Thread(pool::shutdown, "jai-graphviz-shutdown"));
+            shared = pool;
+        }
+        return shared;
+    }
+
+    /**
+     * Initializes the engine and the sketchy style processor on every thread of the pool, so that the first renders
+     * do not pay it. Concurrent calls are run one after the other.
+     *
+     * @throws IllegalStateException if the pool is shut down
+     */
+    public void warmUp() {
+        warmUpLock.lock();
+        try {
+            long start = System.nanoTime();
+            CountDownLatch allThreadsBusy = new CountDownLatch(threads);
+            List<Future<?>> warmups = new ArrayList<>();
+            for (int i = 0; i < threads; i++) {
+                warmups.add(submit(() -> {
+                    // keeps this thread busy until all threads got a warmup task
+                    allThreadsBusy.countDown();
+                    allThreadsBusy.await();
+                    Graphviz.fromString(WARMUP_GRAPH).processor(roughifyer()).render(Format.SVG).toString();
+                    return null;
+                }));
+            }
+            for (Future<?> warmup : warmups) {
+                await(warmup);
+            }
+            log.debug("Warmed up {} Graphviz render threads in {} ms", threads, TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start));
+        } finally {
+            warmUpLock.unlock();
+        }
+    }
+
+    /**
+     * Runs a render on a thread of the pool and waits for its result.
+     *
+     * @param render the render, which may call {@link #roughifyer()}
+     * @param <V>    the type of the result
+     * @return the result of the render
+     * @throws IOException           if the render failed to write its output
+     * @throws IllegalStateException if the pool is shut down
+     */
+    <V> V render(Callable<V> render) throws IOException {
+        try {
+            return await(submit(render));
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+    }
+
+    /**
+     * Returns the sketchy style processor of the current render thread.
+     */
+    Roughifyer roughifyer() {
+        Roughifyer roughifyer = roughifyers.get();
+        if (roughifyer == null) {
+            roughifyer = new Roughifyer(new JdkJavascriptEngine())
+                    .bowing(2)
+                    .curveStepCount(6)
+                    .roughness(1)
+                    .fillStyle(FillStyle.hachure().width(2).gap(5).angle(0))
+                    .font("*serif", "Comic Sans MS");
+            roughifyers.set(roughifyer);
+            synchronized (lock) {
+                createdRoughifyers.add(roughifyer);
+            }
+        }
+        return roughifyer;
+    }
+
+    /**
+     * Returns the number of sketchy style processors created by the pool, at most one per thread.
+     */
+    int roughifyerCount() {
+        synchronized (lock) {
+            return createdRoughifyers.size();
+        }
+    }
+
+    /**
+     * Returns the number of render threads.
+     *
+     * @return the number of threads
+     */
+    public int threads() {
+        return threads;
+    }
+
+    /**
+     * Returns the engine laying out the images of this pool, either {@link EnginePolicy#NATIVE} or
+     * {@link EnginePolicy#JAVASCRIPT}.
+     *
+     * @return the engine of this pool
+     */
+    public EnginePolicy engine() {
+        return engine;
+    }
+
+    /**
+     * Returns true if the pool was shut down.
+     *
+     * @return true if the pool is shut down
+     */
+    public boolean isShutdown() {
+        return shutdown;
+    }
+
+    /**
+     * Stops the render threads after the pending renders and releases the engine if no other pool uses it.
+     */
+    public void shutdown() {
+        synchronized (lock) {
+            if (shutdown) {
+                return;
+            }
+            shutdown = true;
+        }
+        executor.shutdown();
+        try {
+            if (!executor.awaitTermination(30, TimeUnit.SECONDS)) {
+                executor.shutdownNow();
+            }
+        } catch (InterruptedException e) {
+            executor.shutdownNow();
+            Thread.currentThread().interrupt();
+        }
+        synchronized (ENGINE_LOCK) {
+            if (engineInstalled && --enginePools == 0) {
+                Graphviz.releaseEngine();
+            }
+        }
+        log.debug("Graphviz engine pool shut down");
+    }
+
+    /**
+     * Same as {@link #shutdown()}.
+     */
+    @Override
+    public void close() {
+        shutdown();
+    }
+
+    private <V> Future<V> submit(Callable<V> render) {
+        if (shutdown) {
+            throw new IllegalStateException("The Graphviz engine pool is shut down");
+        }
+        return executor.submit(() -> {
+            installEngine();
+            try {
+                return render.call();
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        });
+    }
+
+    private void installEngine() {
+        synchronized (ENGINE_LOCK) {
+            if (!engineInstalled) {
+                if (enginePools == 0) {
+                    Graphviz.useEngine(engines(engine)); // GraalJS is initialized on this thread
+                    installedEngine = engine;
+                    log.debug("Installed the {} Graphviz engine", engine);
+                } else if (installedEngine != engine) {
+                    log.warn("The {} Graphviz engine is in use, the {} engine is ignored", installedEngine, engine);
+                    engine = installedEngine;
+                }
+                enginePools++;
+                engineInstalled = true;
+            }
+        }
+    }
+
+    private List<GraphvizEngine> engines(EnginePolicy engine) {
+        if (engine == EnginePolicy.JAVASCRIPT) {
+            return List.of(new GraphvizJdkEngine());
+        }
+        GraphvizCmdLineEngine cmdLineEngine = new GraphvizCmdLineEngine().searchPath(searchPath);
+        cmdLineEngine.timeout((int) Math.min(Integer.MAX_VALUE, nativeTimeout.toMillis()), TimeUnit.MILLISECONDS);
+        // the executable found on the search path may still fail to start
+        return List.of(cmdLineEngine, new GraphvizJdkEngine());
+    }
+
+    static EnginePolicy resolveEngine(EnginePolicy policy, String searchPath) {
+        if (policy == EnginePolicy.JAVASCRIPT) {
+            return EnginePolicy.JAVASCRIPT;
+        }
+        if (findDot(searchPath) != null) {
+            return EnginePolicy.NATIVE;
+        }
+        if (policy == EnginePolicy.NATIVE) {
+            throw new IllegalStateException("The Graphviz dot executable was not found on the search path: " + searchPath);
+        }
+        log.debug("The Graphviz dot executable was not found on the search path, using the JavaScript engine");
+        return EnginePolicy.JAVASCRIPT;
+    }
+
+    /**
+     * Returns the {@code dot} executable found in the directories of the given search path, or null if none.
+     */
+    static Path findDot(String searchPath) {
+        if (searchPath == null || searchPath.isEmpty()) {
+            return null;
+        }
+        boolean windows = System.getProperty("os.name", "").toLowerCase().startsWith("windows");
+        for (String directory : searchPath.split(File.pathSeparator)) {
+            if (directory.isEmpty()) {
+                continue;
+            }
+            try {
+                Path dot = Path.of(directory, windows ? "dot.exe" : "dot");
+                if (Files.isRegularFile(dot) && Files.isExecutable(dot)) {
+                    return dot;
+                }
+            } catch (InvalidPathException e) {
+                log.debug("Ignoring the invalid search path entry: {}", directory);
+            }
+        }
+        return null;
+    }
+
+    private static <V> V await(Future<V> future) {
+        try {
+            return future.get();
+        } catch (InterruptedException e) {
+            future.cancel(true);
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while waiting for the render", e);
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof RuntimeException runtimeException) {
+                throw runtimeException;
+            } else if (cause instanceof Error error) {
+                throw error;
+            }
+            throw new IllegalStateException("Render failed", cause);
+        }
+    }
+
+    /**
+     * Builder class for {@link GraphvizEnginePool}.
+     */
+    public static class GraphvizEnginePoolBuilder {
+        private int threads = Math.min(4, Runtime.getRuntime().availableProcessors());
+        private EnginePolicy engine = EnginePolicy.AUTO;
+        private String searchPath = System.getenv("PATH");
+        private Duration nativeTimeout = Duration.ofSeconds(60);
+
+        /**
+         * Sets the number of render threads, each holding its own engine context. Defaults to the number of processors,
+         * at most 4.
+         *
+         * @param threads the number of render threads
+         * @return the current {@link GraphvizEnginePoolBuilder} instance
+         */
+        public GraphvizEnginePoolBuilder threads(int threads) {
+            this.threads = threads;
+            return this;
+        }
+
+        /**
+         * Sets the engine selection policy. Defaults to {@link EnginePolicy#AUTO}.
+         *
+         * @param engine the engine selection policy
+         * @return the current {@link GraphvizEnginePoolBuilder} instance
+         */
+        public GraphvizEnginePoolBuilder engine(@NonNull EnginePolicy engine) {
+            this.engine = engine;
+            return this;
+        }
+
+        /**
+         * Sets the directories searched for the native {@code dot} executable, separated by the platform path
+         * separator. Defaults to the {@code PATH} environment variable.
+         *
+         * @param searchPath the directories searched for the {@code dot} executable
+         * @return the current {@link GraphvizEnginePoolBuilder} instance
+         */
+        public GraphvizEnginePoolBuilder searchPath(String searchPath) {
+            this.searchPath = searchPath;
+            return this;
+        }
+
+        /**
+         * Sets the time after which a native {@code dot} process is killed and its render fails. Defaults to 60
+         * seconds.
+         *
+         * @param nativeTimeout the timeout of a native render
+         * @return the current {@link GraphvizEnginePoolBuilder} instance
+         */
+        public GraphvizEnginePoolBuilder nativeTimeout(Duration nativeTimeout) {
+            this.nativeTimeout = nativeTimeout;
+            return this;
+        }
+
+        /**
+         * Builds and returns a new {@link GraphvizEnginePool} instance.
+         *
+         * @return a new {@link GraphvizEnginePool} instance
+         * @throws IllegalArgumentException if the number of threads or the native timeout is not positive
+         * @throws IllegalStateException    if the {@link EnginePolicy#NATIVE} engine is required and the {@code dot}
+         *                                  executable is not found on the search path
+         */
+        public GraphvizEnginePool build() {
+            return new GraphvizEnginePool(this);
+        }
+    }
+}
@@ -3,9 +3,11 @@ package io.github.czelabueno.jai.workflow.graph.graphviz;
 import guru.nidi.graphviz.attribute.*;
 import guru.nidi.graphviz.model.Graph;
 import guru.nidi.graphviz.model.Link;
-import guru.nidi.graphviz.rough.FillStyle;
-import guru.nidi.graphviz.rough.Roughifyer;
 import io.github.czelabueno.jai.workflow.WorkflowStateName;
+import io.github.czelabueno.jai.workflow.graph.CollapsedGraph;
+import io.github.czelabueno.jai.workflow.graph.CollapsedState;
+import io.github.czelabueno.jai.workflow.graph.ExecutionHeatMap;
+import io.github.czelabueno.jai.workflow.graph.GraphCollapser;
 import io.github.czelabueno.jai.workflow.graph.Format;
 import io.github.czelabueno.jai.workflow.graph.StyleAttribute;
 import io.github.czelabueno.jai.workflow.node.Conditional;
@@ -15,12 +17,17 @@ import io.github.czelabueno.jai.workflow.transition.Transition;
 import io.github.czelabueno.jai.workflow.graph.GraphImageGenerator;
 import guru.nidi.graphviz.engine.*;
 import io.github.czelabueno.jai.workflow.transition.TransitionState;
+import lombok.NonNull;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import java.awt.image.BufferedImage;
+import java.io.ByteArrayOutputStream;
 import java.io.File;
+import java.io.FilterOutputStream;
 import java.io.IOException;
+import java.io.OutputStream;
+import java.time.Duration;
 import java.util.*;
 import java.util.stream.Collectors;
 
@@ -35,14 +42,28 @@ import static java.util.stream.Collectors.joining;
 public class GraphvizImageGenerator implements GraphImageGenerator {
 
     private static final Logger log = LoggerFactory.getLogger(GraphvizImageGenerator.class);
-    private static final Map<TransitionState, Boolean> onceComputedTransition = new HashMap<>();
-
-    private String dotFormat;
-    private List<ComputedTransition> computedTransitions;
+    private static final double MAX_PEN_WIDTH = 5;
+    // heat map colors, from the edges never taken and the fastest nodes to the hottest edges and slowest nodes
+    private static final int[] COLD = {157, 165, 171};
+    private static final int[] FAST = {91, 154, 119};
+    private static final int[] WARM = {240, 173, 78};
+    private static final int[] HOT = {217, 83, 79};
+
+    private final String dotFormat;
+    private final List<ComputedTransition> computedTransitions;
+    private final GraphvizEnginePool enginePool;
+    private final ExecutionHeatMap heatMap;
+    private final GraphCollapser collapser;
 
     private GraphvizImageGenerator(GraphvizImageGeneratorBuilder builder) {
+        if (builder.heatMap != null && builder.computedTransitions != null) {
+            throw new IllegalArgumentException("A heat map and computed transitions cannot be rendered together");
+        }
         this.dotFormat = builder.dotFormat;
         this.computedTransitions = builder.computedTransitions;
+        this.enginePool = builder.enginePool;
+        this.heatMap = builder.heatMap;
+        this.collapser = builder.collapser;
     }
 
     /**
@@ -54,6 +75,20 @@ public class GraphvizImageGenerator implements GraphImageGenerator {
         return new GraphvizImageGeneratorBuilder();
     }
 
+    /**
+     * Returns a builder initialized with the settings of this generator.
+     *
+     * @return a new {@link GraphvizImageGeneratorBuilder} instance
+     */
+    public GraphvizImageGeneratorBuilder toBuilder() {
+        return new GraphvizImageGeneratorBuilder()
+                .dotFormat(dotFormat)
+                .computedTransitions(computedTransitions)
+                .enginePool(enginePool)
+                .heatMap(heatMap)
+                .collapser(collapser);
+    }
+
     /**
      * Generates a graph image from the given list of transitions and saves it to the specified output path.
      *
@@ -70,7 +105,8 @@ public class GraphvizImageGenerator implements GraphImageGenerator {
             throw new IllegalArgumentException("Output path can not be null or empty. Cannot generate image.");
         }
         log.debug("Saving workflow image..");
-        createRenderer(transitions, format, styles).toFile(new File(outputPath));
+        Graphviz gv = createGraphviz(transitions, styles);
+        pool().render(() -> render(gv, format, styles).toFile(new File(outputPath)));
         log.debug("Workflow image saved to: " + outputPath);
     }
 
@@ -86,19 +122,95 @@ public class GraphvizImageGenerator implements GraphImageGenerator {
     @Override
     public BufferedImage generateBufferedImage(List<Transition> transitions, Format format, StyleAttribute... styles) throws RuntimeException {
         log.debug("Generating workflow image..");
-        Renderer renderer = createRenderer(transitions, format, styles);
-        log.debug("Workflow image rendered to BufferedImage.");
-        return renderer.toImage();
+        Graphviz gv = createGraphviz(transitions, styles);
+        try {
+            BufferedImage image = pool().render(() -> render(gv, format, styles).toImage());
+            log.debug("Workflow image rendered to BufferedImage.");
+            return image;
+        } catch (IOException e) {
+            throw new RuntimeException("Failed to render the workflow image", e);
+        }
     }
 
-    private Renderer createRenderer(List<Transition> transitions, Format format, StyleAttribute... styles) {
-        // Generate image using Graphviz from dot format
-        final guru.nidi.graphviz.engine.Format IMAGE_FORMAT = graphvizFormatFrom(format);
-        log.debug("Using default image format: " + IMAGE_FORMAT);
+    /**
+     * Generates a graph image from the given list of transitions and returns its bytes in the given format.
+     *
+     * @param transitions the list of transitions to generate the graph image from
+     * @param format      the format of the generated image (e.g., SVG, PNG)
+     * @param styles      optional styles to apply to the graph (e.g., sketchy, orientation)
+     * @return the bytes of the generated image
+     * @throws IOException if an I/O error occurs during image generation
+     */
+    @Override
+    public byte[] generateImageBytes(List<Transition> transitions, Format format, StyleAttribute... styles) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        writeImage(transitions, out, format, styles);
+        return out.toByteArray();
+    }
 
-        boolean useDotFormat = dotFormat != null;
-        Graphviz.useEngine(List.of(new GraphvizJdkEngine())); // Use GraalJS as the default engine
+    /**
+     * Generates a graph image from the given list of transitions and streams its bytes in the given format to the
+     * given stream, without an intermediate file or image.
+     *
+     * @param transitions the list of transitions to generate the graph image from
+     * @param out         the stream to write the generated image to, which is neither flushed nor closed
+     * @param format      the format of the generated image (e.g., SVG, PNG)
+     * @param styles      optional styles to apply to the graph (e.g., sketchy, orientation)
+     * @throws IOException if an I/O error occurs during image generation or while writing to the stream
+     */
+    @Override
+    public void writeImage(List<Transition> transitions, @NonNull OutputStream out, Format format, StyleAttribute... styles) throws IOException {
+        log.debug("Streaming workflow image..");
+        Graphviz gv = createGraphviz(transitions, styles);
+        pool().render(() -> {
+            // the renderer closes the stream it writes to, which belongs to the caller
+            render(gv, format, styles).toOutputStream(new UnclosedOutputStream(out));
+            return null;
+        });
+    }
 
+    /**
+     * Returns the custom dot format, the computed transitions and the collapser, which change the images of the same
+     * transitions.
+     * The heat map images are not cached.
+     *
+     * @return the settings of this generator, or null when rendering a heat map
+     */
+    @Override
+    public String renderFingerprint() {
+        if (heatMap != null && dotFormat == null) {
+            return null; // the heat map changes with every recorded run
+        }
+        StringBuilder fingerprint = new StringBuilder("graphviz");
+        if (dotFormat != null) {
+            fingerprint.append("\ndot:").append(dotFormat);
+        }
+        if (computedTransitions != null) {
+            for (ComputedTransition computedTransition : computedTransitions) {
+                fingerprint.append("\ncomputed:").append(computedTransition.getTransition());
+            }
+        }
+        if (collapser != null && dotFormat == null) {
+            fingerprint.append("\ncollapser:").append(collapser);
+        }
+        return fingerprint.toString();
+    }
+
+    /**
+     * Initializes the Graphviz engine and the sketchy style processor of the render threads, so that the next images
+     * only cost their layout time. Calling it at startup is optional, the render threads are otherwise initialized by
+     * their first image.
+     */
+    public void warmUp() {
+        pool().warmUp();
+    }
+
+    private GraphvizEnginePool pool() {
+        return enginePool != null ? enginePool : GraphvizEnginePool.shared();
+    }
+
+    private Graphviz createGraphviz(List<Transition> transitions, StyleAttribute... styles) {
+        boolean useDotFormat = dotFormat != null;
         Graphviz gv;
         if (useDotFormat) { // Custom dot format don't need transitions
             log.debug("Using custom Dot format: " + System.lineSeparator() + dotFormat);
@@ -107,30 +219,58 @@ public class GraphvizImageGenerator implements GraphImageGenerator {
             if (transitions == null || transitions.isEmpty()) {
                 throw new IllegalArgumentException("Transitions list can not be null or empty when dotFormat is null. Cannot generate image.");
             }
-            gv = Graphviz.fromGraph(createGraph(transitions, computedTransitions, styles)); //JS engine is used by default
-        }
-        if (styles != null && styles.length > 0) {
-            Graphviz finalGv = gv;
-            gv = Arrays.stream(styles)
-                    .filter(style -> style == StyleGraph.SKETCHY)
-                    .findFirst()
-                    .map(style -> finalGv.processor(new Roughifyer(new JdkJavascriptEngine()) // Use Roughifyer for sketchy style
-                            .bowing(2)
-                            .curveStepCount(6)
-                            .roughness(1)
-                            .fillStyle(FillStyle.hachure().width(2).gap(5).angle(0))
-                            .font("*serif", "Comic Sans MS")))
-                    .orElse(gv);
+            ExecutionHeatMap heatMap = this.heatMap;
+            List<ComputedTransition> computedTransitions = this.computedTransitions;
+            if (collapser != null) {
+                CollapsedGraph collapsed = collapser.collapse(transitions);
+                log.debug("Collapsed {} transitions into {} with {} groups", transitions.size(), collapsed.transitions().size(), collapsed.groups().size());
+                transitions = collapsed.transitions();
+                heatMap = heatMap != null ? collapsed.collapseHeatMap(heatMap) : null;
+                computedTransitions = computedTransitions != null ? collapsed.collapseComputed(computedTransitions) : null;
+            }
+            gv = Graphviz.fromGraph(heatMap != null
+                    ? createHeatMapGraph(transitions, heatMap, styles)
+                    : createGraph(transitions, computedTransitions, styles));
+        }
+        return gv;
+    }
+
+    // Runs on a render thread of the pool, which owns the JS engine and the Roughifyer used for sketchy style
+    private Renderer render(Graphviz gv, Format format, StyleAttribute... styles) {
+        final guru.nidi.graphviz.engine.Format IMAGE_FORMAT = graphvizFormatFrom(format);
+        log.debug("Using default image format: " + IMAGE_FORMAT);
+        if (styles != null && Arrays.stream(styles).anyMatch(style -> style == StyleGraph.SKETCHY)) {
+            gv = gv.processor(pool().roughifyer());
         }
         return gv.render(IMAGE_FORMAT);
     }
 
+    private static final class UnclosedOutputStream extends FilterOutputStream {
+
+        UnclosedOutputStream(OutputStream out) {
+            super(out);
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) throws IOException {
+            out.write(b, off, len);
+        }
+
+        @Override
+        public void close() throws IOException {
+            flush();
+        }
+    }
+
     /**
      * Builder class for {@link GraphvizImageGenerator}.
      */
     public static class GraphvizImageGeneratorBuilder {
         private String dotFormat;
         private List<ComputedTransition> computedTransitions;
+        private GraphvizEnginePool enginePool;
+        private ExecutionHeatMap heatMap;
+        private GraphCollapser collapser;
 
         /**
          * Sets the dot format for the graph image.
@@ -154,10 +294,48 @@ public class GraphvizImageGenerator implements GraphImageGenerator {
             return this;
         }
 
+        /**
+         * Sets the pool of render threads holding the warm Graphviz engines. Defaults to {@link GraphvizEnginePool#shared()}.
+         *
+         * @param enginePool the engine pool
+         * @return the current {@link GraphvizImageGeneratorBuilder} instance
+         */
+        public GraphvizImageGeneratorBuilder enginePool(GraphvizEnginePool enginePool) {
+            this.enginePool = enginePool;
+            return this;
+        }
+
+        /**
+         * Renders the workflow as a heat map of the recorded runs: the edges are thicker and redder the more often they
+         * were taken, and the nodes are colored from green to red by their p95 latency. Defaults to none.
+         *
+         * @param heatMap the runs aggregated by an {@link ExecutionHeatMap}
+         * @return the current {@link GraphvizImageGeneratorBuilder} instance
+         */
+        public GraphvizImageGeneratorBuilder heatMap(ExecutionHeatMap heatMap) {
+            this.heatMap = heatMap;
+            return this;
+        }
+
+        /**
+         * Collapses the parallel branches, the conditional branches and the declared groups of the workflow into
+         * summary nodes before laying it out, to keep the images of large workflows readable and fast to render. The
+         * computed transitions and the heat map are folded onto the collapsed graph. Ignored with a custom dot format.
+         * Defaults to none.
+         *
+         * @param collapser the {@link GraphCollapser} of the workflow
+         * @return the current {@link GraphvizImageGeneratorBuilder} instance
+         */
+        public GraphvizImageGeneratorBuilder collapser(GraphCollapser collapser) {
+            this.collapser = collapser;
+            return this;
+        }
+
         /**
          * Builds and returns a new {@link GraphvizImageGenerator} instance.
          *
          * @return a new {@link GraphvizImageGenerator} instance
+         * @throws IllegalArgumentException if both a heat map and computed transitions are set
          */
         public GraphvizImageGenerator build() {
             return new GraphvizImageGenerator(this);
@@ -221,7 +399,7 @@ public class GraphvizImageGenerator implements GraphImageGenerator {
      * @param styles      optional styles to apply to the graph (e.g., orientation)
      * @return the generated graph representation
      */
-    private static Graph createGraph(List<Transition> transitions, List<ComputedTransition> computedTransitions, StyleAttribute... styles) {
+    static Graph createGraph(List<Transition> transitions, List<ComputedTransition> computedTransitions, StyleAttribute... styles) {
         Rank.RankDir rankDir = Arrays.stream(styles)
                 .filter(style -> style == HORIZONTAL)
                 .findFirst()
@@ -229,13 +407,19 @@ public class GraphvizImageGenerator implements GraphImageGenerator {
                 .orElse(Rank.RankDir.TOP_TO_BOTTOM);
 
         boolean useComputedTransitions = computedTransitions != null && !computedTransitions.isEmpty();
-        onceComputedTransition.clear();
+        // executions of each transition, indexed once so that the overlay costs a lookup per transition
+        Map<Transition, Integer> executions = new HashMap<>();
+        if (useComputedTransitions) {
+            for (ComputedTransition computedTransition : computedTransitions) {
+                executions.merge(computedTransition.getTransition(), 1, Integer::sum);
+            }
+        }
+        // states already styled as executed by this render, never shared with concurrent renders
+        Map<TransitionState, Boolean> onceComputedTransition = new HashMap<>();
         List<guru.nidi.graphviz.model.Node> nodes = transitions.stream()
                 .map(transition -> {
                     if (useComputedTransitions) {
-                        boolean wasExecuted = computedTransitions.stream()
-                                .anyMatch(computedTransition -> computedTransition.getTransition().equals(transition));
-                        return createComputedGraphNode(transition, wasExecuted);
+                        return createComputedGraphNode(transition, executions.getOrDefault(transition, 0), onceComputedTransition);
                     } else {
                         return createDefinitionGraphNode(transition);
                     }
@@ -245,12 +429,14 @@ public class GraphvizImageGenerator implements GraphImageGenerator {
         // Count the occurrences of each node name
         Map<Label, Long> nodeNameCounts = nodes.stream()
                 .collect(Collectors.groupingBy(guru.nidi.graphviz.model.Node::name, Collectors.counting()));
+        Set<String> executedNodeNames = onceComputedTransition.keySet().stream()
+                .map(transitionState -> sanitizeNodeName(transitionState.graphName()))
+                .collect(Collectors.toSet());
 
         // Style nodes that have multiple occurrences computed as executed
         List<guru.nidi.graphviz.model.Node> newNodes = nodes.stream()
                 .map(node -> {
-                    if (nodeNameCounts.get(node.name()) > 1 && onceComputedTransition.keySet().stream()
-                            .anyMatch(transitionState -> sanitizeNodeName(transitionState.graphName()).equals(node.name().value()))) {
+                    if (nodeNameCounts.get(node.name()) > 1 && executedNodeNames.contains(node.name().value())) {
                         return node.with(Style.ROUNDED, Color.rgb(40, 167, 70), Color.rgb(91, 154, 119).fill());
                     }
                     return node;
@@ -265,31 +451,123 @@ public class GraphvizImageGenerator implements GraphImageGenerator {
                 .with(newNodes);
     }
 
+    /**
+     * Creates the heat map of the given transitions: the edges are labelled with the number of times they were taken,
+     * widened and reddened in proportion to the most taken edge, and the nodes are filled from green to red in
+     * proportion to the slowest p95 latency.
+     *
+     * @param transitions the list of transitions
+     * @param heatMap     the recorded runs
+     * @param styles      the styles to apply to the graph
+     * @return the created graph
+     */
+    static Graph createHeatMapGraph(List<Transition> transitions, ExecutionHeatMap heatMap, StyleAttribute... styles) {
+        Rank.RankDir rankDir = Arrays.stream(styles)
+                .filter(style -> style == HORIZONTAL)
+                .findFirst()
+                .map(style -> Rank.RankDir.LEFT_TO_RIGHT)
+                .orElse(Rank.RankDir.TOP_TO_BOTTOM);
+        // copied once, each transition and node is then styled by a lookup
+        Map<Transition, Long> counts = heatMap.transitionCounts();
+        Map<TransitionState, Duration> p95 = heatMap.latencyPercentiles(95);
+        long maxCount = counts.values().stream().mapToLong(Long::longValue).max().orElse(0);
+        long maxP95 = p95.values().stream().mapToLong(Duration::toNanos).max().orElse(0);
+
+        List<guru.nidi.graphviz.model.Node> nodes = new ArrayList<>(transitions.size());
+        for (Transition transition : transitions) {
+            long count = transition.from() == WorkflowStateName.START ? heatMap.runs() : counts.getOrDefault(transition, 0L);
+            Link link = to(heatMapNode(transition.to(), p95.get(transition.to()), maxP95));
+            if (count == 0) {
+                link = link.with(Style.DASHED, Color.rgb(157, 165, 171));
+            } else {
+                double ratio = maxCount == 0 ? 1 : Math.min(1, (double) count / maxCount);
+                link = link.with(Label.of(count + "x"), mix(COLD, HOT, ratio))
+                        .with(guru.nidi.graphviz.attribute.Attributes.attr("penwidth", Math.round((1 + (MAX_PEN_WIDTH - 1) * ratio) * 10) / 10d));
+                if (transition.from() instanceof Conditional) {
+                    link = link.with(Style.DASHED);
+                }
+            }
+            nodes.add(heatMapNode(transition.from(), p95.get(transition.from()), maxP95).link(link));
+        }
+        return graph("workflow").directed()
+                .graphAttr().with(GraphAttr.splines(GraphAttr.SplineMode.POLYLINE), GraphAttr.CENTER, Rank.dir(rankDir))
+                .nodeAttr().with(Shape.RECTANGLE, Color.LIGHTBLUE2, Style.ROUNDED, Font.name("arial"))
+                .linkAttr().with(Color.DARKGREEN, Style.SOLID, Arrow.NORMAL.size(0.8))
+                .with(nodes);
+    }
+
+    private static guru.nidi.graphviz.model.Node heatMapNode(TransitionState state, Duration p95, long maxP95) {
+        if (state == WorkflowStateName.START) {
+            return node(WorkflowStateName.START.graphName()).with(Shape.M_DIAMOND, Color.ORANGE, Style.FILLED, Color.rgb(255, 240, 212).fill());
+        } else if (state == WorkflowStateName.END) {
+            return node(WorkflowStateName.END.graphName()).with(Shape.M_SQUARE, Color.GREEN, Style.FILLED, Color.rgb(217, 255, 212).fill());
+        }
+        guru.nidi.graphviz.model.Node node = getGraphvizNodeFromNode(state);
+        if (p95 == null) {
+            return node;
+        }
+        String name = state instanceof Node<?, ?> ? sanitizeNodeName(state.graphName())
+                : state instanceof CollapsedState ? "<b>" + state.graphName() + "</b>" : state.graphName();
+        double ratio = maxP95 == 0 ? 0 : (double) p95.toNanos() / maxP95;
+        Color fill = ratio < 0.5 ? mix(FAST, WARM, ratio * 2) : mix(WARM, HOT, ratio * 2 - 1);
+        return node.with(Label.html(name + "<br/><font point-size=\"9\">p95 " + formatLatency(p95) + "</font>"),
+                Style.combine(Style.ROUNDED, Style.FILLED), fill.fill());
+    }
+
+    private static Color mix(int[] from, int[] to, double ratio) {
+        return Color.rgb(
+                (int) Math.round(from[0] + (to[0] - from[0]) * ratio),
+                (int) Math.round(from[1] + (to[1] - from[1]) * ratio),
+                (int) Math.round(from[2] + (to[2] - from[2]) * ratio));
+    }
+
+    private static String formatLatency(Duration latency) {
+        long millis = latency.toMillis();
+        return millis < 1000 ? millis + " ms" : String.format(Locale.ROOT, "%.1f s", millis / 1000d);
+    }
+
     /**
      * Creates a Graphviz node representation from the given transition.
      *
      * @param transition the transition to create the Graphviz node from
+     * @param executions the number of times the transition was computed
+     * @param onceComputedTransition the states already styled as executed by the current render
      * @return the created Graphviz node
      */
-    private static guru.nidi.graphviz.model.Node createComputedGraphNode (Transition transition, boolean wasExecuted) {
+    private static guru.nidi.graphviz.model.Node createComputedGraphNode (Transition transition, int executions,
+                                                                         Map<TransitionState, Boolean> onceComputedTransition) {
+        boolean wasExecuted = executions > 0;
         if (transition.from() == WorkflowStateName.START) {
             return createDefinitionGraphNode(transition);
         } else if (transition.to() == WorkflowStateName.END) {
             Link linkToEnd = to(node(WorkflowStateName.END.graphName())
                     .with(Shape.M_SQUARE, Color.GREEN, Style.FILLED, Color.rgb(217, 255, 212).fill()));
             if (!wasExecuted) linkToEnd.add(Color.rgb(157, 165, 171));
-            return styleNodeOnce(transition.from(), wasExecuted)
-                    .link(linkToEnd);
+            return styleNodeOnce(transition.from(), wasExecuted, onceComputedTransition)
+                    .link(withExecutionCount(linkToEnd, executions));
         } else if (transition.from() instanceof Conditional) {
-            return styleNodeOnce(transition.from(), wasExecuted)
-                    .link(createLinkStyled(transition.to(), wasExecuted).add(Style.DASHED));
+            return styleNodeOnce(transition.from(), wasExecuted, onceComputedTransition)
+                    .link(withExecutionCount(createLinkStyled(transition.to(), wasExecuted).add(Style.DASHED), executions));
         } else {
-            return styleNodeOnce(transition.from(), wasExecuted)
-                    .link(createLinkStyled(transition.to(), wasExecuted));
+            return styleNodeOnce(transition.from(), wasExecuted, onceComputedTransition)
+                    .link(withExecutionCount(createLinkStyled(transition.to(), wasExecuted), executions));
+        }
+    }
+
+    /**
+     * Labels a link computed more than once with its number of executions, and widens it logarithmically.
+     */
+    private static Link withExecutionCount(Link link, int executions) {
+        if (executions <= 1) {
+            return link;
         }
+        double penWidth = Math.min(MAX_PEN_WIDTH, 1 + Math.log(executions) / Math.log(2));
+        return link.add(Label.of(executions + "x"))
+                .add(guru.nidi.graphviz.attribute.Attributes.attr("penwidth", Math.round(penWidth * 10) / 10d));
     }
 
-    private static guru.nidi.graphviz.model.Node styleNodeOnce (TransitionState transitionState, Boolean wasExecuted) {
+    private static guru.nidi.graphviz.model.Node styleNodeOnce (TransitionState transitionState, Boolean wasExecuted,
+                                                                Map<TransitionState, Boolean> onceComputedTransition) {
         if (onceComputedTransition.containsKey(transitionState) && onceComputedTransition.get(transitionState)) {
             return getGraphvizNodeFromNode(transitionState);
         }
@@ -351,6 +629,10 @@ public class GraphvizImageGenerator implements GraphImageGenerator {
             Conditional node = (Conditional) transitionState;
             Label label = Label.html(node.graphName());
             return node(sanitizeNodeName(transitionState.graphName())).with(label,Shape.DIAMOND, Font.size(10));
+        } else if (transitionState instanceof CollapsedState) {
+            CollapsedState group = (CollapsedState) transitionState;
+            Label label = Label.html("<b>" + group.name() + "</b><br/><font point-size=\"9\">" + group.members().size() + " nodes</font>");
+            return node(sanitizeNodeName(group.graphName())).with(label, Shape.BOX_3D);
         }
         return node(sanitizeNodeName(transitionState.graphName()));
     }
@@ -0,0 +1,127 @@
+package io.github.czelabueno.jai.workflow.graph.text;
+
+import io.github.czelabueno.jai.workflow.WorkflowStateName;
+import io.github.czelabueno.jai.workflow.graph.StyleAttribute;
+import io.github.czelabueno.jai.workflow.graph.graphviz.Orientation;
+import io.github.czelabueno.jai.workflow.node.Conditional;
+import io.github.czelabueno.jai.workflow.transition.ComputedTransition;
+import io.github.czelabueno.jai.workflow.transition.Transition;
+import io.github.czelabueno.jai.workflow.transition.TransitionState;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Single pass export of the transitions: each state is declared before its first edge, and the computed transitions
+ * are indexed up front so that highlighting a state or an edge is a hash lookup.
+ */
+abstract class AbstractGraphTextExporter implements GraphTextExporter {
+
+    /**
+     * How a state or an edge is highlighted.
+     */
+    enum Status {
+        /** No run is highlighted. */
+        DEFINED,
+        /** Computed by the run. */
+        EXECUTED,
+        /** Not computed by the run. */
+        SKIPPED
+    }
+
+    @Override
+    public void export(List<Transition> transitions, List<ComputedTransition> computedTransitions, Writer writer, StyleAttribute... styles) throws IOException {
+        if (transitions == null || transitions.isEmpty()) {
+            throw new IllegalArgumentException("Transitions list can not be null or empty. Cannot export graph.");
+        }
+        boolean computed = computedTransitions != null && !computedTransitions.isEmpty();
+        Map<Transition, Integer> executions = new HashMap<>();
+        Set<TransitionState> executedStates = new HashSet<>();
+        if (computed) {
+            for (ComputedTransition computedTransition : computedTransitions) {
+                Transition transition = computedTransition.getTransition();
+                executions.merge(transition, 1, Integer::sum);
+                executedStates.add(transition.from());
+                executedStates.add(transition.to());
+            }
+        }
+        boolean horizontal = false;
+        if (styles != null) {
+            for (StyleAttribute style : styles) {
+                horizontal |= style == Orientation.HORIZONTAL;
+            }
+        }
+
+        writeHeader(writer, horizontal, computed);
+        Map<TransitionState, String> ids = new HashMap<>();
+        List<Status> edges = new ArrayList<>(transitions.size());
+        for (Transition transition : transitions) {
+            String from = declare(writer, ids, transition.from(), status(computed, executedStates.contains(transition.from())));
+            String to = declare(writer, ids, transition.to(), status(computed, executedStates.contains(transition.to())));
+            // the runs do not compute the transitions from START, which are taken by every run
+            int count = executions.getOrDefault(transition, 0);
+            Status status = status(computed, transition.from() == WorkflowStateName.START || count > 0);
+            writeEdge(writer, from, to, transition.from() instanceof Conditional, status, count);
+            edges.add(status);
+        }
+        writeFooter(writer, edges);
+    }
+
+    private String declare(Writer writer, Map<TransitionState, String> ids, TransitionState state, Status status) throws IOException {
+        String id = ids.get(state);
+        if (id == null) {
+            id = nodeId(state, ids.size());
+            ids.put(state, id);
+            writeNode(writer, id, state, status);
+        }
+        return id;
+    }
+
+    private static Status status(boolean computed, boolean executed) {
+        if (!computed) {
+            return Status.DEFINED;
+        }
+        return executed ? Status.EXECUTED : Status.SKIPPED;
+    }
+
+    /**
+     * Returns the id of a state in the graph source.
+     *
+     * @param state the state
+     * @param index the number of states declared before it
+     * @return the id of the state, unique in the graph
+     */
+    abstract String nodeId(TransitionState state, int index);
+
+    abstract void writeHeader(Writer writer, boolean horizontal, boolean computed) throws IOException;
+
+    abstract void writeNode(Writer writer, String id, TransitionState state, Status status) throws IOException;
+
+    /**
+     * Writes an edge between two declared states.
+     *
+     * @param writer      the writer of the graph source
+     * @param from        the id of the source state
+     * @param to          the id of the target state
+     * @param conditional true if the source state is a conditional
+     * @param status      the status of the edge
+     * @param executions  the number of times the run computed the edge
+     * @throws IOException if the writer fails
+     */
+    abstract void writeEdge(Writer writer, String from, String to, boolean conditional, Status status, int executions) throws IOException;
+
+    /**
+     * Ends the graph source.
+     *
+     * @param writer the writer of the graph source
+     * @param edges  the status of the edges, in the order they were written
+     * @throws IOException if the writer fails
+     */
+    abstract void writeFooter(Writer writer, List<Status> edges) throws IOException;
+}
@@ -0,0 +1,141 @@
+package io.github.czelabueno.jai.workflow.graph.text;
+
+import io.github.czelabueno.jai.workflow.WorkflowStateName;
+import io.github.czelabueno.jai.workflow.node.Conditional;
+import io.github.czelabueno.jai.workflow.node.Node;
+import io.github.czelabueno.jai.workflow.transition.TransitionState;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.util.List;
+
+/**
+ * Exports workflow transitions as a <a href="https://graphviz.org/doc/info/lang.html">DOT</a> graph, styled like the
+ * images of {@link io.github.czelabueno.jai.workflow.graph.graphviz.GraphvizImageGenerator}, to be rendered by any
+ * Graphviz build or viewer.
+ * <pre>{@code
+ * digraph workflow {
+ *   "_start_" [shape=Mdiamond, color=orange, fillcolor="#fff0d4", style=filled];
+ *   "retrieve";
+ *   "_start_" -> "retrieve";
+ *   ...
+ * }
+ * }</pre>
+ */
+public final class DotExporter extends AbstractGraphTextExporter {
+
+    private static final String EXECUTED_COLOR = "#28a746";
+    private static final String EXECUTED_FILL = "#5b9a77";
+    private static final String SKIPPED_COLOR = "#9da5ab";
+    private static final String SKIPPED_FILL = "#6c757d";
+    private static final double MAX_PEN_WIDTH = 5;
+
+    @Override
+    String nodeId(TransitionState state, int index) {
+        return quote(state.graphName());
+    }
+
+    @Override
+    void writeHeader(Writer writer, boolean horizontal, boolean computed) throws IOException {
+        writer.write("digraph workflow {\n");
+        writer.write("  rankdir=" + (horizontal ? "LR" : "TB") + ";\n");
+        writer.write("  splines=polyline;\n");
+        writer.write("  node [shape=rectangle, color=lightblue2, style=rounded, fontname=arial];\n");
+        writer.write("  edge [color=darkgreen, arrowsize=0.8];\n");
+    }
+
+    @Override
+    void writeNode(Writer writer, String id, TransitionState state, Status status) throws IOException {
+        writer.write("  ");
+        writer.write(id);
+        StringBuilder attributes = new StringBuilder();
+        if (state == WorkflowStateName.START) {
+            attributes.append("shape=Mdiamond, color=orange, fillcolor=\"#fff0d4\", style=filled");
+        } else if (state == WorkflowStateName.END) {
+            attributes.append("shape=Msquare, color=green, fillcolor=\"#d9ffd4\", style=filled");
+        } else {
+            if (state instanceof Conditional) {
+                attributes.append("shape=diamond, fontsize=10");
+            }
+            if (state instanceof Node<?, ?> node) {
+                List<String> labels = node.labels();
+                if (labels != null && !labels.isEmpty()) {
+                    append(attributes, "label=<" + htmlLabel(labels, node.graphName()) + ">");
+                }
+                if (node.hasLabel("Split") || node.hasLabel("Merge")) {
+                    append(attributes, "color=orange");
+                }
+            }
+            if (status == Status.EXECUTED) {
+                append(attributes, "color=\"" + EXECUTED_COLOR + "\", fillcolor=\"" + EXECUTED_FILL + "\", style=\"rounded,filled\"");
+            } else if (status == Status.SKIPPED) {
+                append(attributes, "color=\"" + SKIPPED_COLOR + "\", fillcolor=\"" + SKIPPED_FILL + "\", style=\"rounded,dashed,filled\"");
+            }
+        }
+        if (!attributes.isEmpty()) {
+            writer.write(" [");
+            writer.write(attributes.toString());
+            writer.write("]");
+        }
+        writer.write(";\n");
+    }
+
+    @Override
+    void writeEdge(Writer writer, String from, String to, boolean conditional, Status status, int executions) throws IOException {
+        writer.write("  ");
+        writer.write(from);
+        writer.write(" -> ");
+        writer.write(to);
+        StringBuilder attributes = new StringBuilder();
+        if (conditional) {
+            attributes.append("style=dashed");
+        }
+        if (executions > 1) {
+            // loops are labelled with their number of executions and widened logarithmically
+            append(attributes, "label=\"" + executions + "x\", penwidth=" + penWidth(executions));
+        } else if (status == Status.EXECUTED) {
+            append(attributes, "penwidth=2");
+        } else if (status == Status.SKIPPED) {
+            append(attributes, "color=\"" + SKIPPED_COLOR + "\"");
+        }
+        if (!attributes.isEmpty()) {
+            writer.write(" [");
+            writer.write(attributes.toString());
+            writer.write("]");
+        }
+        writer.write(";\n");
+    }
+
+    @Override
+    void writeFooter(Writer writer, List<Status> edges) throws IOException {
+        writer.write("}\n");
+    }
+
+    private static void append(StringBuilder attributes, String attribute) {
+        if (!attributes.isEmpty()) {
+            attributes.append(", ");
+        }
+        attributes.append(attribute);
+    }
+
+    private static String penWidth(int executions) {
+        double penWidth = Math.min(MAX_PEN_WIDTH, 1 + Math.log(executions) / Math.log(2));
+        return String.valueOf(Math.round(penWidth * 10) / 10d);
+    }
+
+    private static String htmlLabel(List<String> labels, String name) {
+        StringBuilder label = new StringBuilder();
+        for (String l : labels) {
+            label.append("<b><i>").append(escapeHtml(l.toLowerCase())).append("</i></b><br/>");
+        }
+        return label.append(escapeHtml(name)).toString();
+    }
+
+    private static String quote(String id) {
+        return "\"" + id.replace("\\", "\\\\").replace("\"", "\\\"") + "\"";
+    }
+
+    private static String escapeHtml(String text) {
+        return text.replace("&", "&amp;").replace("<", "&lt;").replace(">", "&gt;").replace("\"", "&quot;");
+    }
+}
@@ -0,0 +1,70 @@
+package io.github.czelabueno.jai.workflow.graph.text;
+
+import io.github.czelabueno.jai.workflow.graph.StyleAttribute;
+import io.github.czelabueno.jai.workflow.transition.ComputedTransition;
+import io.github.czelabueno.jai.workflow.transition.Transition;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.StringWriter;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+
+/**
+ * Interface for exporting workflow transitions as the text source of a graph, such as DOT or Mermaid, rendered by the
+ * clients. Unlike a {@link io.github.czelabueno.jai.workflow.graph.GraphImageGenerator}, an exporter runs no layout
+ * engine and writes the source in a single pass over the transitions.
+ */
+public interface GraphTextExporter {
+
+    /**
+     * Writes the graph source of the given transitions, highlighting the computed ones.
+     *
+     * @param transitions         the definition transitions of the workflow
+     * @param computedTransitions the transitions computed by a run, or null or empty to export the definition only
+     * @param writer              the writer to write the graph source to, which is neither flushed nor closed
+     * @param styles              optional styles to apply to the graph (e.g., orientation)
+     * @throws IOException              if the writer fails
+     * @throws IllegalArgumentException if the transitions are null or empty
+     */
+    void export(List<Transition> transitions, List<ComputedTransition> computedTransitions, Writer writer, StyleAttribute... styles) throws IOException;
+
+    /**
+     * Writes the graph source of the given transitions as UTF-8, highlighting the computed ones.
+     *
+     * @param transitions         the definition transitions of the workflow
+     * @param computedTransitions the transitions computed by a run, or null or empty to export the definition only
+     * @param out                 the stream to write the graph source to, which is flushed but not closed
+     * @param styles              optional styles to apply to the graph (e.g., orientation)
+     * @throws IOException              if the stream fails
+     * @throws IllegalArgumentException if the transitions are null or empty
+     */
+    default void export(List<Transition> transitions, List<ComputedTransition> computedTransitions, OutputStream out, StyleAttribute... styles) throws IOException {
+        Writer writer = new BufferedWriter(new OutputStreamWriter(out, StandardCharsets.UTF_8));
+        export(transitions, computedTransitions, writer, styles);
+        writer.flush();
+    }
+
+    /**
+     * Returns the graph source of the given transitions, highlighting the computed ones.
+     *
+     * @param transitions         the definition transitions of the workflow
+     * @param computedTransitions the transitions computed by a run, or null or empty to export the definition only
+     * @param styles              optional styles to apply to the graph (e.g., orientation)
+     * @return the graph source
+     * @throws IllegalArgumentException if the transitions are null or empty
+     */
+    default String export(List<Transition> transitions, List<ComputedTransition> computedTransitions, StyleAttribute... styles) {
+        StringWriter writer = new StringWriter();
+        try {
+            export(transitions, computedTransitions, writer, styles);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e); // not thrown by a StringWriter
+        }
+        return writer.toString();
+    }
+}
@@ -0,0 +1,113 @@
+package io.github.czelabueno.jai.workflow.graph.text;
+
+import io.github.czelabueno.jai.workflow.WorkflowStateName;
+import io.github.czelabueno.jai.workflow.node.Conditional;
+import io.github.czelabueno.jai.workflow.node.Node;
+import io.github.czelabueno.jai.workflow.transition.TransitionState;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.util.List;
+
+/**
+ * Exports workflow transitions as a <a href="https://mermaid.js.org/syntax/flowchart.html">Mermaid flowchart</a>, to be
+ * rendered in the browser or in Markdown. The states get the ids {@code n0, n1, ...} in order of appearance, since the
+ * graph names may not be valid Mermaid ids.
+ * <pre>{@code
+ * flowchart TD
+ *     n0(["_start_"]):::start
+ *     n1("retrieve")
+ *     n0 --> n1
+ *     ...
+ * }</pre>
+ * The computed transitions are highlighted with the {@code executed} and {@code skipped} classes and link styles.
+ */
+public final class MermaidExporter extends AbstractGraphTextExporter {
+
+    @Override
+    String nodeId(TransitionState state, int index) {
+        return "n" + index;
+    }
+
+    @Override
+    void writeHeader(Writer writer, boolean horizontal, boolean computed) throws IOException {
+        writer.write("flowchart " + (horizontal ? "LR" : "TD") + "\n");
+        writer.write("    classDef start fill:#fff0d4,stroke:orange\n");
+        writer.write("    classDef finish fill:#d9ffd4,stroke:green\n");
+        if (computed) {
+            writer.write("    classDef executed fill:#5b9a77,stroke:#28a746,color:#fff\n");
+            writer.write("    classDef skipped fill:#6c757d,stroke:#9da5ab,stroke-dasharray:5 5,color:#fff\n");
+        }
+    }
+
+    @Override
+    void writeNode(Writer writer, String id, TransitionState state, Status status) throws IOException {
+        writer.write("    ");
+        writer.write(id);
+        String label = "\"" + label(state) + "\"";
+        if (state == WorkflowStateName.START) {
+            writer.write("([" + label + "]):::start");
+        } else if (state == WorkflowStateName.END) {
+            writer.write("[[" + label + "]]:::finish");
+        } else {
+            writer.write(state instanceof Conditional ? "{" + label + "}" : "(" + label + ")");
+            if (status != Status.DEFINED) {
+                writer.write(":::" + status.name().toLowerCase());
+            }
+        }
+        writer.write("\n");
+    }
+
+    @Override
+    void writeEdge(Writer writer, String from, String to, boolean conditional, Status status, int executions) throws IOException {
+        writer.write("    ");
+        writer.write(from);
+        writer.write(conditional ? " -.-> " : " --> ");
+        if (executions > 1) {
+            writer.write("|" + executions + "x| ");
+        }
+        writer.write(to);
+        writer.write("\n");
+    }
+
+    @Override
+    void writeFooter(Writer writer, List<Status> edges) throws IOException {
+        // link styles refer to the edges by their index in the flowchart
+        StringBuilder executedLinks = new StringBuilder();
+        StringBuilder skippedLinks = new StringBuilder();
+        for (int i = 0; i < edges.size(); i++) {
+            if (edges.get(i) == Status.EXECUTED) {
+                appendIndex(executedLinks, i);
+            } else if (edges.get(i) == Status.SKIPPED) {
+                appendIndex(skippedLinks, i);
+            }
+        }
+        if (!executedLinks.isEmpty()) {
+            writer.write("    linkStyle " + executedLinks + " stroke:#28a746,stroke-width:2px\n");
+        }
+        if (!skippedLinks.isEmpty()) {
+            writer.write("    linkStyle " + skippedLinks + " stroke:#9da5ab,stroke-dasharray:5 5\n");
+        }
+    }
+
+    private static void appendIndex(StringBuilder links, int index) {
+        if (!links.isEmpty()) {
+            links.append(',');
+        }
+        links.append(index);
+    }
+
+    private static String label(TransitionState state) {
+        StringBuilder label = new StringBuilder();
+        if (state instanceof Node<?, ?> node && node.labels() != null) {
+            for (String l : node.labels()) {
+                label.append("<i>").append(escape(l.toLowerCase())).append("</i><br/>");
+            }
+        }
+        return label.append(escape(state.graphName())).toString();
+    }
+
+    private static String escape(String text) {
+        return text.replace("&", "#amp;").replace("\"", "#quot;").replace("<", "#lt;").replace(">", "#gt;");
+    }
+}
@@ -6,11 +6,16 @@ import lombok.NonNull;
 
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Map;
 import java.util.Objects;
+import java.util.Set;
 import java.util.function.Function;
 
 import static java.util.Collections.emptyList;
+import static java.util.Collections.unmodifiableSet;
 
 /**
  * Represents a Node in a workflow that executes a function with a given input and produces an output.
@@ -31,6 +36,9 @@ public class Node<T, R> implements TransitionState {
     private List<String> labels;
     private T functionInput;
     private R functionOutput;
+    private volatile Map<String, Object> metadata = Map.of(); // of the last execution
+    private Set<String> reads; // null when the node does not declare the state fields it accesses
+    private Set<String> writes;
 
     /**
      * Constructs a Node with the specified name and function.
@@ -90,6 +98,77 @@ public class Node<T, R> implements TransitionState {
         return labels.contains(label);
     }
 
+    /**
+     * Declares the fields of the stateful bean read by the Node, e.g. the names of its fields or of its
+     * {@link io.github.czelabueno.jai.workflow.state.StateKey channels}.
+     * <p>
+     * In {@link io.github.czelabueno.jai.workflow.ExecutionMode#DATAFLOW} mode, nodes whose declared fields do not
+     * conflict run concurrently. A node declaring neither reads nor writes is assumed to read and write every field.
+     * </p>
+     *
+     * @param fields the names of the fields read by the node
+     * @return this node
+     */
+    public Node<T, R> reads(@NonNull String... fields) {
+        this.reads = addFields(this.reads, fields);
+        if (this.writes == null) {
+            this.writes = new LinkedHashSet<>();
+        }
+        return this;
+    }
+
+    /**
+     * Declares the fields of the stateful bean written by the Node. See {@link #reads(String...)}.
+     *
+     * @param fields the names of the fields written by the node
+     * @return this node
+     */
+    public Node<T, R> writes(@NonNull String... fields) {
+        this.writes = addFields(this.writes, fields);
+        if (this.reads == null) {
+            this.reads = new LinkedHashSet<>();
+        }
+        return this;
+    }
+
+    /**
+     * Returns true if the Node declares the fields of the stateful bean it reads and writes.
+     *
+     * @return true if the accessed fields are declared, false otherwise
+     */
+    public boolean declaresFieldAccess() {
+        return reads != null;
+    }
+
+    /**
+     * Returns the declared fields read by the Node.
+     *
+     * @return the names of the read fields, empty if none is declared
+     */
+    public Set<String> getReads() {
+        return reads != null ? unmodifiableSet(reads) : Set.of();
+    }
+
+    /**
+     * Returns the declared fields written by the Node.
+     *
+     * @return the names of the written fields, empty if none is declared
+     */
+    public Set<String> getWrites() {
+        return writes != null ? unmodifiableSet(writes) : Set.of();
+    }
+
+    private static Set<String> addFields(Set<String> fields, String[] names) {
+        Set<String> result = fields != null ? fields : new LinkedHashSet<>();
+        for (String name : names) {
+            if (name == null || name.trim().isEmpty()) {
+                throw new IllegalArgumentException("Field name cannot be empty");
+            }
+            result.add(name);
+        }
+        return result;
+    }
+
     /**
      * Executes the function with the given input and stores the input and output.
      *
@@ -98,15 +177,45 @@ public class Node<T, R> implements TransitionState {
      * @throws IllegalArgumentException if the input is null
      */
     public R execute(T input) {
+        return execute(input, new LinkedHashMap<>());
+    }
+
+    /**
+     * Executes the function with the given input and stores the input and output, recording the metadata of this
+     * execution in the given map. The map belongs to the execution, so concurrent executions of a node shared by
+     * several workflows do not see each other's metadata.
+     *
+     * @param input             the input to the function
+     * @param executionMetadata the map receiving the metadata of this execution, e.g. timings of a model call
+     * @return the output from the function
+     * @throws IllegalArgumentException if the input is null
+     */
+    public R execute(T input, @NonNull Map<String, Object> executionMetadata) {
         if (input == null) {
             throw new IllegalArgumentException("Function input cannot be null");
         }
         functionInput = input;
-        R output = function.apply(input);
+        R output;
+        try {
+            output = apply(input, executionMetadata);
+        } finally {
+            metadata = Map.copyOf(executionMetadata); // also kept when the execution fails
+        }
         functionOutput = output;
         return output;
     }
 
+    /**
+     * Applies the function of the node to the input. Subclasses may override it to record metadata of the execution.
+     *
+     * @param input             the input to the function
+     * @param executionMetadata the map receiving the metadata of this execution, not shared with other executions
+     * @return the output from the function
+     */
+    protected R apply(T input, Map<String, Object> executionMetadata) {
+        return function.apply(input);
+    }
+
     /**
      * Creates a new Node with the specified name and function.
      *
@@ -175,4 +284,15 @@ public class Node<T, R> implements TransitionState {
     public Object output() {
         return functionOutput;
     }
+
+    /**
+     * Returns the metadata of the last execution of the node. The metadata of each execution of a workflow run is kept
+     * in its {@code ComputedTransition}s, whatever the other executions of the node.
+     *
+     * @return the metadata of the last execution, empty if the node was not executed
+     */
+    @Override
+    public Map<String, Object> metadata() {
+        return metadata;
+    }
 }
@@ -0,0 +1,24 @@
+package io.github.czelabueno.jai.workflow.node;
+
+import java.util.function.Supplier;
+
+/**
+ * Intercepts the execution of every {@link Node} run by a workflow.
+ * <p>
+ * Interceptors are registered on the workflow builder and wrap node executions transparently, e.g. to limit the
+ * concurrency of nodes calling a model or to record timings. Interceptors are applied in registration order, the first
+ * registered being the outermost.
+ * </p>
+ */
+@FunctionalInterface
+public interface NodeInterceptor {
+
+    /**
+     * Intercepts the execution of a node.
+     *
+     * @param node      the node about to be executed
+     * @param execution executes the node and returns its output, it must be called at most once
+     * @return the output of the node, usually the value returned by {@code execution}
+     */
+    Object intercept(Node<?, ?> node, Supplier<?> execution);
+}
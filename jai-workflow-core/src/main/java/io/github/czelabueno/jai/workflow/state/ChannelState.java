@@ -0,0 +1,186 @@
+package io.github.czelabueno.jai.workflow.state;
+
+import lombok.NonNull;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Stateful bean made of typed channels declared up front, an alternative to a mutable POJO when a workflow runs
+ * parallel branches.
+ * <p>
+ * Nodes read and write channels through their {@link StateKey}, each write being combined with the current value by the
+ * reducer of the key. When a {@code DefaultStateWorkflow} whose stateful bean is a ChannelState reaches a split node,
+ * it runs the parallel branches concurrently, each on its own {@link #fork()}, without locking the state. Before the
+ * merge node runs, the writes of the branches are {@link #merge(List) merged} with the reducers in the declaration order
+ * of the branches, so the merged state does not depend on which branch finished first.
+ * </p>
+ * <p>
+ * The values are kept in a {@link PersistentMap}, so forking the state and taking a {@link #snapshot()} cost nothing
+ * and a write copies only the path to the written channel.
+ * </p>
+ * <pre>{@code
+ * ChannelState state = ChannelState.of(QUESTION, DOCUMENTS, SCORE);
+ * Node<ChannelState, ChannelState> webSearch = Node.from("web search",
+ *         s -> s.update(DOCUMENTS, webSearch(s.get(QUESTION))));
+ * }</pre>
+ */
+public final class ChannelState {
+
+    private final Map<String, StateKey<?>> channels;
+    private final AtomicReference<PersistentMap<String, Object>> values; // values by channel name
+    private final ChannelState parent;
+    private final Map<StateKey<?>, Object> branchWrites; // writes of a fork, reduced in write order
+
+    private ChannelState(Map<String, StateKey<?>> channels, PersistentMap<String, Object> values, ChannelState parent) {
+        this.channels = channels;
+        this.values = new AtomicReference<>(values);
+        this.parent = parent;
+        this.branchWrites = parent != null ? new LinkedHashMap<>() : null;
+    }
+
+    /**
+     * Creates a state with the given channels.
+     *
+     * @param channels the channels of the state
+     * @return a new state
+     * @throws IllegalArgumentException if two channels have the same name
+     */
+    public static ChannelState of(@NonNull StateKey<?>... channels) {
+        return of(Arrays.asList(channels));
+    }
+
+    /**
+     * Creates a state with the given channels.
+     *
+     * @param channels the channels of the state
+     * @return a new state
+     * @throws IllegalArgumentException if two channels have the same name
+     */
+    public static ChannelState of(@NonNull Collection<StateKey<?>> channels) {
+        Map<String, StateKey<?>> declared = new LinkedHashMap<>();
+        for (StateKey<?> channel : channels) {
+            if (declared.putIfAbsent(channel.getName(), channel) != null) {
+                throw new IllegalArgumentException("Channel '" + channel.getName() + "' is declared twice");
+            }
+        }
+        return new ChannelState(Collections.unmodifiableMap(declared), PersistentMap.empty(), null);
+    }
+
+    /**
+     * Returns the value of a channel, or its initial value if it was never written.
+     *
+     * @param key the channel
+     * @param <V> the type of the channel value
+     * @return the value of the channel, may be null
+     * @throws IllegalArgumentException if the channel is not declared
+     */
+    @SuppressWarnings("unchecked")
+    public <V> V get(@NonNull StateKey<V> key) {
+        ensureDeclared(key);
+        Object value = values.get().get(key.getName());
+        return value != null ? (V) value : key.initialValue();
+    }
+
+    /**
+     * Writes a value to a channel, combined with the current value by the reducer of the channel.
+     *
+     * @param key   the channel
+     * @param value the written value
+     * @param <V>   the type of the channel value
+     * @return this state, to chain writes or return it from a node function
+     * @throws IllegalArgumentException if the channel is not declared
+     */
+    @SuppressWarnings("unchecked")
+    public <V> ChannelState update(@NonNull StateKey<V> key, @NonNull V value) {
+        ensureDeclared(key);
+        values.updateAndGet(current -> {
+            V currentValue = (V) current.get(key.getName());
+            return current.with(key.getName(), key.reduce(currentValue != null ? currentValue : key.initialValue(), value));
+        });
+        if (branchWrites != null) {
+            branchWrites.compute(key, (k, written) -> key.reduce((V) written, value));
+        }
+        return this;
+    }
+
+    /**
+     * Returns the declared channels, in declaration order.
+     *
+     * @return the channels
+     */
+    public Collection<StateKey<?>> channels() {
+        return channels.values();
+    }
+
+    /**
+     * Creates a branch of this state for a parallel branch. The branch reads the values of this state at fork time
+     * and its own writes; its writes are applied to this state by {@link #merge(List)}.
+     *
+     * @return a new branch state
+     */
+    public ChannelState fork() {
+        return new ChannelState(channels, values.get(), this);
+    }
+
+    /**
+     * Returns a snapshot of the values of the channels, sharing their storage with this state.
+     *
+     * @return the snapshot
+     */
+    public StateSnapshot snapshot() {
+        return StateSnapshot.of(values.get());
+    }
+
+    /**
+     * Applies the writes of the given branches to this state with the reducers of the channels, branch after branch in
+     * the given order.
+     *
+     * @param branches the branches forked from this state
+     * @throws IllegalArgumentException if a branch was not forked from this state
+     */
+    public void merge(@NonNull List<ChannelState> branches) {
+        for (ChannelState branch : branches) {
+            if (branch.parent != this) {
+                throw new IllegalArgumentException("Only branches forked from this state can be merged");
+            }
+        }
+        for (ChannelState branch : branches) {
+            branch.branchWrites.forEach((key, value) -> updateUnchecked(key, value));
+        }
+    }
+
+    /**
+     * Returns the values of the channels by name, in declaration order.
+     *
+     * @return an unmodifiable snapshot of the values
+     */
+    public Map<String, Object> toMap() {
+        Map<String, Object> snapshot = new LinkedHashMap<>();
+        channels.values().forEach(key -> snapshot.put(key.getName(), get(key)));
+        return Collections.unmodifiableMap(snapshot);
+    }
+
+    @SuppressWarnings("unchecked")
+    private <V> void updateUnchecked(StateKey<V> key, Object value) {
+        update(key, (V) value);
+    }
+
+    private void ensureDeclared(StateKey<?> key) {
+        if (channels.get(key.getName()) != key) {
+            throw new IllegalArgumentException("Channel '" + key.getName() + "' is not declared in the state, declared channels: "
+                    + new ArrayList<>(channels.keySet()));
+        }
+    }
+
+    @Override
+    public String toString() {
+        return "ChannelState" + toMap();
+    }
+}
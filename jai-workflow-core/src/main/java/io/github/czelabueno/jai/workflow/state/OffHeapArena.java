@@ -0,0 +1,274 @@
+package io.github.czelabueno.jai.workflow.state;
+
+import lombok.NonNull;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Stores the large payloads of a run, e.g. retrieved documents, outside of the Java heap so that they do not load the
+ * old generation, and releases them all at once at the end of the run.
+ * <p>
+ * Payloads are copied to direct buffers, or to memory-mapped scratch files from the
+ * {@link OffHeapArenaBuilder#mappedFileThreshold(int) mapped file threshold}. Scratch files are deleted as soon as they
+ * are mapped, so they never outlive the process. The arena accounts for the off-heap bytes it holds and fails the
+ * allocations above its budget. It is thread-safe, so the parallel branches of a run can share it.
+ * </p>
+ * <pre>{@code
+ * Node<MyStatefulBean, MyStatefulBean> retrieve = Node.from("retrieve", bean -> {
+ *     bean.setDocuments(bean.offHeapArena().storeText(retriever.retrieve(bean.getQuestion())));
+ *     return bean;
+ * });
+ * }</pre>
+ */
+public class OffHeapArena implements AutoCloseable {
+
+    private static final AtomicLong TOTAL_ALLOCATED_BYTES = new AtomicLong();
+
+    private final long maxBytes;
+    private final int mappedFileThreshold;
+    private final Path scratchDirectory;
+
+    private final Set<OffHeapValue> liveValues = ConcurrentHashMap.newKeySet();
+    private final AtomicLong allocatedBytes = new AtomicLong();
+    private final AtomicLong peakBytes = new AtomicLong();
+    private final AtomicLong storedBytes = new AtomicLong();
+    private final AtomicBoolean closed = new AtomicBoolean();
+
+    private OffHeapArena(OffHeapArenaBuilder builder) {
+        if (builder.maxBytes <= 0) {
+            throw new IllegalArgumentException("maxBytes must be greater than zero");
+        }
+        if (builder.mappedFileThreshold <= 0) {
+            throw new IllegalArgumentException("mappedFileThreshold must be greater than zero");
+        }
+        this.maxBytes = builder.maxBytes;
+        this.mappedFileThreshold = builder.mappedFileThreshold;
+        this.scratchDirectory = builder.scratchDirectory != null
+                ? builder.scratchDirectory
+                : Paths.get(System.getProperty("java.io.tmpdir"));
+    }
+
+    /**
+     * Returns a new builder instance for creating an {@link OffHeapArena}.
+     *
+     * @return a new {@link OffHeapArenaBuilder} instance
+     */
+    public static OffHeapArenaBuilder builder() {
+        return new OffHeapArenaBuilder();
+    }
+
+    /**
+     * Returns the off-heap bytes held by all the arenas of the process.
+     *
+     * @return the allocated bytes of all arenas
+     */
+    public static long totalAllocatedBytes() {
+        return TOTAL_ALLOCATED_BYTES.get();
+    }
+
+    /**
+     * Copies a payload off-heap.
+     *
+     * @param bytes the payload
+     * @return the off-heap value
+     * @throws IllegalStateException if the arena is closed or the payload exceeds the budget
+     */
+    public OffHeapValue store(@NonNull byte[] bytes) {
+        return store(ByteBuffer.wrap(bytes));
+    }
+
+    /**
+     * Copies the remaining bytes of a buffer off-heap, without changing its position.
+     *
+     * @param bytes the payload
+     * @return the off-heap value
+     * @throws IllegalStateException if the arena is closed or the payload exceeds the budget
+     */
+    public OffHeapValue store(@NonNull ByteBuffer bytes) {
+        if (closed.get()) {
+            throw new IllegalStateException("The off-heap arena is closed");
+        }
+        int size = bytes.remaining();
+        reserve(size);
+        try {
+            boolean mapped = size >= mappedFileThreshold;
+            ByteBuffer buffer = mapped ? mapScratchFile(size) : ByteBuffer.allocateDirect(size);
+            buffer.put(bytes.duplicate()).flip();
+            OffHeapValue value = new OffHeapValue(this, buffer, mapped);
+            liveValues.add(value);
+            storedBytes.addAndGet(size);
+            return value;
+        } catch (RuntimeException | OutOfMemoryError e) {
+            unreserve(size);
+            throw e;
+        }
+    }
+
+    /**
+     * Copies a text off-heap, encoded as UTF-8.
+     *
+     * @param text the payload
+     * @return the off-heap value, read back with {@link OffHeapValue#text()}
+     * @throws IllegalStateException if the arena is closed or the payload exceeds the budget
+     */
+    public OffHeapValue storeText(@NonNull String text) {
+        return store(text.getBytes(StandardCharsets.UTF_8));
+    }
+
+    /**
+     * Returns the off-heap bytes currently held by the arena.
+     *
+     * @return the allocated bytes
+     */
+    public long allocatedBytes() {
+        return allocatedBytes.get();
+    }
+
+    /**
+     * Returns the highest number of off-heap bytes held by the arena since the last {@link #release()}.
+     *
+     * @return the peak allocated bytes
+     */
+    public long peakBytes() {
+        return peakBytes.get();
+    }
+
+    /**
+     * Returns the number of bytes stored since the last {@link #release()}, including the payloads already released.
+     *
+     * @return the stored bytes
+     */
+    public long storedBytes() {
+        return storedBytes.get();
+    }
+
+    /**
+     * Returns the number of payloads held by the arena.
+     *
+     * @return the number of live values
+     */
+    public int liveValues() {
+        return liveValues.size();
+    }
+
+    /**
+     * Releases all the payloads of the arena and resets its accounting, typically at the end of a run.
+     * The arena can store new payloads afterwards.
+     */
+    public void release() {
+        for (OffHeapValue value : liveValues) {
+            value.release();
+        }
+        peakBytes.set(allocatedBytes.get());
+        storedBytes.set(0);
+    }
+
+    /**
+     * Releases all the payloads of the arena; no payload can be stored afterwards.
+     */
+    @Override
+    public void close() {
+        closed.set(true);
+        release();
+    }
+
+    void onRelease(OffHeapValue value) {
+        if (liveValues.remove(value)) {
+            unreserve(value.size());
+        }
+    }
+
+    private void reserve(int size) {
+        long allocated = allocatedBytes.accumulateAndGet(size, Long::sum);
+        if (allocated > maxBytes) {
+            allocatedBytes.addAndGet(-size);
+            throw new IllegalStateException("The off-heap arena budget of " + maxBytes + " bytes cannot hold " + size
+                    + " more bytes, " + (allocated - size) + " bytes are allocated");
+        }
+        TOTAL_ALLOCATED_BYTES.addAndGet(size);
+        peakBytes.accumulateAndGet(allocated, Math::max);
+    }
+
+    private void unreserve(int size) {
+        allocatedBytes.addAndGet(-size);
+        TOTAL_ALLOCATED_BYTES.addAndGet(-size);
+    }
+
+    private MappedByteBuffer mapScratchFile(int size) {
+        try {
+            Path scratchFile = Files.createTempFile(scratchDirectory, "jai-workflow-", ".offheap");
+            // the file is deleted when the channel is closed, the mapping stays valid until released
+            try (FileChannel channel = FileChannel.open(scratchFile, StandardOpenOption.READ, StandardOpenOption.WRITE,
+                    StandardOpenOption.DELETE_ON_CLOSE)) {
+                return channel.map(FileChannel.MapMode.READ_WRITE, 0, size);
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException("Cannot map an off-heap scratch file in " + scratchDirectory, e);
+        }
+    }
+
+    /**
+     * Builder class for {@link OffHeapArena}.
+     */
+    public static class OffHeapArenaBuilder {
+        private long maxBytes = Long.MAX_VALUE;
+        private int mappedFileThreshold = 16 * 1024 * 1024;
+        private Path scratchDirectory;
+
+        /**
+         * Sets the maximum number of off-heap bytes held by the arena. Unlimited by default.
+         *
+         * @param maxBytes the off-heap budget in bytes
+         * @return the current {@link OffHeapArenaBuilder} instance
+         */
+        public OffHeapArenaBuilder maxBytes(long maxBytes) {
+            this.maxBytes = maxBytes;
+            return this;
+        }
+
+        /**
+         * Sets the size from which payloads are stored in memory-mapped scratch files rather than direct buffers.
+         * Defaults to 16 MB.
+         *
+         * @param mappedFileThreshold the threshold in bytes
+         * @return the current {@link OffHeapArenaBuilder} instance
+         */
+        public OffHeapArenaBuilder mappedFileThreshold(int mappedFileThreshold) {
+            this.mappedFileThreshold = mappedFileThreshold;
+            return this;
+        }
+
+        /**
+         * Sets the directory of the scratch files. Defaults to {@code java.io.tmpdir}.
+         *
+         * @param scratchDirectory the scratch directory
+         * @return the current {@link OffHeapArenaBuilder} instance
+         */
+        public OffHeapArenaBuilder scratchDirectory(Path scratchDirectory) {
+            this.scratchDirectory = scratchDirectory;
+            return this;
+        }
+
+        /**
+         * Builds and returns a new {@link OffHeapArena} instance.
+         *
+         * @return a new {@link OffHeapArena} instance
+         */
+        public OffHeapArena build() {
+            return new OffHeapArena(this);
+        }
+    }
+}
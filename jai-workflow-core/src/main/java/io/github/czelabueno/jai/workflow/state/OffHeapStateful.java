@@ -0,0 +1,15 @@
+package io.github.czelabueno.jai.workflow.state;
+
+/**
+ * Stateful bean storing its large payloads in an {@link OffHeapArena}.
+ * A {@code DefaultStateWorkflow} built with {@code releaseOffHeapAtRunEnd(true)} releases the arena when a run ends.
+ */
+public interface OffHeapStateful {
+
+    /**
+     * Returns the arena of the payloads of the current run.
+     *
+     * @return the off-heap arena
+     */
+    OffHeapArena offHeapArena();
+}
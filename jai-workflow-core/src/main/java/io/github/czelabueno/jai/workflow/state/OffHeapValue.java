@@ -0,0 +1,180 @@
+package io.github.czelabueno.jai.workflow.state;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.lang.reflect.Field;
+import java.lang.reflect.Method;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * A payload stored outside of the Java heap by an {@link OffHeapArena}, in a direct buffer or a memory-mapped scratch
+ * file.
+ * <p>
+ * The payload is only readable through copies, so that no buffer outlives its release: once {@link #release()} is
+ * called, directly or through the arena, the memory is freed and any read throws an {@link IllegalStateException}.
+ * </p>
+ */
+public final class OffHeapValue {
+
+    private static final Cleaner CLEANER = Cleaner.create();
+
+    private final OffHeapArena arena;
+    private final int size;
+    private final boolean mapped;
+    private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+    private ByteBuffer buffer;
+
+    OffHeapValue(OffHeapArena arena, ByteBuffer buffer, boolean mapped) {
+        this.arena = arena;
+        this.buffer = buffer;
+        this.size = buffer.capacity();
+        this.mapped = mapped;
+    }
+
+    /**
+     * Returns the size of the payload in bytes.
+     *
+     * @return the size in bytes
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Returns true if the payload is stored in a memory-mapped scratch file rather than a direct buffer.
+     *
+     * @return true if the payload is memory-mapped
+     */
+    public boolean isMapped() {
+        return mapped;
+    }
+
+    /**
+     * Returns true if the payload was released.
+     *
+     * @return true if the payload was released
+     */
+    public boolean isReleased() {
+        lock.readLock().lock();
+        try {
+            return buffer == null;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Copies the payload to the heap.
+     *
+     * @return a copy of the payload
+     * @throws IllegalStateException if the payload was released
+     */
+    public byte[] toByteArray() {
+        lock.readLock().lock();
+        try {
+            byte[] copy = new byte[size];
+            readableBuffer().get(copy);
+            return copy;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Decodes the payload as UTF-8 text.
+     *
+     * @return the text
+     * @throws IllegalStateException if the payload was released
+     */
+    public String text() {
+        return new String(toByteArray(), StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Writes the payload to a stream without copying it to the heap as a whole.
+     *
+     * @param out the output stream
+     * @throws IOException           if the stream cannot be written
+     * @throws IllegalStateException if the payload was released
+     */
+    public void writeTo(OutputStream out) throws IOException {
+        lock.readLock().lock();
+        try {
+            ByteBuffer source = readableBuffer();
+            byte[] chunk = new byte[Math.min(size, 8192)];
+            while (source.hasRemaining()) {
+                int length = Math.min(chunk.length, source.remaining());
+                source.get(chunk, 0, length);
+                out.write(chunk, 0, length);
+            }
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Frees the memory of the payload. Releasing a released payload does nothing.
+     */
+    public void release() {
+        ByteBuffer released;
+        lock.writeLock().lock();
+        try {
+            if (buffer == null) {
+                return;
+            }
+            released = buffer;
+            buffer = null;
+        } finally {
+            lock.writeLock().unlock();
+        }
+        CLEANER.free(released);
+        arena.onRelease(this);
+    }
+
+    private ByteBuffer readableBuffer() {
+        if (buffer == null) {
+            throw new IllegalStateException("The off-heap value was released");
+        }
+        return buffer.duplicate().rewind();
+    }
+
+    @Override
+    public String toString() {
+        return "OffHeapValue{" +
+                "size=" + size +
+                ", mapped=" + mapped +
+                ", released=" + isReleased() +
+                '}';
+    }
+
+    /**
+     * Frees direct and mapped buffers eagerly with {@code sun.misc.Unsafe#invokeCleaner} when the runtime allows it,
+     * otherwise leaves them to the garbage collector.
+     */
+    private record Cleaner(Object unsafe, Method invokeCleaner) {
+
+        static Cleaner create() {
+            try {
+                Class<?> unsafeClass = Class.forName("sun.misc.Unsafe");
+                Field theUnsafe = unsafeClass.getDeclaredField("theUnsafe");
+                theUnsafe.setAccessible(true);
+                return new Cleaner(theUnsafe.get(null), unsafeClass.getMethod("invokeCleaner", ByteBuffer.class));
+            } catch (ReflectiveOperationException | RuntimeException e) {
+                return new Cleaner(null, null);
+            }
+        }
+
+        void free(ByteBuffer buffer) {
+            if (invokeCleaner == null) {
+                return;
+            }
+            try {
+                invokeCleaner.invoke(unsafe, buffer);
+            } catch (ReflectiveOperationException | RuntimeException e) {
+                // the buffer is freed by the garbage collector
+            }
+        }
+    }
+}
@@ -0,0 +1,485 @@
+package io.github.czelabueno.jai.workflow.state;
+
+import lombok.NonNull;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.function.BiConsumer;
+
+/**
+ * Immutable hash map sharing its structure with the maps it was derived from, implemented as a hash array mapped trie.
+ * <p>
+ * {@link #with(Object, Object)} and {@link #without(Object)} return a new map copying only the path from the root to
+ * the changed entry, at most 7 nodes of up to 32 entries whatever the size of the map, the other nodes being shared
+ * with this map. {@link #diff(PersistentMap, DiffVisitor)} skips the shared nodes, so comparing two versions of a map
+ * costs in proportion to their differences. Keys and values cannot be null.
+ * </p>
+ *
+ * @param <K> the type of the keys
+ * @param <V> the type of the values
+ */
+public final class PersistentMap<K, V> {
+
+    private static final PersistentMap<?, ?> EMPTY = new PersistentMap<>(BitmapNode.EMPTY, 0);
+    private static final int BITS = 5;
+    private static final int MASK = (1 << BITS) - 1;
+
+    private final TrieNode root;
+    private final int size;
+
+    private PersistentMap(TrieNode root, int size) {
+        this.root = root;
+        this.size = size;
+    }
+
+    /**
+     * Returns the empty map.
+     *
+     * @param <K> the type of the keys
+     * @param <V> the type of the values
+     * @return the empty map
+     */
+    @SuppressWarnings("unchecked")
+    public static <K, V> PersistentMap<K, V> empty() {
+        return (PersistentMap<K, V>) EMPTY;
+    }
+
+    /**
+     * Returns a map with the entries of the given map.
+     *
+     * @param map the entries
+     * @param <K> the type of the keys
+     * @param <V> the type of the values
+     * @return a new persistent map
+     */
+    public static <K, V> PersistentMap<K, V> copyOf(@NonNull Map<? extends K, ? extends V> map) {
+        PersistentMap<K, V> copy = empty();
+        for (Map.Entry<? extends K, ? extends V> entry : map.entrySet()) {
+            copy = copy.with(entry.getKey(), entry.getValue());
+        }
+        return copy;
+    }
+
+    /**
+     * Returns the value of a key.
+     *
+     * @param key the key
+     * @return the value, or null if the map does not contain the key
+     */
+    @SuppressWarnings("unchecked")
+    public V get(@NonNull Object key) {
+        return (V) root.find(0, hash(key), key);
+    }
+
+    /**
+     * Returns true if the map contains the key.
+     *
+     * @param key the key
+     * @return true if the map contains the key
+     */
+    public boolean containsKey(@NonNull Object key) {
+        return get(key) != null;
+    }
+
+    /**
+     * Returns a map with the given entry added or replaced.
+     *
+     * @param key   the key
+     * @param value the value
+     * @return a new map, or this map if it already maps the key to the same value instance
+     */
+    public PersistentMap<K, V> with(@NonNull K key, @NonNull V value) {
+        boolean[] added = new boolean[1];
+        TrieNode newRoot = root.assoc(0, hash(key), key, value, added);
+        if (newRoot == root) {
+            return this;
+        }
+        return new PersistentMap<>(newRoot, added[0] ? size + 1 : size);
+    }
+
+    /**
+     * Returns a map without the given key.
+     *
+     * @param key the key
+     * @return a new map, or this map if it does not contain the key
+     */
+    public PersistentMap<K, V> without(@NonNull Object key) {
+        TrieNode newRoot = root.without(0, hash(key), key);
+        if (newRoot == root) {
+            return this;
+        }
+        return new PersistentMap<>(newRoot != null ? newRoot : BitmapNode.EMPTY, size - 1);
+    }
+
+    /**
+     * Returns the number of entries.
+     *
+     * @return the size of the map
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Returns true if the map has no entry.
+     *
+     * @return true if the map is empty
+     */
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    /**
+     * Calls the action for each entry, in hash order.
+     *
+     * @param action the action
+     */
+    @SuppressWarnings("unchecked")
+    public void forEach(@NonNull BiConsumer<? super K, ? super V> action) {
+        root.forEach((key, value) -> action.accept((K) key, (V) value));
+    }
+
+    /**
+     * Returns a copy of the entries as a mutable {@link Map}.
+     *
+     * @return a new map
+     */
+    public Map<K, V> toMap() {
+        Map<K, V> map = new LinkedHashMap<>();
+        forEach(map::put);
+        return map;
+    }
+
+    /**
+     * Reports the entries added, removed or changed in a newer version of this map, skipping the nodes both maps share.
+     * Values are compared with {@link Objects#equals(Object, Object)}.
+     *
+     * @param newer   the newer version of the map
+     * @param visitor receives each difference, with a null before value for an added entry and a null after value for
+     *                a removed entry
+     */
+    @SuppressWarnings("unchecked")
+    public void diff(@NonNull PersistentMap<K, V> newer, @NonNull DiffVisitor<? super K, ? super V> visitor) {
+        diffNodes(root, newer.root, (key, before, after) -> visitor.changed((K) key, (V) before, (V) after));
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (!(o instanceof PersistentMap<?, ?> that)) return false;
+        if (size != that.size) return false;
+        boolean[] equal = {true};
+        diffNodes(root, that.root, (key, before, after) -> equal[0] = false);
+        return equal[0];
+    }
+
+    @Override
+    public int hashCode() {
+        int[] hash = {0};
+        root.forEach((key, value) -> hash[0] += key.hashCode() ^ value.hashCode());
+        return hash[0];
+    }
+
+    @Override
+    public String toString() {
+        return toMap().toString();
+    }
+
+    /**
+     * Receives the differences between two versions of a {@link PersistentMap}.
+     *
+     * @param <K> the type of the keys
+     * @param <V> the type of the values
+     */
+    @FunctionalInterface
+    public interface DiffVisitor<K, V> {
+
+        /**
+         * Called for an entry that differs between the two versions.
+         *
+         * @param key    the key of the entry
+         * @param before the value in the older version, null if the entry was added
+         * @param after  the value in the newer version, null if the entry was removed
+         */
+        void changed(K key, V before, V after);
+    }
+
+    private static int hash(Object key) {
+        int h = key.hashCode();
+        return h ^ (h >>> 16);
+    }
+
+    private static void diffNodes(TrieNode older, TrieNode newer, DiffVisitor<Object, Object> visitor) {
+        if (older == newer) {
+            return; // shared structure
+        }
+        if (older instanceof BitmapNode olderNode && newer instanceof BitmapNode newerNode) {
+            int bits = olderNode.bitmap | newerNode.bitmap;
+            while (bits != 0) {
+                int bit = Integer.lowestOneBit(bits);
+                bits &= ~bit;
+                Object olderKey = olderNode.slotKey(bit);
+                Object olderValue = olderNode.slotValue(bit);
+                Object newerKey = newerNode.slotKey(bit);
+                Object newerValue = newerNode.slotValue(bit);
+                if (olderKey == newerKey && olderValue == newerValue) {
+                    continue;
+                }
+                if (olderKey == null && newerKey == null && olderValue instanceof TrieNode olderChild && newerValue instanceof TrieNode newerChild) {
+                    diffNodes(olderChild, newerChild, visitor);
+                } else {
+                    diffEntries(entriesOf(olderKey, olderValue), entriesOf(newerKey, newerValue), visitor);
+                }
+            }
+        } else {
+            diffEntries(entriesOf(null, older), entriesOf(null, newer), visitor);
+        }
+    }
+
+    private static Map<Object, Object> entriesOf(Object key, Object valueOrNode) {
+        if (key != null) {
+            return Map.of(key, valueOrNode);
+        }
+        if (valueOrNode == null) {
+            return Collections.emptyMap();
+        }
+        Map<Object, Object> entries = new LinkedHashMap<>();
+        ((TrieNode) valueOrNode).forEach(entries::put);
+        return entries;
+    }
+
+    private static void diffEntries(Map<Object, Object> older, Map<Object, Object> newer, DiffVisitor<Object, Object> visitor) {
+        Set<Object> keys = new LinkedHashSet<>(older.keySet());
+        keys.addAll(newer.keySet());
+        for (Object key : keys) {
+            Object before = older.get(key);
+            Object after = newer.get(key);
+            if (!Objects.equals(before, after)) {
+                visitor.changed(key, before, after);
+            }
+        }
+    }
+
+    private interface TrieNode {
+
+        Object find(int shift, int hash, Object key);
+
+        TrieNode assoc(int shift, int hash, Object key, Object value, boolean[] added);
+
+        TrieNode without(int shift, int hash, Object key);
+
+        void forEach(BiConsumer<Object, Object> action);
+    }
+
+    /**
+     * Node of up to 32 slots indexed by 5 bits of the hash, each present slot being either a key and its value, or a
+     * null key and a child node.
+     */
+    private static final class BitmapNode implements TrieNode {
+
+        private static final BitmapNode EMPTY = new BitmapNode(0, new Object[0]);
+
+        private final int bitmap;
+        private final Object[] slots;
+
+        private BitmapNode(int bitmap, Object[] slots) {
+            this.bitmap = bitmap;
+            this.slots = slots;
+        }
+
+        private static int bitpos(int shift, int hash) {
+            return 1 << ((hash >>> shift) & MASK);
+        }
+
+        private int index(int bit) {
+            return Integer.bitCount(bitmap & (bit - 1));
+        }
+
+        private Object slotKey(int bit) {
+            return (bitmap & bit) == 0 ? null : slots[2 * index(bit)];
+        }
+
+        private Object slotValue(int bit) {
+            return (bitmap & bit) == 0 ? null : slots[2 * index(bit) + 1];
+        }
+
+        @Override
+        public Object find(int shift, int hash, Object key) {
+            int bit = bitpos(shift, hash);
+            if ((bitmap & bit) == 0) {
+                return null;
+            }
+            int index = index(bit);
+            Object slotKey = slots[2 * index];
+            Object slotValue = slots[2 * index + 1];
+            if (slotKey == null) {
+                return ((TrieNode) slotValue).find(shift + BITS, hash, key);
+            }
+            return key.equals(slotKey) ? slotValue : null;
+        }
+
+        @Override
+        public TrieNode assoc(int shift, int hash, Object key, Object value, boolean[] added) {
+            int bit = bitpos(shift, hash);
+            int index = index(bit);
+            if ((bitmap & bit) == 0) {
+                added[0] = true;
+                Object[] newSlots = new Object[slots.length + 2];
+                System.arraycopy(slots, 0, newSlots, 0, 2 * index);
+                newSlots[2 * index] = key;
+                newSlots[2 * index + 1] = value;
+                System.arraycopy(slots, 2 * index, newSlots, 2 * index + 2, slots.length - 2 * index);
+                return new BitmapNode(bitmap | bit, newSlots);
+            }
+            Object slotKey = slots[2 * index];
+            Object slotValue = slots[2 * index + 1];
+            if (slotKey == null) {
+                TrieNode child = ((TrieNode) slotValue).assoc(shift + BITS, hash, key, value, added);
+                return child == slotValue ? this : withSlot(index, null, child);
+            }
+            if (key.equals(slotKey)) {
+                return value == slotValue ? this : withSlot(index, slotKey, value);
+            }
+            added[0] = true;
+            return withSlot(index, null, createChild(shift + BITS, slotKey, slotValue, hash, key, value));
+        }
+
+        @Override
+        public TrieNode without(int shift, int hash, Object key) {
+            int bit = bitpos(shift, hash);
+            if ((bitmap & bit) == 0) {
+                return this;
+            }
+            int index = index(bit);
+            Object slotKey = slots[2 * index];
+            Object slotValue = slots[2 * index + 1];
+            if (slotKey == null) {
+                TrieNode child = ((TrieNode) slotValue).without(shift + BITS, hash, key);
+                if (child == slotValue) {
+                    return this;
+                }
+                if (child != null) {
+                    return withSlot(index, null, child);
+                }
+                return withoutSlot(bit, index);
+            }
+            return key.equals(slotKey) ? withoutSlot(bit, index) : this;
+        }
+
+        @Override
+        public void forEach(BiConsumer<Object, Object> action) {
+            for (int i = 0; i < slots.length; i += 2) {
+                if (slots[i] == null) {
+                    ((TrieNode) slots[i + 1]).forEach(action);
+                } else {
+                    action.accept(slots[i], slots[i + 1]);
+                }
+            }
+        }
+
+        private BitmapNode withSlot(int index, Object key, Object value) {
+            Object[] newSlots = slots.clone();
+            newSlots[2 * index] = key;
+            newSlots[2 * index + 1] = value;
+            return new BitmapNode(bitmap, newSlots);
+        }
+
+        private BitmapNode withoutSlot(int bit, int index) {
+            if (bitmap == bit) {
+                return null;
+            }
+            Object[] newSlots = new Object[slots.length - 2];
+            System.arraycopy(slots, 0, newSlots, 0, 2 * index);
+            System.arraycopy(slots, 2 * index + 2, newSlots, 2 * index, newSlots.length - 2 * index);
+            return new BitmapNode(bitmap ^ bit, newSlots);
+        }
+
+        private static TrieNode createChild(int shift, Object key1, Object value1, int hash2, Object key2, Object value2) {
+            int hash1 = hash(key1);
+            if (hash1 == hash2) {
+                return new CollisionNode(hash1, new Object[]{key1, value1, key2, value2});
+            }
+            boolean[] added = new boolean[1];
+            return EMPTY.assoc(shift, hash1, key1, value1, added).assoc(shift, hash2, key2, value2, added);
+        }
+    }
+
+    /**
+     * Node of the keys sharing the same full hash.
+     */
+    private static final class CollisionNode implements TrieNode {
+
+        private final int hash;
+        private final Object[] entries;
+
+        private CollisionNode(int hash, Object[] entries) {
+            this.hash = hash;
+            this.entries = entries;
+        }
+
+        private int indexOf(Object key) {
+            for (int i = 0; i < entries.length; i += 2) {
+                if (key.equals(entries[i])) {
+                    return i;
+                }
+            }
+            return -1;
+        }
+
+        @Override
+        public Object find(int shift, int hash, Object key) {
+            int index = indexOf(key);
+            return index < 0 ? null : entries[index + 1];
+        }
+
+        @Override
+        public TrieNode assoc(int shift, int hash, Object key, Object value, boolean[] added) {
+            if (hash != this.hash) {
+                // nest this node in a bitmap node to tell the hashes apart at this level
+                TrieNode parent = new BitmapNode(BitmapNode.bitpos(shift, this.hash), new Object[]{null, this});
+                return parent.assoc(shift, hash, key, value, added);
+            }
+            int index = indexOf(key);
+            if (index >= 0) {
+                if (entries[index + 1] == value) {
+                    return this;
+                }
+                Object[] newEntries = entries.clone();
+                newEntries[index + 1] = value;
+                return new CollisionNode(hash, newEntries);
+            }
+            added[0] = true;
+            Object[] newEntries = Arrays.copyOf(entries, entries.length + 2);
+            newEntries[entries.length] = key;
+            newEntries[entries.length + 1] = value;
+            return new CollisionNode(hash, newEntries);
+        }
+
+        @Override
+        public TrieNode without(int shift, int hash, Object key) {
+            int index = indexOf(key);
+            if (index < 0) {
+                return this;
+            }
+            if (entries.length == 2) {
+                return null;
+            }
+            Object[] newEntries = new Object[entries.length - 2];
+            System.arraycopy(entries, 0, newEntries, 0, index);
+            System.arraycopy(entries, index + 2, newEntries, index, newEntries.length - index);
+            return new CollisionNode(hash, newEntries);
+        }
+
+        @Override
+        public void forEach(BiConsumer<Object, Object> action) {
+            for (int i = 0; i < entries.length; i += 2) {
+                action.accept(entries[i], entries[i + 1]);
+            }
+        }
+    }
+}
@@ -0,0 +1,76 @@
+package io.github.czelabueno.jai.workflow.state;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+
+/**
+ * Combines the current value of a {@link StateKey} channel with a new value written to it.
+ * <p>
+ * A reducer is applied on every write and when the writes of parallel branches are merged, in the declaration order
+ * of the branches. It must not mutate its arguments.
+ * </p>
+ *
+ * @param <V> the type of the channel value
+ */
+@FunctionalInterface
+public interface Reducer<V> {
+
+    /**
+     * Combines the current value with the written one.
+     *
+     * @param current the current value of the channel
+     * @param update  the value written to the channel
+     * @return the new value of the channel
+     */
+    V reduce(V current, V update);
+
+    /**
+     * Returns a reducer keeping the last written value.
+     * When parallel branches write the same channel, the value of the last branch in declaration order wins.
+     *
+     * @param <V> the type of the channel value
+     * @return the overwrite reducer
+     */
+    static <V> Reducer<V> overwrite() {
+        return (current, update) -> update;
+    }
+
+    /**
+     * Returns a reducer appending the written elements to the current list.
+     *
+     * @param <E> the type of the list elements
+     * @return the append reducer
+     */
+    static <E> Reducer<List<E>> append() {
+        return (current, update) -> {
+            List<E> appended = new ArrayList<>(current.size() + update.size());
+            appended.addAll(current);
+            appended.addAll(update);
+            return Collections.unmodifiableList(appended);
+        };
+    }
+
+    /**
+     * Returns a reducer keeping the greatest value.
+     *
+     * @param comparator the comparator of the values
+     * @param <V>        the type of the channel value
+     * @return the max reducer
+     */
+    static <V> Reducer<V> max(Comparator<? super V> comparator) {
+        return (current, update) -> comparator.compare(update, current) > 0 ? update : current;
+    }
+
+    /**
+     * Returns a reducer keeping the smallest value.
+     *
+     * @param comparator the comparator of the values
+     * @param <V>        the type of the channel value
+     * @return the min reducer
+     */
+    static <V> Reducer<V> min(Comparator<? super V> comparator) {
+        return (current, update) -> comparator.compare(update, current) < 0 ? update : current;
+    }
+}
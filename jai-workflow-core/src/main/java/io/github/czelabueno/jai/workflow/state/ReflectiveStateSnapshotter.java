@@ -0,0 +1,65 @@
+package io.github.czelabueno.jai.workflow.state;
+
+import java.lang.reflect.Field;
+import java.lang.reflect.InaccessibleObjectException;
+import java.lang.reflect.Modifier;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Snapshots the non-static, non-transient fields of a bean not annotated with {@link TransientState} and its superclasses, skipping the fields it cannot access.
+ * A field hidden by a subclass field of the same name is skipped.
+ * <p>
+ * Each field is compared by reference with the previous snapshot and only the changed fields are written to the new
+ * snapshot, so a transition that changes no field returns the previous snapshot itself.
+ * </p>
+ */
+final class ReflectiveStateSnapshotter {
+
+    private static final Map<Class<?>, List<Field>> FIELDS = new ConcurrentHashMap<>();
+
+    private ReflectiveStateSnapshotter() {
+    }
+
+    static StateSnapshot snapshot(Object state, StateSnapshot previous) {
+        PersistentMap<String, Object> previousValues = previous.values();
+        PersistentMap<String, Object> values = previousValues;
+        for (Field field : FIELDS.computeIfAbsent(state.getClass(), ReflectiveStateSnapshotter::fieldsOf)) {
+            Object value;
+            try {
+                value = field.get(state);
+            } catch (IllegalAccessException e) {
+                continue;
+            }
+            if (value == previousValues.get(field.getName())) {
+                continue; // unchanged, shared with the previous snapshot
+            }
+            values = value != null ? values.with(field.getName(), value) : values.without(field.getName());
+        }
+        return values == previousValues ? previous : StateSnapshot.of(values);
+    }
+
+    private static List<Field> fieldsOf(Class<?> type) {
+        List<Field> fields = new ArrayList<>();
+        Set<String> names = new HashSet<>();
+        for (Class<?> current = type; current != null && current != Object.class; current = current.getSuperclass()) {
+            for (Field field : current.getDeclaredFields()) {
+                if (Modifier.isStatic(field.getModifiers()) || Modifier.isTransient(field.getModifiers()) || field.isSynthetic()
+                        || field.isAnnotationPresent(TransientState.class) || !names.add(field.getName())) {
+                    continue;
+                }
+                try {
+                    field.setAccessible(true);
+                    fields.add(field);
+                } catch (InaccessibleObjectException | SecurityException e) {
+                    // fields of JDK classes cannot be captured
+                }
+            }
+        }
+        return List.copyOf(fields);
+    }
+}
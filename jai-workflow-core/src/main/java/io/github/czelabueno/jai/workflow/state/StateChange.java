@@ -0,0 +1,11 @@
+package io.github.czelabueno.jai.workflow.state;
+
+/**
+ * A field of the state changed between two {@link StateSnapshot}s.
+ *
+ * @param name   the name of the field or channel
+ * @param before the value before the change, null if the field was not set
+ * @param after  the value after the change, null if the field was unset
+ */
+public record StateChange(String name, Object before, Object after) {
+}
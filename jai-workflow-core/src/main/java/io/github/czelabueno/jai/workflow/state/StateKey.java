@@ -0,0 +1,123 @@
+package io.github.czelabueno.jai.workflow.state;
+
+import lombok.Getter;
+import lombok.NonNull;
+
+import java.util.Comparator;
+import java.util.List;
+
+/**
+ * A typed channel of a {@link ChannelState}, identified by its name and combining the values written to it with a
+ * {@link Reducer}.
+ * <pre>{@code
+ * StateKey<String> QUESTION = StateKey.of("question");
+ * StateKey<List<String>> DOCUMENTS = StateKey.appending("documents");
+ * StateKey<Double> SCORE = StateKey.max("score");
+ * }</pre>
+ *
+ * @param <V> the type of the channel value
+ */
+public final class StateKey<V> {
+
+    @Getter
+    private final String name;
+    private final Reducer<V> reducer;
+    private final V initialValue;
+
+    private StateKey(@NonNull String name, @NonNull Reducer<V> reducer, V initialValue) {
+        if (name.trim().isEmpty()) {
+            throw new IllegalArgumentException("State key name cannot be empty");
+        }
+        this.name = name;
+        this.reducer = reducer;
+        this.initialValue = initialValue;
+    }
+
+    /**
+     * Creates a channel keeping the last written value.
+     *
+     * @param name the name of the channel
+     * @param <V>  the type of the channel value
+     * @return a new state key
+     */
+    public static <V> StateKey<V> of(String name) {
+        return new StateKey<>(name, Reducer.overwrite(), null);
+    }
+
+    /**
+     * Creates a channel combining the written values with the given reducer.
+     *
+     * @param name    the name of the channel
+     * @param reducer the reducer of the written values
+     * @param <V>     the type of the channel value
+     * @return a new state key
+     */
+    public static <V> StateKey<V> of(String name, Reducer<V> reducer) {
+        return new StateKey<>(name, reducer, null);
+    }
+
+    /**
+     * Creates a channel combining the written values with the given reducer, starting from an initial value.
+     *
+     * @param name         the name of the channel
+     * @param reducer      the reducer of the written values
+     * @param initialValue the value of the channel before the first write
+     * @param <V>          the type of the channel value
+     * @return a new state key
+     */
+    public static <V> StateKey<V> of(String name, Reducer<V> reducer, V initialValue) {
+        return new StateKey<>(name, reducer, initialValue);
+    }
+
+    /**
+     * Creates a list channel appending the written elements, initially empty.
+     *
+     * @param name the name of the channel
+     * @param <E>  the type of the list elements
+     * @return a new state key
+     */
+    public static <E> StateKey<List<E>> appending(String name) {
+        return new StateKey<>(name, Reducer.append(), List.of());
+    }
+
+    /**
+     * Creates a channel keeping the greatest written value.
+     *
+     * @param name the name of the channel
+     * @param <V>  the type of the channel value
+     * @return a new state key
+     */
+    public static <V extends Comparable<? super V>> StateKey<V> max(String name) {
+        Comparator<V> naturalOrder = Comparator.naturalOrder();
+        return new StateKey<>(name, Reducer.max(naturalOrder), null);
+    }
+
+    /**
+     * Returns the reducer of the written values.
+     *
+     * @return the reducer
+     */
+    public Reducer<V> reducer() {
+        return reducer;
+    }
+
+    /**
+     * Returns the value of the channel before the first write, may be null.
+     *
+     * @return the initial value
+     */
+    public V initialValue() {
+        return initialValue;
+    }
+
+    V reduce(V current, V update) {
+        return current == null ? update : reducer.reduce(current, update);
+    }
+
+    @Override
+    public String toString() {
+        return "StateKey{" +
+                "name='" + name + '\'' +
+                '}';
+    }
+}
@@ -0,0 +1,113 @@
+package io.github.czelabueno.jai.workflow.state;
+
+import lombok.NonNull;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Immutable view of the fields of a stateful bean at a point of a run, captured by a {@link StateSnapshotter} on each
+ * computed transition.
+ * <p>
+ * Consecutive snapshots of a run share the unchanged fields through a {@link PersistentMap}, so recording a snapshot
+ * costs in proportion to the changed fields and comparing two snapshots with {@link #diff(StateSnapshot)} in proportion
+ * to their differences. The values are the references held by the bean: a value mutated in place after the snapshot
+ * shows up mutated in the snapshot too, so nodes should replace the values they change rather than mutate them.
+ * </p>
+ */
+public final class StateSnapshot {
+
+    private static final StateSnapshot EMPTY = new StateSnapshot(PersistentMap.empty());
+
+    private final PersistentMap<String, Object> values;
+
+    private StateSnapshot(PersistentMap<String, Object> values) {
+        this.values = values;
+    }
+
+    /**
+     * Returns the snapshot without any field.
+     *
+     * @return the empty snapshot
+     */
+    public static StateSnapshot empty() {
+        return EMPTY;
+    }
+
+    /**
+     * Creates a snapshot of the given field values, unset fields being absent.
+     *
+     * @param values the values of the fields by name
+     * @return a new snapshot
+     */
+    public static StateSnapshot of(@NonNull PersistentMap<String, Object> values) {
+        return values.isEmpty() ? EMPTY : new StateSnapshot(values);
+    }
+
+    /**
+     * Returns the value of a field.
+     *
+     * @param name the name of the field
+     * @return the value, or null if the field was not set
+     */
+    public Object get(@NonNull String name) {
+        return values.get(name);
+    }
+
+    /**
+     * Returns the number of set fields.
+     *
+     * @return the number of fields
+     */
+    public int size() {
+        return values.size();
+    }
+
+    /**
+     * Returns the values of the fields.
+     *
+     * @return the persistent map of the values by field name
+     */
+    public PersistentMap<String, Object> values() {
+        return values;
+    }
+
+    /**
+     * Returns a copy of the values of the fields by name.
+     *
+     * @return a new map
+     */
+    public Map<String, Object> toMap() {
+        return values.toMap();
+    }
+
+    /**
+     * Returns the fields changed since a previous snapshot.
+     *
+     * @param previous the previous snapshot
+     * @return the changes, empty if the snapshots are equal
+     */
+    public List<StateChange> diff(@NonNull StateSnapshot previous) {
+        List<StateChange> changes = new ArrayList<>();
+        previous.values.diff(this.values, (name, before, after) -> changes.add(new StateChange(name, before, after)));
+        return changes;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (o == null || getClass() != o.getClass()) return false;
+        return values.equals(((StateSnapshot) o).values);
+    }
+
+    @Override
+    public int hashCode() {
+        return values.hashCode();
+    }
+
+    @Override
+    public String toString() {
+        return "StateSnapshot" + values;
+    }
+}
@@ -0,0 +1,32 @@
+package io.github.czelabueno.jai.workflow.state;
+
+/**
+ * Captures a {@link StateSnapshot} of a stateful bean, reusing the unchanged fields of the previous snapshot of the run.
+ *
+ * @param <T> the type of the stateful bean
+ */
+@FunctionalInterface
+public interface StateSnapshotter<T> {
+
+    /**
+     * Captures a snapshot of the state.
+     *
+     * @param state    the stateful bean
+     * @param previous the previous snapshot of the run, {@link StateSnapshot#empty()} for the first one
+     * @return the snapshot
+     */
+    StateSnapshot snapshot(T state, StateSnapshot previous);
+
+    /**
+     * Returns the default snapshotter: a {@link ChannelState} is captured as is, at no cost since its channels are
+     * already stored in a persistent map, and any other bean field by field through reflection.
+     *
+     * @param <T> the type of the stateful bean
+     * @return the default snapshotter
+     */
+    static <T> StateSnapshotter<T> defaultSnapshotter() {
+        return (state, previous) -> state instanceof ChannelState channelState
+                ? channelState.snapshot()
+                : ReflectiveStateSnapshotter.snapshot(state, previous);
+    }
+}
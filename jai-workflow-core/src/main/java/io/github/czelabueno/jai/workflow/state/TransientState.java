@@ -0,0 +1,18 @@
+package io.github.czelabueno.jai.workflow.state;
+
+import java.lang.annotation.Documented;
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * Excludes a field of a stateful bean from its state: the field is neither captured in the {@link StateSnapshot}s of
+ * the default {@link StateSnapshotter} nor encoded by the {@code BinaryStateCodec}. Unlike the {@code transient}
+ * modifier, it keeps the field in Lombok generated {@code equals} and {@code hashCode}, e.g. for a live stream.
+ */
+@Documented
+@Retention(RetentionPolicy.RUNTIME)
+@Target(ElementType.FIELD)
+public @interface TransientState {
+}
@@ -1,9 +1,11 @@
 package io.github.czelabueno.jai.workflow.transition;
 
+import io.github.czelabueno.jai.workflow.state.StateSnapshot;
 import lombok.Getter;
 import lombok.NonNull;
 
 import java.time.LocalDateTime;
+import java.util.Map;
 import java.util.UUID;
 
 /**
@@ -16,8 +18,11 @@ public class ComputedTransition{
     private final Transition transition;
     private final LocalDateTime computedAt;
     private final Object payload;
+    private final Map<String, Object> metadata;
+    private final StateSnapshot stateSnapshot; // null when the workflow does not capture snapshots
 
-    private ComputedTransition(@NonNull Integer order, @NonNull Transition transition) {
+    private ComputedTransition(@NonNull Integer order, @NonNull Transition transition, StateSnapshot stateSnapshot,
+                               Map<String, Object> metadata) {
         if (transition.from() == null) {
             throw new RuntimeException("Transition node 'from' cannot be null");
         }
@@ -32,6 +37,8 @@ public class ComputedTransition{
         this.transition = transition;
         this.computedAt = LocalDateTime.now();
         this.payload = transition.from().output();
+        this.metadata = Map.copyOf(metadata != null ? metadata : transition.from().metadata());
+        this.stateSnapshot = stateSnapshot;
     }
 
     /**
@@ -42,7 +49,37 @@ public class ComputedTransition{
      * @return a new ComputedTransition instance
      */
     public static ComputedTransition from(@NonNull Integer order, @NonNull Transition transition) {
-        return new ComputedTransition(order, transition);
+        return new ComputedTransition(order, transition, null, null);
+    }
+
+    /**
+     * Creates a new ComputedTransition with the specified order and transition, and the state of the workflow
+     * when the transition was computed.
+     *
+     * @param order the order of the transition
+     * @param transition the transition to compute
+     * @param stateSnapshot the snapshot of the stateful bean after the 'from' node ran
+     * @return a new ComputedTransition instance
+     */
+    public static ComputedTransition from(@NonNull Integer order, @NonNull Transition transition, @NonNull StateSnapshot stateSnapshot) {
+        return new ComputedTransition(order, transition, stateSnapshot, null);
+    }
+
+    /**
+     * Creates a new ComputedTransition with the specified order and transition, the state of the workflow when the
+     * transition was computed and the metadata recorded by the execution of its 'from' state, which may differ from
+     * the metadata of the last execution of a state shared by concurrent runs.
+     *
+     * @param order the order of the transition
+     * @param transition the transition to compute
+     * @param stateSnapshot the snapshot of the stateful bean after the 'from' node ran, or null when the workflow does
+     *                      not capture snapshots
+     * @param metadata the metadata recorded by the execution of the 'from' state
+     * @return a new ComputedTransition instance
+     */
+    public static ComputedTransition from(@NonNull Integer order, @NonNull Transition transition, StateSnapshot stateSnapshot,
+                                          @NonNull Map<String, Object> metadata) {
+        return new ComputedTransition(order, transition, stateSnapshot, metadata);
     }
 
     @Override
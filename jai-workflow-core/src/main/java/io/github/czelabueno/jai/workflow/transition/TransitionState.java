@@ -1,6 +1,7 @@
 package io.github.czelabueno.jai.workflow.transition;
 
 import java.util.List;
+import java.util.Map;
 
 /**
  * Represents a component in the jAI workflow anatomy that can produce a transition and update the workflow state.
@@ -52,4 +53,13 @@ public interface TransitionState{
      * @return the output of the state
      */
     Object output();
+
+    /**
+     * Returns the metadata recorded by the state during its last execution, e.g. timings of a model call.
+     *
+     * @return the metadata of the state, empty by default
+     */
+    default Map<String, Object> metadata() {
+        return Map.of();
+    }
 }
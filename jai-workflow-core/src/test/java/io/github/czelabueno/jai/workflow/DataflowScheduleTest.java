@@ -0,0 +1,224 @@
+package io.github.czelabueno.jai.workflow;
+
+import io.github.czelabueno.jai.workflow.node.Conditional;
+import io.github.czelabueno.jai.workflow.node.Node;
+import io.github.czelabueno.jai.workflow.transition.Transition;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatIllegalArgumentException;
+import static org.assertj.core.api.Assertions.assertThatIllegalStateException;
+
+class DataflowScheduleTest {
+
+    static class RagBean {
+        volatile String question = "What is jAI?";
+        volatile String query;
+        volatile List<String> webDocuments;
+        volatile List<String> vectorDocuments;
+        volatile List<String> documents = new CopyOnWriteArrayList<>();
+        volatile String generation;
+    }
+
+    private final AtomicInteger running = new AtomicInteger();
+    private final AtomicInteger maxRunning = new AtomicInteger();
+
+    @Test
+    void should_derive_stages_and_critical_path_from_declared_fields() {
+        // given
+        Node<RagBean, RagBean> rewrite = node("rewrite", 0, bean -> bean.query = bean.question).reads("question").writes("query");
+        Node<RagBean, RagBean> webSearch = node("web_search", 0, bean -> {}).reads("query").writes("webDocuments");
+        Node<RagBean, RagBean> vectorSearch = node("vector_search", 0, bean -> {}).reads("query").writes("vectorDocuments");
+        Node<RagBean, RagBean> generate = node("generate", 0, bean -> {}).reads("webDocuments", "vectorDocuments").writes("generation");
+        // when
+        DataflowSchedule schedule = DataflowSchedule.derive(List.of(rewrite, webSearch, vectorSearch, generate));
+        // then
+        assertThat(schedule.steps()).extracting(DataflowSchedule.Step::stage).containsExactly(1, 2, 2, 3);
+        assertThat(schedule.steps().get(3).dependsOn()).containsExactly("web_search", "vector_search");
+        assertThat(schedule.stageCount()).isEqualTo(3);
+        assertThat(schedule.maxParallelism()).isEqualTo(2);
+        assertThat(schedule.criticalPath()).containsExactly("rewrite", "web_search", "generate");
+        assertThat(schedule.toString()).isEqualTo("""
+                Dataflow schedule: 4 nodes in 3 stages, up to 2 concurrent nodes
+                  stage 1: rewrite [reads question, writes query]
+                  stage 2: web_search [reads query, writes webDocuments] after rewrite
+                  stage 2: vector_search [reads query, writes vectorDocuments] after rewrite
+                  stage 3: generate [reads webDocuments, vectorDocuments, writes generation] after web_search, vector_search
+                  critical path: rewrite -> web_search -> generate""");
+    }
+
+    @Test
+    void should_serialize_conflicting_and_undeclared_nodes() {
+        // given
+        Node<RagBean, RagBean> first = node("first", 0, bean -> {}).writes("documents");
+        Node<RagBean, RagBean> second = node("second", 0, bean -> {}).writes("documents");
+        Node<RagBean, RagBean> reader = node("reader", 0, bean -> {}).reads("question");
+        Node<RagBean, RagBean> undeclared = node("undeclared", 0, bean -> {});
+        Node<RagBean, RagBean> last = node("last", 0, bean -> {}).reads("question");
+        // when
+        DataflowSchedule schedule = DataflowSchedule.derive(List.of(first, second, reader, undeclared, last));
+        // then - the undeclared node depends on reader and second, and implies the dependency on first
+        assertThat(schedule.steps()).extracting(DataflowSchedule.Step::stage).containsExactly(1, 2, 1, 3, 4);
+        assertThat(schedule.steps().get(3).dependsOn()).containsExactly("second", "reader");
+        assertThat(schedule.steps().get(4).dependsOn()).containsExactly("undeclared");
+        assertThat(schedule.criticalPath()).containsExactly("first", "second", "undeclared", "last");
+    }
+
+    @Test
+    void should_run_independent_nodes_concurrently_in_dataflow_mode() {
+        // given - the edges are sequential, the declared fields let both searches run at the same time
+        Node<RagBean, RagBean> rewrite = node("rewrite", 0, bean -> bean.query = bean.question + " (rewritten)")
+                .reads("question").writes("query");
+        Node<RagBean, RagBean> webSearch = node("web_search", 300, bean -> bean.webDocuments = List.of("web: " + bean.query))
+                .reads("query").writes("webDocuments");
+        Node<RagBean, RagBean> vectorSearch = node("vector_search", 300, bean -> bean.vectorDocuments = List.of("vector: " + bean.query))
+                .reads("query").writes("vectorDocuments");
+        Node<RagBean, RagBean> generate = node("generate", 0, bean -> bean.generation = bean.webDocuments.size() + bean.vectorDocuments.size() + " documents")
+                .reads("webDocuments", "vectorDocuments").writes("generation");
+        DefaultStateWorkflow<RagBean> workflow = DefaultStateWorkflow.<RagBean>builder()
+                .statefulBean(new RagBean())
+                .addEdges(Transition.from(rewrite, webSearch), Transition.from(webSearch, vectorSearch),
+                        Transition.from(vectorSearch, generate), Transition.from(generate, WorkflowStateName.END))
+                .executionMode(ExecutionMode.DATAFLOW)
+                .build(rewrite);
+        List<String> events = new ArrayList<>();
+        // when
+        long start = System.nanoTime();
+        RagBean result = workflow.runStream(node -> events.add(node.getName()));
+        long elapsedMillis = (System.nanoTime() - start) / 1_000_000;
+        // then
+        assertThat(result.generation).isEqualTo("2 documents");
+        assertThat(result.vectorDocuments).containsExactly("vector: What is jAI? (rewritten)");
+        assertThat(maxRunning.get()).isEqualTo(2);
+        assertThat(elapsedMillis).isLessThan(550);
+        assertThat(events).hasSize(4).startsWith("rewrite").endsWith("generate");
+        assertThat(workflow.getComputedTransitions())
+                .extracting(computed -> computed.getTransition().toString())
+                .containsExactly("rewrite -> web_search", "web_search -> vector_search", "vector_search -> generate", "generate -> _end_");
+        assertThat(workflow.getDataflowSchedule().criticalPath()).containsExactly("rewrite", "web_search", "generate");
+    }
+
+    @Test
+    void should_run_conflicting_writers_in_edge_order() {
+        // given
+        Node<RagBean, RagBean> first = node("first", 100, bean -> bean.documents.add("first")).writes("documents");
+        Node<RagBean, RagBean> second = node("second", 0, bean -> bean.documents.add("second")).writes("documents");
+        DefaultStateWorkflow<RagBean> workflow = DefaultStateWorkflow.<RagBean>builder()
+                .statefulBean(new RagBean())
+                .addEdges(Transition.from(first, second), Transition.from(second, WorkflowStateName.END))
+                .executionMode(ExecutionMode.DATAFLOW)
+                .build();
+        // when
+        RagBean result = workflow.run();
+        // then
+        assertThat(result.documents).containsExactly("first", "second");
+        assertThat(maxRunning.get()).isEqualTo(1);
+    }
+
+    @Test
+    void should_propagate_failure_and_skip_dependent_nodes() {
+        // given
+        AtomicInteger generations = new AtomicInteger();
+        Node<RagBean, RagBean> failing = node("failing", 0, bean -> {
+            throw new IllegalStateException("Search failed");
+        }).reads("query").writes("webDocuments");
+        Node<RagBean, RagBean> independent = node("independent", 50, bean -> bean.vectorDocuments = List.of("vector"))
+                .reads("query").writes("vectorDocuments");
+        Node<RagBean, RagBean> generate = node("generate", 0, bean -> generations.incrementAndGet())
+                .reads("webDocuments").writes("generation");
+        DefaultStateWorkflow<RagBean> workflow = DefaultStateWorkflow.<RagBean>builder()
+                .statefulBean(new RagBean())
+                .addEdges(Transition.from(failing, independent), Transition.from(independent, generate),
+                        Transition.from(generate, WorkflowStateName.END))
+                .executionMode(ExecutionMode.DATAFLOW)
+                .build();
+        // when - then
+        assertThatIllegalStateException()
+                .isThrownBy(workflow::run)
+                .withMessage("Search failed");
+        assertThat(generations.get()).isZero();
+    }
+
+    @Test
+    void should_run_dataflow_nodes_on_a_bounded_executor_without_waiting_threads() {
+        // given - a single thread for two independent searches: a node is only submitted once its dependencies are done
+        Set<String> threadNames = ConcurrentHashMap.newKeySet();
+        ExecutorService executor = Executors.newSingleThreadExecutor(runnable -> new Thread(runnable, "single-dataflow-thread"));
+        Node<RagBean, RagBean> rewrite = node("rewrite", 0, bean -> bean.query = bean.question).reads("question").writes("query");
+        Node<RagBean, RagBean> webSearch = node("web_search", 10, bean -> bean.webDocuments = List.of("web"))
+                .reads("query").writes("webDocuments");
+        Node<RagBean, RagBean> vectorSearch = node("vector_search", 10, bean -> bean.vectorDocuments = List.of("vector"))
+                .reads("query").writes("vectorDocuments");
+        Node<RagBean, RagBean> generate = node("generate", 0, bean -> {
+            threadNames.add(Thread.currentThread().getName());
+            bean.generation = bean.webDocuments.size() + bean.vectorDocuments.size() + " documents";
+        }).reads("webDocuments", "vectorDocuments").writes("generation");
+        DefaultStateWorkflow<RagBean> workflow = DefaultStateWorkflow.<RagBean>builder()
+                .statefulBean(new RagBean())
+                .addEdges(Transition.from(rewrite, webSearch), Transition.from(webSearch, vectorSearch),
+                        Transition.from(vectorSearch, generate), Transition.from(generate, WorkflowStateName.END))
+                .executionMode(ExecutionMode.DATAFLOW)
+                .dataflowExecutor(executor)
+                .build();
+        // when
+        RagBean result = workflow.run();
+        workflow.run();
+        // then
+        assertThat(result.generation).isEqualTo("2 documents");
+        assertThat(maxRunning.get()).isEqualTo(1);
+        assertThat(threadNames).containsExactly("single-dataflow-thread");
+        executor.shutdown();
+    }
+
+    @Test
+    void should_reject_conditional_edges_in_dataflow_mode() {
+        // given
+        Node<RagBean, RagBean> first = node("first", 0, bean -> {});
+        Node<RagBean, RagBean> second = node("second", 0, bean -> {});
+        Conditional<RagBean> conditional = Conditional.eval("condition", bean -> second, List.of(second));
+        // when - then
+        assertThatIllegalArgumentException()
+                .isThrownBy(() -> DefaultStateWorkflow.<RagBean>builder()
+                        .statefulBean(new RagBean())
+                        .addEdges(Transition.from(first, conditional), Transition.from(second, WorkflowStateName.END))
+                        .executionMode(ExecutionMode.DATAFLOW)
+                        .build())
+                .withMessageContaining("does not support the conditional state");
+        assertThatIllegalStateException()
+                .isThrownBy(() -> DefaultStateWorkflow.<RagBean>builder()
+                        .statefulBean(new RagBean())
+                        .addEdges(Transition.from(first, second))
+                        .build()
+                        .getDataflowSchedule())
+                .withMessageContaining("execution mode DATAFLOW");
+    }
+
+    private Node<RagBean, RagBean> node(String name, long sleepMillis, Consumer<RagBean> action) {
+        return Node.from(name, bean -> {
+            int concurrent = running.incrementAndGet();
+            maxRunning.accumulateAndGet(concurrent, Math::max);
+            try {
+                if (sleepMillis > 0) {
+                    Thread.sleep(sleepMillis);
+                }
+                action.accept(bean);
+                return bean;
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new IllegalStateException("Interrupted", e);
+            } finally {
+                running.decrementAndGet();
+            }
+        });
+    }
+}
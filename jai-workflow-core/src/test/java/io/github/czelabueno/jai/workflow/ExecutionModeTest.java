@@ -0,0 +1,183 @@
+package io.github.czelabueno.jai.workflow;
+
+import io.github.czelabueno.jai.workflow.node.Node;
+import io.github.czelabueno.jai.workflow.transition.Transition;
+import jdk.jfr.Recording;
+import jdk.jfr.consumer.RecordedEvent;
+import jdk.jfr.consumer.RecordingFile;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledForJreRange;
+import org.junit.jupiter.api.condition.JRE;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatIllegalArgumentException;
+import static org.assertj.core.api.Assertions.assertThatIllegalStateException;
+
+class ExecutionModeTest {
+
+    static class CounterBean {
+        int value = 0;
+    }
+
+    private static final String VIRTUAL_THREAD_PINNED = "jdk.VirtualThreadPinned";
+
+    private final List<Thread> nodeThreads = new CopyOnWriteArrayList<>();
+
+    @TempDir
+    Path recordingDirectory;
+
+    @Test
+    void should_run_nodes_on_caller_thread_by_default() {
+        // given
+        DefaultStateWorkflow<CounterBean> workflow = newWorkflow(null, 0);
+        // when
+        CounterBean result = workflow.run();
+        // then
+        assertThat(workflow.getExecutionMode()).isEqualTo(ExecutionMode.CALLER_THREAD);
+        assertThat(result.value).isEqualTo(2);
+        assertThat(nodeThreads).containsOnly(Thread.currentThread());
+    }
+
+    @Test
+    @EnabledForJreRange(max = JRE.JAVA_20)
+    void should_reject_virtual_thread_mode_before_java_21() {
+        assertThatIllegalArgumentException()
+                .isThrownBy(() -> newWorkflow(ExecutionMode.VIRTUAL_THREAD, 0))
+                .withMessageContaining("Java 21");
+    }
+
+    @Test
+    @EnabledForJreRange(min = JRE.JAVA_21)
+    void should_run_each_run_on_its_own_virtual_thread() throws Exception {
+        // given
+        DefaultStateWorkflow<CounterBean> workflow = newWorkflow(ExecutionMode.VIRTUAL_THREAD, 0);
+        // when
+        CounterBean result = workflow.run();
+        workflow.run();
+        // then
+        assertThat(result.value).isEqualTo(4);
+        assertThat(nodeThreads).hasSize(4);
+        assertThat(nodeThreads.get(0)).isSameAs(nodeThreads.get(1));
+        assertThat(nodeThreads.get(2)).isSameAs(nodeThreads.get(3));
+        assertThat(nodeThreads.get(0)).isNotSameAs(nodeThreads.get(2));
+        assertThat(nodeThreads.get(0).getName()).startsWith("jai-workflow-run-");
+        assertThat(Thread.class.getMethod("isVirtual").invoke(nodeThreads.get(0))).isEqualTo(true);
+    }
+
+    @Test
+    @EnabledForJreRange(min = JRE.JAVA_21)
+    void should_propagate_node_failure_to_caller_in_virtual_thread_mode() {
+        // given
+        Node<CounterBean, CounterBean> failing = Node.from("failing", bean -> {
+            throw new IllegalStateException("Node failed");
+        });
+        DefaultStateWorkflow<CounterBean> workflow = DefaultStateWorkflow.<CounterBean>builder()
+                .statefulBean(new CounterBean())
+                .addEdges(Transition.from(failing, WorkflowStateName.END))
+                .executionMode(ExecutionMode.VIRTUAL_THREAD)
+                .build(failing);
+        // when - then
+        assertThatIllegalStateException()
+                .isThrownBy(workflow::run)
+                .withMessage("Node failed");
+    }
+
+    @Test
+    @EnabledForJreRange(min = JRE.JAVA_21, max = JRE.JAVA_23) // synchronized no longer pins from Java 24 (JEP 491)
+    void should_not_pin_carrier_threads_while_nodes_block() throws Exception {
+        // given
+        List<DefaultStateWorkflow<CounterBean>> workflows = new ArrayList<>();
+        for (int i = 0; i < 50; i++) {
+            workflows.add(newWorkflow(ExecutionMode.VIRTUAL_THREAD, 20));
+        }
+        // when
+        List<RecordedEvent> pinnedEvents = recordPinnedEvents(() -> {
+            List<Thread> callers = new ArrayList<>();
+            for (DefaultStateWorkflow<CounterBean> workflow : workflows) {
+                callers.add(VirtualThreads.start("caller", workflow::run));
+            }
+            for (Thread caller : callers) {
+                caller.join();
+            }
+        });
+        // then
+        assertThat(workflows).allSatisfy(workflow -> assertThat(workflow.wasRun()).isTrue());
+        assertThat(pinnedEvents).isEmpty();
+    }
+
+    @Test
+    @EnabledForJreRange(min = JRE.JAVA_21, max = JRE.JAVA_23)
+    void should_detect_pinning_of_blocking_call_inside_monitor() throws Exception {
+        // given
+        Object monitor = new Object();
+        // when
+        List<RecordedEvent> pinnedEvents = recordPinnedEvents(() -> VirtualThreads.start("pinned", () -> {
+            synchronized (monitor) {
+                sleep(20);
+            }
+        }).join());
+        // then
+        assertThat(pinnedEvents).isNotEmpty();
+    }
+
+    /**
+     * Records the virtual threads blocking while pinned to their carrier thread with Flight Recorder, instead of
+     * redirecting the System.out output of -Djdk.tracePinnedThreads.
+     */
+    private List<RecordedEvent> recordPinnedEvents(ThrowingRunnable action) throws Exception {
+        Path file = recordingDirectory.resolve("pinned.jfr");
+        try (Recording recording = new Recording()) {
+            recording.enable(VIRTUAL_THREAD_PINNED).withoutThreshold();
+            recording.start();
+            action.run();
+            recording.stop();
+            recording.dump(file);
+        }
+        return RecordingFile.readAllEvents(file).stream()
+                .filter(event -> event.getEventType().getName().equals(VIRTUAL_THREAD_PINNED))
+                .toList();
+    }
+
+    @FunctionalInterface
+    private interface ThrowingRunnable {
+        void run() throws Exception;
+    }
+
+    private DefaultStateWorkflow<CounterBean> newWorkflow(ExecutionMode executionMode, long nodeSleepMillis) {
+        Node<CounterBean, CounterBean> first = Node.from("first", bean -> {
+            nodeThreads.add(Thread.currentThread());
+            sleep(nodeSleepMillis);
+            bean.value++;
+            return bean;
+        });
+        Node<CounterBean, CounterBean> second = Node.from("second", bean -> {
+            nodeThreads.add(Thread.currentThread());
+            sleep(nodeSleepMillis);
+            bean.value++;
+            return bean;
+        });
+        return DefaultStateWorkflow.<CounterBean>builder()
+                .statefulBean(new CounterBean())
+                .addEdges(Transition.from(first, second), Transition.from(second, WorkflowStateName.END))
+                .executionMode(executionMode)
+                .build(first);
+    }
+
+    private static void sleep(long millis) {
+        if (millis == 0) {
+            return;
+        }
+        try {
+            Thread.sleep(millis);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted", e);
+        }
+    }
+}
@@ -6,6 +6,14 @@ import io.github.czelabueno.jai.workflow.graph.graphviz.Orientation;
 import io.github.czelabueno.jai.workflow.graph.graphviz.StyleGraph;
 import io.github.czelabueno.jai.workflow.node.Conditional;
 import io.github.czelabueno.jai.workflow.node.Node;
+import io.github.czelabueno.jai.workflow.node.NodeInterceptor;
+import io.github.czelabueno.jai.workflow.state.ChannelState;
+import io.github.czelabueno.jai.workflow.state.OffHeapArena;
+import io.github.czelabueno.jai.workflow.state.OffHeapStateful;
+import io.github.czelabueno.jai.workflow.state.OffHeapValue;
+import io.github.czelabueno.jai.workflow.state.StateChange;
+import io.github.czelabueno.jai.workflow.state.StateKey;
+import io.github.czelabueno.jai.workflow.state.StateSnapshot;
 import io.github.czelabueno.jai.workflow.transition.ComputedTransition;
 import io.github.czelabueno.jai.workflow.transition.Transition;
 import lombok.SneakyThrows;
@@ -18,7 +26,14 @@ import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
 import java.time.LocalDateTime;
+import java.util.ArrayList;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.function.Function;
 
 import static org.assertj.core.api.Assertions.assertThat;
@@ -523,4 +538,252 @@ class StateWorkflowTest {
         assertThat(image.getHeight()).isGreaterThan(0);
     }
 
+    @Test
+    void should_apply_node_interceptors_in_registration_order() {
+        // given
+        List<String> calls = new ArrayList<>();
+        NodeInterceptor outer = (node, execution) -> {
+            calls.add("outer:" + node.getName());
+            return execution.get();
+        };
+        NodeInterceptor inner = (node, execution) -> {
+            calls.add("inner:" + node.getName());
+            return execution.get();
+        };
+        myWorkflow = DefaultStateWorkflow.<MyStatefulBean>builder()
+                .statefulBean(myStatefulBean)
+                .addEdges(Transition.from(node1, node2), Transition.from(node2, WorkflowStateName.END))
+                .nodeInterceptors(outer, inner)
+                .build(node1);
+        // when
+        myWorkflow.run();
+        // then
+        assertThat(calls).containsExactly("outer:node1", "inner:node1", "outer:node2", "inner:node2");
+        assertThat(myStatefulBean.value).isEqualTo(3);
+    }
+
+    @Test
+    void should_run_parallel_branches_concurrently_and_merge_channels_in_branch_order() {
+        // given
+        StateKey<List<String>> documents = StateKey.appending("documents");
+        StateKey<Integer> bestScore = StateKey.max("bestScore");
+        ChannelState state = ChannelState.of(documents, bestScore);
+        AtomicInteger mergeRuns = new AtomicInteger();
+        CountDownLatch branchesStarted = new CountDownLatch(2); // released only if both branches run at the same time
+        Node<ChannelState, ChannelState> split = Node.from("split", s -> s);
+        Node<ChannelState, ChannelState> webSearch = Node.from("webSearch", s -> {
+            awaitOtherBranch(branchesStarted);
+            sleep(150); // the slowest branch is declared first
+            return s.update(documents, List.of("web")).update(bestScore, 3);
+        });
+        Node<ChannelState, ChannelState> vectorSearch = Node.from("vectorSearch", s -> {
+            awaitOtherBranch(branchesStarted);
+            sleep(50);
+            return s.update(documents, List.of("vector")).update(bestScore, 7);
+        });
+        Node<ChannelState, ChannelState> rerank = Node.from("rerank", s -> {
+            sleep(50);
+            return s.update(documents, List.of("reranked"));
+        });
+        Node<ChannelState, List<String>> merge = Node.from("merge", s -> {
+            mergeRuns.incrementAndGet();
+            return s.get(documents);
+        });
+        DefaultStateWorkflow<ChannelState> workflow = DefaultStateWorkflow.<ChannelState>builder()
+                .statefulBean(state)
+                .addEdges(Transition.from(split, webSearch),
+                        Transition.from(split, vectorSearch),
+                        Transition.from(webSearch, merge),
+                        Transition.from(vectorSearch, rerank),
+                        Transition.from(rerank, merge))
+                .build(split);
+        List<String> events = new ArrayList<>();
+        // when
+        workflow.runStream(node -> events.add(node.getName()));
+        // then
+        assertThat(branchesStarted.getCount()).isZero();
+        assertThat(mergeRuns.get()).isEqualTo(1);
+        assertThat(merge.output()).isEqualTo(List.of("web", "vector", "reranked"));
+        assertThat(state.get(bestScore)).isEqualTo(7);
+        assertThat(events).containsExactly("split", "webSearch", "vectorSearch", "rerank", "merge");
+        assertThat(workflow.getComputedTransitions())
+                .extracting(computed -> computed.getTransition().from().graphName() + "->" + computed.getTransition().to().graphName())
+                .containsExactly("split->websearch", "websearch->merge", "split->vectorsearch",
+                        "vectorsearch->rerank", "rerank->merge", "merge->_end_");
+    }
+
+    @Test
+    void should_fail_workflow_when_a_parallel_branch_fails() {
+        // given
+        StateKey<List<String>> documents = StateKey.appending("documents");
+        ChannelState state = ChannelState.of(documents);
+        Node<ChannelState, ChannelState> split = Node.from("split", s -> s);
+        Node<ChannelState, ChannelState> ok = Node.from("ok", s -> s.update(documents, List.of("ok")));
+        Node<ChannelState, ChannelState> failing = Node.from("failing", s -> {
+            throw new IllegalStateException("Branch failed");
+        });
+        Node<ChannelState, ChannelState> merge = Node.from("merge", s -> s);
+        DefaultStateWorkflow<ChannelState> workflow = DefaultStateWorkflow.<ChannelState>builder()
+                .statefulBean(state)
+                .addEdges(Transition.from(split, ok),
+                        Transition.from(split, failing),
+                        Transition.from(ok, merge),
+                        Transition.from(failing, merge))
+                .build(split);
+        // when - then
+        assertThatExceptionOfType(IllegalStateException.class)
+                .isThrownBy(workflow::run)
+                .withMessage("Branch failed");
+        assertThat(state.get(documents)).isEmpty(); // failed branches are not merged
+    }
+
+    @Test
+    void should_run_parallel_branches_on_the_given_branch_executor() {
+        // given
+        StateKey<List<String>> documents = StateKey.appending("documents");
+        ChannelState state = ChannelState.of(documents);
+        ExecutorService executor = Executors.newSingleThreadExecutor(); // fewer threads than branches
+        AtomicInteger executedBranches = new AtomicInteger();
+        Node<ChannelState, ChannelState> split = Node.from("split", s -> s);
+        Node<ChannelState, ChannelState> web = Node.from("web", s -> s.update(documents, List.of("web")));
+        Node<ChannelState, ChannelState> vector = Node.from("vector", s -> s.update(documents, List.of("vector")));
+        Node<ChannelState, List<String>> merge = Node.from("merge", s -> s.get(documents));
+        DefaultStateWorkflow<ChannelState> workflow = DefaultStateWorkflow.<ChannelState>builder()
+                .statefulBean(state)
+                .branchExecutor(branch -> {
+                    executedBranches.incrementAndGet();
+                    executor.execute(branch);
+                })
+                .addEdges(Transition.from(split, web),
+                        Transition.from(split, vector),
+                        Transition.from(web, merge),
+                        Transition.from(vector, merge))
+                .build(split);
+        try {
+            // when
+            workflow.run();
+            // then
+            assertThat(executedBranches.get()).isEqualTo(2);
+            assertThat(merge.output()).isEqualTo(List.of("web", "vector"));
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    @Test
+    void should_capture_state_snapshot_on_each_computed_transition() {
+        // given
+        myWorkflow = DefaultStateWorkflow.<MyStatefulBean>builder()
+                .statefulBean(myStatefulBean)
+                .addEdges(Transition.from(node1, node2), Transition.from(node2, node3), Transition.from(node3, WorkflowStateName.END))
+                .captureStateSnapshots(true)
+                .build(node1);
+        // when
+        myWorkflow.run();
+        // then
+        List<ComputedTransition> computedTransitions = myWorkflow.getComputedTransitions();
+        assertThat(computedTransitions)
+                .extracting(computed -> computed.getStateSnapshot().get("value"))
+                .containsExactly(1, 3, 6);
+        StateSnapshot afterNode2 = computedTransitions.get(1).getStateSnapshot();
+        StateSnapshot afterNode3 = computedTransitions.get(2).getStateSnapshot();
+        assertThat(afterNode3.diff(afterNode2)).containsExactly(new StateChange("value", 3, 6));
+        assertThat(afterNode2.diff(afterNode2)).isEmpty();
+    }
+
+    @Test
+    void should_not_capture_state_snapshots_by_default() {
+        // given
+        myWorkflow.putEdge(node1, node2);
+        myWorkflow.startNode(node1);
+        // when
+        myWorkflow.run();
+        // then
+        assertThat(myWorkflow.getComputedTransitions()).extracting(ComputedTransition::getStateSnapshot).containsOnlyNulls();
+    }
+
+    @Test
+    void should_capture_channel_state_snapshots_in_parallel_branches() {
+        // given
+        StateKey<List<String>> documents = StateKey.appending("documents");
+        StateKey<String> question = StateKey.of("question");
+        ChannelState state = ChannelState.of(question, documents);
+        Node<ChannelState, ChannelState> split = Node.from("split", s -> s.update(question, "What is jAI?"));
+        Node<ChannelState, ChannelState> webSearch = Node.from("webSearch", s -> s.update(documents, List.of("web")));
+        Node<ChannelState, ChannelState> vectorSearch = Node.from("vectorSearch", s -> s.update(documents, List.of("vector")));
+        Node<ChannelState, ChannelState> merge = Node.from("merge", s -> s);
+        DefaultStateWorkflow<ChannelState> workflow = DefaultStateWorkflow.<ChannelState>builder()
+                .statefulBean(state)
+                .addEdges(Transition.from(split, webSearch),
+                        Transition.from(split, vectorSearch),
+                        Transition.from(webSearch, merge),
+                        Transition.from(vectorSearch, merge))
+                .captureStateSnapshots(true)
+                .build(split);
+        // when
+        workflow.run();
+        // then
+        // split->webSearch, webSearch->merge, split->vectorSearch, vectorSearch->merge, merge->end
+        List<StateSnapshot> snapshots = workflow.getComputedTransitions().stream().map(ComputedTransition::getStateSnapshot).toList();
+        assertThat(snapshots.get(0).toMap()).containsOnly(Map.entry("question", "What is jAI?"));
+        assertThat(snapshots.get(1).get("documents")).isEqualTo(List.of("web"));
+        assertThat(snapshots.get(3).get("documents")).isEqualTo(List.of("vector"));
+        assertThat(snapshots.get(4).get("documents")).isEqualTo(List.of("web", "vector"));
+        assertThat(snapshots.get(1).diff(snapshots.get(0))).containsExactly(new StateChange("documents", null, List.of("web")));
+        // the unchanged question is shared by all the snapshots
+        assertThat(snapshots).allSatisfy(snapshot -> assertThat(snapshot.get("question")).isSameAs(snapshots.get(0).get("question")));
+    }
+
+    static class DocumentsBean implements OffHeapStateful {
+        final OffHeapArena arena = OffHeapArena.builder().build();
+        OffHeapValue documents;
+
+        @Override
+        public OffHeapArena offHeapArena() {
+            return arena;
+        }
+    }
+
+    @Test
+    void should_release_off_heap_payloads_at_run_end_when_enabled() {
+        // given
+        Node<DocumentsBean, DocumentsBean> retrieve = Node.from("retrieve", bean -> {
+            bean.documents = bean.offHeapArena().storeText("retrieved documents");
+            return bean;
+        });
+        Node<DocumentsBean, String> generate = Node.from("generate", bean -> bean.documents.text());
+        DocumentsBean keepingBean = new DocumentsBean();
+        DocumentsBean releasingBean = new DocumentsBean();
+        // when
+        DefaultStateWorkflow.<DocumentsBean>builder()
+                .statefulBean(keepingBean)
+                .addEdges(Transition.from(retrieve, generate), Transition.from(generate, WorkflowStateName.END))
+                .build(retrieve)
+                .run();
+        DefaultStateWorkflow.<DocumentsBean>builder()
+                .statefulBean(releasingBean)
+                .addEdges(Transition.from(retrieve, generate), Transition.from(generate, WorkflowStateName.END))
+                .releaseOffHeapAtRunEnd(true)
+                .build(retrieve)
+                .run();
+        // then
+        assertThat(generate.output()).isEqualTo("retrieved documents");
+        assertThat(keepingBean.documents.text()).isEqualTo("retrieved documents");
+        assertThat(keepingBean.arena.allocatedBytes()).isEqualTo(19);
+        assertThat(releasingBean.documents.isReleased()).isTrue();
+        assertThat(releasingBean.arena.allocatedBytes()).isZero();
+    }
+
+    @SneakyThrows
+    private static void sleep(long millis) {
+        Thread.sleep(millis);
+    }
+
+    @SneakyThrows
+    private static void awaitOtherBranch(CountDownLatch branchesStarted) {
+        branchesStarted.countDown();
+        if (!branchesStarted.await(5, TimeUnit.SECONDS)) {
+            throw new IllegalStateException("The branches did not run concurrently");
+        }
+    }
 }
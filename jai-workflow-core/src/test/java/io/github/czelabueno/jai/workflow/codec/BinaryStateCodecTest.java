@@ -0,0 +1,193 @@
+package io.github.czelabueno.jai.workflow.codec;
+
+import io.github.czelabueno.jai.workflow.DefaultStateWorkflow;
+import io.github.czelabueno.jai.workflow.WorkflowStateName;
+import io.github.czelabueno.jai.workflow.node.Node;
+import io.github.czelabueno.jai.workflow.state.TransientState;
+import io.github.czelabueno.jai.workflow.transition.Transition;
+import lombok.Data;
+import lombok.EqualsAndHashCode;
+
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatIllegalArgumentException;
+import static org.assertj.core.api.Assertions.assertThatIllegalStateException;
+
+class BinaryStateCodecTest {
+
+    enum Grade {
+        RELEVANT, IRRELEVANT
+    }
+
+    record Document(String id, String text, double score, Grade grade) {
+    }
+
+    @Data
+    static class BaseBean {
+        private String question;
+        private String generation;
+    }
+
+    @Data
+    @EqualsAndHashCode(callSuper = true)
+    static class RagBean extends BaseBean {
+        private int retries;
+        private long tokens;
+        private boolean webSearch;
+        private char marker;
+        private List<Document> documents;
+        private Map<String, Object> metadata;
+        private transient Object stream;
+        @TransientState
+        private Object subscription;
+    }
+
+    @Data
+    static class Holder {
+        private Object value;
+    }
+
+    private final StateCodec codec = StateCodec.load("binary");
+
+    @Test
+    void should_round_trip_lombok_bean_with_inherited_fields() {
+        // given
+        RagBean bean = new RagBean();
+        bean.setQuestion("What is jAI Workflow?");
+        bean.setGeneration("A workflow engine ✓");
+        bean.setRetries(-2);
+        bean.setTokens(1L << 40);
+        bean.setWebSearch(true);
+        bean.setMarker('λ');
+        bean.setDocuments(List.of(
+                new Document("doc1", "first document", 0.87, Grade.RELEVANT),
+                new Document("doc2", null, 0.12, Grade.IRRELEVANT)));
+        bean.setMetadata(Map.of("model", "gpt-4o", "latency", Duration.ofMillis(420), "cached", false));
+        bean.setStream(new Object());
+        bean.setSubscription(new Object());
+        // when
+        byte[] bytes = codec.encode(bean);
+        RagBean decoded = codec.decode(bytes, RagBean.class);
+        // then
+        assertThat(decoded.getStream()).isNull();
+        assertThat(decoded.getSubscription()).isNull();
+        bean.setStream(null);
+        bean.setSubscription(null);
+        assertThat(decoded).isEqualTo(bean);
+        assertThat(decoded.getDocuments()).isInstanceOf(ArrayList.class);
+    }
+
+    @Test
+    void should_round_trip_supported_values() {
+        // given
+        List<Object> values = Arrays.asList(
+                null, 42, -7L, 3.5d, 1.25f, (short) 12, (byte) -1, 'x', "", "texte accentué",
+                UUID.randomUUID(), Instant.parse("2024-05-01T10:15:30.123456789Z"),
+                LocalDateTime.of(1969, 7, 20, 20, 17, 40, 5), LocalDate.of(2024, 2, 29), Duration.ofNanos(-1),
+                Grade.RELEVANT, Set.of("a"), Map.of(1, List.of(true, false)));
+        // when
+        List<?> decoded = codec.decode(codec.encode(values), List.class);
+        // then
+        assertThat(decoded).isEqualTo(values);
+        assertThat(codec.decode(codec.encode(new byte[]{1, 2, 3}), byte[].class)).containsExactly(1, 2, 3);
+        assertThat(codec.decode(codec.encode(5), int.class)).isEqualTo(5);
+    }
+
+    @Test
+    void should_round_trip_computed_transitions() {
+        // given
+        Holder bean = new Holder();
+        Node<Holder, Holder> retrieve = Node.from("retrieve", holder -> {
+            holder.setValue(List.of("doc1", "doc2"));
+            return holder;
+        });
+        Node<Holder, String> generate = Node.from("generate", holder -> "answer");
+        DefaultStateWorkflow<Holder> workflow = DefaultStateWorkflow.<Holder>builder()
+                .statefulBean(bean)
+                .addEdges(Transition.from(retrieve, generate), Transition.from(generate, WorkflowStateName.END))
+                .captureStateSnapshots(true)
+                .build(retrieve);
+        workflow.run();
+        // when
+        List<TransitionTrace> trace = codec.decodeTrace(codec.encodeTrace(workflow.getComputedTransitions()));
+        // then
+        assertThat(trace).hasSize(2);
+        assertThat(trace).extracting(TransitionTrace::order).containsExactly(1, 2);
+        assertThat(trace).extracting(TransitionTrace::from).containsExactly("retrieve", "generate");
+        assertThat(trace).extracting(TransitionTrace::to).containsExactly("generate", WorkflowStateName.END.graphName());
+        assertThat(trace.get(0).id()).isEqualTo(workflow.getComputedTransitions().get(0).getId());
+        assertThat(trace.get(0).computedAt()).isEqualTo(workflow.getComputedTransitions().get(0).getComputedAt());
+        assertThat(trace.get(0).payload()).isEqualTo(bean);
+        assertThat(trace.get(1).payload()).isEqualTo("answer");
+        assertThat(trace.get(1).state()).containsOnly(Map.entry("value", List.of("doc1", "doc2")));
+    }
+
+    @Test
+    void should_reject_or_skip_unsupported_values() {
+        // given
+        Holder holder = new Holder();
+        holder.setValue(new Thread());
+        // when - then
+        assertThatIllegalArgumentException()
+                .isThrownBy(() -> codec.encode(holder))
+                .withMessageContaining("Cannot encode a value of type java.lang.Thread");
+        // when
+        StateCodec lenient = BinaryStateCodec.builder().skipUnsupportedValues(true).build();
+        Holder decoded = lenient.decode(lenient.encode(holder), Holder.class);
+        // then
+        assertThat(decoded.getValue()).isNull();
+    }
+
+    @Test
+    void should_reject_cycles() {
+        // given
+        List<Object> cyclic = new ArrayList<>();
+        cyclic.add(cyclic);
+        // when - then
+        assertThatIllegalArgumentException()
+                .isThrownBy(() -> codec.encode(cyclic))
+                .withMessageContaining("may contain a cycle");
+    }
+
+    @Test
+    void should_reject_invalid_input() {
+        // given
+        byte[] bytes = codec.encode(new Document("doc1", "text", 0.5, Grade.RELEVANT));
+        // when - then
+        assertThatIllegalStateException()
+                .isThrownBy(() -> codec.decode(bytes, Holder.class))
+                .withMessageContaining("Expected a value of type");
+        assertThatIllegalStateException()
+                .isThrownBy(() -> codec.decode(Arrays.copyOf(bytes, bytes.length - 3), Document.class))
+                .withMessageContaining("Truncated input");
+        byte[] changedFingerprint = bytes.clone();
+        int fingerprint = 5 + Document.class.getName().length(); // magic, version, tag, new class, name length, name
+        changedFingerprint[fingerprint] ^= 1;
+        assertThatIllegalStateException()
+                .isThrownBy(() -> codec.decode(changedFingerprint, Document.class))
+                .withMessageContaining("changed since the value was encoded");
+        assertThatIllegalStateException()
+                .isThrownBy(() -> codec.decode("{}".getBytes(), Document.class))
+                .withMessage("The bytes were not encoded by the binary state codec");
+    }
+
+    @Test
+    void should_load_codecs_by_name() {
+        assertThat(StateCodec.load("binary")).isSameAs(BinaryStateCodec.defaultCodec());
+        assertThatIllegalArgumentException()
+                .isThrownBy(() -> StateCodec.load("xml"))
+                .withMessage("No state codec named 'xml'");
+    }
+}
@@ -0,0 +1,112 @@
+package io.github.czelabueno.jai.workflow.codec;
+
+import com.google.gson.Gson;
+import lombok.Data;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Function;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Compares the size and round-trip time of a typical RAG stateful bean encoded by the {@link BinaryStateCodec} and by
+ * Gson as JSON.
+ * <p>
+ * Tagged {@code benchmark}, it is only run by the {@code benchmark} Maven profile.
+ */
+@Tag("benchmark")
+class StateCodecBenchmarkTest {
+
+    private static final Logger log = LoggerFactory.getLogger(StateCodecBenchmarkTest.class);
+
+    private static final int WARMUP_ITERATIONS = 20_000;
+    private static final int MEASURED_ITERATIONS = 50_000;
+
+    record Document(String id, String text, double score, int chunk, boolean relevant) {
+    }
+
+    @Data
+    static class RagBean {
+        private String question;
+        private String generation;
+        private int retries;
+        private List<Document> documents;
+        private Map<String, String> metadata;
+    }
+
+    @Test
+    void should_encode_smaller_than_json() {
+        // given
+        RagBean bean = newBean();
+        StateCodec binary = BinaryStateCodec.defaultCodec();
+        Gson gson = new Gson();
+        // when
+        byte[] binaryBytes = binary.encode(bean);
+        byte[] jsonBytes = gson.toJson(bean).getBytes(StandardCharsets.UTF_8);
+        // then
+        assertThat(binary.decode(binaryBytes, RagBean.class)).isEqualTo(bean);
+        assertThat(gson.fromJson(new String(jsonBytes, StandardCharsets.UTF_8), RagBean.class)).isEqualTo(bean);
+        log.info("Encoded size: binary {} bytes, JSON {} bytes", binaryBytes.length, jsonBytes.length);
+        assertThat(binaryBytes.length).isLessThan(jsonBytes.length);
+    }
+
+    @Test
+    void should_report_round_trip_time_against_json() {
+        // given
+        RagBean bean = newBean();
+        StateCodec binary = BinaryStateCodec.defaultCodec();
+        Gson gson = new Gson();
+        Function<RagBean, RagBean> binaryRoundTrip = value -> binary.decode(binary.encode(value), RagBean.class);
+        Function<RagBean, RagBean> jsonRoundTrip = value -> gson.fromJson(
+                new String(gson.toJson(value).getBytes(StandardCharsets.UTF_8), StandardCharsets.UTF_8), RagBean.class);
+        // when
+        measure(binaryRoundTrip, bean, WARMUP_ITERATIONS);
+        measure(jsonRoundTrip, bean, WARMUP_ITERATIONS);
+        long binaryNanos = measure(binaryRoundTrip, bean, MEASURED_ITERATIONS);
+        long jsonNanos = measure(jsonRoundTrip, bean, MEASURED_ITERATIONS);
+        // then
+        log.info("Round trip: binary {} ns/op, JSON {} ns/op", binaryNanos / MEASURED_ITERATIONS, jsonNanos / MEASURED_ITERATIONS);
+        assertThat(binaryNanos).isPositive();
+        assertThat(jsonNanos).isPositive();
+    }
+
+    private static long measure(Function<RagBean, RagBean> roundTrip, RagBean bean, int iterations) {
+        int checksum = 0;
+        long start = System.nanoTime();
+        for (int i = 0; i < iterations; i++) {
+            checksum += roundTrip.apply(bean).getRetries();
+        }
+        long elapsed = System.nanoTime() - start;
+        assertThat(checksum).isEqualTo(iterations * bean.getRetries());
+        return elapsed;
+    }
+
+    private static RagBean newBean() {
+        RagBean bean = new RagBean();
+        bean.setQuestion("What are the types of agent memory?");
+        bean.setGeneration("Agents use a short-term memory for the in-context learning and a long-term memory "
+                + "backed by an external vector store with fast retrieval.");
+        bean.setRetries(1);
+        List<Document> documents = new ArrayList<>();
+        for (int i = 0; i < 10; i++) {
+            documents.add(new Document("doc-" + i,
+                    "Memory can be defined as the processes used to acquire, store, retain, and later retrieve "
+                            + "information, chunk " + i + ".",
+                    0.5 + i / 100d, i, i % 3 != 0));
+        }
+        bean.setDocuments(documents);
+        Map<String, String> metadata = new LinkedHashMap<>();
+        metadata.put("model", "gpt-4o-mini");
+        metadata.put("retriever", "web-search");
+        bean.setMetadata(metadata);
+        return bean;
+    }
+}
@@ -0,0 +1,252 @@
+package io.github.czelabueno.jai.workflow.graph;
+
+import io.github.czelabueno.jai.workflow.DefaultStateWorkflow;
+import io.github.czelabueno.jai.workflow.graph.graphviz.Orientation;
+import io.github.czelabueno.jai.workflow.graph.graphviz.StyleGraph;
+import io.github.czelabueno.jai.workflow.node.Node;
+import io.github.czelabueno.jai.workflow.transition.Transition;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static io.github.czelabueno.jai.workflow.WorkflowStateName.END;
+import static io.github.czelabueno.jai.workflow.WorkflowStateName.START;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatIllegalArgumentException;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class CachingGraphImageGeneratorTest {
+
+    private static final Logger log = LoggerFactory.getLogger(CachingGraphImageGeneratorTest.class);
+
+    static class CountingGenerator implements GraphImageGenerator {
+        final AtomicInteger renders = new AtomicInteger();
+
+        @Override
+        public void generateImage(List<Transition> transitions, String outputPath, Format format, StyleAttribute... styles) throws IOException {
+            renders.incrementAndGet();
+            Files.writeString(Path.of(outputPath), "<svg>" + transitions.size() + " " + format + "</svg>");
+        }
+
+        @Override
+        public BufferedImage generateBufferedImage(List<Transition> transitions, Format format, StyleAttribute... styles) {
+            renders.incrementAndGet();
+            return new BufferedImage(10 * transitions.size(), 10, BufferedImage.TYPE_INT_RGB);
+        }
+
+        @Override
+        public String renderFingerprint() {
+            return "counting";
+        }
+    }
+
+    private final Node<String, String> retrieve = Node.from("retrieve", input -> input);
+    private final Node<String, String> generate = Node.from("generate", input -> input);
+    private final List<Transition> transitions = List.of(
+            Transition.from(START, retrieve),
+            Transition.from(retrieve, generate),
+            Transition.from(generate, END));
+
+    @Test
+    void should_render_same_content_once() throws IOException {
+        // given
+        CountingGenerator delegate = new CountingGenerator();
+        CachingGraphImageGenerator generator = CachingGraphImageGenerator.builder()
+                .delegate(delegate)
+                .cache(RenderCache.builder().build()) // counts the renders of this test only
+                .build();
+        // when
+        byte[] first = generator.generateImageBytes(transitions, Format.SVG, StyleGraph.DEFAULT);
+        byte[] second = generator.generateImageBytes(List.copyOf(transitions), Format.SVG, StyleGraph.DEFAULT);
+        generator.generateImageBytes(transitions, Format.PNG, StyleGraph.DEFAULT);
+        generator.generateImageBytes(transitions, Format.SVG, StyleGraph.SKETCHY);
+        generator.generateImageBytes(transitions, Format.SVG, StyleGraph.DEFAULT, Orientation.HORIZONTAL);
+        BufferedImage image = generator.generateBufferedImage(transitions, Format.SVG);
+        BufferedImage cachedImage = generator.generateBufferedImage(transitions, Format.SVG);
+        // then
+        assertThat(second).isSameAs(first);
+        assertThat(new String(first, StandardCharsets.UTF_8)).isEqualTo("<svg>3 SVG</svg>");
+        assertThat(cachedImage).isNotSameAs(image);
+        assertThat(cachedImage.getWidth()).isEqualTo(30);
+        assertThat(delegate.renders.get()).isEqualTo(5);
+        assertThat(generator.cache().hits()).isEqualTo(2);
+        assertThat(generator.cache().misses()).isEqualTo(5);
+    }
+
+    @Test
+    void should_key_by_graph_names_and_labels() {
+        // given
+        Node<String, String> labeled = Node.from("generate", input -> input);
+        labeled.setLabels("Merge");
+        List<Transition> relabeled = List.of(
+                Transition.from(START, retrieve),
+                Transition.from(retrieve, labeled),
+                Transition.from(labeled, END));
+        // when
+        String key = CachingGraphImageGenerator.key("bytes", "graphviz", transitions, Format.SVG, StyleGraph.DEFAULT);
+        // then
+        assertThat(key).hasSize(64).isEqualTo(CachingGraphImageGenerator.key("bytes", "graphviz",
+                List.of(Transition.from(START, Node.from("retrieve", input -> input)),
+                        Transition.from(Node.from("retrieve", input -> input), Node.from("generate", input -> input)),
+                        Transition.from(Node.from("generate", input -> input), END)),
+                Format.SVG, StyleGraph.DEFAULT));
+        assertThat(CachingGraphImageGenerator.key("bytes", "graphviz", relabeled, Format.SVG, StyleGraph.DEFAULT)).isNotEqualTo(key);
+        assertThat(CachingGraphImageGenerator.key("bytes", "graphviz\ndot:digraph {}", transitions, Format.SVG, StyleGraph.DEFAULT)).isNotEqualTo(key);
+    }
+
+    @Test
+    void should_evict_least_recently_used_images() throws IOException {
+        // given
+        RenderCache cache = RenderCache.builder().maxBytes(25).build();
+        // when
+        cache.get("a1", () -> new byte[10]);
+        cache.get("b2", () -> new byte[10]);
+        cache.get("a1", () -> new byte[10]); // a1 becomes the most recently used
+        cache.get("c3", () -> new byte[10]);
+        cache.get("d4", () -> new byte[30]); // larger than the cache, not kept
+        // then
+        assertThat(cache.size()).isEqualTo(2);
+        assertThat(cache.bytes()).isEqualTo(20);
+        assertThat(cache.evictions()).isEqualTo(1);
+        assertThat(cache.get("a1", () -> new byte[1])).hasSize(10);
+        assertThat(cache.get("b2", () -> new byte[1])).hasSize(1);
+        assertThatIllegalArgumentException()
+                .isThrownBy(() -> cache.get("../image", () -> new byte[1]))
+                .withMessageContaining("hex digits");
+    }
+
+    @Test
+    void should_account_disk_bytes_of_replaced_files_and_trim_to_low_water_mark(@TempDir Path directory) throws Exception {
+        // given
+        RenderCache cache = RenderCache.builder().maxBytes(0).diskDirectory(directory).maxDiskBytes(100).build();
+        // when - a nested miss of the same key stands for a concurrent miss, both write the file
+        cache.get("a1", () -> {
+            cache.get("a1", () -> new byte[25]);
+            return new byte[25];
+        });
+        long afterReplace = cache.diskBytes();
+        for (String key : List.of("b2", "c3", "d4", "e5")) {
+            Thread.sleep(20); // distinct modification times, the least recently used files are deleted first
+            cache.get(key, () -> new byte[25]);
+        }
+        // then - 125 bytes are trimmed to at most 90, not just to 100
+        assertThat(afterReplace).isEqualTo(25);
+        assertThat(cache.diskBytes()).isEqualTo(75);
+        try (var files = Files.list(directory)) {
+            assertThat(files.map(file -> file.getFileName().toString())).containsExactlyInAnyOrder("c3.img", "d4.img", "e5.img");
+        }
+    }
+
+    @Test
+    void should_serve_evicted_images_from_disk(@TempDir Path directory) throws Exception {
+        // given
+        RenderCache cache = RenderCache.builder().maxBytes(0).diskDirectory(directory).maxDiskBytes(25).build();
+        cache.get("a1", () -> "first".getBytes(StandardCharsets.UTF_8));
+        // when
+        RenderCache restarted = RenderCache.builder().diskDirectory(directory).maxDiskBytes(25).build();
+        byte[] bytes = restarted.get("a1", () -> new byte[0]);
+        Thread.sleep(20); // distinct modification times, the least recently used files are deleted first
+        restarted.get("b2", () -> new byte[20]);
+        Thread.sleep(20);
+        restarted.get("c3", () -> new byte[20]);
+        // then
+        assertThat(new String(bytes, StandardCharsets.UTF_8)).isEqualTo("first");
+        assertThat(restarted.diskHits()).isEqualTo(1);
+        assertThat(restarted.misses()).isEqualTo(2);
+        try (var files = Files.list(directory)) {
+            assertThat(files.map(file -> file.getFileName().toString())).containsExactly("c3.img");
+        }
+        restarted.clear();
+        assertThat(restarted.size()).isZero();
+        try (var files = Files.list(directory)) {
+            assertThat(files).isEmpty();
+        }
+    }
+
+    @Test
+    void should_cache_workflow_images() {
+        // given
+        Node<String, String> node = Node.from("retrieve", input -> input);
+        DefaultStateWorkflow<String> workflow = DefaultStateWorkflow.<String>builder()
+                .statefulBean("question")
+                .addEdges(Transition.from(node, END))
+                .renderCache(RenderCache.builder().build()) // counts the hits of this workflow only
+                .build(node);
+        // when
+        long start = System.nanoTime();
+        BufferedImage rendered = workflow.generateWorkflowBufferedImage();
+        long renderMicros = TimeUnit.NANOSECONDS.toMicros(System.nanoTime() - start);
+        start = System.nanoTime();
+        BufferedImage cached = workflow.generateWorkflowBufferedImage();
+        long cachedMicros = TimeUnit.NANOSECONDS.toMicros(System.nanoTime() - start);
+        // then
+        log.info("Workflow image: rendered in {} µs, served from cache in {} µs", renderMicros, cachedMicros);
+        assertThat(cached.getWidth()).isEqualTo(rendered.getWidth());
+        assertThat(workflow.getRenderCache().misses()).isEqualTo(1);
+        assertThat(workflow.getRenderCache().hits()).isEqualTo(1);
+        assertThat(cachedMicros).isLessThan(renderMicros);
+    }
+
+    @Test
+    void should_share_the_default_cache_and_write_images_like_the_graphviz_renderer(@TempDir Path directory) throws IOException {
+        // given
+        Node<String, String> node = Node.from("retrieve", input -> input);
+        DefaultStateWorkflow<String> first = DefaultStateWorkflow.<String>builder()
+                .statefulBean("question")
+                .addEdges(Transition.from(node, END))
+                .build(node);
+        DefaultStateWorkflow<String> second = DefaultStateWorkflow.<String>builder()
+                .statefulBean("question")
+                .addEdges(Transition.from(node, END))
+                .build(node);
+        Path missingDirectory = directory.resolve("traces").resolve("run-1");
+        // when
+        first.generateWorkflowImage(missingDirectory.resolve("workflow").toString());
+        first.generateWorkflowImage(missingDirectory.resolve("workflow.image.svg").toString());
+        // then - the parent directories are created and the extension of the format is appended when missing
+        assertThat(first.getRenderCache()).isSameAs(second.getRenderCache()).isSameAs(RenderCache.getDefault());
+        try (var files = Files.list(missingDirectory)) {
+            assertThat(files.map(file -> file.getFileName().toString()))
+                    .containsExactlyInAnyOrder("workflow.svg", "workflow.image.svg");
+        }
+        assertThat(Files.readString(missingDirectory.resolve("workflow.svg"))).contains("<svg");
+    }
+
+    @Test
+    void should_stream_cached_image_without_copying() throws IOException {
+        // given
+        CountingGenerator delegate = new CountingGenerator();
+        CachingGraphImageGenerator generator = CachingGraphImageGenerator.builder()
+                .delegate(delegate)
+                .cache(RenderCache.builder().build()) // counts the renders of this test only
+                .build();
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        ByteArrayOutputStream channelOut = new ByteArrayOutputStream();
+        // when
+        generator.writeImage(transitions, out, Format.SVG);
+        ByteBuffer buffer = generator.generateImageBuffer(transitions, Format.SVG);
+        generator.writeImage(transitions, Channels.newChannel(channelOut), Format.SVG);
+        // then
+        assertThat(out.toString(StandardCharsets.UTF_8)).isEqualTo("<svg>3 SVG</svg>");
+        assertThat(channelOut.toByteArray()).isEqualTo(out.toByteArray());
+        assertThat(buffer.isReadOnly()).isTrue();
+        assertThat(StandardCharsets.UTF_8.decode(buffer).toString()).isEqualTo("<svg>3 SVG</svg>");
+        assertThat(delegate.renders.get()).isEqualTo(1);
+        assertThat(generator.cache().hits()).isEqualTo(2);
+        assertThatThrownBy(() -> generator.generateImageBuffer(transitions, Format.SVG).put((byte) 0))
+                .isInstanceOf(java.nio.ReadOnlyBufferException.class);
+    }
+}
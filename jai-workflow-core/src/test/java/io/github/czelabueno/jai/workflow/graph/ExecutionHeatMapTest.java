@@ -0,0 +1,140 @@
+package io.github.czelabueno.jai.workflow.graph;
+
+import io.github.czelabueno.jai.workflow.DefaultStateWorkflow;
+import io.github.czelabueno.jai.workflow.graph.graphviz.GraphvizImageGenerator;
+import io.github.czelabueno.jai.workflow.node.Node;
+import io.github.czelabueno.jai.workflow.transition.ComputedTransition;
+import io.github.czelabueno.jai.workflow.transition.Transition;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import static io.github.czelabueno.jai.workflow.WorkflowStateName.END;
+import static io.github.czelabueno.jai.workflow.WorkflowStateName.START;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatIllegalArgumentException;
+
+class ExecutionHeatMapTest {
+
+    private final Node<String, String> retrieve = Node.from("retrieve", input -> input);
+    private final Node<String, String> grade = Node.from("grade", input -> input);
+    private final Node<String, String> generate = Node.from("generate", input -> input);
+    private final List<Transition> transitions = List.of(
+            Transition.from(START, retrieve),
+            Transition.from(retrieve, grade),
+            Transition.from(grade, retrieve),
+            Transition.from(grade, generate),
+            Transition.from(generate, END));
+
+    @Test
+    void should_count_transitions_across_runs() {
+        // given - a run retrying once, and a run without retry
+        ExecutionHeatMap heatMap = ExecutionHeatMap.builder().build();
+        // when
+        heatMap.record(run(transitions.get(1), transitions.get(2), transitions.get(1), transitions.get(3), transitions.get(4)));
+        heatMap.record(run(transitions.get(1), transitions.get(3), transitions.get(4)));
+        // then
+        assertThat(heatMap.runs()).isEqualTo(2);
+        assertThat(heatMap.count(transitions.get(1))).isEqualTo(3);
+        assertThat(heatMap.count(transitions.get(2))).isEqualTo(1);
+        assertThat(heatMap.count(transitions.get(0))).isZero();
+        assertThat(heatMap.transitionCounts()).containsEntry(transitions.get(4), 2L).hasSize(4);
+        // the node after START has no entering transition to measure its latency from
+        assertThat(heatMap.latencyPercentile(grade, 95)).isPresent();
+        assertThat(heatMap.latencyPercentile(START, 95)).isEmpty();
+        heatMap.clear();
+        assertThat(heatMap.runs()).isZero();
+        assertThat(heatMap.transitionCounts()).isEmpty();
+    }
+
+    @Test
+    void should_compute_latency_percentiles_from_bounded_samples() {
+        // given
+        ExecutionHeatMap heatMap = ExecutionHeatMap.builder().build();
+        ExecutionHeatMap sampled = ExecutionHeatMap.builder().maxSamplesPerNode(10).build();
+        // when
+        for (int millis = 1; millis <= 100; millis++) {
+            heatMap.recordLatency(grade, TimeUnit.MILLISECONDS.toNanos(millis));
+        }
+        for (int i = 0; i < 1000; i++) {
+            sampled.recordLatency(grade, TimeUnit.MILLISECONDS.toNanos(i % 100 + 1));
+        }
+        // then
+        assertThat(heatMap.latencyPercentile(grade, 95)).contains(Duration.ofMillis(95));
+        assertThat(heatMap.latencyPercentile(grade, 50)).contains(Duration.ofMillis(50));
+        assertThat(heatMap.latencyPercentile(grade, 100)).contains(Duration.ofMillis(100));
+        assertThat(heatMap.latencyPercentiles(95)).containsOnlyKeys(grade);
+        assertThat(sampled.sampleCount(grade)).isEqualTo(10);
+        assertThat(sampled.latencyPercentile(grade, 95).orElseThrow()).isBetween(Duration.ofMillis(1), Duration.ofMillis(100));
+        assertThatIllegalArgumentException()
+                .isThrownBy(() -> heatMap.latencyPercentile(grade, 0))
+                .withMessageContaining("percentile");
+        assertThatIllegalArgumentException()
+                .isThrownBy(() -> ExecutionHeatMap.builder().maxSamplesPerNode(0).build())
+                .withMessage("maxSamplesPerNode must be greater than zero");
+    }
+
+    @Test
+    void should_render_heat_map_of_workflow_runs() throws Exception {
+        // given - a slow generate node
+        Node<String, String> slow = Node.from("generate", input -> {
+            sleep(30);
+            return input;
+        });
+        DefaultStateWorkflow<String> workflow = DefaultStateWorkflow.<String>builder()
+                .statefulBean("question")
+                .addEdges(Transition.from(retrieve, slow), Transition.from(slow, END))
+                .build(retrieve);
+        ExecutionHeatMap heatMap = ExecutionHeatMap.builder().build();
+        for (int i = 0; i < 3; i++) {
+            workflow.run();
+            heatMap.record(workflow.getComputedTransitions());
+        }
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        // when
+        workflow.writeHeatMapImage(heatMap, out, Format.SVG);
+        // then
+        assertThat(heatMap.latencyPercentile(slow, 95).orElseThrow()).isGreaterThanOrEqualTo(Duration.ofMillis(25));
+        assertThat(out.toString(StandardCharsets.UTF_8)).contains("<svg", "p95 ", "3x");
+    }
+
+    @Test
+    void should_render_heat_map_with_the_collapser_of_the_configured_generator() throws Exception {
+        // given
+        GraphCollapser collapser = GraphCollapser.builder().collapseAbove(0).group("post processing", grade, generate).build();
+        DefaultStateWorkflow<String> workflow = DefaultStateWorkflow.<String>builder()
+                .statefulBean("question")
+                .addEdges(Transition.from(retrieve, grade), Transition.from(grade, generate), Transition.from(generate, END))
+                .graphImageGenerator(GraphvizImageGenerator.builder().collapser(collapser).build())
+                .build(retrieve);
+        ExecutionHeatMap heatMap = ExecutionHeatMap.builder().build();
+        workflow.run();
+        heatMap.record(workflow.getComputedTransitions());
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        // when
+        workflow.writeHeatMapImage(heatMap, out, Format.SVG);
+        // then
+        assertThat(out.toString(StandardCharsets.UTF_8)).contains("<svg", "post processing", "retrieve").doesNotContain("generate");
+    }
+
+    private static List<ComputedTransition> run(Transition... computed) {
+        List<ComputedTransition> run = new ArrayList<>();
+        for (Transition transition : computed) {
+            run.add(ComputedTransition.from(run.size() + 1, transition));
+        }
+        return run;
+    }
+
+    private static void sleep(long millis) {
+        try {
+            Thread.sleep(millis);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
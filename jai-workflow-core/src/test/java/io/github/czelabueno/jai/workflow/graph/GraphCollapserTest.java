@@ -0,0 +1,155 @@
+package io.github.czelabueno.jai.workflow.graph;
+
+import io.github.czelabueno.jai.workflow.node.Conditional;
+import io.github.czelabueno.jai.workflow.node.Node;
+import io.github.czelabueno.jai.workflow.transition.ComputedTransition;
+import io.github.czelabueno.jai.workflow.transition.Transition;
+import io.github.czelabueno.jai.workflow.transition.TransitionState;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static io.github.czelabueno.jai.workflow.WorkflowStateName.END;
+import static io.github.czelabueno.jai.workflow.WorkflowStateName.START;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatIllegalArgumentException;
+
+class GraphCollapserTest {
+
+    private static final int BRANCHES = 50;
+    private static final int ROUTES = 10;
+
+    private final Node<String, String> split = Node.from("split", input -> input);
+    private final Node<String, String> merge = Node.from("merge", input -> input);
+    private final Node<String, String> rewrite = Node.from("rewrite", input -> input);
+    private final Node<String, String> grade = Node.from("grade", input -> input);
+    private final List<Node<String, ?>> retrievers = new ArrayList<>();
+    private final List<Node<String, ?>> rerankers = new ArrayList<>();
+    private final List<Node<String, ?>> routes = new ArrayList<>();
+    private final Conditional<String> router;
+    private final List<Transition> transitions = new ArrayList<>();
+
+    GraphCollapserTest() {
+        // START -> split -> 50 x (retrieve -> rerank) -> merge -> rewrite -> grade -> router -> 10 routes -> END
+        merge.setLabels("Merge");
+        transitions.add(Transition.from(START, split));
+        for (int i = 0; i < BRANCHES; i++) {
+            Node<String, String> retriever = Node.from("retrieve " + i, input -> input);
+            Node<String, String> reranker = Node.from("rerank " + i, input -> input);
+            retriever.setLabels("Parallel");
+            retrievers.add(retriever);
+            rerankers.add(reranker);
+            transitions.add(Transition.from(split, retriever));
+            transitions.add(Transition.from(retriever, reranker));
+            transitions.add(Transition.from(reranker, merge));
+        }
+        for (int i = 0; i < ROUTES; i++) {
+            routes.add(Node.from("route " + i, input -> input));
+        }
+        router = Conditional.eval("router", input -> routes.get(0), routes);
+        transitions.add(Transition.from(merge, rewrite));
+        transitions.add(Transition.from(rewrite, grade));
+        transitions.add(Transition.from(grade, router));
+        routes.forEach(route -> {
+            transitions.add(Transition.from(router, route));
+            transitions.add(Transition.from(route, END));
+        });
+    }
+
+    @Test
+    void should_collapse_parallel_branches_conditional_fan_out_and_groups() {
+        // given
+        GraphCollapser collapser = GraphCollapser.builder().group("post processing", rewrite, grade).build();
+        // when
+        CollapsedGraph collapsed = collapser.collapse(transitions);
+        // then - 7 edges are laid out instead of 174
+        assertThat(collapsed.groups()).extracting(CollapsedState::name)
+                .containsExactly("post processing", "split parallel", "router branches");
+        CollapsedState parallel = collapsed.groups().get(1);
+        CollapsedState post = collapsed.groups().get(0);
+        CollapsedState branches = collapsed.groups().get(2);
+        assertThat(parallel.members()).hasSize(2 * BRANCHES).containsAll(retrievers).containsAll(rerankers);
+        assertThat(branches.members()).hasSize(ROUTES);
+        assertThat(collapsed.transitions()).containsExactly(
+                Transition.from(START, split),
+                Transition.from(split, parallel),
+                Transition.from(parallel, merge),
+                Transition.from(merge, post),
+                Transition.from(post, router),
+                Transition.from(router, branches),
+                Transition.from(branches, END));
+        assertThat(collapsed.representative(retrievers.get(7))).isSameAs(parallel);
+        assertThat(collapsed.representative(merge)).isSameAs(merge);
+        assertThat(collapsed.collapse(Transition.from(retrievers.get(0), rerankers.get(0)))).isNull();
+    }
+
+    @Test
+    void should_expand_collapsed_group_on_demand() {
+        // given
+        GraphCollapser collapser = GraphCollapser.builder().build();
+        // when
+        CollapsedGraph expanded = collapser.expanding("split parallel").collapse(transitions);
+        // then - only the parallel branches are laid out again
+        assertThat(expanded.groups()).extracting(CollapsedState::name).containsExactly("router branches");
+        assertThat(expanded.transitions()).hasSize(1 + 3 * BRANCHES + 3 + 2)
+                .contains(Transition.from(split, retrievers.get(3)), Transition.from(rerankers.get(3), merge));
+        assertThat(collapser.collapse(transitions).groups()).hasSize(2);
+        assertThat(collapser.toString()).isNotEqualTo(collapser.expanding("split parallel").toString());
+    }
+
+    @Test
+    void should_keep_small_workflows_and_narrow_fan_outs_expanded() {
+        // given
+        GraphCollapser small = GraphCollapser.builder().collapseAbove(transitions.size()).build();
+        GraphCollapser wideOnly = GraphCollapser.builder().collapseParallel(false).minFanOut(ROUTES + 1).build();
+        // when
+        CollapsedGraph notCollapsed = small.collapse(transitions);
+        CollapsedGraph parallelKept = wideOnly.collapse(transitions);
+        // then
+        assertThat(notCollapsed.groups()).isEmpty();
+        assertThat(notCollapsed.transitions()).isEqualTo(transitions);
+        assertThat(parallelKept.groups()).isEmpty();
+        assertThatIllegalArgumentException()
+                .isThrownBy(() -> GraphCollapser.builder().minFanOut(1).build())
+                .withMessage("minFanOut must be at least 2");
+        assertThatIllegalArgumentException()
+                .isThrownBy(() -> GraphCollapser.builder().group("start", START, split))
+                .withMessage("The _start_ state cannot be collapsed");
+    }
+
+    @Test
+    void should_fold_run_and_heat_map_onto_collapsed_graph() {
+        // given - a run through the fourth branch
+        List<Transition> path = List.of(
+                Transition.from(START, split),
+                Transition.from(split, retrievers.get(3)),
+                Transition.from(retrievers.get(3), rerankers.get(3)),
+                Transition.from(rerankers.get(3), merge),
+                Transition.from(merge, rewrite));
+        List<ComputedTransition> run = new ArrayList<>();
+        for (Transition transition : path) {
+            run.add(ComputedTransition.from(run.size() + 1, transition));
+        }
+        ExecutionHeatMap heatMap = ExecutionHeatMap.builder().build();
+        heatMap.record(run);
+        CollapsedGraph collapsed = GraphCollapser.builder().build().collapse(transitions);
+        TransitionState parallel = collapsed.representative(retrievers.get(3));
+        // when
+        List<ComputedTransition> collapsedRun = collapsed.collapseComputed(run);
+        ExecutionHeatMap collapsedHeatMap = collapsed.collapseHeatMap(heatMap);
+        // then - the transition within the branch is dropped
+        assertThat(collapsedRun).extracting(ComputedTransition::getTransition).containsExactly(
+                Transition.from(START, split),
+                Transition.from(split, parallel),
+                Transition.from(parallel, merge),
+                Transition.from(merge, rewrite));
+        assertThat(collapsedRun).extracting(ComputedTransition::getOrder).containsExactly(1, 2, 4, 5);
+        assertThat(collapsedRun.get(0)).isSameAs(run.get(0));
+        assertThat(collapsedHeatMap.runs()).isEqualTo(1);
+        assertThat(collapsedHeatMap.count(Transition.from(split, parallel))).isEqualTo(1);
+        assertThat(collapsedHeatMap.transitionCounts()).hasSize(4);
+        assertThat(collapsedHeatMap.latencyPercentile(parallel, 95)).isPresent();
+        assertThat(collapsedHeatMap.latencyPercentile(retrievers.get(3), 95)).isEmpty();
+    }
+}
@@ -0,0 +1,184 @@
+package io.github.czelabueno.jai.workflow.graph;
+
+import io.github.czelabueno.jai.workflow.DefaultStateWorkflow;
+import io.github.czelabueno.jai.workflow.node.Node;
+import io.github.czelabueno.jai.workflow.transition.Transition;
+import org.junit.jupiter.api.Test;
+
+import java.io.InterruptedIOException;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+
+import static io.github.czelabueno.jai.workflow.WorkflowStateName.END;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatIllegalArgumentException;
+import static org.assertj.core.api.Assertions.assertThatIllegalStateException;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class RenderQueueTest {
+
+    @Test
+    void should_render_in_background_and_coalesce_same_key() throws Exception {
+        // given - the worker is busy with a first render
+        CountDownLatch release = new CountDownLatch(1);
+        try (RenderQueue queue = RenderQueue.builder().build()) {
+            CompletableFuture<byte[]> busy = queue.submit(() -> awaitRelease(release));
+            // when
+            CompletableFuture<byte[]> first = queue.submit("a1", () -> bytes("first"));
+            CompletableFuture<byte[]> second = queue.submit("a1", () -> bytes("second"));
+            CompletableFuture<byte[]> other = queue.submit("b2", () -> bytes("other"));
+            // then - nothing blocks the caller, and the same key is rendered once
+            assertThat(busy).isNotDone();
+            assertThat(second).isNotSameAs(first);
+            release.countDown();
+            assertThat(first.get(5, TimeUnit.SECONDS)).isEqualTo(bytes("first"));
+            assertThat(other.get(5, TimeUnit.SECONDS)).isEqualTo(bytes("other"));
+            assertThat(queue.rendered()).isEqualTo(3);
+            assertThat(queue.coalesced()).isEqualTo(1);
+            assertThat(queue.pending()).isZero();
+        }
+    }
+
+    @Test
+    void should_keep_rendering_for_the_other_callers_when_one_cancels() throws Exception {
+        // given - the worker is busy with a first render
+        CountDownLatch release = new CountDownLatch(1);
+        try (RenderQueue queue = RenderQueue.builder().build()) {
+            queue.submit(() -> awaitRelease(release));
+            CompletableFuture<byte[]> cancelled = queue.submit("a1", () -> bytes("shared"));
+            CompletableFuture<byte[]> kept = queue.submit("a1", () -> bytes("shared"));
+            CompletableFuture<byte[]> abandoned = queue.submit("b2", () -> bytes("abandoned"));
+            // when
+            cancelled.cancel(true);
+            abandoned.cancel(true);
+            release.countDown();
+            // then - a render is skipped only once every caller cancelled it
+            assertThat(kept.get(5, TimeUnit.SECONDS)).isEqualTo(bytes("shared"));
+            assertThat(cancelled).isCancelled();
+            waitUntilIdle(queue);
+            assertThat(queue.rendered()).isEqualTo(2);
+        }
+    }
+
+    @Test
+    void should_drop_oldest_or_reject_when_full() throws Exception {
+        // given
+        CountDownLatch release = new CountDownLatch(1);
+        RenderCache.Render blocking = () -> awaitRelease(release);
+        try (RenderQueue dropping = RenderQueue.builder().capacity(2).build();
+             RenderQueue rejecting = RenderQueue.builder().capacity(1).overflowPolicy(RenderQueue.OverflowPolicy.REJECT).build()) {
+            dropping.submit(blocking);
+            rejecting.submit(blocking);
+            waitUntilIdle(dropping);
+            waitUntilIdle(rejecting);
+            // when
+            CompletableFuture<byte[]> oldest = dropping.submit(() -> bytes("1"));
+            dropping.submit(() -> bytes("2"));
+            CompletableFuture<byte[]> newest = dropping.submit(() -> bytes("3"));
+            rejecting.submit(() -> bytes("1"));
+            CompletableFuture<byte[]> rejected = rejecting.submit(() -> bytes("2"));
+            release.countDown();
+            // then
+            assertThatThrownBy(() -> oldest.get(5, TimeUnit.SECONDS)).isInstanceOf(CancellationException.class);
+            assertThat(newest.get(5, TimeUnit.SECONDS)).isEqualTo(bytes("3"));
+            assertThatThrownBy(() -> rejected.get(5, TimeUnit.SECONDS))
+                    .isInstanceOf(ExecutionException.class)
+                    .hasCauseInstanceOf(RejectedExecutionException.class);
+            assertThat(dropping.dropped()).isEqualTo(1);
+            assertThat(rejecting.dropped()).isEqualTo(1);
+        }
+    }
+
+    @Test
+    void should_fail_future_of_failed_render_and_refuse_after_shutdown() throws Exception {
+        // given
+        RenderQueue queue = RenderQueue.builder().workers(2).build();
+        // when
+        CompletableFuture<byte[]> failed = queue.submit(() -> {
+            throw new IllegalStateException("no engine");
+        });
+        // then
+        assertThatThrownBy(() -> failed.get(5, TimeUnit.SECONDS)).hasRootCauseMessage("no engine");
+        assertThat(queue.failed()).isEqualTo(1);
+        queue.close();
+        assertThat(queue.isShutdown()).isTrue();
+        assertThatIllegalStateException()
+                .isThrownBy(() -> queue.submit(() -> bytes("late")))
+                .withMessage("The render queue is shut down");
+        assertThatIllegalArgumentException()
+                .isThrownBy(() -> RenderQueue.builder().capacity(0).build())
+                .withMessage("capacity must be greater than zero");
+    }
+
+    @Test
+    void should_complete_every_accepted_render_when_shut_down_concurrently() throws Exception {
+        for (int i = 0; i < 200; i++) {
+            // given
+            RenderQueue queue = RenderQueue.builder().build();
+            CountDownLatch start = new CountDownLatch(1);
+            CompletableFuture<CompletableFuture<byte[]>> submitted = CompletableFuture.supplyAsync(() -> {
+                while (start.getCount() > 0) {
+                    Thread.onSpinWait(); // spins rather than parks, to race with the shutdown
+                }
+                try {
+                    return queue.submit(() -> bytes("racing"));
+                } catch (IllegalStateException e) {
+                    return CompletableFuture.completedFuture(bytes("refused")); // shut down first
+                }
+            });
+            // when
+            start.countDown();
+            queue.shutdown();
+            // then - an accepted render is never left pending by a rejected dispatch
+            assertThat(submitted.get(5, TimeUnit.SECONDS)).succeedsWithin(5, TimeUnit.SECONDS);
+        }
+    }
+
+    @Test
+    void should_render_computed_workflow_image_async() throws Exception {
+        // given
+        Node<String, String> retrieve = Node.from("retrieve", input -> input);
+        Node<String, String> generate = Node.from("generate", input -> input);
+        DefaultStateWorkflow<String> workflow = DefaultStateWorkflow.<String>builder()
+                .statefulBean("question")
+                .addEdges(Transition.from(retrieve, generate), Transition.from(generate, END))
+                .build(retrieve);
+        workflow.run();
+        try (RenderQueue queue = RenderQueue.builder().build()) {
+            // when
+            CompletableFuture<byte[]> image = workflow.renderComputedWorkflowImageAsync(queue, Format.SVG);
+            CompletableFuture<byte[]> same = workflow.renderComputedWorkflowImageAsync(queue, Format.SVG);
+            // then
+            String svg = new String(image.get(2, TimeUnit.MINUTES), StandardCharsets.UTF_8);
+            assertThat(svg).contains("<svg", "retrieve", "generate");
+            assertThat(same.get(2, TimeUnit.MINUTES)).isEqualTo(image.get());
+            assertThat(queue.rendered() + queue.coalesced()).isEqualTo(2);
+        }
+    }
+
+    private static void waitUntilIdle(RenderQueue queue) throws InterruptedException {
+        // the worker took the blocking render off the queue
+        while (queue.pending() > 0) {
+            Thread.sleep(10);
+        }
+    }
+
+    private static byte[] awaitRelease(CountDownLatch release) throws InterruptedIOException {
+        try {
+            release.await();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException();
+        }
+        return bytes("busy");
+    }
+
+    private static byte[] bytes(String text) {
+        return text.getBytes(StandardCharsets.UTF_8);
+    }
+}
@@ -0,0 +1,100 @@
+package io.github.czelabueno.jai.workflow.graph.graphviz;
+
+import guru.nidi.graphviz.engine.AbstractGraphvizEngine;
+import guru.nidi.graphviz.engine.Format;
+import guru.nidi.graphviz.engine.GraphvizCmdLineEngine;
+import guru.nidi.graphviz.engine.GraphvizJdkEngine;
+import guru.nidi.graphviz.engine.Options;
+import guru.nidi.graphviz.engine.Rasterizer;
+import io.github.czelabueno.jai.workflow.node.Conditional;
+import io.github.czelabueno.jai.workflow.node.Node;
+import io.github.czelabueno.jai.workflow.transition.Transition;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static io.github.czelabueno.jai.workflow.WorkflowStateName.END;
+import static io.github.czelabueno.jai.workflow.WorkflowStateName.START;
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Compares the layout time of a workflow graph of a hundred nodes on the embedded JavaScript engine and on the native
+ * {@code dot} executable, when it is installed. The engines are driven directly rather than through
+ * {@link GraphvizEnginePool}, whose engine is installed for the whole JVM.
+ * <p>
+ * Tagged {@code benchmark}, it is only run by the {@code benchmark} Maven profile.
+ */
+@Tag("benchmark")
+class GraphvizEngineBenchmarkTest {
+
+    private static final Logger log = LoggerFactory.getLogger(GraphvizEngineBenchmarkTest.class);
+
+    private static final int STAGES = 25;
+    private static final int MEASURED_ITERATIONS = 2;
+
+    @Test
+    void should_report_layout_time_by_engine() throws Exception {
+        // given - a retrieve, grade and retry loop per stage, 4 nodes each
+        List<Transition> transitions = largeWorkflow();
+        String dot = GraphvizImageGenerator.createGraph(transitions, null).toString();
+        // when
+        long javascriptNanos = measure(new GraphvizJdkEngine(), dot);
+        long nativeNanos = -1;
+        if (GraphvizEnginePool.findDot(System.getenv("PATH")) != null) {
+            nativeNanos = measure(new GraphvizCmdLineEngine(), dot);
+        }
+        // then
+        log.info("Layout of {} nodes: JavaScript {} ms/op, native dot {}", STAGES * 4 + 2,
+                TimeUnit.NANOSECONDS.toMillis(javascriptNanos),
+                nativeNanos < 0 ? "not installed" : TimeUnit.NANOSECONDS.toMillis(nativeNanos) + " ms/op");
+        assertThat(javascriptNanos).isPositive();
+    }
+
+    private static List<Transition> largeWorkflow() {
+        List<Transition> transitions = new ArrayList<>();
+        Node<String, String> previous = null;
+        for (int i = 0; i < STAGES; i++) {
+            Node<String, String> retrieve = Node.from("retrieve " + i, input -> input);
+            Node<String, String> rewrite = Node.from("rewrite " + i, input -> input);
+            Node<String, String> generate = Node.from("generate " + i, input -> input);
+            Conditional<String> grade = Conditional.eval("grade " + i, input -> generate, List.of(rewrite, generate));
+            transitions.add(previous == null ? Transition.from(START, retrieve) : Transition.from(previous, retrieve));
+            transitions.add(Transition.from(retrieve, grade));
+            transitions.add(Transition.from(grade, rewrite));
+            transitions.add(Transition.from(grade, generate));
+            transitions.add(Transition.from(rewrite, retrieve));
+            previous = generate;
+        }
+        transitions.add(Transition.from(previous, END));
+        return transitions;
+    }
+
+    private static long measure(AbstractGraphvizEngine engine, String dot) throws Exception {
+        CountDownLatch initialized = new CountDownLatch(1);
+        AtomicBoolean failed = new AtomicBoolean();
+        engine.init(ok -> initialized.countDown(), failure -> {
+            failed.set(true);
+            initialized.countDown();
+        });
+        initialized.await(1, TimeUnit.MINUTES);
+        assertThat(failed).as("%s initialization", engine).isFalse();
+        try {
+            Options options = Options.create().format(Format.SVG);
+            engine.execute(dot, options, Rasterizer.DEFAULT).asString(); // warm up
+            long start = System.nanoTime();
+            for (int i = 0; i < MEASURED_ITERATIONS; i++) {
+                assertThat(engine.execute(dot, options, Rasterizer.DEFAULT).asString()).contains("<svg");
+            }
+            return (System.nanoTime() - start) / MEASURED_ITERATIONS;
+        } finally {
+            engine.close();
+        }
+    }
+}
@@ -0,0 +1,163 @@
+package io.github.czelabueno.jai.workflow.graph.graphviz;
+
+import io.github.czelabueno.jai.workflow.graph.Format;
+import io.github.czelabueno.jai.workflow.node.Node;
+import io.github.czelabueno.jai.workflow.transition.Transition;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.awt.image.BufferedImage;
+import java.io.File;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static io.github.czelabueno.jai.workflow.WorkflowStateName.END;
+import static io.github.czelabueno.jai.workflow.WorkflowStateName.START;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatIllegalArgumentException;
+import static org.assertj.core.api.Assertions.assertThatIllegalStateException;
+
+class GraphvizEnginePoolTest {
+
+    private static final Logger log = LoggerFactory.getLogger(GraphvizEnginePoolTest.class);
+
+    private final Node<String, String> retrieve = Node.from("retrieve", input -> input);
+    private final Node<String, String> generate = Node.from("generate", input -> input);
+    private final List<Transition> transitions = List.of(
+            Transition.from(START, retrieve),
+            Transition.from(retrieve, generate),
+            Transition.from(generate, END));
+
+    @Test
+    void should_reuse_warm_engines_across_renders() throws Exception {
+        // given
+        try (GraphvizEnginePool pool = GraphvizEnginePool.builder().threads(1).build()) {
+            GraphvizImageGenerator generator = GraphvizImageGenerator.builder().enginePool(pool).build();
+            // when
+            long start = System.nanoTime();
+            generator.warmUp();
+            long warmUpMillis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+            start = System.nanoTime();
+            for (int i = 0; i < 3; i++) {
+                generator.generateBufferedImage(transitions, Format.PNG, StyleGraph.SKETCHY);
+            }
+            long renderMillis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start) / 3;
+            // then
+            log.info("Graphviz warm up: {} ms, warm sketchy render: {} ms", warmUpMillis, renderMillis);
+            assertThat(pool.roughifyerCount()).isEqualTo(1);
+            assertThat(renderMillis).isLessThan(warmUpMillis);
+        }
+    }
+
+    @Test
+    void should_render_concurrently_on_pool_threads() throws Exception {
+        // given
+        try (GraphvizEnginePool pool = GraphvizEnginePool.builder().threads(2).build()) {
+            GraphvizImageGenerator generator = GraphvizImageGenerator.builder()
+                    .dotFormat("digraph { a -> b; }")
+                    .enginePool(pool)
+                    .build();
+            ExecutorService callers = Executors.newFixedThreadPool(4);
+            try {
+                // when
+                List<Future<BufferedImage>> images = new ArrayList<>();
+                for (int i = 0; i < 8; i++) {
+                    images.add(callers.submit(() -> generator.generateBufferedImage(null, Format.SVG, StyleGraph.SKETCHY)));
+                }
+                // then
+                for (Future<BufferedImage> image : images) {
+                    assertThat(image.get(60, TimeUnit.SECONDS).getWidth()).isPositive();
+                }
+                assertThat(pool.roughifyerCount()).isBetween(1, 2);
+            } finally {
+                callers.shutdownNow();
+            }
+        }
+    }
+
+    @Test
+    void should_warm_up_once_per_thread_when_called_concurrently() throws Exception {
+        // given
+        try (GraphvizEnginePool pool = GraphvizEnginePool.builder().threads(2).build()) {
+            ExecutorService callers = Executors.newFixedThreadPool(3);
+            try {
+                // when
+                List<Future<?>> warmUps = new ArrayList<>();
+                for (int i = 0; i < 3; i++) {
+                    warmUps.add(callers.submit(pool::warmUp));
+                }
+                // then
+                for (Future<?> warmUp : warmUps) {
+                    warmUp.get(60, TimeUnit.SECONDS);
+                }
+                assertThat(pool.roughifyerCount()).isEqualTo(2);
+            } finally {
+                callers.shutdownNow();
+            }
+        }
+    }
+
+    @Test
+    void should_reject_renders_after_shutdown() {
+        // given
+        GraphvizEnginePool pool = GraphvizEnginePool.builder().threads(1).build();
+        GraphvizImageGenerator generator = GraphvizImageGenerator.builder().enginePool(pool).build();
+        // when
+        pool.shutdown();
+        pool.shutdown();
+        // then
+        assertThat(pool.isShutdown()).isTrue();
+        assertThatIllegalStateException()
+                .isThrownBy(() -> generator.generateBufferedImage(transitions, Format.SVG))
+                .withMessage("The Graphviz engine pool is shut down");
+        assertThatIllegalArgumentException()
+                .isThrownBy(() -> GraphvizEnginePool.builder().threads(0).build())
+                .withMessage("threads must be greater than zero");
+    }
+
+    @Test
+    void should_recreate_shared_pool_after_shutdown() {
+        // given
+        GraphvizEnginePool shared = GraphvizEnginePool.shared();
+        // when - then
+        assertThat(GraphvizEnginePool.shared()).isSameAs(shared);
+        shared.shutdown();
+        assertThat(GraphvizEnginePool.shared()).isNotSameAs(shared);
+        assertThat(GraphvizEnginePool.shared().isShutdown()).isFalse();
+    }
+
+    @Test
+    void should_select_engine_by_policy(@TempDir Path bin, @TempDir Path empty) throws Exception {
+        // given - a dot executable in one directory of the search path
+        Path dot = Files.writeString(bin.resolve(System.getProperty("os.name").toLowerCase().startsWith("windows") ? "dot.exe" : "dot"), "");
+        assertThat(dot.toFile().setExecutable(true)).isTrue();
+        String withDot = empty + File.pathSeparator + bin;
+        String withoutDot = empty.toString();
+        // when
+        EnginePolicy autoWithDot = GraphvizEnginePool.resolveEngine(EnginePolicy.AUTO, withDot);
+        EnginePolicy autoWithoutDot = GraphvizEnginePool.resolveEngine(EnginePolicy.AUTO, withoutDot);
+        // then
+        assertThat(GraphvizEnginePool.findDot(withDot)).isEqualTo(dot);
+        assertThat(autoWithDot).isEqualTo(EnginePolicy.NATIVE);
+        assertThat(autoWithoutDot).isEqualTo(EnginePolicy.JAVASCRIPT);
+        assertThat(GraphvizEnginePool.resolveEngine(EnginePolicy.JAVASCRIPT, withDot)).isEqualTo(EnginePolicy.JAVASCRIPT);
+        try (GraphvizEnginePool pool = GraphvizEnginePool.builder().threads(1).searchPath(withoutDot).build()) {
+            assertThat(pool.engine()).isEqualTo(EnginePolicy.JAVASCRIPT);
+        }
+        assertThatIllegalStateException()
+                .isThrownBy(() -> GraphvizEnginePool.builder().engine(EnginePolicy.NATIVE).searchPath(withoutDot).build())
+                .withMessageContaining("dot executable was not found");
+        assertThatIllegalArgumentException()
+                .isThrownBy(() -> GraphvizEnginePool.builder().nativeTimeout(Duration.ZERO).build())
+                .withMessage("nativeTimeout must be positive");
+    }
+}
@@ -1,6 +1,8 @@
 package io.github.czelabueno.jai.workflow.graph.graphviz;
 
+import io.github.czelabueno.jai.workflow.graph.ExecutionHeatMap;
 import io.github.czelabueno.jai.workflow.graph.Format;
+import io.github.czelabueno.jai.workflow.graph.GraphCollapser;
 import io.github.czelabueno.jai.workflow.node.Node;
 import io.github.czelabueno.jai.workflow.transition.ComputedTransition;
 import io.github.czelabueno.jai.workflow.transition.Transition;
@@ -9,12 +11,22 @@ import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 
 import java.awt.image.BufferedImage;
+import java.io.ByteArrayOutputStream;
+import java.io.FilterOutputStream;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collections;
 import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.regex.MatchResult;
+import java.util.regex.Pattern;
 import java.util.stream.IntStream;
 
 import static io.github.czelabueno.jai.workflow.WorkflowStateName.END;
@@ -369,4 +381,177 @@ class GraphvizImageGeneratorTest {
         assertThat(image.getWidth()).isGreaterThan(0);
         assertThat(image.getHeight()).isGreaterThan(0);
     }
+
+    @SneakyThrows
+    @Test
+    void test_render_computed_images_concurrently() {
+        // given - a graph with two branches and four different runs over it
+        Node<String, String> a = Node.from("a", s -> s);
+        Node<String, String> b = Node.from("b", s -> s);
+        Node<String, String> c = Node.from("c", s -> s);
+        Node<String, String> d = Node.from("d", s -> s);
+        List<Transition> graph = List.of(
+                Transition.from(START, a), Transition.from(a, b), Transition.from(a, c),
+                Transition.from(b, d), Transition.from(c, d), Transition.from(d, END));
+        List<List<Transition>> runs = List.of(
+                List.of(graph.get(1), graph.get(3), graph.get(5)),
+                List.of(graph.get(2), graph.get(4), graph.get(5)),
+                List.of(graph.get(1)),
+                graph.subList(1, graph.size()));
+        List<List<ComputedTransition>> computedRuns = runs.stream()
+                .map(run -> IntStream.range(0, run.size())
+                        .mapToObj(i -> ComputedTransition.from(i + 1, run.get(i)))
+                        .toList())
+                .toList();
+        List<String> expectedGraphs = computedRuns.stream()
+                .map(computed -> GraphvizImageGenerator.createGraph(graph, computed, StyleGraph.DEFAULT).toString())
+                .toList();
+        assertThat(expectedGraphs).doesNotHaveDuplicates();
+        ExecutorService callers = Executors.newFixedThreadPool(16);
+        try (GraphvizEnginePool pool = GraphvizEnginePool.builder().threads(4).build()) {
+            // when - hundreds of graphs are styled at the same time
+            List<Future<String>> graphs = new ArrayList<>();
+            for (int i = 0; i < 800; i++) {
+                List<ComputedTransition> computed = computedRuns.get(i % computedRuns.size());
+                graphs.add(callers.submit(() -> GraphvizImageGenerator.createGraph(graph, computed, StyleGraph.DEFAULT).toString()));
+            }
+            // and images are rendered at the same time on the engine pool
+            List<GraphvizImageGenerator> generators = computedRuns.stream()
+                    .map(computed -> GraphvizImageGenerator.builder().computedTransitions(computed).enginePool(pool).build())
+                    .toList();
+            List<Future<String>> images = new ArrayList<>();
+            for (int i = 0; i < 16; i++) {
+                GraphvizImageGenerator generator = generators.get(i % generators.size());
+                images.add(callers.submit(() -> new String(generator.generateImageBytes(graph, Format.SVG), StandardCharsets.UTF_8)));
+            }
+            // then - each graph is styled by its own run only
+            for (int i = 0; i < graphs.size(); i++) {
+                assertThat(graphs.get(i).get(1, TimeUnit.MINUTES)).isEqualTo(expectedGraphs.get(i % computedRuns.size()));
+            }
+            // the layout may differ by a fraction of pixel between the JS engines of the pool, not the colors
+            for (int i = 0; i < images.size(); i++) {
+                assertThat(colors(images.get(i).get(5, TimeUnit.MINUTES)))
+                        .isEqualTo(colors(images.get(i % generators.size()).get()));
+            }
+            assertThat(colors(images.get(0).get())).isNotEqualTo(colors(images.get(1).get()));
+        } finally {
+            callers.shutdownNow();
+        }
+    }
+
+    private static List<String> colors(String svg) {
+        return Pattern.compile("(fill|stroke)=\"[^\"]*\"").matcher(svg).results()
+                .map(MatchResult::group)
+                .toList();
+    }
+
+    @Test
+    void test_overlay_long_computed_trace_with_execution_counts() {
+        // given - a loop computed thousands of times by a single run
+        Node<String, String> retrieve = Node.from("retrieve", s -> s);
+        Node<String, String> grade = Node.from("grade", s -> s);
+        Node<String, String> generate = Node.from("generate", s -> s);
+        List<Transition> graph = List.of(
+                Transition.from(START, retrieve), Transition.from(retrieve, grade),
+                Transition.from(grade, retrieve), Transition.from(grade, generate),
+                Transition.from(generate, END));
+        List<ComputedTransition> computed = new ArrayList<>();
+        for (int i = 0; i < 5000; i++) {
+            computed.add(ComputedTransition.from(computed.size() + 1, graph.get(1)));
+            computed.add(ComputedTransition.from(computed.size() + 1, graph.get(2)));
+        }
+        computed.add(ComputedTransition.from(computed.size() + 1, graph.get(1)));
+        computed.add(ComputedTransition.from(computed.size() + 1, graph.get(3)));
+        computed.add(ComputedTransition.from(computed.size() + 1, graph.get(4)));
+        // when
+        String dot = GraphvizImageGenerator.createGraph(graph, computed, StyleGraph.DEFAULT).toString();
+        // then - the loop is labelled with its number of executions, the transitions computed once are not
+        assertThat(dot)
+                .contains("\"retrieve\" -> \"grade\" [\"label\"=\"5001x\",\"penwidth\"=\"5.0\"]")
+                .contains("\"grade\" -> \"retrieve\" [\"label\"=\"5000x\",\"penwidth\"=\"5.0\"]")
+                .contains("\"grade\" -> \"generate\"\n");
+    }
+
+    @Test
+    @SneakyThrows
+    void test_stream_image_to_output_stream() {
+        // given
+        Node<String, String> node1 = Node.from("node1", s -> s);
+        Node<String, String> node2 = Node.from("node2", s -> s);
+        List<Transition> transitions = List.of(Transition.from(START, node1), Transition.from(node1, node2), Transition.from(node2, END));
+        GraphvizImageGenerator generator = GraphvizImageGenerator.builder().build();
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        boolean[] closed = new boolean[1];
+        FilterOutputStream out = new FilterOutputStream(bytes) {
+            @Override
+            public void close() {
+                closed[0] = true;
+            }
+        };
+        // when
+        generator.writeImage(transitions, out, Format.SVG);
+        // then - the image is streamed as is, and the stream is left open to the caller
+        String svg = bytes.toString(StandardCharsets.UTF_8);
+        assertThat(svg).contains("<svg", "node1", "node2").endsWith("</svg>\n");
+        assertThat(closed[0]).isFalse();
+        assertThat(generator.generateImageBuffer(transitions, Format.SVG).remaining()).isGreaterThan(0);
+        assertThatThrownBy(() -> generator.writeImage(transitions, (java.io.OutputStream) null, Format.SVG))
+                .isInstanceOf(NullPointerException.class);
+    }
+
+    @Test
+    void test_heat_map_graph_by_frequency_and_latency() {
+        // given - the retry loop is taken by one run out of four
+        Node<String, String> retrieve = Node.from("retrieve", s -> s);
+        Node<String, String> rewrite = Node.from("rewrite", s -> s);
+        Node<String, String> generate = Node.from("generate", s -> s);
+        List<Transition> graph = List.of(
+                Transition.from(START, retrieve), Transition.from(retrieve, generate),
+                Transition.from(retrieve, rewrite), Transition.from(rewrite, retrieve),
+                Transition.from(generate, END));
+        ExecutionHeatMap heatMap = ExecutionHeatMap.builder().build();
+        for (int i = 0; i < 4; i++) {
+            heatMap.record(List.of(ComputedTransition.from(1, graph.get(1)), ComputedTransition.from(2, graph.get(4))));
+        }
+        heatMap.record(List.of(ComputedTransition.from(1, graph.get(2))));
+        // when
+        String dot = GraphvizImageGenerator.createHeatMapGraph(graph, heatMap, StyleGraph.DEFAULT).toString();
+        // then - the hottest edge is the widest, the edge never taken is dashed
+        assertThat(dot)
+                .contains("\"_start_\" -> \"retrieve\" [\"label\"=\"5x\"")
+                .contains("\"retrieve\" -> \"generate\" [\"label\"=\"4x\",\"color\"=\"#d9534f\",\"penwidth\"=\"5.0\"]")
+                .contains("\"retrieve\" -> \"rewrite\" [\"label\"=\"1x\",\"color\"=\"#ac9194\",\"penwidth\"=\"2.0\"]")
+                .contains("\"rewrite\" -> \"retrieve\" [\"style\"=\"dashed\",\"color\"=\"#9da5ab\"]")
+                .contains("p95 ");
+        assertThat(GraphvizImageGenerator.builder().heatMap(heatMap).build().renderFingerprint()).isNull();
+        assertThatThrownBy(() -> GraphvizImageGenerator.builder().heatMap(heatMap).computedTransitions(List.of()).build())
+                .isInstanceOf(IllegalArgumentException.class)
+                .hasMessage("A heat map and computed transitions cannot be rendered together");
+    }
+
+    @Test
+    @SneakyThrows
+    void test_render_large_workflow_collapsed() {
+        // given - 200 parallel branches between a split and a merge node
+        Node<String, String> split = Node.from("split", s -> s);
+        Node<String, String> merge = Node.from("merge", s -> s);
+        merge.setLabels("Merge");
+        List<Transition> graph = new ArrayList<>();
+        graph.add(Transition.from(START, split));
+        for (int i = 0; i < 200; i++) {
+            Node<String, String> branch = Node.from("branch " + i, s -> s);
+            graph.add(Transition.from(split, branch));
+            graph.add(Transition.from(branch, merge));
+        }
+        graph.add(Transition.from(merge, END));
+        GraphCollapser collapser = GraphCollapser.builder().build();
+        GraphvizImageGenerator collapsed = GraphvizImageGenerator.builder().collapser(collapser).build();
+        // when
+        String svg = new String(collapsed.generateImageBytes(graph, Format.SVG), StandardCharsets.UTF_8);
+        // then - the branches are laid out as one summary node
+        assertThat(svg).contains("split parallel").contains("200 nodes").doesNotContain("branch199");
+        assertThat(collapsed.renderFingerprint())
+                .contains("collapser:")
+                .isNotEqualTo(GraphvizImageGenerator.builder().collapser(collapser.expanding("split parallel")).build().renderFingerprint());
+    }
 }
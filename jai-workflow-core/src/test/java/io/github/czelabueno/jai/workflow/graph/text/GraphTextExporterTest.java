@@ -0,0 +1,185 @@
+package io.github.czelabueno.jai.workflow.graph.text;
+
+import guru.nidi.graphviz.model.MutableGraph;
+import guru.nidi.graphviz.parse.Parser;
+import io.github.czelabueno.jai.workflow.DefaultStateWorkflow;
+import io.github.czelabueno.jai.workflow.graph.graphviz.Orientation;
+import io.github.czelabueno.jai.workflow.node.Conditional;
+import io.github.czelabueno.jai.workflow.node.Node;
+import io.github.czelabueno.jai.workflow.transition.ComputedTransition;
+import io.github.czelabueno.jai.workflow.transition.Transition;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.StringWriter;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import static io.github.czelabueno.jai.workflow.WorkflowStateName.END;
+import static io.github.czelabueno.jai.workflow.WorkflowStateName.START;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatIllegalArgumentException;
+
+class GraphTextExporterTest {
+
+    private final Node<String, String> retrieve = Node.from("retrieve", input -> input);
+    private final Node<String, String> webSearch = Node.from("web search", input -> input);
+    private final Node<String, String> generate = Node.from("generate", input -> input);
+    private final Conditional<String> grade = Conditional.eval("grade", input -> generate, List.of(webSearch, generate));
+    private final List<Transition> transitions = List.of(
+            Transition.from(START, retrieve),
+            Transition.from(retrieve, grade),
+            Transition.from(grade, webSearch),
+            Transition.from(grade, generate),
+            Transition.from(webSearch, generate),
+            Transition.from(generate, END));
+    private final List<ComputedTransition> computedTransitions = List.of(
+            ComputedTransition.from(1, transitions.get(1)),
+            ComputedTransition.from(2, transitions.get(3)),
+            ComputedTransition.from(3, transitions.get(5)));
+
+    @Test
+    void should_export_definition_as_dot() throws IOException {
+        // given
+        generate.setLabels("Merge");
+        // when
+        String dot = new DotExporter().export(transitions, null, Orientation.HORIZONTAL);
+        // then
+        assertThat(dot).isEqualTo("""
+                digraph workflow {
+                  rankdir=LR;
+                  splines=polyline;
+                  node [shape=rectangle, color=lightblue2, style=rounded, fontname=arial];
+                  edge [color=darkgreen, arrowsize=0.8];
+                  "_start_" [shape=Mdiamond, color=orange, fillcolor="#fff0d4", style=filled];
+                  "retrieve";
+                  "_start_" -> "retrieve";
+                  "grade" [shape=diamond, fontsize=10];
+                  "retrieve" -> "grade";
+                  "web search";
+                  "grade" -> "web search" [style=dashed];
+                  "generate" [label=<<b><i>merge</i></b><br/>generate>, color=orange];
+                  "grade" -> "generate" [style=dashed];
+                  "web search" -> "generate";
+                  "_end_" [shape=Msquare, color=green, fillcolor="#d9ffd4", style=filled];
+                  "generate" -> "_end_";
+                }
+                """);
+        MutableGraph graph = new Parser().read(dot);
+        assertThat(graph.nodes()).hasSize(6);
+    }
+
+    @Test
+    void should_highlight_computed_transitions_in_dot() throws IOException {
+        // when
+        String dot = new DotExporter().export(transitions, computedTransitions);
+        // then
+        assertThat(dot)
+                .contains("\"retrieve\" [color=\"#28a746\", fillcolor=\"#5b9a77\", style=\"rounded,filled\"];")
+                .contains("\"web search\" [color=\"#9da5ab\", fillcolor=\"#6c757d\", style=\"rounded,dashed,filled\"];")
+                .contains("\"_start_\" -> \"retrieve\" [penwidth=2];")
+                .contains("\"web search\" -> \"generate\" [color=\"#9da5ab\"];")
+                .contains("\"grade\" -> \"generate\" [style=dashed, penwidth=2];")
+                .contains("\"generate\" -> \"_end_\" [penwidth=2];");
+        assertThat(new Parser().read(dot).nodes()).hasSize(6);
+    }
+
+    @Test
+    void should_export_computed_run_as_mermaid() {
+        // given
+        retrieve.setLabels("Split");
+        // when
+        String mermaid = new MermaidExporter().export(transitions, computedTransitions);
+        // then
+        assertThat(mermaid).isEqualTo("""
+                flowchart TD
+                    classDef start fill:#fff0d4,stroke:orange
+                    classDef finish fill:#d9ffd4,stroke:green
+                    classDef executed fill:#5b9a77,stroke:#28a746,color:#fff
+                    classDef skipped fill:#6c757d,stroke:#9da5ab,stroke-dasharray:5 5,color:#fff
+                    n0(["_start_"]):::start
+                    n1("<i>split</i><br/>retrieve"):::executed
+                    n0 --> n1
+                    n2{"grade"}:::executed
+                    n1 --> n2
+                    n3("web search"):::skipped
+                    n2 -.-> n3
+                    n4("generate"):::executed
+                    n2 -.-> n4
+                    n3 --> n4
+                    n5[["_end_"]]:::finish
+                    n4 --> n5
+                    linkStyle 0,1,3,5 stroke:#28a746,stroke-width:2px
+                    linkStyle 2,4 stroke:#9da5ab,stroke-dasharray:5 5
+                """);
+    }
+
+    @Test
+    void should_stream_to_output_stream_and_escape_names() throws IOException {
+        // given
+        Node<String, String> quoted = Node.from("say \"hi\" <now>", input -> input);
+        List<Transition> quotedTransitions = List.of(Transition.from(quoted, END));
+        ByteArrayOutputStream dot = new ByteArrayOutputStream();
+        ByteArrayOutputStream mermaid = new ByteArrayOutputStream();
+        // when
+        new DotExporter().export(quotedTransitions, Collections.emptyList(), dot);
+        new MermaidExporter().export(quotedTransitions, Collections.emptyList(), mermaid);
+        // then
+        assertThat(dot.toString(StandardCharsets.UTF_8)).contains("\"say \\\"hi\\\" <now>\" -> \"_end_\";");
+        assertThat(mermaid.toString(StandardCharsets.UTF_8)).contains("n0(\"say #quot;hi#quot; #lt;now#gt;\")");
+        assertThatIllegalArgumentException()
+                .isThrownBy(() -> new MermaidExporter().export(List.of(), null))
+                .withMessageContaining("Transitions list can not be null or empty");
+    }
+
+    @Test
+    void should_export_workflow_graph() throws IOException {
+        // given
+        DefaultStateWorkflow<String> workflow = DefaultStateWorkflow.<String>builder()
+                .statefulBean("question")
+                .addEdges(Transition.from(retrieve, generate), Transition.from(generate, END))
+                .build(retrieve);
+        StringWriter definition = new StringWriter();
+        StringWriter computed = new StringWriter();
+        // when
+        workflow.exportWorkflowGraph(new MermaidExporter(), definition);
+        workflow.run();
+        workflow.exportWorkflowGraph(new MermaidExporter(), computed);
+        // then
+        assertThat(definition.toString()).contains("(\"retrieve\")\n").doesNotContain("linkStyle");
+        assertThat(computed.toString()).contains("(\"retrieve\"):::executed", "linkStyle 0,1,2 stroke:#28a746");
+    }
+
+    @Test
+    void should_label_edges_computed_more_than_once() throws IOException {
+        // given - the run searches the web three times before generating
+        List<Transition> loop = List.of(
+                Transition.from(START, retrieve),
+                Transition.from(retrieve, grade),
+                Transition.from(grade, webSearch),
+                Transition.from(webSearch, grade),
+                Transition.from(grade, generate),
+                Transition.from(generate, END));
+        List<ComputedTransition> computed = new ArrayList<>();
+        computed.add(ComputedTransition.from(1, loop.get(1)));
+        for (int i = 0; i < 3; i++) {
+            computed.add(ComputedTransition.from(computed.size() + 1, loop.get(2)));
+            computed.add(ComputedTransition.from(computed.size() + 1, loop.get(3)));
+        }
+        computed.add(ComputedTransition.from(computed.size() + 1, loop.get(4)));
+        computed.add(ComputedTransition.from(computed.size() + 1, loop.get(5)));
+        // when
+        String dot = new DotExporter().export(loop, computed);
+        String mermaid = new MermaidExporter().export(loop, computed);
+        // then
+        assertThat(dot)
+                .contains("\"grade\" -> \"web search\" [style=dashed, label=\"3x\", penwidth=2.6];")
+                .contains("\"web search\" -> \"grade\" [label=\"3x\", penwidth=2.6];")
+                .contains("\"retrieve\" -> \"grade\" [penwidth=2];");
+        assertThat(new Parser().read(dot).nodes()).hasSize(6);
+        assertThat(mermaid).contains("n2 -.-> |3x| n3", "n3 --> |3x| n2", "n1 --> n2\n");
+    }
+}
@@ -0,0 +1,104 @@
+package io.github.czelabueno.jai.workflow.state;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.Comparator;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatIllegalArgumentException;
+
+class ChannelStateTest {
+
+    private static final StateKey<String> QUESTION = StateKey.of("question");
+    private static final StateKey<List<String>> DOCUMENTS = StateKey.appending("documents");
+    private static final StateKey<Double> SCORE = StateKey.max("score");
+    private static final StateKey<String> LONGEST = StateKey.of("longest", Reducer.max(Comparator.comparingInt(String::length)));
+
+    @Test
+    void should_combine_writes_with_channel_reducers() {
+        // given
+        ChannelState state = ChannelState.of(QUESTION, DOCUMENTS, SCORE, LONGEST);
+        // when
+        state.update(QUESTION, "first question")
+                .update(QUESTION, "What is jAI?")
+                .update(DOCUMENTS, List.of("doc1"))
+                .update(DOCUMENTS, List.of("doc2", "doc3"))
+                .update(SCORE, 0.4)
+                .update(SCORE, 0.9)
+                .update(SCORE, 0.7)
+                .update(LONGEST, "short")
+                .update(LONGEST, "much longer")
+                .update(LONGEST, "tiny");
+        // then
+        assertThat(state.get(QUESTION)).isEqualTo("What is jAI?");
+        assertThat(state.get(DOCUMENTS)).containsExactly("doc1", "doc2", "doc3");
+        assertThat(state.get(SCORE)).isEqualTo(0.9);
+        assertThat(state.get(LONGEST)).isEqualTo("much longer");
+        assertThat(state.toMap()).containsOnlyKeys("question", "documents", "score", "longest");
+    }
+
+    @Test
+    void should_return_initial_value_before_first_write() {
+        // given
+        ChannelState state = ChannelState.of(QUESTION, DOCUMENTS);
+        // then
+        assertThat(state.get(QUESTION)).isNull();
+        assertThat(state.get(DOCUMENTS)).isEmpty();
+    }
+
+    @Test
+    void should_merge_branch_writes_in_branch_order() {
+        // given
+        ChannelState state = ChannelState.of(QUESTION, DOCUMENTS, SCORE);
+        state.update(QUESTION, "What is jAI?").update(DOCUMENTS, List.of("cached"));
+        ChannelState webSearch = state.fork();
+        ChannelState vectorSearch = state.fork();
+        // when
+        vectorSearch.update(DOCUMENTS, List.of("vector1")).update(SCORE, 0.8);
+        webSearch.update(DOCUMENTS, List.of("web1")).update(DOCUMENTS, List.of("web2")).update(SCORE, 0.5);
+        webSearch.update(QUESTION, "rewritten question");
+        // then - a branch reads the state at fork time and its own writes only
+        assertThat(webSearch.get(DOCUMENTS)).containsExactly("cached", "web1", "web2");
+        assertThat(vectorSearch.get(DOCUMENTS)).containsExactly("cached", "vector1");
+        assertThat(vectorSearch.get(QUESTION)).isEqualTo("What is jAI?");
+        assertThat(state.get(DOCUMENTS)).containsExactly("cached");
+        // when
+        state.merge(List.of(webSearch, vectorSearch));
+        // then
+        assertThat(state.get(DOCUMENTS)).containsExactly("cached", "web1", "web2", "vector1");
+        assertThat(state.get(SCORE)).isEqualTo(0.8);
+        assertThat(state.get(QUESTION)).isEqualTo("rewritten question");
+    }
+
+    @Test
+    void should_reject_undeclared_channel() {
+        // given
+        ChannelState state = ChannelState.of(QUESTION);
+        // when - then
+        assertThatIllegalArgumentException()
+                .isThrownBy(() -> state.update(SCORE, 1.0))
+                .withMessageContaining("Channel 'score' is not declared");
+        assertThatIllegalArgumentException()
+                .isThrownBy(() -> state.get(StateKey.<String>of("question")))
+                .withMessageContaining("Channel 'question' is not declared");
+    }
+
+    @Test
+    void should_reject_duplicated_channel_names() {
+        assertThatIllegalArgumentException()
+                .isThrownBy(() -> ChannelState.of(QUESTION, StateKey.of("question")))
+                .withMessage("Channel 'question' is declared twice");
+    }
+
+    @Test
+    void should_reject_merge_of_foreign_branch() {
+        // given
+        ChannelState state = ChannelState.of(QUESTION);
+        ChannelState other = ChannelState.of(QUESTION);
+        // when - then
+        assertThatIllegalArgumentException()
+                .isThrownBy(() -> state.merge(List.of(other.fork())))
+                .withMessage("Only branches forked from this state can be merged");
+    }
+}
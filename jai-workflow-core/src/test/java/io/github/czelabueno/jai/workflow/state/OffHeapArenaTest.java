@@ -0,0 +1,119 @@
+package io.github.czelabueno.jai.workflow.state;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.stream.Stream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatIllegalStateException;
+
+class OffHeapArenaTest {
+
+    @TempDir
+    Path scratchDirectory;
+
+    @Test
+    void should_store_text_and_bytes_off_heap() throws IOException {
+        // given
+        OffHeapArena arena = OffHeapArena.builder().build();
+        ByteBuffer buffer = ByteBuffer.wrap(new byte[]{1, 2, 3, 4});
+        buffer.position(1);
+        // when
+        OffHeapValue text = arena.storeText("jAI Workflow ✓");
+        OffHeapValue bytes = arena.store(buffer);
+        // then
+        assertThat(text.text()).isEqualTo("jAI Workflow ✓");
+        assertThat(text.size()).isEqualTo(16);
+        assertThat(text.isMapped()).isFalse();
+        assertThat(bytes.toByteArray()).containsExactly(2, 3, 4);
+        assertThat(buffer.position()).isEqualTo(1);
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        text.writeTo(out);
+        assertThat(out.toString(StandardCharsets.UTF_8)).isEqualTo("jAI Workflow ✓");
+        assertThat(arena.allocatedBytes()).isEqualTo(19);
+        assertThat(arena.liveValues()).isEqualTo(2);
+    }
+
+    @Test
+    void should_store_large_payloads_in_deleted_scratch_files() throws IOException {
+        // given
+        OffHeapArena arena = OffHeapArena.builder()
+                .mappedFileThreshold(1024)
+                .scratchDirectory(scratchDirectory)
+                .build();
+        String document = "retrieved document ".repeat(1000);
+        // when
+        OffHeapValue value = arena.storeText(document);
+        // then
+        assertThat(value.isMapped()).isTrue();
+        assertThat(value.text()).isEqualTo(document);
+        try (Stream<Path> files = Files.list(scratchDirectory)) {
+            assertThat(files).isEmpty();
+        }
+        arena.release();
+        assertThat(value.isReleased()).isTrue();
+    }
+
+    @Test
+    void should_account_and_release_payloads() {
+        // given
+        OffHeapArena arena = OffHeapArena.builder().build();
+        long totalBefore = OffHeapArena.totalAllocatedBytes();
+        OffHeapValue first = arena.store(new byte[1000]);
+        OffHeapValue second = arena.store(new byte[500]);
+        // when
+        first.release();
+        // then
+        assertThat(arena.allocatedBytes()).isEqualTo(500);
+        assertThat(arena.peakBytes()).isEqualTo(1500);
+        assertThat(arena.storedBytes()).isEqualTo(1500);
+        assertThat(OffHeapArena.totalAllocatedBytes() - totalBefore).isEqualTo(500);
+        assertThatIllegalStateException()
+                .isThrownBy(first::toByteArray)
+                .withMessage("The off-heap value was released");
+        // when
+        arena.release();
+        // then
+        assertThat(second.isReleased()).isTrue();
+        assertThat(arena.allocatedBytes()).isZero();
+        assertThat(arena.peakBytes()).isZero();
+        assertThat(arena.storedBytes()).isZero();
+        assertThat(arena.liveValues()).isZero();
+        assertThat(OffHeapArena.totalAllocatedBytes()).isEqualTo(totalBefore);
+        assertThat(arena.storeText("next run").text()).isEqualTo("next run");
+    }
+
+    @Test
+    void should_fail_allocation_above_budget() {
+        // given
+        OffHeapArena arena = OffHeapArena.builder().maxBytes(1000).build();
+        arena.store(new byte[800]);
+        // when - then
+        assertThatIllegalStateException()
+                .isThrownBy(() -> arena.store(new byte[300]))
+                .withMessageContaining("budget of 1000 bytes cannot hold 300 more bytes");
+        assertThat(arena.allocatedBytes()).isEqualTo(800);
+        assertThat(arena.store(new byte[200]).size()).isEqualTo(200);
+    }
+
+    @Test
+    void should_reject_payloads_after_close() {
+        // given
+        OffHeapArena arena = OffHeapArena.builder().build();
+        OffHeapValue value = arena.storeText("document");
+        // when
+        arena.close();
+        // then
+        assertThat(value.isReleased()).isTrue();
+        assertThatIllegalStateException()
+                .isThrownBy(() -> arena.storeText("document"))
+                .withMessage("The off-heap arena is closed");
+    }
+}
@@ -0,0 +1,105 @@
+package io.github.czelabueno.jai.workflow.state;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class PersistentMapTest {
+
+    record CollidingKey(String name) {
+        @Override
+        public int hashCode() {
+            return 42;
+        }
+    }
+
+    @Test
+    void should_behave_like_a_hash_map() {
+        // given
+        Random random = new Random(7);
+        Map<Integer, Integer> expected = new HashMap<>();
+        PersistentMap<Integer, Integer> map = PersistentMap.empty();
+        // when
+        for (int i = 0; i < 20_000; i++) {
+            int key = random.nextInt(5_000);
+            if (random.nextInt(4) == 0) {
+                expected.remove(key);
+                map = map.without(key);
+            } else {
+                expected.put(key, i);
+                map = map.with(key, i);
+            }
+        }
+        // then
+        assertThat(map.size()).isEqualTo(expected.size());
+        assertThat(map.toMap()).isEqualTo(expected);
+        for (int key = 0; key < 5_000; key++) {
+            assertThat(map.get(key)).isEqualTo(expected.get(key));
+        }
+        assertThat(map).isEqualTo(PersistentMap.copyOf(expected));
+    }
+
+    @Test
+    void should_keep_previous_versions_unchanged() {
+        // given
+        PersistentMap<String, Object> v1 = PersistentMap.<String, Object>empty().with("question", "What is jAI?").with("score", 1);
+        // when
+        PersistentMap<String, Object> v2 = v1.with("score", 2).with("answer", "A workflow engine");
+        PersistentMap<String, Object> v3 = v2.without("question");
+        // then
+        assertThat(v1.toMap()).containsOnly(Map.entry("question", "What is jAI?"), Map.entry("score", 1));
+        assertThat(v2.toMap()).containsOnly(Map.entry("question", "What is jAI?"), Map.entry("score", 2), Map.entry("answer", "A workflow engine"));
+        assertThat(v3.toMap()).containsOnly(Map.entry("score", 2), Map.entry("answer", "A workflow engine"));
+    }
+
+    @Test
+    void should_return_same_map_when_nothing_changes() {
+        // given
+        String value = "unchanged";
+        PersistentMap<String, String> map = PersistentMap.<String, String>empty().with("field", value);
+        // then
+        assertThat(map.with("field", value)).isSameAs(map);
+        assertThat(map.without("missing")).isSameAs(map);
+    }
+
+    @Test
+    void should_diff_only_changed_entries() {
+        // given
+        PersistentMap<Integer, String> older = PersistentMap.empty();
+        for (int i = 0; i < 1_000; i++) {
+            older = older.with(i, "v" + i);
+        }
+        PersistentMap<Integer, String> newer = older.with(10, "changed").without(20).with(5_000, "added");
+        List<String> changes = new ArrayList<>();
+        // when
+        older.diff(newer, (key, before, after) -> changes.add(key + ":" + before + "->" + after));
+        // then
+        assertThat(changes).containsExactlyInAnyOrder("10:v10->changed", "20:v20->null", "5000:null->added");
+    }
+
+    @Test
+    void should_handle_keys_with_same_hash() {
+        // given
+        CollidingKey a = new CollidingKey("a");
+        CollidingKey b = new CollidingKey("b");
+        CollidingKey c = new CollidingKey("c");
+        // when
+        PersistentMap<CollidingKey, Integer> map = PersistentMap.<CollidingKey, Integer>empty().with(a, 1).with(b, 2).with(c, 3).with(b, 20);
+        PersistentMap<CollidingKey, Integer> withoutA = map.without(a);
+        List<String> changes = new ArrayList<>();
+        map.diff(withoutA, (key, before, after) -> changes.add(key.name() + ":" + before + "->" + after));
+        // then
+        assertThat(map.size()).isEqualTo(3);
+        assertThat(map.get(b)).isEqualTo(20);
+        assertThat(withoutA.size()).isEqualTo(2);
+        assertThat(withoutA.get(a)).isNull();
+        assertThat(withoutA.get(c)).isEqualTo(3);
+        assertThat(changes).containsExactly("a:1->null");
+    }
+}
@@ -0,0 +1,41 @@
+package io.github.czelabueno.jai.workflow.state;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class ReflectiveStateSnapshotterTest {
+
+    static class Bean {
+        String question = "What is jAI?";
+        List<String> documents = List.of("doc 1", "doc 2");
+        String generation;
+        transient Object stream = new Object();
+        @TransientState
+        Object subscription = new Object();
+    }
+
+    @Test
+    void should_write_only_the_changed_fields_to_the_next_snapshot() {
+        // given
+        Bean bean = new Bean();
+        StateSnapshot first = ReflectiveStateSnapshotter.snapshot(bean, StateSnapshot.empty());
+        // when
+        StateSnapshot unchanged = ReflectiveStateSnapshotter.snapshot(bean, first);
+        bean.generation = "A workflow library";
+        bean.documents = List.of("doc 1", "doc 2"); // equal but replaced, so written again
+        StateSnapshot changed = ReflectiveStateSnapshotter.snapshot(bean, unchanged);
+        bean.generation = null;
+        StateSnapshot cleared = ReflectiveStateSnapshotter.snapshot(bean, changed);
+        // then
+        assertThat(first.toMap()).containsOnlyKeys("question", "documents");
+        assertThat(unchanged).isSameAs(first);
+        assertThat(changed.get("question")).isSameAs(first.get("question"));
+        assertThat(changed.get("documents")).isSameAs(bean.documents).isNotSameAs(first.get("documents"));
+        assertThat(changed.diff(first)).extracting(StateChange::name).containsExactly("generation");
+        assertThat(cleared.get("generation")).isNull();
+        assertThat(cleared.size()).isEqualTo(2);
+    }
+}
@@ -4,9 +4,12 @@ import io.github.czelabueno.jai.workflow.node.Node;
 import org.junit.jupiter.api.Test;
 
 import java.time.LocalDateTime;
+import java.util.LinkedHashMap;
+import java.util.Map;
 
 import static org.assertj.core.api.Assertions.assertThat;
 import static org.assertj.core.api.Assertions.assertThatExceptionOfType;
+import static org.assertj.core.api.Assertions.entry;
 import static org.mockito.Mockito.mock;
 import static org.mockito.Mockito.when;
 
@@ -37,6 +40,27 @@ class ComputedTransitionTest {
         assertThat(computedTransition.getPayload()).isEqualTo("mockedPayloadOfFromNode");
     }
 
+    @Test
+    void should_capture_metadata_of_from_node() {
+        // given
+        Node<String, String> fromNode = new Node<>("from", input -> input) {
+            @Override
+            protected String apply(String input, Map<String, Object> executionMetadata) {
+                executionMetadata.put("promptCharacters", input.length());
+                return super.apply(input, executionMetadata);
+            }
+        };
+        Node<String, String> toNode = Node.from("to", input -> input);
+        Map<String, Object> executionMetadata = new LinkedHashMap<>();
+        fromNode.execute("input", executionMetadata);
+        // when - another run executes the shared node before the transition is computed
+        fromNode.execute("next input");
+        ComputedTransition computedTransition = ComputedTransition.from(1, Transition.from(fromNode, toNode), null, executionMetadata);
+        // then
+        assertThat(computedTransition.getMetadata()).containsExactly(entry("promptCharacters", 5));
+        assertThat(fromNode.metadata()).containsExactly(entry("promptCharacters", 10));
+    }
+
     @Test
     void should_throw_exception_when_build_order_arg_is_null() {
         // then
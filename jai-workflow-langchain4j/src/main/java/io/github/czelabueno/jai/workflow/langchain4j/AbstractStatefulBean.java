@@ -1,8 +1,19 @@
 package io.github.czelabueno.jai.workflow.langchain4j;
 
+import io.github.czelabueno.jai.workflow.langchain4j.cache.SemanticCacheLookup;
+import io.github.czelabueno.jai.workflow.state.OffHeapArena;
+import io.github.czelabueno.jai.workflow.state.OffHeapStateful;
+import io.github.czelabueno.jai.workflow.state.TransientState;
+import lombok.AccessLevel;
 import lombok.Data;
+import lombok.EqualsAndHashCode;
+import lombok.Getter;
+import lombok.Setter;
+import lombok.ToString;
 import reactor.core.publisher.Flux;
 
+import java.util.concurrent.atomic.AtomicReference;
+
 /**
  * AbstractStatefulBean is an abstract class that represents a stateful bean which is responsible for holding the state of the workflow.
  * The state is a combination of a question, input data, output data and a response generation.
@@ -15,11 +26,72 @@ import reactor.core.publisher.Flux;
  *     // other additional input/output fields that you want to store
  * }
  * }</pre>
+ *
+ * Large payloads such as retrieved documents can be kept off-heap in the {@link #offHeapArena()} of the bean,
+ * which DefaultJAiWorkflow releases at the end of each run:
+ * <pre>{@code
+ * public class MyStatefulBean extends AbstractStatefulBean {
+ *     private OffHeapValue documents; // bean.setDocuments(bean.offHeapArena().storeText(text))
+ * }
+ * }</pre>
  */
 @Data
-public abstract class AbstractStatefulBean {
+public abstract class AbstractStatefulBean implements OffHeapStateful {
 
     private String question;
     private String generation;
-    private Flux<String> generationStream;
+    @TransientState
+    private Flux<String> generationStream; // a live stream, not part of the encoded state
+    @Getter(AccessLevel.NONE)
+    @Setter(AccessLevel.NONE)
+    @EqualsAndHashCode.Exclude
+    @ToString.Exclude
+    private final transient AtomicReference<OffHeapArena> offHeapArena = new AtomicReference<>();
+    @Getter(AccessLevel.NONE)
+    @Setter(AccessLevel.NONE)
+    @EqualsAndHashCode.Exclude
+    @ToString.Exclude
+    private transient volatile SemanticCacheLookup semanticCacheLookup; // per run, set by a SemanticCacheNode
+
+    /**
+     * Returns the arena of the off-heap payloads of the bean, created with the default settings on first use.
+     *
+     * @return the off-heap arena
+     */
+    @Override
+    public OffHeapArena offHeapArena() {
+        OffHeapArena arena = offHeapArena.get();
+        if (arena == null) {
+            offHeapArena.compareAndSet(null, OffHeapArena.builder().build());
+            arena = offHeapArena.get();
+        }
+        return arena;
+    }
+
+    /**
+     * Sets the arena of the off-heap payloads of the bean, e.g. to set an off-heap budget per run.
+     *
+     * @param offHeapArena the off-heap arena
+     */
+    public void setOffHeapArena(OffHeapArena offHeapArena) {
+        this.offHeapArena.set(offHeapArena);
+    }
+
+    /**
+     * Returns the result of the semantic cache lookup of the current run.
+     *
+     * @return the semantic cache lookup, or null if the run did not look up a semantic cache
+     */
+    public SemanticCacheLookup semanticCacheLookup() {
+        return semanticCacheLookup;
+    }
+
+    /**
+     * Sets the result of the semantic cache lookup of the current run.
+     *
+     * @param semanticCacheLookup the semantic cache lookup, or null to clear it
+     */
+    public void setSemanticCacheLookup(SemanticCacheLookup semanticCacheLookup) {
+        this.semanticCacheLookup = semanticCacheLookup;
+    }
 }
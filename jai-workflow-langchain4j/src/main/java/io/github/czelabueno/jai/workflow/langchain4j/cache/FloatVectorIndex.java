@@ -0,0 +1,288 @@
+package io.github.czelabueno.jai.workflow.langchain4j.cache;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+
+/**
+ * FloatVectorIndex is an in-process approximate nearest neighbor index for embeddings.
+ * <p>
+ * Vectors are L2-normalized on insertion and stored back to back in a single primitive {@code float[]},
+ * so similarity is computed as a plain dot product (cosine similarity) without boxing.
+ * Candidates are selected with random hyperplane locality sensitive hashing (one bucket per table)
+ * and re-ranked exactly. While the index holds at most {@code exactSearchThreshold} vectors every slot is scanned,
+ * so small caches always return the exact nearest neighbor.
+ * </p>
+ * <p>
+ * This class is not thread-safe, callers must guard concurrent access.
+ * </p>
+ */
+public class FloatVectorIndex {
+
+    private static final int DEFAULT_TABLES = 8;
+    private static final int DEFAULT_HASH_BITS = 12;
+    private static final int DEFAULT_EXACT_SEARCH_THRESHOLD = 512;
+
+    private final int dimension;
+    private final int tables;
+    private final int hashBits;
+    private final int exactSearchThreshold;
+    private final float[] hyperplanes; // [table][bit][dimension]
+    private final Map<Integer, Bucket>[] buckets;
+
+    private float[] vectors; // [slot][dimension]
+    private int[] slotHashes; // [slot][table]
+    private boolean[] occupied;
+    private int[] freeSlots;
+    private int freeCount;
+    private int highWaterMark;
+    private int size;
+
+    /**
+     * Constructs a new FloatVectorIndex with default hashing parameters.
+     *
+     * @param dimension the dimension of the indexed vectors
+     */
+    public FloatVectorIndex(int dimension) {
+        this(dimension, DEFAULT_TABLES, DEFAULT_HASH_BITS, DEFAULT_EXACT_SEARCH_THRESHOLD, 42L);
+    }
+
+    /**
+     * Constructs a new FloatVectorIndex.
+     *
+     * @param dimension            the dimension of the indexed vectors
+     * @param tables               the number of hash tables, more tables increase recall
+     * @param hashBits             the number of hyperplanes per table, more bits increase precision
+     * @param exactSearchThreshold the number of vectors up to which every slot is scanned
+     * @param seed                 the seed of the random hyperplanes
+     * @throws IllegalArgumentException if any of the sizes is not positive or hashBits is greater than 31
+     */
+    @SuppressWarnings("unchecked")
+    public FloatVectorIndex(int dimension, int tables, int hashBits, int exactSearchThreshold, long seed) {
+        if (dimension <= 0 || tables <= 0 || hashBits <= 0 || hashBits > 31) {
+            throw new IllegalArgumentException("Invalid vector index parameters: dimension=" + dimension + ", tables=" + tables + ", hashBits=" + hashBits);
+        }
+        this.dimension = dimension;
+        this.tables = tables;
+        this.hashBits = hashBits;
+        this.exactSearchThreshold = Math.max(0, exactSearchThreshold);
+        this.hyperplanes = new float[tables * hashBits * dimension];
+        Random random = new Random(seed);
+        for (int i = 0; i < hyperplanes.length; i++) {
+            hyperplanes[i] = (float) random.nextGaussian();
+        }
+        this.buckets = new Map[tables];
+        for (int t = 0; t < tables; t++) {
+            buckets[t] = new HashMap<>();
+        }
+        int initialCapacity = 16;
+        this.vectors = new float[initialCapacity * dimension];
+        this.slotHashes = new int[initialCapacity * tables];
+        this.occupied = new boolean[initialCapacity];
+        this.freeSlots = new int[initialCapacity];
+    }
+
+    /**
+     * Adds a vector to the index.
+     *
+     * @param vector the vector to add, it is copied and normalized
+     * @return the slot assigned to the vector, used to remove it later
+     * @throws IllegalArgumentException if the vector dimension does not match the index dimension
+     */
+    public int add(float[] vector) {
+        checkDimension(vector);
+        int slot = freeCount > 0 ? freeSlots[--freeCount] : nextSlot();
+        int offset = slot * dimension;
+        System.arraycopy(vector, 0, vectors, offset, dimension);
+        normalize(vectors, offset, dimension);
+        for (int t = 0; t < tables; t++) {
+            int hash = hash(t, vectors, offset);
+            slotHashes[slot * tables + t] = hash;
+            buckets[t].computeIfAbsent(hash, k -> new Bucket()).add(slot);
+        }
+        occupied[slot] = true;
+        size++;
+        return slot;
+    }
+
+    /**
+     * Removes the vector stored in the given slot.
+     *
+     * @param slot the slot returned by {@link #add(float[])}
+     * @return true if a vector was removed, false if the slot was empty
+     */
+    public boolean remove(int slot) {
+        if (slot < 0 || slot >= highWaterMark || !occupied[slot]) {
+            return false;
+        }
+        for (int t = 0; t < tables; t++) {
+            int hash = slotHashes[slot * tables + t];
+            Bucket bucket = buckets[t].get(hash);
+            if (bucket != null && bucket.remove(slot) && bucket.size == 0) {
+                buckets[t].remove(hash);
+            }
+        }
+        occupied[slot] = false;
+        Arrays.fill(vectors, slot * dimension, (slot + 1) * dimension, 0f);
+        if (freeCount == freeSlots.length) {
+            freeSlots = Arrays.copyOf(freeSlots, freeSlots.length * 2);
+        }
+        freeSlots[freeCount++] = slot;
+        size--;
+        return true;
+    }
+
+    /**
+     * Searches the most similar vector to the query.
+     *
+     * @param query the query vector, it is not modified
+     * @return the best match, or null if the index is empty
+     * @throws IllegalArgumentException if the vector dimension does not match the index dimension
+     */
+    public Match nearest(float[] query) {
+        checkDimension(query);
+        if (size == 0) {
+            return null;
+        }
+        float[] normalized = Arrays.copyOf(query, dimension);
+        normalize(normalized, 0, dimension);
+
+        int bestSlot = -1;
+        float bestScore = Float.NEGATIVE_INFINITY;
+        if (size <= exactSearchThreshold) {
+            for (int slot = 0; slot < highWaterMark; slot++) {
+                if (occupied[slot]) {
+                    float score = dot(normalized, slot * dimension);
+                    if (score > bestScore) {
+                        bestScore = score;
+                        bestSlot = slot;
+                    }
+                }
+            }
+        } else {
+            boolean[] visited = new boolean[highWaterMark];
+            for (int t = 0; t < tables; t++) {
+                Bucket bucket = buckets[t].get(hash(t, normalized, 0));
+                if (bucket == null) {
+                    continue;
+                }
+                for (int i = 0; i < bucket.size; i++) {
+                    int slot = bucket.slots[i];
+                    if (!visited[slot]) {
+                        visited[slot] = true;
+                        float score = dot(normalized, slot * dimension);
+                        if (score > bestScore) {
+                            bestScore = score;
+                            bestSlot = slot;
+                        }
+                    }
+                }
+            }
+        }
+        return bestSlot < 0 ? null : new Match(bestSlot, bestScore);
+    }
+
+    /**
+     * Returns the number of vectors stored in the index.
+     *
+     * @return the number of vectors stored in the index
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Returns the dimension of the indexed vectors.
+     *
+     * @return the dimension of the indexed vectors
+     */
+    public int dimension() {
+        return dimension;
+    }
+
+    private int nextSlot() {
+        if (highWaterMark == occupied.length) {
+            int capacity = occupied.length * 2;
+            vectors = Arrays.copyOf(vectors, capacity * dimension);
+            slotHashes = Arrays.copyOf(slotHashes, capacity * tables);
+            occupied = Arrays.copyOf(occupied, capacity);
+        }
+        return highWaterMark++;
+    }
+
+    private int hash(int table, float[] vector, int offset) {
+        int hash = 0;
+        int planeOffset = table * hashBits * dimension;
+        for (int bit = 0; bit < hashBits; bit++) {
+            float projection = 0f;
+            for (int d = 0; d < dimension; d++) {
+                projection += hyperplanes[planeOffset + d] * vector[offset + d];
+            }
+            if (projection >= 0f) {
+                hash |= 1 << bit;
+            }
+            planeOffset += dimension;
+        }
+        return hash;
+    }
+
+    private float dot(float[] query, int offset) {
+        float sum = 0f;
+        for (int d = 0; d < dimension; d++) {
+            sum += query[d] * vectors[offset + d];
+        }
+        return sum;
+    }
+
+    private static void normalize(float[] vector, int offset, int length) {
+        double norm = 0d;
+        for (int i = offset; i < offset + length; i++) {
+            norm += vector[i] * vector[i];
+        }
+        if (norm == 0d) {
+            return;
+        }
+        float inverse = (float) (1d / Math.sqrt(norm));
+        for (int i = offset; i < offset + length; i++) {
+            vector[i] *= inverse;
+        }
+    }
+
+    private void checkDimension(float[] vector) {
+        if (vector == null || vector.length != dimension) {
+            throw new IllegalArgumentException("Vector dimension must be " + dimension + " but was " + (vector == null ? "null" : vector.length));
+        }
+    }
+
+    /**
+     * Represents the nearest vector found by a search.
+     *
+     * @param slot       the slot of the matched vector
+     * @param similarity the cosine similarity between the query and the matched vector
+     */
+    public record Match(int slot, float similarity) {
+    }
+
+    private static final class Bucket {
+        private int[] slots = new int[4];
+        private int size;
+
+        void add(int slot) {
+            if (size == slots.length) {
+                slots = Arrays.copyOf(slots, size * 2);
+            }
+            slots[size++] = slot;
+        }
+
+        boolean remove(int slot) {
+            for (int i = 0; i < size; i++) {
+                if (slots[i] == slot) {
+                    slots[i] = slots[--size];
+                    return true;
+                }
+            }
+            return false;
+        }
+    }
+}
@@ -0,0 +1,249 @@
+package io.github.czelabueno.jai.workflow.langchain4j.cache;
+
+import dev.langchain4j.data.embedding.Embedding;
+import dev.langchain4j.model.embedding.EmbeddingModel;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static dev.langchain4j.internal.ValidationUtils.ensureBetween;
+import static dev.langchain4j.internal.ValidationUtils.ensureGreaterThanZero;
+import static dev.langchain4j.internal.ValidationUtils.ensureNotBlank;
+import static dev.langchain4j.internal.ValidationUtils.ensureNotNull;
+
+/**
+ * SemanticCache stores answers by the meaning of the question instead of its exact text.
+ * <p>
+ * Questions are embedded with a langchain4j {@link EmbeddingModel} and indexed in a {@link FloatVectorIndex}.
+ * A lookup is a hit when the most similar cached question reaches the configured similarity threshold.
+ * Entries are evicted in least recently used order once {@code maxEntries} is reached, and optionally expire after a time to live.
+ * </p>
+ * <p>
+ * Embedding calls are made outside the internal lock, so concurrent lookups only serialize on the index access.
+ * </p>
+ */
+public class SemanticCache {
+
+    private static final Logger log = LoggerFactory.getLogger(SemanticCache.class);
+
+    private final EmbeddingModel embeddingModel;
+    private final double similarityThreshold;
+    private final int maxEntries;
+    private final Duration timeToLive;
+    private final Map<Integer, Entry> entries; // slot -> entry, in access order
+    private FloatVectorIndex index;
+
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+    private final AtomicLong evictions = new AtomicLong();
+
+    private SemanticCache(SemanticCacheBuilder builder) {
+        this.embeddingModel = ensureNotNull(builder.embeddingModel, "embeddingModel");
+        this.similarityThreshold = ensureBetween(builder.similarityThreshold, -1.0, 1.0, "similarityThreshold");
+        this.maxEntries = ensureGreaterThanZero(builder.maxEntries, "maxEntries");
+        this.timeToLive = builder.timeToLive;
+        this.entries = new LinkedHashMap<>(16, 0.75f, true);
+    }
+
+    /**
+     * Returns a new builder instance for creating a {@link SemanticCache}.
+     *
+     * @return a new {@link SemanticCacheBuilder} instance
+     */
+    public static SemanticCacheBuilder builder() {
+        return new SemanticCacheBuilder();
+    }
+
+    /**
+     * Embeds the given question with the configured {@link EmbeddingModel}.
+     *
+     * @param question the question to embed
+     * @return the embedding of the question
+     */
+    public Embedding embed(String question) {
+        ensureNotBlank(question, "question");
+        return embeddingModel.embed(question).content();
+    }
+
+    /**
+     * Looks up a cached answer for a question semantically similar to the given one.
+     *
+     * @param question the question to look up
+     * @return the cached answer, or empty if no cached question is similar enough
+     */
+    public Optional<String> lookup(String question) {
+        return lookup(embed(question));
+    }
+
+    /**
+     * Looks up a cached answer for the given question embedding.
+     *
+     * @param embedding the embedding of the question to look up
+     * @return the cached answer, or empty if no cached question is similar enough
+     */
+    public synchronized Optional<String> lookup(Embedding embedding) {
+        ensureNotNull(embedding, "embedding");
+        if (index == null || index.dimension() != embedding.dimension()) {
+            misses.incrementAndGet();
+            return Optional.empty();
+        }
+        FloatVectorIndex.Match match = index.nearest(embedding.vector());
+        if (match != null && match.similarity() >= similarityThreshold) {
+            Entry entry = entries.get(match.slot()); // refreshes the access order
+            if (entry != null && !entry.isExpired(timeToLive)) {
+                hits.incrementAndGet();
+                log.debug("Semantic cache hit for question '{}' with similarity {}", entry.question(), match.similarity());
+                return Optional.of(entry.answer());
+            }
+            if (entry != null) {
+                evict(match.slot());
+            }
+        }
+        misses.incrementAndGet();
+        return Optional.empty();
+    }
+
+    /**
+     * Stores the answer for the given question.
+     *
+     * @param question the question
+     * @param answer   the answer to cache
+     */
+    public void put(String question, String answer) {
+        put(question, embed(question), answer);
+    }
+
+    /**
+     * Stores the answer for a question whose embedding has already been computed, e.g. during a missed lookup.
+     *
+     * @param question  the question
+     * @param embedding the embedding of the question
+     * @param answer    the answer to cache
+     */
+    public synchronized void put(String question, Embedding embedding, String answer) {
+        ensureNotNull(embedding, "embedding");
+        ensureNotNull(answer, "answer");
+        if (index == null || index.dimension() != embedding.dimension()) {
+            if (index != null) {
+                log.warn("Embedding dimension changed from {} to {}, clearing the semantic cache", index.dimension(), embedding.dimension());
+                entries.clear();
+            }
+            index = new FloatVectorIndex(embedding.dimension());
+        }
+        while (entries.size() >= maxEntries) {
+            Iterator<Integer> eldest = entries.keySet().iterator();
+            evict(eldest.next());
+        }
+        int slot = index.add(embedding.vector());
+        entries.put(slot, new Entry(question, answer, Instant.now()));
+    }
+
+    /**
+     * Removes all the cached entries. Metrics are preserved.
+     */
+    public synchronized void clear() {
+        entries.clear();
+        index = null;
+    }
+
+    /**
+     * Returns the number of cached entries.
+     *
+     * @return the number of cached entries
+     */
+    public synchronized int size() {
+        return entries.size();
+    }
+
+    /**
+     * Returns a snapshot of the cache metrics.
+     *
+     * @return a snapshot of the cache metrics
+     */
+    public SemanticCacheMetrics metrics() {
+        return new SemanticCacheMetrics(hits.get(), misses.get(), evictions.get(), size());
+    }
+
+    private void evict(int slot) {
+        entries.remove(slot);
+        index.remove(slot);
+        evictions.incrementAndGet();
+    }
+
+    private record Entry(String question, String answer, Instant storedAt) {
+
+        boolean isExpired(Duration timeToLive) {
+            return timeToLive != null && storedAt.plus(timeToLive).isBefore(Instant.now());
+        }
+    }
+
+    /**
+     * Builder class for {@link SemanticCache}.
+     */
+    public static class SemanticCacheBuilder {
+        private EmbeddingModel embeddingModel;
+        private Double similarityThreshold = 0.9;
+        private Integer maxEntries = 1000;
+        private Duration timeToLive;
+
+        /**
+         * Sets the embedding model used to embed the questions.
+         *
+         * @param embeddingModel the embedding model
+         * @return the current {@link SemanticCacheBuilder} instance
+         */
+        public SemanticCacheBuilder embeddingModel(EmbeddingModel embeddingModel) {
+            this.embeddingModel = embeddingModel;
+            return this;
+        }
+
+        /**
+         * Sets the minimum cosine similarity for a lookup to be a hit. Defaults to 0.9.
+         *
+         * @param similarityThreshold the minimum cosine similarity, between -1 and 1
+         * @return the current {@link SemanticCacheBuilder} instance
+         */
+        public SemanticCacheBuilder similarityThreshold(double similarityThreshold) {
+            this.similarityThreshold = similarityThreshold;
+            return this;
+        }
+
+        /**
+         * Sets the maximum number of cached entries before evicting the least recently used. Defaults to 1000.
+         *
+         * @param maxEntries the maximum number of cached entries
+         * @return the current {@link SemanticCacheBuilder} instance
+         */
+        public SemanticCacheBuilder maxEntries(int maxEntries) {
+            this.maxEntries = maxEntries;
+            return this;
+        }
+
+        /**
+         * Sets the time to live of the cached entries. Entries never expire by default.
+         *
+         * @param timeToLive the time to live of the cached entries
+         * @return the current {@link SemanticCacheBuilder} instance
+         */
+        public SemanticCacheBuilder timeToLive(Duration timeToLive) {
+            this.timeToLive = timeToLive;
+            return this;
+        }
+
+        /**
+         * Builds and returns a new {@link SemanticCache} instance.
+         *
+         * @return a new {@link SemanticCache} instance
+         */
+        public SemanticCache build() {
+            return new SemanticCache(this);
+        }
+    }
+}
@@ -0,0 +1,33 @@
+package io.github.czelabueno.jai.workflow.langchain4j.cache;
+
+import dev.langchain4j.data.embedding.Embedding;
+
+/**
+ * Result of the lookup of the question of a run in a {@link SemanticCache}, kept in the stateful bean of the run.
+ *
+ * @param hit       true if the lookup returned a cached answer
+ * @param question  the missed question, to store its answer at the end of the run, or null on a hit
+ * @param embedding the embedding of the missed question, reused to store its answer, or null on a hit
+ */
+public record SemanticCacheLookup(boolean hit, String question, Embedding embedding) {
+
+    /**
+     * Returns the result of a lookup that returned a cached answer.
+     *
+     * @return a hit
+     */
+    public static SemanticCacheLookup ofHit() {
+        return new SemanticCacheLookup(true, null, null);
+    }
+
+    /**
+     * Returns the result of a lookup that did not return a cached answer.
+     *
+     * @param question  the missed question, or null if the run has no question
+     * @param embedding the embedding of the missed question, or null if the run has no question
+     * @return a miss
+     */
+    public static SemanticCacheLookup ofMiss(String question, Embedding embedding) {
+        return new SemanticCacheLookup(false, question, embedding);
+    }
+}
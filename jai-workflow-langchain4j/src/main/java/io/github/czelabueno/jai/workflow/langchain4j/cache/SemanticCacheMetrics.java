@@ -0,0 +1,22 @@
+package io.github.czelabueno.jai.workflow.langchain4j.cache;
+
+/**
+ * Snapshot of the metrics of a {@link SemanticCache}.
+ *
+ * @param hits      the number of lookups that returned a cached answer
+ * @param misses    the number of lookups that did not return a cached answer
+ * @param evictions the number of entries evicted by size or expiration
+ * @param size      the number of cached entries
+ */
+public record SemanticCacheMetrics(long hits, long misses, long evictions, int size) {
+
+    /**
+     * Returns the ratio of lookups that were hits.
+     *
+     * @return the hit rate between 0 and 1, or 0 if no lookup was made
+     */
+    public double hitRate() {
+        long lookups = hits + misses;
+        return lookups == 0 ? 0d : (double) hits / lookups;
+    }
+}
@@ -0,0 +1,61 @@
+package io.github.czelabueno.jai.workflow.langchain4j.internal;
+
+import dev.langchain4j.data.message.AiMessage;
+import dev.langchain4j.data.message.ChatMessage;
+import dev.langchain4j.data.message.Content;
+import dev.langchain4j.data.message.SystemMessage;
+import dev.langchain4j.data.message.TextContent;
+import dev.langchain4j.data.message.ToolExecutionResultMessage;
+import dev.langchain4j.data.message.UserMessage;
+
+import java.util.List;
+
+/**
+ * Utility methods reading the text of the prompts sent to the models.
+ */
+public final class ChatMessages {
+
+    private ChatMessages() {
+    }
+
+    /**
+     * Returns the text of a message, matched on its concrete type: the text contents of a {@link UserMessage}, and the
+     * text of the other messages. Images and other non-text contents are ignored.
+     *
+     * @param message the message
+     * @return the text of the message, empty if it has none
+     */
+    public static String textOf(ChatMessage message) {
+        String text = null;
+        if (message instanceof UserMessage userMessage) {
+            StringBuilder builder = new StringBuilder();
+            for (Content content : userMessage.contents()) {
+                if (content instanceof TextContent textContent) {
+                    builder.append(textContent.text());
+                }
+            }
+            text = builder.toString();
+        } else if (message instanceof SystemMessage systemMessage) {
+            text = systemMessage.text();
+        } else if (message instanceof AiMessage aiMessage) {
+            text = aiMessage.text(); // null when the model only requested tool executions
+        } else if (message instanceof ToolExecutionResultMessage toolExecutionResultMessage) {
+            text = toolExecutionResultMessage.text();
+        }
+        return text == null ? "" : text;
+    }
+
+    /**
+     * Returns the number of characters of the text of the messages.
+     *
+     * @param messages the messages of a prompt
+     * @return the number of characters of the prompt
+     */
+    public static int textLength(List<ChatMessage> messages) {
+        int characters = 0;
+        for (ChatMessage message : messages) {
+            characters += textOf(message).length();
+        }
+        return characters;
+    }
+}
@@ -4,10 +4,13 @@ import io.github.czelabueno.jai.workflow.DefaultStateWorkflow;
 import io.github.czelabueno.jai.workflow.StateWorkflow;
 import io.github.czelabueno.jai.workflow.langchain4j.AbstractStatefulBean;
 import io.github.czelabueno.jai.workflow.langchain4j.JAiWorkflow;
+import io.github.czelabueno.jai.workflow.langchain4j.node.SemanticCacheNode;
 import io.github.czelabueno.jai.workflow.langchain4j.node.StreamingNode;
 import io.github.czelabueno.jai.workflow.node.Node;
+import io.github.czelabueno.jai.workflow.node.NodeInterceptor;
 import dev.langchain4j.data.message.AiMessage;
 import dev.langchain4j.data.message.UserMessage;
+import io.github.czelabueno.jai.workflow.transition.ComputedTransition;
 import io.github.czelabueno.jai.workflow.transition.Transition;
 import lombok.Builder;
 import org.slf4j.Logger;
@@ -46,9 +49,28 @@ public class DefaultJAiWorkflow<T extends AbstractStatefulBean> extends DefaultS
                               List<Transition> transitions,
                               Node<T, ?> startNode,
                               Boolean runStreaming) {
+        this(statefulBean, transitions, startNode, runStreaming, List.of());
+    }
+
+    /**
+     * Constructs a new DefaultJAiWorkflow with the specified parameters and node interceptors.
+     *
+     * @param statefulBean the stateful bean holding the state of the workflow
+     * @param transitions the list of transition to be performed in the workflow
+     * @param startNode the starting node of the workflow
+     * @param runStreaming flag indicating whether to run the workflow in stream mode
+     * @param nodeInterceptors the interceptors wrapping every node execution, e.g. a concurrency limiter for model nodes
+     */
+    public DefaultJAiWorkflow(T statefulBean,
+                              List<Transition> transitions,
+                              Node<T, ?> startNode,
+                              Boolean runStreaming,
+                              List<NodeInterceptor> nodeInterceptors) {
         super(DefaultStateWorkflow.<T>builder()
                 .statefulBean(statefulBean)
-                .addEdges(transitions.toArray(new Transition[0])));
+                .addEdges(transitions.toArray(new Transition[0]))
+                .nodeInterceptors(nodeInterceptors.toArray(new NodeInterceptor[0]))
+                .releaseOffHeapAtRunEnd(true)); // the answer is read from the on-heap generation
         this.statefulBean = statefulBean;
         this.startNode(startNode);
         this.runStreaming = getOrDefault(runStreaming, false);
@@ -63,6 +85,7 @@ public class DefaultJAiWorkflow<T extends AbstractStatefulBean> extends DefaultS
         this.statefulBean.setQuestion(question.singleText());
         // Run workflow in synchronous mode
         this.run();
+        storeInSemanticCache();
         return AiMessage.from(this.statefulBean.getGeneration());
     }
 
@@ -81,6 +104,7 @@ public class DefaultJAiWorkflow<T extends AbstractStatefulBean> extends DefaultS
                 }
                 log.debug("Node processed: " + ((Node) node).getName());
             });
+            storeInSemanticCache();
         }
         return this.statefulBean.getGenerationStream();
     }
@@ -105,6 +129,19 @@ public class DefaultJAiWorkflow<T extends AbstractStatefulBean> extends DefaultS
     }
 
     private Boolean isLastNodeAStreamingNode() {
-        return this.getLastNode() instanceof StreamingNode;
+        // A semantic cache hit short-circuits to END through a CachedAnswerNode, which already holds the generation stream
+        List<Node> lastNodes = this.getLastNodes();
+        return lastNodes.stream()
+                .filter(node -> !(node instanceof SemanticCacheNode.CachedAnswerNode))
+                .anyMatch(StreamingNode.class::isInstance);
+    }
+
+    private void storeInSemanticCache() {
+        List<ComputedTransition> computedTransitions = this.getComputedTransitions();
+        computedTransitions.stream()
+                .map(computedTransition -> computedTransition.getTransition().from())
+                .filter(SemanticCacheNode.class::isInstance)
+                .distinct()
+                .forEach(cacheNode -> ((SemanticCacheNode<T>) cacheNode).store(this.statefulBean));
     }
 }
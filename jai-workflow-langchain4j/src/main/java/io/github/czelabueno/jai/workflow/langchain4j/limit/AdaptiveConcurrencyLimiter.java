@@ -0,0 +1,311 @@
+package io.github.czelabueno.jai.workflow.langchain4j.limit;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.time.Duration;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Supplier;
+
+import static dev.langchain4j.internal.ValidationUtils.ensureNotNull;
+
+/**
+ * Limits the number of concurrent calls to a model provider with a limit adapted from the observed latency and errors.
+ * <p>
+ * Calls above the limit wait in a bounded queue for at most {@code maxWait}. When the queue is full, or the wait expires,
+ * the call is rejected immediately with a {@link ConcurrencyLimitExceededException} instead of piling up on a provider
+ * that is already saturated. Each completed call feeds the {@link LimitAlgorithm} with its round trip time and whether it
+ * was dropped (failed), so the limit converges to the capacity the provider can currently sustain.
+ * </p>
+ * <p>
+ * A limiter is meant to be shared by every workflow run calling the same model, see {@link ConcurrencyLimitInterceptor}.
+ * </p>
+ */
+public class AdaptiveConcurrencyLimiter {
+
+    private static final Logger log = LoggerFactory.getLogger(AdaptiveConcurrencyLimiter.class);
+
+    private final String name;
+    private final LimitAlgorithm limitAlgorithm;
+    private final int maxQueueSize;
+    private final long maxWaitNanos;
+
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Condition permitReleased = lock.newCondition();
+    private int limit;
+    private int inFlight;
+    private int queued;
+    private long rejected;
+
+    private AdaptiveConcurrencyLimiter(AdaptiveConcurrencyLimiterBuilder builder) {
+        this.name = ensureNotNull(builder.name, "name");
+        this.limitAlgorithm = ensureNotNull(builder.limitAlgorithm, "limitAlgorithm");
+        this.maxQueueSize = builder.maxQueueSize;
+        this.maxWaitNanos = ensureNotNull(builder.maxWait, "maxWait").toNanos();
+        if (maxQueueSize < 0) {
+            throw new IllegalArgumentException("maxQueueSize cannot be negative");
+        }
+        this.limit = limitAlgorithm.initialLimit();
+    }
+
+    /**
+     * Returns a new builder instance for creating an {@link AdaptiveConcurrencyLimiter}.
+     *
+     * @return a new {@link AdaptiveConcurrencyLimiterBuilder} instance
+     */
+    public static AdaptiveConcurrencyLimiterBuilder builder() {
+        return new AdaptiveConcurrencyLimiterBuilder();
+    }
+
+    /**
+     * Acquires a permit, waiting in the queue if the limit is reached.
+     * <p>
+     * The returned permit must be released exactly once with {@link Permit#onSuccess()} or {@link Permit#onDropped()}.
+     * </p>
+     *
+     * @return the acquired permit
+     * @throws ConcurrencyLimitExceededException if the queue is full or no permit was released within the maximum wait
+     */
+    public Permit acquire() {
+        lock.lock();
+        try {
+            if (inFlight < limit && queued == 0) {
+                inFlight++;
+                return new Permit(System.nanoTime());
+            }
+            if (queued >= maxQueueSize) {
+                throw reject("queue is full");
+            }
+            queued++;
+            try {
+                long remainingNanos = maxWaitNanos;
+                while (inFlight >= limit) {
+                    if (remainingNanos <= 0) {
+                        throw reject("no permit released within " + Duration.ofNanos(maxWaitNanos));
+                    }
+                    remainingNanos = permitReleased.awaitNanos(remainingNanos);
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new ConcurrencyLimitExceededException("Interrupted while waiting for a permit of limiter " + name);
+            } finally {
+                queued--;
+            }
+            inFlight++;
+            return new Permit(System.nanoTime());
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Executes the call within a permit. A call throwing an exception is recorded as dropped.
+     *
+     * @param call the call to execute
+     * @param <R>  the type of the result
+     * @return the result of the call
+     * @throws ConcurrencyLimitExceededException if no permit could be acquired
+     */
+    public <R> R execute(Supplier<R> call) {
+        Permit permit = acquire();
+        try {
+            R result = call.get();
+            permit.onSuccess();
+            return result;
+        } catch (RuntimeException | Error e) {
+            permit.onDropped();
+            throw e;
+        }
+    }
+
+    /**
+     * Returns the name of the limiter.
+     *
+     * @return the name of the limiter
+     */
+    public String getName() {
+        return name;
+    }
+
+    /**
+     * Returns the current concurrency limit.
+     *
+     * @return the current limit
+     */
+    public int getLimit() {
+        lock.lock();
+        try {
+            return limit;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Returns the number of calls currently holding a permit.
+     *
+     * @return the number of calls in flight
+     */
+    public int getInFlight() {
+        lock.lock();
+        try {
+            return inFlight;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Returns the number of calls waiting for a permit.
+     *
+     * @return the number of queued calls
+     */
+    public int getQueued() {
+        lock.lock();
+        try {
+            return queued;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Returns the number of calls rejected since the limiter was created.
+     *
+     * @return the number of rejected calls
+     */
+    public long getRejected() {
+        lock.lock();
+        try {
+            return rejected;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private ConcurrencyLimitExceededException reject(String reason) {
+        rejected++;
+        log.debug("Rejected call on limiter {}: {} (limit={}, inFlight={})", name, reason, limit, inFlight);
+        return new ConcurrencyLimitExceededException(
+                String.format("Concurrency limit of %s exceeded: %s (limit=%d, inFlight=%d)", name, reason, limit, inFlight));
+    }
+
+    private void release(long startNanos, boolean dropped) {
+        long rttNanos = System.nanoTime() - startNanos;
+        lock.lock();
+        try {
+            int previousLimit = limit;
+            limit = Math.max(1, limitAlgorithm.update(limit, rttNanos, inFlight, dropped));
+            inFlight--;
+            if (limit != previousLimit) {
+                log.debug("Limiter {} changed limit from {} to {}", name, previousLimit, limit);
+            }
+            permitReleased.signalAll();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * A permit to execute one call, released when the call completes.
+     */
+    public final class Permit {
+
+        private final long startNanos;
+        private boolean released;
+
+        private Permit(long startNanos) {
+            this.startNanos = startNanos;
+        }
+
+        /**
+         * Releases the permit of a call that completed successfully.
+         */
+        public void onSuccess() {
+            releaseOnce(false);
+        }
+
+        /**
+         * Releases the permit of a call that failed or timed out, signaling an overloaded provider.
+         */
+        public void onDropped() {
+            releaseOnce(true);
+        }
+
+        private synchronized void releaseOnce(boolean dropped) {
+            if (released) {
+                throw new IllegalStateException("Permit already released");
+            }
+            released = true;
+            release(startNanos, dropped);
+        }
+    }
+
+    /**
+     * Builder class for {@link AdaptiveConcurrencyLimiter}.
+     */
+    public static class AdaptiveConcurrencyLimiterBuilder {
+        private String name = "default";
+        private LimitAlgorithm limitAlgorithm;
+        private Integer maxQueueSize = 100;
+        private Duration maxWait = Duration.ofSeconds(1);
+
+        /**
+         * Sets the name of the limiter, used in logs and errors. Defaults to "default".
+         *
+         * @param name the name of the limiter
+         * @return the current {@link AdaptiveConcurrencyLimiterBuilder} instance
+         */
+        public AdaptiveConcurrencyLimiterBuilder name(String name) {
+            this.name = name;
+            return this;
+        }
+
+        /**
+         * Sets the algorithm adapting the limit. Defaults to an {@link AimdLimit} with its default settings.
+         *
+         * @param limitAlgorithm the limit algorithm
+         * @return the current {@link AdaptiveConcurrencyLimiterBuilder} instance
+         */
+        public AdaptiveConcurrencyLimiterBuilder limitAlgorithm(LimitAlgorithm limitAlgorithm) {
+            this.limitAlgorithm = limitAlgorithm;
+            return this;
+        }
+
+        /**
+         * Sets the maximum number of calls waiting for a permit. Defaults to 100, 0 rejects every call above the limit.
+         *
+         * @param maxQueueSize the maximum queue size
+         * @return the current {@link AdaptiveConcurrencyLimiterBuilder} instance
+         */
+        public AdaptiveConcurrencyLimiterBuilder maxQueueSize(int maxQueueSize) {
+            this.maxQueueSize = maxQueueSize;
+            return this;
+        }
+
+        /**
+         * Sets the maximum time a call waits for a permit. Defaults to 1 second.
+         *
+         * @param maxWait the maximum wait
+         * @return the current {@link AdaptiveConcurrencyLimiterBuilder} instance
+         */
+        public AdaptiveConcurrencyLimiterBuilder maxWait(Duration maxWait) {
+            this.maxWait = maxWait;
+            return this;
+        }
+
+        /**
+         * Builds and returns a new {@link AdaptiveConcurrencyLimiter} instance.
+         *
+         * @return a new {@link AdaptiveConcurrencyLimiter} instance
+         */
+        public AdaptiveConcurrencyLimiter build() {
+            if (limitAlgorithm == null) {
+                limitAlgorithm = AimdLimit.builder().build();
+            }
+            return new AdaptiveConcurrencyLimiter(this);
+        }
+    }
+}
@@ -0,0 +1,134 @@
+package io.github.czelabueno.jai.workflow.langchain4j.limit;
+
+import java.time.Duration;
+
+import static dev.langchain4j.internal.ValidationUtils.ensureBetween;
+import static dev.langchain4j.internal.ValidationUtils.ensureGreaterThanZero;
+import static dev.langchain4j.internal.ValidationUtils.ensureNotNull;
+
+/**
+ * Additive increase, multiplicative decrease (AIMD) {@link LimitAlgorithm}.
+ * <p>
+ * The limit grows by one after a successful call made while the limit was actually in use (at least half of it in flight),
+ * and is multiplied by the backoff ratio after a dropped call or a call slower than the latency timeout.
+ * </p>
+ */
+public class AimdLimit implements LimitAlgorithm {
+
+    private final int initialLimit;
+    private final int minLimit;
+    private final int maxLimit;
+    private final double backoffRatio;
+    private final long timeoutNanos;
+
+    private AimdLimit(AimdLimitBuilder builder) {
+        this.initialLimit = ensureGreaterThanZero(builder.initialLimit, "initialLimit");
+        this.minLimit = ensureGreaterThanZero(builder.minLimit, "minLimit");
+        this.maxLimit = ensureGreaterThanZero(builder.maxLimit, "maxLimit");
+        this.backoffRatio = ensureBetween(builder.backoffRatio, 0.5, 1.0, "backoffRatio");
+        this.timeoutNanos = ensureNotNull(builder.timeout, "timeout").toNanos();
+        if (minLimit > initialLimit || initialLimit > maxLimit) {
+            throw new IllegalArgumentException("Limits must satisfy minLimit <= initialLimit <= maxLimit");
+        }
+    }
+
+    /**
+     * Returns a new builder instance for creating an {@link AimdLimit}.
+     *
+     * @return a new {@link AimdLimitBuilder} instance
+     */
+    public static AimdLimitBuilder builder() {
+        return new AimdLimitBuilder();
+    }
+
+    @Override
+    public int initialLimit() {
+        return initialLimit;
+    }
+
+    @Override
+    public int update(int currentLimit, long rttNanos, int inFlight, boolean dropped) {
+        if (dropped || rttNanos > timeoutNanos) {
+            return Math.max(minLimit, (int) (currentLimit * backoffRatio));
+        }
+        if (inFlight * 2 >= currentLimit) {
+            return Math.min(maxLimit, currentLimit + 1);
+        }
+        return currentLimit;
+    }
+
+    /**
+     * Builder class for {@link AimdLimit}.
+     */
+    public static class AimdLimitBuilder {
+        private Integer initialLimit = 10;
+        private Integer minLimit = 1;
+        private Integer maxLimit = 200;
+        private Double backoffRatio = 0.9;
+        private Duration timeout = Duration.ofSeconds(30);
+
+        /**
+         * Sets the initial limit. Defaults to 10.
+         *
+         * @param initialLimit the initial limit
+         * @return the current {@link AimdLimitBuilder} instance
+         */
+        public AimdLimitBuilder initialLimit(int initialLimit) {
+            this.initialLimit = initialLimit;
+            return this;
+        }
+
+        /**
+         * Sets the minimum limit. Defaults to 1.
+         *
+         * @param minLimit the minimum limit
+         * @return the current {@link AimdLimitBuilder} instance
+         */
+        public AimdLimitBuilder minLimit(int minLimit) {
+            this.minLimit = minLimit;
+            return this;
+        }
+
+        /**
+         * Sets the maximum limit. Defaults to 200.
+         *
+         * @param maxLimit the maximum limit
+         * @return the current {@link AimdLimitBuilder} instance
+         */
+        public AimdLimitBuilder maxLimit(int maxLimit) {
+            this.maxLimit = maxLimit;
+            return this;
+        }
+
+        /**
+         * Sets the ratio applied to the limit on overload, between 0.5 and 1. Defaults to 0.9.
+         *
+         * @param backoffRatio the backoff ratio
+         * @return the current {@link AimdLimitBuilder} instance
+         */
+        public AimdLimitBuilder backoffRatio(double backoffRatio) {
+            this.backoffRatio = backoffRatio;
+            return this;
+        }
+
+        /**
+         * Sets the latency above which a successful call is considered a sign of overload. Defaults to 30 seconds.
+         *
+         * @param timeout the latency timeout
+         * @return the current {@link AimdLimitBuilder} instance
+         */
+        public AimdLimitBuilder timeout(Duration timeout) {
+            this.timeout = timeout;
+            return this;
+        }
+
+        /**
+         * Builds and returns a new {@link AimdLimit} instance.
+         *
+         * @return a new {@link AimdLimit} instance
+         */
+        public AimdLimit build() {
+            return new AimdLimit(this);
+        }
+    }
+}
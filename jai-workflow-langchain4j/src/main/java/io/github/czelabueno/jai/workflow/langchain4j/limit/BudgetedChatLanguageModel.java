@@ -0,0 +1,40 @@
+package io.github.czelabueno.jai.workflow.langchain4j.limit;
+
+import dev.langchain4j.data.message.AiMessage;
+import dev.langchain4j.data.message.ChatMessage;
+import dev.langchain4j.model.chat.ChatLanguageModel;
+import dev.langchain4j.model.output.Response;
+
+import java.util.List;
+
+/**
+ * {@link ChatLanguageModel} decorator scheduling every call within the budget of a {@link TokenBudgetScheduler}.
+ *
+ * @see TokenBudgetScheduler#budgeted(ChatLanguageModel, Priority)
+ */
+class BudgetedChatLanguageModel implements ChatLanguageModel {
+
+    private final TokenBudgetScheduler scheduler;
+    private final ChatLanguageModel delegate;
+    private final Priority priority;
+
+    BudgetedChatLanguageModel(TokenBudgetScheduler scheduler, ChatLanguageModel delegate, Priority priority) {
+        this.scheduler = scheduler;
+        this.delegate = delegate;
+        this.priority = priority;
+    }
+
+    @Override
+    public Response<AiMessage> generate(List<ChatMessage> messages) {
+        TokenBudgetScheduler.Reservation reservation = scheduler.reserve(messages, priority);
+        Response<AiMessage> response;
+        try {
+            response = delegate.generate(messages);
+        } catch (RuntimeException e) {
+            reservation.cancel();
+            throw e;
+        }
+        reservation.reconcile(response.tokenUsage());
+        return response;
+    }
+}
@@ -0,0 +1,71 @@
+package io.github.czelabueno.jai.workflow.langchain4j.limit;
+
+import dev.langchain4j.data.message.AiMessage;
+import dev.langchain4j.data.message.ChatMessage;
+import dev.langchain4j.model.StreamingResponseHandler;
+import dev.langchain4j.model.chat.StreamingChatLanguageModel;
+import dev.langchain4j.model.output.Response;
+
+import java.util.List;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * {@link StreamingChatLanguageModel} decorator scheduling every call within the budget of a {@link TokenBudgetScheduler}.
+ * The reservation is reconciled when the stream completes and returned to the budget when it fails, once per call
+ * even if the delegate both reports and throws a failure, which is rethrown as is.
+ *
+ * @see TokenBudgetScheduler#budgeted(StreamingChatLanguageModel, Priority)
+ */
+class BudgetedStreamingChatLanguageModel implements StreamingChatLanguageModel {
+
+    private final TokenBudgetScheduler scheduler;
+    private final StreamingChatLanguageModel delegate;
+    private final Priority priority;
+
+    BudgetedStreamingChatLanguageModel(TokenBudgetScheduler scheduler, StreamingChatLanguageModel delegate, Priority priority) {
+        this.scheduler = scheduler;
+        this.delegate = delegate;
+        this.priority = priority;
+    }
+
+    @Override
+    public void generate(List<ChatMessage> messages, StreamingResponseHandler<AiMessage> handler) {
+        TokenBudgetScheduler.Reservation reservation;
+        try {
+            reservation = scheduler.reserve(messages, priority);
+        } catch (TokenBudgetExceededException e) {
+            handler.onError(e);
+            return;
+        }
+        AtomicBoolean settled = new AtomicBoolean();
+        try {
+            delegate.generate(messages, new StreamingResponseHandler<>() {
+                @Override
+                public void onNext(String token) {
+                    handler.onNext(token);
+                }
+
+                @Override
+                public void onComplete(Response<AiMessage> response) {
+                    if (settled.compareAndSet(false, true)) {
+                        reservation.reconcile(response.tokenUsage());
+                    }
+                    handler.onComplete(response);
+                }
+
+                @Override
+                public void onError(Throwable error) {
+                    if (settled.compareAndSet(false, true)) {
+                        reservation.cancel();
+                    }
+                    handler.onError(error);
+                }
+            });
+        } catch (RuntimeException e) {
+            if (settled.compareAndSet(false, true)) {
+                reservation.cancel();
+            }
+            throw e;
+        }
+    }
+}
@@ -0,0 +1,17 @@
+package io.github.czelabueno.jai.workflow.langchain4j.limit;
+
+/**
+ * Thrown when a call is rejected by an {@link AdaptiveConcurrencyLimiter}, either because its queue is full
+ * or because the call waited longer than the maximum wait for a permit.
+ */
+public class ConcurrencyLimitExceededException extends RuntimeException {
+
+    /**
+     * Constructs a new ConcurrencyLimitExceededException with the specified detail message.
+     *
+     * @param message the detail message
+     */
+    public ConcurrencyLimitExceededException(String message) {
+        super(message);
+    }
+}
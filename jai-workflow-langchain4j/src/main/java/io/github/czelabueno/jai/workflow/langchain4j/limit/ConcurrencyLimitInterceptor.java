@@ -0,0 +1,88 @@
+package io.github.czelabueno.jai.workflow.langchain4j.limit;
+
+import io.github.czelabueno.jai.workflow.langchain4j.node.StreamingNode;
+import io.github.czelabueno.jai.workflow.node.Node;
+import io.github.czelabueno.jai.workflow.node.NodeInterceptor;
+import lombok.NonNull;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Function;
+import java.util.function.Supplier;
+
+/**
+ * {@link NodeInterceptor} running the nodes that call a model within an {@link AdaptiveConcurrencyLimiter}.
+ * <p>
+ * Model nodes are the {@link StreamingNode}s and the nodes labeled with {@link #MODEL_LABEL}; other nodes are executed
+ * without limit. The limiters are keyed by node name, so they are shared by every workflow instance and run built with the
+ * same interceptor:
+ * </p>
+ * <pre>{@code
+ * ConcurrencyLimitInterceptor limits = ConcurrencyLimitInterceptor.perNode(name -> AdaptiveConcurrencyLimiter.builder()
+ *         .name(name)
+ *         .limitAlgorithm(GradientLimit.builder().build())
+ *         .build());
+ *
+ * DefaultStateWorkflow.<MyStatefulBean>builder()
+ *         .statefulBean(bean)
+ *         .addNodes(nodes)
+ *         .nodeInterceptors(limits)
+ *         .build();
+ * }</pre>
+ */
+public class ConcurrencyLimitInterceptor implements NodeInterceptor {
+
+    /**
+     * Label marking a node as calling a model, its executions are limited by this interceptor.
+     */
+    public static final String MODEL_LABEL = "Model";
+
+    private final Function<String, AdaptiveConcurrencyLimiter> limiterFactory;
+    private final Map<String, AdaptiveConcurrencyLimiter> limiters = new ConcurrentHashMap<>();
+
+    private ConcurrencyLimitInterceptor(Function<String, AdaptiveConcurrencyLimiter> limiterFactory) {
+        this.limiterFactory = limiterFactory;
+    }
+
+    /**
+     * Creates an interceptor limiting every model node with the same limiter, for nodes calling the same provider.
+     *
+     * @param limiter the shared limiter
+     * @return a new {@link ConcurrencyLimitInterceptor}
+     */
+    public static ConcurrencyLimitInterceptor shared(@NonNull AdaptiveConcurrencyLimiter limiter) {
+        return new ConcurrencyLimitInterceptor(nodeName -> limiter);
+    }
+
+    /**
+     * Creates an interceptor limiting each model node with its own limiter, created on first execution of the node.
+     *
+     * @param limiterFactory creates the limiter of a node from its name
+     * @return a new {@link ConcurrencyLimitInterceptor}
+     */
+    public static ConcurrencyLimitInterceptor perNode(@NonNull Function<String, AdaptiveConcurrencyLimiter> limiterFactory) {
+        return new ConcurrencyLimitInterceptor(limiterFactory);
+    }
+
+    @Override
+    public Object intercept(Node<?, ?> node, Supplier<?> execution) {
+        if (!isModelNode(node)) {
+            return execution.get();
+        }
+        return limiterFor(node.getName()).execute(execution);
+    }
+
+    /**
+     * Returns the limiter of a node, creating it if needed.
+     *
+     * @param nodeName the name of the node
+     * @return the limiter of the node
+     */
+    public AdaptiveConcurrencyLimiter limiterFor(String nodeName) {
+        return limiters.computeIfAbsent(nodeName, limiterFactory);
+    }
+
+    private static boolean isModelNode(Node<?, ?> node) {
+        return node instanceof StreamingNode || node.hasLabel(MODEL_LABEL);
+    }
+}
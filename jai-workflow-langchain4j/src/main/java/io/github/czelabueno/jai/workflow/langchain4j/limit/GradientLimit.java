@@ -0,0 +1,165 @@
+package io.github.czelabueno.jai.workflow.langchain4j.limit;
+
+import static dev.langchain4j.internal.ValidationUtils.ensureBetween;
+import static dev.langchain4j.internal.ValidationUtils.ensureGreaterThanZero;
+
+/**
+ * Latency gradient {@link LimitAlgorithm}.
+ * <p>
+ * It compares a long-term average of the round trip time, the latency of the provider when it is healthy,
+ * with a short-term average reflecting the current load. When the short-term latency grows the gradient
+ * {@code longRtt / shortRtt} falls below 1 and the limit shrinks proportionally; when both are equal the limit grows by
+ * a queue allowance of {@code sqrt(limit)}. Changes are smoothed to avoid oscillations.
+ * </p>
+ */
+public class GradientLimit implements LimitAlgorithm {
+
+    private final int initialLimit;
+    private final int minLimit;
+    private final int maxLimit;
+    private final double smoothing;
+    private final double shortWindowWeight;
+    private final double longWindowWeight;
+
+    private double limit;
+    private double shortRtt;
+    private double longRtt;
+
+    private GradientLimit(GradientLimitBuilder builder) {
+        this.initialLimit = ensureGreaterThanZero(builder.initialLimit, "initialLimit");
+        this.minLimit = ensureGreaterThanZero(builder.minLimit, "minLimit");
+        this.maxLimit = ensureGreaterThanZero(builder.maxLimit, "maxLimit");
+        this.smoothing = ensureBetween(builder.smoothing, 0.0, 1.0, "smoothing");
+        this.shortWindowWeight = 2.0 / (ensureGreaterThanZero(builder.shortWindow, "shortWindow") + 1);
+        this.longWindowWeight = 2.0 / (ensureGreaterThanZero(builder.longWindow, "longWindow") + 1);
+        if (minLimit > initialLimit || initialLimit > maxLimit) {
+            throw new IllegalArgumentException("Limits must satisfy minLimit <= initialLimit <= maxLimit");
+        }
+        this.limit = initialLimit;
+    }
+
+    /**
+     * Returns a new builder instance for creating a {@link GradientLimit}.
+     *
+     * @return a new {@link GradientLimitBuilder} instance
+     */
+    public static GradientLimitBuilder builder() {
+        return new GradientLimitBuilder();
+    }
+
+    @Override
+    public int initialLimit() {
+        return initialLimit;
+    }
+
+    @Override
+    public int update(int currentLimit, long rttNanos, int inFlight, boolean dropped) {
+        double rtt = Math.max(1, rttNanos);
+        if (longRtt == 0) {
+            shortRtt = rtt;
+            longRtt = rtt;
+        } else {
+            shortRtt += shortWindowWeight * (rtt - shortRtt);
+            longRtt += longWindowWeight * (rtt - longRtt);
+        }
+        // let the baseline recover quickly once the provider is fast again
+        if (longRtt / shortRtt > 2) {
+            longRtt *= 0.95;
+        }
+        if (!dropped && inFlight * 2 < limit) {
+            return (int) limit; // app limited, the latency says nothing about the capacity
+        }
+        double gradient = Math.max(0.5, Math.min(1.0, longRtt / shortRtt));
+        double newLimit = dropped ? limit * 0.5 : limit * gradient + Math.sqrt(limit);
+        limit = limit * (1 - smoothing) + newLimit * smoothing;
+        limit = Math.max(minLimit, Math.min(maxLimit, limit));
+        return (int) limit;
+    }
+
+    /**
+     * Builder class for {@link GradientLimit}.
+     */
+    public static class GradientLimitBuilder {
+        private Integer initialLimit = 10;
+        private Integer minLimit = 1;
+        private Integer maxLimit = 200;
+        private Double smoothing = 0.2;
+        private Integer shortWindow = 10;
+        private Integer longWindow = 600;
+
+        /**
+         * Sets the initial limit. Defaults to 10.
+         *
+         * @param initialLimit the initial limit
+         * @return the current {@link GradientLimitBuilder} instance
+         */
+        public GradientLimitBuilder initialLimit(int initialLimit) {
+            this.initialLimit = initialLimit;
+            return this;
+        }
+
+        /**
+         * Sets the minimum limit. Defaults to 1.
+         *
+         * @param minLimit the minimum limit
+         * @return the current {@link GradientLimitBuilder} instance
+         */
+        public GradientLimitBuilder minLimit(int minLimit) {
+            this.minLimit = minLimit;
+            return this;
+        }
+
+        /**
+         * Sets the maximum limit. Defaults to 200.
+         *
+         * @param maxLimit the maximum limit
+         * @return the current {@link GradientLimitBuilder} instance
+         */
+        public GradientLimitBuilder maxLimit(int maxLimit) {
+            this.maxLimit = maxLimit;
+            return this;
+        }
+
+        /**
+         * Sets the weight of a new limit estimate, between 0 and 1. Defaults to 0.2.
+         *
+         * @param smoothing the smoothing factor
+         * @return the current {@link GradientLimitBuilder} instance
+         */
+        public GradientLimitBuilder smoothing(double smoothing) {
+            this.smoothing = smoothing;
+            return this;
+        }
+
+        /**
+         * Sets the number of samples of the short-term latency average. Defaults to 10.
+         *
+         * @param shortWindow the short window in samples
+         * @return the current {@link GradientLimitBuilder} instance
+         */
+        public GradientLimitBuilder shortWindow(int shortWindow) {
+            this.shortWindow = shortWindow;
+            return this;
+        }
+
+        /**
+         * Sets the number of samples of the long-term latency average. Defaults to 600.
+         *
+         * @param longWindow the long window in samples
+         * @return the current {@link GradientLimitBuilder} instance
+         */
+        public GradientLimitBuilder longWindow(int longWindow) {
+            this.longWindow = longWindow;
+            return this;
+        }
+
+        /**
+         * Builds and returns a new {@link GradientLimit} instance.
+         *
+         * @return a new {@link GradientLimit} instance
+         */
+        public GradientLimit build() {
+            return new GradientLimit(this);
+        }
+    }
+}
@@ -0,0 +1,32 @@
+package io.github.czelabueno.jai.workflow.langchain4j.limit;
+
+/**
+ * Algorithm that adapts the concurrency limit of an {@link AdaptiveConcurrencyLimiter} from the observed calls.
+ * <p>
+ * Implementations may keep state between samples, the limiter always calls {@link #update(int, long, int, boolean)}
+ * holding its lock.
+ * </p>
+ *
+ * @see AimdLimit
+ * @see GradientLimit
+ */
+public interface LimitAlgorithm {
+
+    /**
+     * Returns the limit used before any call completed.
+     *
+     * @return the initial concurrency limit
+     */
+    int initialLimit();
+
+    /**
+     * Computes the new concurrency limit after a call completed.
+     *
+     * @param currentLimit the current concurrency limit
+     * @param rttNanos     the round trip time of the call in nanoseconds
+     * @param inFlight     the number of calls in flight when the call completed, including it
+     * @param dropped      true if the call failed or timed out, a signal of overload
+     * @return the new concurrency limit
+     */
+    int update(int currentLimit, long rttNanos, int inFlight, boolean dropped);
+}
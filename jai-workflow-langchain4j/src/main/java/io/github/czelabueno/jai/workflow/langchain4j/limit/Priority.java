@@ -0,0 +1,11 @@
+package io.github.czelabueno.jai.workflow.langchain4j.limit;
+
+/**
+ * Priority of a model call waiting for budget in a {@link TokenBudgetScheduler}.
+ * Higher priority calls are served first, calls of the same priority in arrival order.
+ */
+public enum Priority {
+    LOW,
+    NORMAL,
+    HIGH
+}
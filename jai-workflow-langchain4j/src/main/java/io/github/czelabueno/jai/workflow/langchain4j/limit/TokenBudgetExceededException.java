@@ -0,0 +1,17 @@
+package io.github.czelabueno.jai.workflow.langchain4j.limit;
+
+/**
+ * Thrown when a call cannot get its token or request budget from a {@link TokenBudgetScheduler}
+ * within the maximum wait.
+ */
+public class TokenBudgetExceededException extends RuntimeException {
+
+    /**
+     * Constructs a new TokenBudgetExceededException with the specified detail message.
+     *
+     * @param message the detail message
+     */
+    public TokenBudgetExceededException(String message) {
+        super(message);
+    }
+}
@@ -0,0 +1,382 @@
+package io.github.czelabueno.jai.workflow.langchain4j.limit;
+
+import dev.langchain4j.data.message.ChatMessage;
+import dev.langchain4j.model.Tokenizer;
+import dev.langchain4j.model.chat.ChatLanguageModel;
+import dev.langchain4j.model.chat.StreamingChatLanguageModel;
+import dev.langchain4j.model.output.TokenUsage;
+import io.github.czelabueno.jai.workflow.langchain4j.internal.ChatMessages;
+import lombok.NonNull;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.time.Duration;
+import java.util.Comparator;
+import java.util.List;
+import java.util.PriorityQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+import static dev.langchain4j.internal.ValidationUtils.ensureGreaterThanZero;
+import static dev.langchain4j.internal.ValidationUtils.ensureNotNull;
+
+/**
+ * Schedules model calls within the tokens per minute and requests per minute budgets of a provider contract.
+ * <p>
+ * Both budgets are token buckets refilled continuously and holding at most one minute of budget. Before a call, the
+ * prompt tokens are estimated (with the configured {@link Tokenizer}, or 4 characters per token) and, with the expected
+ * output tokens, reserved from the budget. Calls that do not fit wait, higher {@link Priority} first, instead of being
+ * sent to the provider and answered with a 429. On completion the reservation is reconciled with the actual
+ * {@link TokenUsage} of the response, returning an overestimation to the budget or charging an underestimation.
+ * </p>
+ * <p>
+ * The {@code budgeted} methods decorate the models used by StreamingNode or other model nodes:
+ * </p>
+ * <pre>{@code
+ * TokenBudgetScheduler scheduler = TokenBudgetScheduler.builder()
+ *         .tokensPerMinute(200_000)
+ *         .requestsPerMinute(500)
+ *         .build();
+ * StreamingNode.from("generate", scheduler.budgeted(streamingModel, Priority.HIGH));
+ * }</pre>
+ */
+public class TokenBudgetScheduler {
+
+    private static final Logger log = LoggerFactory.getLogger(TokenBudgetScheduler.class);
+
+    private static final double CHARACTERS_PER_TOKEN = 4;
+    private static final double NANOS_PER_MINUTE = TimeUnit.MINUTES.toNanos(1);
+
+    private final int tokensPerMinute;
+    private final Integer requestsPerMinute;
+    private final int expectedOutputTokens;
+    private final long maxWaitNanos;
+    private final Tokenizer tokenizer;
+
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Condition budgetChanged = lock.newCondition();
+    private final PriorityQueue<Waiter> waiters = new PriorityQueue<>(
+            Comparator.comparing((Waiter waiter) -> waiter.priority).reversed().thenComparingLong(waiter -> waiter.sequence));
+    private long nextSequence;
+    private double availableTokens;
+    private double availableRequests;
+    private long lastRefillNanos;
+
+    private TokenBudgetScheduler(TokenBudgetSchedulerBuilder builder) {
+        this.tokensPerMinute = ensureGreaterThanZero(builder.tokensPerMinute, "tokensPerMinute");
+        this.requestsPerMinute = builder.requestsPerMinute == null ? null : ensureGreaterThanZero(builder.requestsPerMinute, "requestsPerMinute");
+        this.expectedOutputTokens = builder.expectedOutputTokens;
+        this.maxWaitNanos = ensureNotNull(builder.maxWait, "maxWait").toNanos();
+        this.tokenizer = builder.tokenizer;
+        if (expectedOutputTokens < 0) {
+            throw new IllegalArgumentException("expectedOutputTokens cannot be negative");
+        }
+        this.availableTokens = tokensPerMinute;
+        this.availableRequests = requestsPerMinute == null ? 0 : requestsPerMinute;
+        this.lastRefillNanos = System.nanoTime();
+    }
+
+    /**
+     * Returns a new builder instance for creating a {@link TokenBudgetScheduler}.
+     *
+     * @return a new {@link TokenBudgetSchedulerBuilder} instance
+     */
+    public static TokenBudgetSchedulerBuilder builder() {
+        return new TokenBudgetSchedulerBuilder();
+    }
+
+    /**
+     * Estimates the tokens of a call: the prompt tokens plus the expected output tokens.
+     *
+     * @param messages the messages of the call
+     * @return the estimated tokens of the call
+     */
+    public int estimateTokens(List<ChatMessage> messages) {
+        if (tokenizer != null) {
+            return tokenizer.estimateTokenCountInMessages(messages) + expectedOutputTokens;
+        }
+        long characters = ChatMessages.textLength(messages);
+        return (int) Math.ceil(characters / CHARACTERS_PER_TOKEN) + expectedOutputTokens;
+    }
+
+    /**
+     * Reserves the estimated budget of a call, waiting until it is available.
+     *
+     * @param messages the messages of the call
+     * @param priority the priority of the call
+     * @return the reservation, to reconcile when the call completes
+     * @throws TokenBudgetExceededException if the budget was not available within the maximum wait
+     */
+    public Reservation reserve(List<ChatMessage> messages, Priority priority) {
+        return reserve(estimateTokens(messages), priority);
+    }
+
+    /**
+     * Reserves a number of tokens and one request, waiting until they are available.
+     * <p>
+     * A call estimated above the tokens per minute waits for a full bucket and leaves it in debt, so that it is still
+     * served instead of waiting forever.
+     * </p>
+     *
+     * @param tokens   the tokens to reserve
+     * @param priority the priority of the call
+     * @return the reservation, to reconcile when the call completes
+     * @throws TokenBudgetExceededException if the budget was not available within the maximum wait
+     */
+    public Reservation reserve(int tokens, @NonNull Priority priority) {
+        if (tokens < 0) {
+            throw new IllegalArgumentException("tokens cannot be negative");
+        }
+        long start = System.nanoTime();
+        lock.lock();
+        try {
+            Waiter waiter = new Waiter(priority, nextSequence++);
+            waiters.add(waiter);
+            try {
+                double requiredTokens = Math.min(tokens, tokensPerMinute);
+                while (true) {
+                    long now = System.nanoTime();
+                    refill(now);
+                    boolean first = waiters.peek() == waiter;
+                    if (first && availableTokens >= requiredTokens && (requestsPerMinute == null || availableRequests >= 1)) {
+                        availableTokens -= tokens;
+                        availableRequests -= requestsPerMinute == null ? 0 : 1;
+                        long waitedNanos = now - start;
+                        if (waitedNanos > TimeUnit.MILLISECONDS.toNanos(1)) {
+                            log.debug("Delayed {} priority call of {} tokens by {} ms", priority, tokens, TimeUnit.NANOSECONDS.toMillis(waitedNanos));
+                        }
+                        return new Reservation(tokens);
+                    }
+                    long remainingNanos = maxWaitNanos - (now - start);
+                    if (remainingNanos <= 0) {
+                        throw new TokenBudgetExceededException(String.format(
+                                "No budget for a call of %d tokens within %s (available tokens=%d)",
+                                tokens, Duration.ofNanos(maxWaitNanos), (long) availableTokens));
+                    }
+                    long waitNanos = first ? Math.min(remainingNanos, nanosUntilAvailable(requiredTokens)) : remainingNanos;
+                    budgetChanged.awaitNanos(Math.max(waitNanos, 1));
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new TokenBudgetExceededException("Interrupted while waiting for budget");
+            } finally {
+                waiters.remove(waiter);
+                budgetChanged.signalAll();
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Decorates a chat language model so that every call is scheduled within the budget.
+     *
+     * @param model    the model to decorate
+     * @param priority the priority of the calls of the model
+     * @return the budgeted chat language model
+     */
+    public ChatLanguageModel budgeted(@NonNull ChatLanguageModel model, @NonNull Priority priority) {
+        return new BudgetedChatLanguageModel(this, model, priority);
+    }
+
+    /**
+     * Decorates a streaming chat language model so that every call is scheduled within the budget.
+     *
+     * @param model    the model to decorate
+     * @param priority the priority of the calls of the model
+     * @return the budgeted streaming chat language model
+     */
+    public StreamingChatLanguageModel budgeted(@NonNull StreamingChatLanguageModel model, @NonNull Priority priority) {
+        return new BudgetedStreamingChatLanguageModel(this, model, priority);
+    }
+
+    /**
+     * Returns the tokens currently available, negative when the budget is in debt.
+     *
+     * @return the available tokens
+     */
+    public long availableTokens() {
+        lock.lock();
+        try {
+            refill(System.nanoTime());
+            return (long) availableTokens;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Returns the number of calls waiting for budget.
+     *
+     * @return the number of waiting calls
+     */
+    public int waiting() {
+        lock.lock();
+        try {
+            return waiters.size();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private void refill(long now) {
+        long elapsedNanos = now - lastRefillNanos;
+        if (elapsedNanos <= 0) {
+            return;
+        }
+        lastRefillNanos = now;
+        availableTokens = Math.min(tokensPerMinute, availableTokens + elapsedNanos * tokensPerMinute / NANOS_PER_MINUTE);
+        if (requestsPerMinute != null) {
+            availableRequests = Math.min(requestsPerMinute, availableRequests + elapsedNanos * requestsPerMinute / NANOS_PER_MINUTE);
+        }
+    }
+
+    private long nanosUntilAvailable(double requiredTokens) {
+        double tokenNanos = Math.max(0, requiredTokens - availableTokens) * NANOS_PER_MINUTE / tokensPerMinute;
+        double requestNanos = requestsPerMinute == null ? 0 : Math.max(0, 1 - availableRequests) * NANOS_PER_MINUTE / requestsPerMinute;
+        return (long) Math.ceil(Math.max(tokenNanos, requestNanos));
+    }
+
+    private void adjust(double tokens, double requests) {
+        lock.lock();
+        try {
+            refill(System.nanoTime());
+            availableTokens = Math.min(tokensPerMinute, availableTokens + tokens);
+            if (requestsPerMinute != null) {
+                availableRequests = Math.min(requestsPerMinute, availableRequests + requests);
+            }
+            budgetChanged.signalAll();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private record Waiter(Priority priority, long sequence) {
+    }
+
+    /**
+     * Budget reserved for one call, settled exactly once with {@link #reconcile(TokenUsage)} or {@link #cancel()}.
+     */
+    public final class Reservation {
+
+        private final int reservedTokens;
+        private boolean settled;
+
+        private Reservation(int reservedTokens) {
+            this.reservedTokens = reservedTokens;
+        }
+
+        /**
+         * Returns the tokens reserved for the call.
+         *
+         * @return the reserved tokens
+         */
+        public int reservedTokens() {
+            return reservedTokens;
+        }
+
+        /**
+         * Reconciles the reservation with the actual usage of the call. The reservation is kept when the provider
+         * reports no total token count.
+         *
+         * @param tokenUsage the token usage of the response, may be null
+         */
+        public synchronized void reconcile(TokenUsage tokenUsage) {
+            settle();
+            if (tokenUsage != null && tokenUsage.totalTokenCount() != null) {
+                adjust(reservedTokens - tokenUsage.totalTokenCount(), 0);
+            }
+        }
+
+        /**
+         * Returns the whole reservation to the budget, for calls that failed before using it.
+         */
+        public synchronized void cancel() {
+            settle();
+            adjust(reservedTokens, 1);
+        }
+
+        private void settle() {
+            if (settled) {
+                throw new IllegalStateException("Reservation already settled");
+            }
+            settled = true;
+        }
+    }
+
+    /**
+     * Builder class for {@link TokenBudgetScheduler}.
+     */
+    public static class TokenBudgetSchedulerBuilder {
+        private Integer tokensPerMinute;
+        private Integer requestsPerMinute;
+        private Integer expectedOutputTokens = 256;
+        private Duration maxWait = Duration.ofSeconds(30);
+        private Tokenizer tokenizer;
+
+        /**
+         * Sets the tokens per minute of the provider contract. Required.
+         *
+         * @param tokensPerMinute the tokens per minute
+         * @return the current {@link TokenBudgetSchedulerBuilder} instance
+         */
+        public TokenBudgetSchedulerBuilder tokensPerMinute(int tokensPerMinute) {
+            this.tokensPerMinute = tokensPerMinute;
+            return this;
+        }
+
+        /**
+         * Sets the requests per minute of the provider contract. Unlimited by default.
+         *
+         * @param requestsPerMinute the requests per minute
+         * @return the current {@link TokenBudgetSchedulerBuilder} instance
+         */
+        public TokenBudgetSchedulerBuilder requestsPerMinute(int requestsPerMinute) {
+            this.requestsPerMinute = requestsPerMinute;
+            return this;
+        }
+
+        /**
+         * Sets the output tokens reserved for each call in addition to its prompt. Defaults to 256.
+         *
+         * @param expectedOutputTokens the expected output tokens
+         * @return the current {@link TokenBudgetSchedulerBuilder} instance
+         */
+        public TokenBudgetSchedulerBuilder expectedOutputTokens(int expectedOutputTokens) {
+            this.expectedOutputTokens = expectedOutputTokens;
+            return this;
+        }
+
+        /**
+         * Sets the maximum time a call waits for budget. Defaults to 30 seconds.
+         *
+         * @param maxWait the maximum wait
+         * @return the current {@link TokenBudgetSchedulerBuilder} instance
+         */
+        public TokenBudgetSchedulerBuilder maxWait(Duration maxWait) {
+            this.maxWait = maxWait;
+            return this;
+        }
+
+        /**
+         * Sets the tokenizer estimating the prompt tokens. Defaults to 4 characters per token.
+         *
+         * @param tokenizer the tokenizer of the model
+         * @return the current {@link TokenBudgetSchedulerBuilder} instance
+         */
+        public TokenBudgetSchedulerBuilder tokenizer(Tokenizer tokenizer) {
+            this.tokenizer = tokenizer;
+            return this;
+        }
+
+        /**
+         * Builds and returns a new {@link TokenBudgetScheduler} instance.
+         *
+         * @return a new {@link TokenBudgetScheduler} instance
+         */
+        public TokenBudgetScheduler build() {
+            return new TokenBudgetScheduler(this);
+        }
+    }
+}
@@ -0,0 +1,146 @@
+package io.github.czelabueno.jai.workflow.langchain4j.metrics;
+
+import dev.langchain4j.model.output.TokenUsage;
+
+import java.time.Duration;
+import java.time.Instant;
+
+/**
+ * Timings of one streaming model call, recorded by a StreamingNode.
+ * <p>
+ * The time to first token covers queueing and prompt processing by the provider, the time between the first and the
+ * last token covers the generation. The trace is attached to the node metadata under {@link #METADATA_KEY}, so it is
+ * available in the computed transitions of the run alongside the prompt size.
+ * </p>
+ *
+ * @param nodeName          the name of the node that made the call
+ * @param modelName         the name of the model
+ * @param startedAt         when the request was sent
+ * @param promptCharacters  the number of characters of the prompt
+ * @param timeToFirstToken  the time from the request to the first token, null if no token was received
+ * @param timeToLastToken   the time from the request to the last token, null if no token was received
+ * @param duration          the time from the request to the completion or the error
+ * @param tokenCount        the number of streamed tokens
+ * @param tokenUsage        the token usage reported by the provider, may be null
+ * @param error             the error that ended the call, null if it completed
+ */
+public record GenerationTrace(String nodeName,
+                              String modelName,
+                              Instant startedAt,
+                              int promptCharacters,
+                              Duration timeToFirstToken,
+                              Duration timeToLastToken,
+                              Duration duration,
+                              int tokenCount,
+                              TokenUsage tokenUsage,
+                              Throwable error) {
+
+    /**
+     * Key of the trace in the metadata of the node and of its computed transitions.
+     */
+    public static final String METADATA_KEY = "generationTrace";
+
+    /**
+     * Returns true if the call ended with an error.
+     *
+     * @return true if the call failed
+     */
+    public boolean failed() {
+        return error != null;
+    }
+
+    /**
+     * Returns the generation speed, the tokens streamed after the first one over the time to stream them.
+     *
+     * @return the tokens per second, 0 if less than two tokens were received
+     */
+    public double tokensPerSecond() {
+        if (tokenCount < 2 || timeToFirstToken == null) {
+            return 0;
+        }
+        long generationNanos = timeToLastToken.minus(timeToFirstToken).toNanos();
+        return generationNanos <= 0 ? 0 : (tokenCount - 1) * 1_000_000_000d / generationNanos;
+    }
+
+    /**
+     * Starts recording a call at the time the request is sent.
+     *
+     * @param nodeName         the name of the node that makes the call
+     * @param modelName        the name of the model
+     * @param promptCharacters the number of characters of the prompt
+     * @return the recorder of the call
+     */
+    public static Recorder start(String nodeName, String modelName, int promptCharacters) {
+        return new Recorder(nodeName, modelName, promptCharacters);
+    }
+
+    /**
+     * Records the timestamps of a call from the handler of the streaming model.
+     * Tokens may be recorded from the provider thread while the call is awaited from another one.
+     */
+    public static final class Recorder {
+
+        private final String nodeName;
+        private final String modelName;
+        private final int promptCharacters;
+        private final Instant startedAt = Instant.now();
+        private final long startNanos = System.nanoTime();
+        private volatile long firstTokenNanos;
+        private volatile long lastTokenNanos;
+        private volatile int tokenCount;
+
+        private Recorder(String nodeName, String modelName, int promptCharacters) {
+            this.nodeName = nodeName;
+            this.modelName = modelName;
+            this.promptCharacters = promptCharacters;
+        }
+
+        /**
+         * Records a streamed token. Tokens of a call are delivered sequentially by the provider.
+         */
+        public void onToken() {
+            long now = System.nanoTime();
+            if (tokenCount == 0) {
+                firstTokenNanos = now;
+            }
+            lastTokenNanos = now;
+            tokenCount++;
+        }
+
+        /**
+         * Completes the trace of a successful call.
+         *
+         * @param tokenUsage the token usage reported by the provider, may be null
+         * @return the trace of the call
+         */
+        public GenerationTrace onComplete(TokenUsage tokenUsage) {
+            return trace(tokenUsage, null);
+        }
+
+        /**
+         * Completes the trace of a failed call.
+         *
+         * @param error the error that ended the call
+         * @return the trace of the call
+         */
+        public GenerationTrace onError(Throwable error) {
+            return trace(null, error);
+        }
+
+        private GenerationTrace trace(TokenUsage tokenUsage, Throwable error) {
+            long endNanos = System.nanoTime();
+            int tokens = tokenCount;
+            return new GenerationTrace(
+                    nodeName,
+                    modelName,
+                    startedAt,
+                    promptCharacters,
+                    tokens == 0 ? null : Duration.ofNanos(firstTokenNanos - startNanos),
+                    tokens == 0 ? null : Duration.ofNanos(lastTokenNanos - startNanos),
+                    Duration.ofNanos(endNanos - startNanos),
+                    tokens,
+                    tokenUsage,
+                    error);
+        }
+    }
+}
@@ -0,0 +1,126 @@
+package io.github.czelabueno.jai.workflow.langchain4j.metrics;
+
+import lombok.NonNull;
+
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Aggregates the {@link GenerationTrace}s of streaming model calls into histograms per model.
+ * <p>
+ * StreamingNodes record into {@link #getDefault()} unless they are given their own instance. For each model it exposes
+ * the time to first token in microseconds, the generation speed in tokens per second and the number of calls and errors.
+ * </p>
+ */
+public class StreamingMetrics {
+
+    private static final StreamingMetrics DEFAULT = new StreamingMetrics();
+
+    private final Map<String, ModelMetrics> models = new ConcurrentHashMap<>();
+
+    /**
+     * Returns the metrics shared by the StreamingNodes created without metrics.
+     *
+     * @return the default metrics
+     */
+    public static StreamingMetrics getDefault() {
+        return DEFAULT;
+    }
+
+    /**
+     * Records the trace of a call in the metrics of its model.
+     *
+     * @param trace the trace of the call
+     */
+    public void record(@NonNull GenerationTrace trace) {
+        ModelMetrics metrics = model(trace.modelName());
+        metrics.calls.increment();
+        if (trace.failed()) {
+            metrics.errors.increment();
+        }
+        if (trace.timeToFirstToken() != null) {
+            metrics.timeToFirstTokenMicros.record(trace.timeToFirstToken().toNanos() / 1_000);
+        }
+        if (trace.tokenCount() > 1) {
+            metrics.tokensPerSecond.record(Math.round(trace.tokensPerSecond()));
+        }
+    }
+
+    /**
+     * Returns the metrics of a model, empty if no call of the model was recorded.
+     *
+     * @param modelName the name of the model
+     * @return the metrics of the model
+     */
+    public ModelMetrics model(@NonNull String modelName) {
+        return models.computeIfAbsent(modelName, name -> new ModelMetrics());
+    }
+
+    /**
+     * Returns the names of the models with recorded calls.
+     *
+     * @return the names of the models
+     */
+    public Set<String> modelNames() {
+        return Set.copyOf(models.keySet());
+    }
+
+    /**
+     * Clears the metrics of every model.
+     */
+    public void reset() {
+        models.clear();
+    }
+
+    /**
+     * Streaming metrics of one model.
+     */
+    public static final class ModelMetrics {
+
+        private final Histogram timeToFirstTokenMicros = new Histogram();
+        private final Histogram tokensPerSecond = new Histogram();
+        private final LongAdder calls = new LongAdder();
+        private final LongAdder errors = new LongAdder();
+
+        private ModelMetrics() {
+        }
+
+        /**
+         * Returns the histogram of the time to first token, in microseconds.
+         *
+         * @return the time to first token histogram
+         */
+        public Histogram timeToFirstTokenMicros() {
+            return timeToFirstTokenMicros;
+        }
+
+        /**
+         * Returns the histogram of the generation speed, in tokens per second.
+         *
+         * @return the tokens per second histogram
+         */
+        public Histogram tokensPerSecond() {
+            return tokensPerSecond;
+        }
+
+        /**
+         * Returns the number of recorded calls.
+         *
+         * @return the number of calls
+         */
+        public long calls() {
+            return calls.sum();
+        }
+
+        /**
+         * Returns the number of recorded calls that failed.
+         *
+         * @return the number of errors
+         */
+        public long errors() {
+            return errors.sum();
+        }
+    }
+}
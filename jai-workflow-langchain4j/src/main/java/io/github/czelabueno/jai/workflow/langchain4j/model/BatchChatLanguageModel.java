@@ -0,0 +1,43 @@
+package io.github.czelabueno.jai.workflow.langchain4j.model;
+
+import dev.langchain4j.data.message.AiMessage;
+import dev.langchain4j.data.message.ChatMessage;
+import dev.langchain4j.model.chat.ChatLanguageModel;
+import dev.langchain4j.model.output.Response;
+import lombok.NonNull;
+
+import java.util.List;
+
+/**
+ * BatchChatLanguageModel is the adapter contract for models able to answer several independent requests in one call,
+ * e.g. a provider batch endpoint or a prompt that packs several grading questions together.
+ * <p>
+ * Implementations must return exactly one {@link Response} per request, in the same order as the requests.
+ * </p>
+ *
+ * @see BatchingExecutor
+ */
+@FunctionalInterface
+public interface BatchChatLanguageModel {
+
+    /**
+     * Generates one response per request.
+     *
+     * @param requests the independent requests, each one is a list of chat messages
+     * @return the responses, in the same order as the requests
+     */
+    List<Response<AiMessage>> generateAll(List<List<ChatMessage>> requests);
+
+    /**
+     * Adapts a {@link ChatLanguageModel} without batch support by calling it once per request.
+     * It is useful to enable micro-batching before a batch-capable adapter is available for the provider.
+     *
+     * @param model the chat language model
+     * @return a BatchChatLanguageModel that calls the model sequentially
+     */
+    static BatchChatLanguageModel sequential(@NonNull ChatLanguageModel model) {
+        return requests -> requests.stream()
+                .map(model::generate)
+                .toList();
+    }
+}
@@ -0,0 +1,272 @@
+package io.github.czelabueno.jai.workflow.langchain4j.model;
+
+import dev.langchain4j.data.message.AiMessage;
+import dev.langchain4j.data.message.ChatMessage;
+import dev.langchain4j.model.chat.ChatLanguageModel;
+import dev.langchain4j.model.output.Response;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReentrantLock;
+
+import static dev.langchain4j.internal.ValidationUtils.ensureGreaterThanZero;
+import static dev.langchain4j.internal.ValidationUtils.ensureNotNull;
+
+/**
+ * BatchingExecutor accumulates model requests coming from many concurrent workflow runs and submits them together
+ * to a {@link BatchChatLanguageModel}, then hands each response back to the run that issued the request.
+ * <p>
+ * A batch is submitted when {@code maxBatchSize} requests are pending or {@code maxDelay} elapsed since the first pending
+ * request, whichever comes first. Batches are submitted on a separate thread pool so accumulation keeps going while a
+ * batch is in flight.
+ * </p>
+ * <p>
+ * Node functions that call a {@link ChatLanguageModel} synchronously, such as grading steps, can use {@link #asChatLanguageModel()}
+ * and keep their code unchanged:
+ * </p>
+ * <pre>{@code
+ * BatchingExecutor batching = BatchingExecutor.builder()
+ *         .batchModel(BatchChatLanguageModel.sequential(model))
+ *         .maxBatchSize(16)
+ *         .maxDelay(Duration.ofMillis(5))
+ *         .build();
+ * ChatLanguageModel gradingModel = batching.asChatLanguageModel();
+ * }</pre>
+ */
+public class BatchingExecutor implements AutoCloseable {
+
+    private static final Logger log = LoggerFactory.getLogger(BatchingExecutor.class);
+
+    private final BatchChatLanguageModel batchModel;
+    private final int maxBatchSize;
+    private final Duration maxDelay;
+    private final ScheduledExecutorService scheduler;
+    private final ExecutorService batchExecutor;
+    private final ReentrantLock lock = new ReentrantLock();
+    private List<PendingRequest> pending = new ArrayList<>();
+    private ScheduledFuture<?> scheduledFlush;
+    private volatile boolean closed;
+
+    private final AtomicLong batches = new AtomicLong();
+    private final AtomicLong requests = new AtomicLong();
+
+    private BatchingExecutor(BatchingExecutorBuilder builder) {
+        this.batchModel = ensureNotNull(builder.batchModel, "batchModel");
+        this.maxBatchSize = ensureGreaterThanZero(builder.maxBatchSize, "maxBatchSize");
+        this.maxDelay = ensureNotNull(builder.maxDelay, "maxDelay");
+        this.scheduler = Executors.newSingleThreadScheduledExecutor(daemon("jai-batching-scheduler"));
+        this.batchExecutor = Executors.newCachedThreadPool(daemon("jai-batching-worker"));
+    }
+
+    /**
+     * Returns a new builder instance for creating a {@link BatchingExecutor}.
+     *
+     * @return a new {@link BatchingExecutorBuilder} instance
+     */
+    public static BatchingExecutorBuilder builder() {
+        return new BatchingExecutorBuilder();
+    }
+
+    /**
+     * Submits a request to be generated as part of the next batch.
+     *
+     * @param messages the chat messages of the request
+     * @return a future completed with the response of the request
+     * @throws IllegalStateException if the executor is closed
+     */
+    public CompletableFuture<Response<AiMessage>> submit(List<ChatMessage> messages) {
+        ensureNotNull(messages, "messages");
+        PendingRequest request = new PendingRequest(List.copyOf(messages), new CompletableFuture<>());
+        List<PendingRequest> batch = null;
+        lock.lock();
+        try {
+            if (closed) {
+                throw new IllegalStateException("BatchingExecutor is closed");
+            }
+            pending.add(request);
+            if (pending.size() >= maxBatchSize) {
+                batch = drain();
+            } else if (pending.size() == 1) {
+                scheduledFlush = scheduler.schedule(this::flush, maxDelay.toNanos(), TimeUnit.NANOSECONDS);
+            }
+        } finally {
+            lock.unlock();
+        }
+        if (batch != null) {
+            dispatch(batch);
+        }
+        return request.response();
+    }
+
+    /**
+     * Returns a {@link ChatLanguageModel} view that submits every call to this executor and waits for its response.
+     *
+     * @return a blocking ChatLanguageModel backed by this executor
+     */
+    public ChatLanguageModel asChatLanguageModel() {
+        return messages -> {
+            try {
+                return submit(messages).join();
+            } catch (CompletionException e) {
+                throw e.getCause() instanceof RuntimeException cause ? cause : e;
+            }
+        };
+    }
+
+    /**
+     * Returns the number of batches submitted to the batch model.
+     *
+     * @return the number of batches submitted
+     */
+    public long batches() {
+        return batches.get();
+    }
+
+    /**
+     * Returns the average number of requests per submitted batch.
+     *
+     * @return the average batch size, or 0 if no batch was submitted
+     */
+    public double averageBatchSize() {
+        long submitted = batches.get();
+        return submitted == 0 ? 0d : (double) requests.get() / submitted;
+    }
+
+    /**
+     * Submits the pending requests and stops accepting new ones.
+     */
+    @Override
+    public void close() {
+        List<PendingRequest> batch;
+        lock.lock();
+        try {
+            closed = true;
+            batch = drain();
+        } finally {
+            lock.unlock();
+        }
+        if (!batch.isEmpty()) {
+            dispatch(batch);
+        }
+        scheduler.shutdown();
+        batchExecutor.shutdown();
+    }
+
+    private void flush() {
+        List<PendingRequest> batch;
+        lock.lock();
+        try {
+            batch = drain();
+        } finally {
+            lock.unlock();
+        }
+        if (!batch.isEmpty()) {
+            dispatch(batch);
+        }
+    }
+
+    // must be called holding the lock
+    private List<PendingRequest> drain() {
+        if (scheduledFlush != null) {
+            scheduledFlush.cancel(false);
+            scheduledFlush = null;
+        }
+        List<PendingRequest> batch = pending;
+        pending = new ArrayList<>();
+        return batch;
+    }
+
+    private void dispatch(List<PendingRequest> batch) {
+        batches.incrementAndGet();
+        requests.addAndGet(batch.size());
+        batchExecutor.execute(() -> {
+            try {
+                List<Response<AiMessage>> responses = batchModel.generateAll(batch.stream().map(PendingRequest::messages).toList());
+                if (responses == null || responses.size() != batch.size()) {
+                    throw new IllegalStateException("The batch model returned " + (responses == null ? "no" : responses.size()) +
+                            " responses for a batch of " + batch.size() + " requests");
+                }
+                for (int i = 0; i < batch.size(); i++) {
+                    batch.get(i).response().complete(responses.get(i));
+                }
+            } catch (Throwable e) {
+                log.warn("Batch of {} requests failed: {}", batch.size(), e.getMessage());
+                batch.forEach(request -> request.response().completeExceptionally(e));
+            }
+        });
+    }
+
+    private static ThreadFactory daemon(String name) {
+        return runnable -> {
+            Thread thread = new Thread(runnable, name);
+            thread.setDaemon(true);
+            return thread;
+        };
+    }
+
+    private record PendingRequest(List<ChatMessage> messages, CompletableFuture<Response<AiMessage>> response) {
+    }
+
+    /**
+     * Builder class for {@link BatchingExecutor}.
+     */
+    public static class BatchingExecutorBuilder {
+        private BatchChatLanguageModel batchModel;
+        private Integer maxBatchSize = 16;
+        private Duration maxDelay = Duration.ofMillis(5);
+
+        /**
+         * Sets the batch-capable model that generates the batches.
+         *
+         * @param batchModel the batch chat language model
+         * @return the current {@link BatchingExecutorBuilder} instance
+         */
+        public BatchingExecutorBuilder batchModel(BatchChatLanguageModel batchModel) {
+            this.batchModel = batchModel;
+            return this;
+        }
+
+        /**
+         * Sets the number of pending requests that triggers a batch immediately. Defaults to 16.
+         *
+         * @param maxBatchSize the maximum number of requests per batch
+         * @return the current {@link BatchingExecutorBuilder} instance
+         */
+        public BatchingExecutorBuilder maxBatchSize(int maxBatchSize) {
+            this.maxBatchSize = maxBatchSize;
+            return this;
+        }
+
+        /**
+         * Sets the maximum time a request waits for other requests before its batch is submitted. Defaults to 5 milliseconds.
+         *
+         * @param maxDelay the maximum accumulation delay
+         * @return the current {@link BatchingExecutorBuilder} instance
+         */
+        public BatchingExecutorBuilder maxDelay(Duration maxDelay) {
+            this.maxDelay = maxDelay;
+            return this;
+        }
+
+        /**
+         * Builds and returns a new {@link BatchingExecutor} instance.
+         *
+         * @return a new {@link BatchingExecutor} instance
+         */
+        public BatchingExecutor build() {
+            return new BatchingExecutor(this);
+        }
+    }
+}
@@ -0,0 +1,98 @@
+package io.github.czelabueno.jai.workflow.langchain4j.model;
+
+import dev.langchain4j.data.message.AiMessage;
+import dev.langchain4j.data.message.ChatMessage;
+import dev.langchain4j.model.chat.ChatLanguageModel;
+import dev.langchain4j.model.output.Response;
+import lombok.NonNull;
+
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * CoalescingChatLanguageModel is a {@link ChatLanguageModel} decorator that shares one in-flight call among identical
+ * concurrent requests (single-flight), for generation nodes that call the model synchronously.
+ * <p>
+ * Two requests are identical when their lists of {@link ChatMessage} are equal. Callers that arrive while the call is in
+ * flight wait for and return the same {@link Response}; the call is forgotten as soon as it completes.
+ * </p>
+ *
+ * @see CoalescingStreamingChatLanguageModel
+ */
+public class CoalescingChatLanguageModel implements ChatLanguageModel {
+
+    private final ChatLanguageModel delegate;
+    private final Map<List<ChatMessage>, CompletableFuture<Response<AiMessage>>> inFlightCalls = new ConcurrentHashMap<>();
+    private final AtomicLong delegateCalls = new AtomicLong();
+    private final AtomicLong coalescedRequests = new AtomicLong();
+
+    /**
+     * Constructs a new CoalescingChatLanguageModel.
+     *
+     * @param delegate the chat language model that performs the calls
+     */
+    public CoalescingChatLanguageModel(@NonNull ChatLanguageModel delegate) {
+        this.delegate = delegate;
+    }
+
+    /**
+     * Creates a new CoalescingChatLanguageModel.
+     *
+     * @param delegate the chat language model that performs the calls
+     * @return a new CoalescingChatLanguageModel instance
+     */
+    public static CoalescingChatLanguageModel from(@NonNull ChatLanguageModel delegate) {
+        return new CoalescingChatLanguageModel(delegate);
+    }
+
+    @Override
+    public Response<AiMessage> generate(List<ChatMessage> messages) {
+        List<ChatMessage> key = List.copyOf(messages);
+        CompletableFuture<Response<AiMessage>> created = new CompletableFuture<>();
+        CompletableFuture<Response<AiMessage>> call = inFlightCalls.putIfAbsent(key, created);
+        if (call != null) {
+            coalescedRequests.incrementAndGet();
+            try {
+                return call.join();
+            } catch (CompletionException e) {
+                if (e.getCause() instanceof Error error) {
+                    throw error;
+                }
+                throw e.getCause() instanceof RuntimeException cause ? cause : e;
+            }
+        }
+        delegateCalls.incrementAndGet();
+        try {
+            Response<AiMessage> response = delegate.generate(key);
+            created.complete(response);
+            return response;
+        } catch (Throwable e) {
+            created.completeExceptionally(e); // the joined callers never wait for a call that failed with an Error
+            throw e;
+        } finally {
+            inFlightCalls.remove(key, created);
+        }
+    }
+
+    /**
+     * Returns the number of calls made to the delegate model.
+     *
+     * @return the number of calls made to the delegate model
+     */
+    public long delegateCalls() {
+        return delegateCalls.get();
+    }
+
+    /**
+     * Returns the number of requests served by joining an in-flight call.
+     *
+     * @return the number of coalesced requests
+     */
+    public long coalescedRequests() {
+        return coalescedRequests.get();
+    }
+}
@@ -0,0 +1,259 @@
+package io.github.czelabueno.jai.workflow.langchain4j.model;
+
+import dev.langchain4j.data.message.AiMessage;
+import dev.langchain4j.data.message.ChatMessage;
+import dev.langchain4j.model.StreamingResponseHandler;
+import dev.langchain4j.model.chat.StreamingChatLanguageModel;
+import dev.langchain4j.model.output.Response;
+import lombok.NonNull;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * CoalescingStreamingChatLanguageModel is a {@link StreamingChatLanguageModel} decorator that shares one in-flight
+ * call among identical concurrent requests (single-flight).
+ * <p>
+ * Two requests are identical when their lists of {@link ChatMessage} are equal. The first request starts the call on the
+ * delegate model; requests arriving while it is in flight subscribe to it, receive the tokens already streamed and then
+ * every following token, completion or error. Once the call terminates the next identical request starts a new call,
+ * so answers are never cached beyond the lifetime of the shared call.
+ * </p>
+ * <pre>{@code
+ * StreamingChatLanguageModel model = CoalescingStreamingChatLanguageModel.from(mistralStreamingModel);
+ * StreamingNode<MyBean> generateNode = StreamingNode.from("Generate", MyFunctions::userMessage, model);
+ * }</pre>
+ */
+public class CoalescingStreamingChatLanguageModel implements StreamingChatLanguageModel {
+
+    private static final Logger log = LoggerFactory.getLogger(CoalescingStreamingChatLanguageModel.class);
+
+    private final StreamingChatLanguageModel delegate;
+    private final Map<List<ChatMessage>, InFlightCall> inFlightCalls = new ConcurrentHashMap<>();
+    private final AtomicLong delegateCalls = new AtomicLong();
+    private final AtomicLong coalescedRequests = new AtomicLong();
+
+    /**
+     * Constructs a new CoalescingStreamingChatLanguageModel.
+     *
+     * @param delegate the streaming chat language model that performs the calls
+     */
+    public CoalescingStreamingChatLanguageModel(@NonNull StreamingChatLanguageModel delegate) {
+        this.delegate = delegate;
+    }
+
+    /**
+     * Creates a new CoalescingStreamingChatLanguageModel.
+     *
+     * @param delegate the streaming chat language model that performs the calls
+     * @return a new CoalescingStreamingChatLanguageModel instance
+     */
+    public static CoalescingStreamingChatLanguageModel from(@NonNull StreamingChatLanguageModel delegate) {
+        return new CoalescingStreamingChatLanguageModel(delegate);
+    }
+
+    @Override
+    public void generate(List<ChatMessage> messages, StreamingResponseHandler<AiMessage> handler) {
+        List<ChatMessage> key = List.copyOf(messages);
+        while (true) {
+            InFlightCall created = new InFlightCall(key);
+            InFlightCall call = inFlightCalls.putIfAbsent(key, created);
+            if (call == null) {
+                created.subscribe(handler);
+                delegateCalls.incrementAndGet();
+                try {
+                    delegate.generate(key, created);
+                } catch (Throwable e) {
+                    created.onError(e);
+                }
+                return;
+            }
+            if (call.subscribe(handler)) {
+                coalescedRequests.incrementAndGet();
+                log.debug("Request coalesced into an in-flight call with {} subscribers", call.subscriberCount());
+                return;
+            }
+            // the call terminated between the lookup and the subscription, start or join a new one
+            inFlightCalls.remove(key, call);
+        }
+    }
+
+    /**
+     * Returns the number of calls made to the delegate model.
+     *
+     * @return the number of calls made to the delegate model
+     */
+    public long delegateCalls() {
+        return delegateCalls.get();
+    }
+
+    /**
+     * Returns the number of requests served by joining an in-flight call.
+     *
+     * @return the number of coalesced requests
+     */
+    public long coalescedRequests() {
+        return coalescedRequests.get();
+    }
+
+    /**
+     * Delivers the signals of a call to one subscriber, in order and outside the lock of the call: whichever thread
+     * queues a signal while no other thread is delivering to the subscriber drains its queue, so a slow subscriber
+     * never blocks the provider callback nor the other subscribers, and a failing subscriber only fails itself.
+     */
+    private static final class Subscriber {
+
+        private final StreamingResponseHandler<AiMessage> handler;
+        private final Queue<String> tokens = new ConcurrentLinkedQueue<>();
+        private final AtomicInteger pendingDrains = new AtomicInteger();
+        private volatile Response<AiMessage> response;
+        private volatile Throwable error;
+        private volatile boolean terminated;
+        private boolean done; // only accessed by the draining thread
+
+        private Subscriber(StreamingResponseHandler<AiMessage> handler) {
+            this.handler = handler;
+        }
+
+        private void drain() {
+            if (pendingDrains.getAndIncrement() != 0) {
+                return; // the draining thread will deliver the new signals
+            }
+            int missed = 1;
+            while (true) {
+                String token;
+                while (!done && (token = tokens.poll()) != null) {
+                    try {
+                        handler.onNext(token);
+                    } catch (Throwable e) {
+                        log.warn("Subscriber failed on a token of a coalesced call, unsubscribing it", e);
+                        done = true;
+                        tokens.clear();
+                        deliverError(e);
+                    }
+                }
+                if (!done && terminated && tokens.isEmpty()) {
+                    done = true;
+                    if (error != null) {
+                        deliverError(error);
+                    } else {
+                        try {
+                            handler.onComplete(response);
+                        } catch (Throwable e) {
+                            log.warn("Subscriber failed on the completion of a coalesced call", e);
+                        }
+                    }
+                }
+                missed = pendingDrains.addAndGet(-missed);
+                if (missed == 0) {
+                    return;
+                }
+            }
+        }
+
+        private void deliverError(Throwable e) {
+            try {
+                handler.onError(e);
+            } catch (Throwable suppressed) {
+                log.warn("Subscriber failed on the error of a coalesced call", suppressed);
+            }
+        }
+    }
+
+    private final class InFlightCall implements StreamingResponseHandler<AiMessage> {
+
+        private final List<ChatMessage> key;
+        private final ReentrantLock lock = new ReentrantLock();
+        private final List<String> tokens = new ArrayList<>();
+        private final List<Subscriber> subscribers = new ArrayList<>();
+        private boolean terminated;
+
+        private InFlightCall(List<ChatMessage> key) {
+            this.key = key;
+        }
+
+        // Signals are queued to the subscribers under the lock, so a late subscriber never misses nor duplicates a
+        // token, and delivered outside it.
+        boolean subscribe(StreamingResponseHandler<AiMessage> handler) {
+            Subscriber subscriber = new Subscriber(handler);
+            lock.lock();
+            try {
+                if (terminated) {
+                    return false;
+                }
+                subscriber.tokens.addAll(tokens);
+                subscribers.add(subscriber);
+            } finally {
+                lock.unlock();
+            }
+            subscriber.drain();
+            return true;
+        }
+
+        int subscriberCount() {
+            lock.lock();
+            try {
+                return subscribers.size();
+            } finally {
+                lock.unlock();
+            }
+        }
+
+        @Override
+        public void onNext(String token) {
+            List<Subscriber> receivers;
+            lock.lock();
+            try {
+                if (terminated) {
+                    return;
+                }
+                tokens.add(token);
+                subscribers.forEach(subscriber -> subscriber.tokens.add(token));
+                receivers = List.copyOf(subscribers);
+            } finally {
+                lock.unlock();
+            }
+            receivers.forEach(Subscriber::drain);
+        }
+
+        @Override
+        public void onComplete(Response<AiMessage> response) {
+            terminate(response, null);
+        }
+
+        @Override
+        public void onError(Throwable error) {
+            terminate(null, error);
+        }
+
+        private void terminate(Response<AiMessage> response, Throwable error) {
+            List<Subscriber> receivers;
+            lock.lock();
+            try {
+                if (terminated) {
+                    return;
+                }
+                terminated = true;
+                inFlightCalls.remove(key, this);
+                for (Subscriber subscriber : subscribers) {
+                    subscriber.response = response;
+                    subscriber.error = error;
+                    subscriber.terminated = true;
+                }
+                receivers = List.copyOf(subscribers);
+            } finally {
+                lock.unlock();
+            }
+            receivers.forEach(Subscriber::drain);
+        }
+    }
+}
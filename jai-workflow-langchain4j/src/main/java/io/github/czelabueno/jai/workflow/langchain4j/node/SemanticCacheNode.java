@@ -0,0 +1,152 @@
+package io.github.czelabueno.jai.workflow.langchain4j.node;
+
+import dev.langchain4j.data.embedding.Embedding;
+import io.github.czelabueno.jai.workflow.langchain4j.AbstractStatefulBean;
+import io.github.czelabueno.jai.workflow.langchain4j.cache.SemanticCache;
+import io.github.czelabueno.jai.workflow.langchain4j.cache.SemanticCacheLookup;
+import io.github.czelabueno.jai.workflow.node.Conditional;
+import io.github.czelabueno.jai.workflow.node.Node;
+import lombok.NonNull;
+import reactor.core.publisher.Flux;
+
+import java.util.List;
+import java.util.Optional;
+
+import static dev.langchain4j.internal.ValidationUtils.ensureNotBlank;
+
+/**
+ * SemanticCacheNode is a specialized type of {@link Node} that looks up the question of the stateful bean in a {@link SemanticCache}.
+ * <p>
+ * On a hit, the cached answer is set as the generation (and generation stream) of the stateful bean,
+ * and {@link #route(Node, Node)} sends the workflow to a {@link CachedAnswerNode} that transitions to END,
+ * skipping retrieval and generation. On a miss the generation is cleared and the workflow continues;
+ * {@link io.github.czelabueno.jai.workflow.langchain4j.internal.DefaultJAiWorkflow} stores the final generation back in the cache.
+ * </p>
+ * <pre>{@code
+ * SemanticCacheNode<MyBean> cacheNode = SemanticCacheNode.from("Semantic Cache", semanticCache);
+ * CachedAnswerNode<MyBean> cachedAnswer = cacheNode.cachedAnswerNode();
+ * // cacheNode -> route(cachedAnswer, retrieveNode); cachedAnswer -> END; ... generateNode -> END
+ * }</pre>
+ *
+ * @param <T> the type of the stateful bean, which extends AbstractStatefulBean
+ */
+public class SemanticCacheNode<T extends AbstractStatefulBean> extends Node<T, T> {
+
+    private final SemanticCache semanticCache;
+
+    /**
+     * Constructs a new SemanticCacheNode with the specified name and semantic cache.
+     *
+     * @param name          the name of the node
+     * @param semanticCache the semantic cache to look up
+     */
+    public SemanticCacheNode(String name, @NonNull SemanticCache semanticCache) {
+        super(ensureNotBlank(name, "name"), statefulBean -> lookup(semanticCache, statefulBean));
+        this.semanticCache = semanticCache;
+        this.setLabels("Semantic Cache");
+    }
+
+    /**
+     * Creates a new SemanticCacheNode from the specified parameters.
+     *
+     * @param name          the name of the node
+     * @param semanticCache the semantic cache to look up
+     * @param <T>           the type of the stateful bean, which extends AbstractStatefulBean
+     * @return a new SemanticCacheNode instance
+     */
+    public static <T extends AbstractStatefulBean> SemanticCacheNode<T> from(String name, @NonNull SemanticCache semanticCache) {
+        return new SemanticCacheNode<>(name, semanticCache);
+    }
+
+    // The lookup result is kept in the stateful bean, so that overlapping runs never share it
+    private static <T extends AbstractStatefulBean> T lookup(SemanticCache semanticCache, T statefulBean) {
+        String question = statefulBean.getQuestion();
+        if (question == null || question.isBlank()) {
+            markMiss(null, null, statefulBean);
+            return statefulBean;
+        }
+        Embedding embedding = semanticCache.embed(question);
+        Optional<String> answer = semanticCache.lookup(embedding);
+        if (answer.isPresent()) {
+            statefulBean.setSemanticCacheLookup(SemanticCacheLookup.ofHit());
+            statefulBean.setGeneration(answer.get());
+            statefulBean.setGenerationStream(Flux.just(answer.get()));
+        } else {
+            markMiss(question, embedding, statefulBean);
+        }
+        return statefulBean;
+    }
+
+    private static void markMiss(String question, Embedding embedding, AbstractStatefulBean statefulBean) {
+        statefulBean.setSemanticCacheLookup(SemanticCacheLookup.ofMiss(question, embedding));
+        statefulBean.setGeneration(null); // the stateful bean is reused between runs
+        statefulBean.setGenerationStream(null);
+    }
+
+    /**
+     * Returns true if the lookup of the run of the given stateful bean returned a cached answer.
+     *
+     * @param statefulBean the stateful bean of the run
+     * @return true if the lookup was a hit, false otherwise
+     */
+    public boolean wasHit(@NonNull T statefulBean) {
+        SemanticCacheLookup lookup = statefulBean.semanticCacheLookup();
+        return lookup != null && lookup.hit();
+    }
+
+    /**
+     * Stores the generation of the stateful bean in the cache if the lookup of its run was a miss.
+     *
+     * @param statefulBean the stateful bean after the workflow run
+     */
+    public void store(@NonNull T statefulBean) {
+        SemanticCacheLookup lookup = statefulBean.semanticCacheLookup();
+        if (lookup == null || lookup.hit() || lookup.embedding() == null || statefulBean.getGeneration() == null) {
+            return;
+        }
+        semanticCache.put(lookup.question(), lookup.embedding(), statefulBean.getGeneration());
+        statefulBean.setSemanticCacheLookup(null);
+    }
+
+    /**
+     * Creates a new {@link CachedAnswerNode} to be placed between the {@link #route(Node, Node)} conditional and END.
+     *
+     * @return a new CachedAnswerNode instance
+     */
+    public CachedAnswerNode<T> cachedAnswerNode() {
+        return new CachedAnswerNode<>(getName() + " Hit");
+    }
+
+    /**
+     * Creates a {@link Conditional} that routes to {@code onHit} when the lookup of the run was a hit, or to {@code onMiss} otherwise.
+     *
+     * @param onHit  the node to run on a hit, usually a {@link CachedAnswerNode} followed by END
+     * @param onMiss the node to run on a miss, usually the first node of the retrieval and generation chain
+     * @return a new Conditional instance
+     */
+    public Conditional<T> route(@NonNull Node<T, ?> onHit, @NonNull Node<T, ?> onMiss) {
+        return Conditional.eval(getName() + " hit?", statefulBean -> wasHit(statefulBean) ? onHit : onMiss, List.of(onHit, onMiss));
+    }
+
+    /**
+     * Returns the semantic cache used by this node, e.g. to read its metrics.
+     *
+     * @return the semantic cache used by this node
+     */
+    public SemanticCache getSemanticCache() {
+        return semanticCache;
+    }
+
+    /**
+     * CachedAnswerNode is a pass-through {@link Node} that marks the short-circuit path of a semantic cache hit.
+     * The answer was already set in the stateful bean by the {@link SemanticCacheNode}.
+     *
+     * @param <T> the type of the stateful bean, which extends AbstractStatefulBean
+     */
+    public static class CachedAnswerNode<T extends AbstractStatefulBean> extends Node<T, T> {
+
+        private CachedAnswerNode(String name) {
+            super(name, statefulBean -> statefulBean);
+        }
+    }
+}
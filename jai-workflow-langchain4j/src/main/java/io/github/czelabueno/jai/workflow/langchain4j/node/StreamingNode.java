@@ -1,6 +1,9 @@
 package io.github.czelabueno.jai.workflow.langchain4j.node;
 
 import io.github.czelabueno.jai.workflow.langchain4j.AbstractStatefulBean;
+import io.github.czelabueno.jai.workflow.langchain4j.internal.ChatMessages;
+import io.github.czelabueno.jai.workflow.langchain4j.metrics.GenerationTrace;
+import io.github.czelabueno.jai.workflow.langchain4j.metrics.StreamingMetrics;
 import io.github.czelabueno.jai.workflow.node.Node;
 import dev.langchain4j.data.message.AiMessage;
 import dev.langchain4j.data.message.ChatMessage;
@@ -13,7 +16,10 @@ import reactor.core.publisher.Flux;
 import reactor.core.publisher.Sinks;
 
 import java.util.List;
+import java.util.Map;
 import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.function.Consumer;
 import java.util.function.Function;
 
 import static dev.langchain4j.internal.Utils.getOrDefault;
@@ -22,11 +28,31 @@ import static dev.langchain4j.internal.ValidationUtils.ensureNotBlank;
 /**
  * StreamingNode is a specialized type of {@link Node} that handles streaming responses from a {@link StreamingChatLanguageModel}.
  * It extends the generic Node class with specific types for stateful beans and reactive streams.
+ * <p>
+ * Each call is traced: request start, first and last token, token count and error are recorded in a {@link GenerationTrace},
+ * aggregated per model in {@link StreamingMetrics} and attached to the metadata of the execution under
+ * {@link GenerationTrace#METADATA_KEY}. The model is named by {@link StreamingNodeBuilder#modelName(String)}, e.g.
+ * {@code gpt-4o-mini}, or else by the simple name of the model class, which does not tell apart the models of one
+ * provider nor the models wrapped in a decorator.
+ * </p>
+ * <pre>{@code
+ * StreamingNode<MyStatefulBean> generate = StreamingNode.<MyStatefulBean>builder()
+ *         .name("generate")
+ *         .streamingChatLanguageModel(model)
+ *         .modelName("gpt-4o-mini")
+ *         .build();
+ * }</pre>
  *
  * @param <T> the type of the stateful bean, which extends AbstractStatefulBean
  */
 public class StreamingNode<T extends AbstractStatefulBean> extends Node<T, Flux<String>> {
 
+    private final List<ChatMessage> messages;
+    private final Function<T, ChatMessage> doUserMessage;
+    private final StreamingChatLanguageModel streamingChatLanguageModel;
+    private final StreamingMetrics streamingMetrics;
+    private final String modelName;
+
     /**
      * Constructs a new StreamingNode with the specified name, messages, and StreamingChatLanguageModel.
      *
@@ -39,7 +65,90 @@ public class StreamingNode<T extends AbstractStatefulBean> extends Node<T, Flux<
                          List<ChatMessage> messages,
                          Function<T, ChatMessage> doUserMessage,
                          @NonNull StreamingChatLanguageModel streamingChatLanguageModel) {
-        super(ensureNotBlank(name, "name"), (T statefulBean) -> streamingFunction(statefulBean, messages, doUserMessage, streamingChatLanguageModel));
+        this(name, messages, doUserMessage, streamingChatLanguageModel, StreamingMetrics.getDefault());
+    }
+
+    /**
+     * Constructs a new StreamingNode recording its generation traces in the specified metrics.
+     *
+     * @param name the name of the node
+     * @param messages the list of ChatMessage to be processed by the streamingChatLanguageModel
+     * @param doUserMessage a function to generate a user message from the stateful bean
+     * @param streamingChatLanguageModel the streaming chat language model to generate responses
+     * @param streamingMetrics the metrics recording the generation traces, per model
+     */
+    public StreamingNode(String name,
+                         List<ChatMessage> messages,
+                         Function<T, ChatMessage> doUserMessage,
+                         @NonNull StreamingChatLanguageModel streamingChatLanguageModel,
+                         @NonNull StreamingMetrics streamingMetrics) {
+        this(name, messages, doUserMessage, streamingChatLanguageModel, streamingMetrics, null);
+    }
+
+    private StreamingNode(StreamingNodeBuilder<T> builder) {
+        this(builder.name, builder.messages, builder.doUserMessage, builder.streamingChatLanguageModel,
+                getOrDefault(builder.streamingMetrics, StreamingMetrics.getDefault()), builder.modelName);
+    }
+
+    private StreamingNode(String name,
+                          List<ChatMessage> messages,
+                          Function<T, ChatMessage> doUserMessage,
+                          @NonNull StreamingChatLanguageModel streamingChatLanguageModel,
+                          @NonNull StreamingMetrics streamingMetrics,
+                          String modelName) {
+        // the node function records the metrics only, the executions record their trace through apply
+        super(ensureNotBlank(name, "name"), (T statefulBean) -> streamingFunction(statefulBean, messages, doUserMessage,
+                streamingChatLanguageModel, streamingMetrics::record, name, modelName(modelName, streamingChatLanguageModel)));
+        this.messages = messages;
+        this.doUserMessage = doUserMessage;
+        this.streamingChatLanguageModel = streamingChatLanguageModel;
+        this.streamingMetrics = streamingMetrics;
+        this.modelName = modelName(modelName, streamingChatLanguageModel);
+    }
+
+    /**
+     * Returns a new builder instance for creating a {@link StreamingNode}.
+     *
+     * @param <T> the type of the stateful bean, which extends AbstractStatefulBean
+     * @return a new {@link StreamingNodeBuilder} instance
+     */
+    public static <T extends AbstractStatefulBean> StreamingNodeBuilder<T> builder() {
+        return new StreamingNodeBuilder<>();
+    }
+
+    /**
+     * Returns the name of the model in the generation traces and the metrics of the node.
+     *
+     * @return the model name
+     */
+    public String getModelName() {
+        return modelName;
+    }
+
+    /**
+     * Calls the model and records the trace of the call in the metadata of this execution, so that concurrent runs
+     * sharing the node each keep their own trace.
+     *
+     * @param input             the stateful bean
+     * @param executionMetadata the metadata of this execution
+     * @return the stream of the generated tokens
+     */
+    @Override
+    protected Flux<String> apply(T input, Map<String, Object> executionMetadata) {
+        return streamingFunction(input, messages, doUserMessage, streamingChatLanguageModel, trace -> {
+            streamingMetrics.record(trace);
+            executionMetadata.put(GenerationTrace.METADATA_KEY, trace);
+        }, getName(), modelName);
+    }
+
+    /**
+     * Returns the trace of the last call made by the node. With concurrent runs sharing the node, the trace of a run is
+     * in the metadata of its computed transitions.
+     *
+     * @return the last generation trace, or null if the node was not executed
+     */
+    public GenerationTrace getLastGenerationTrace() {
+        return (GenerationTrace) metadata().get(GenerationTrace.METADATA_KEY);
     }
 
     /**
@@ -110,6 +219,9 @@ public class StreamingNode<T extends AbstractStatefulBean> extends Node<T, Flux<
      * @param messages the list of ChatMessage to be processed by the streamingChatLanguageModel
      * @param doUserMessage a function to generate a user message from the stateful bean
      * @param streamingChatLanguageModel the streaming chat language model to generate responses
+     * @param traceConsumer receives the trace of the call when it completes or fails
+     * @param nodeName the name of the node making the call
+     * @param modelName the name of the model in the trace
      * @param <T> the type of the stateful bean, which extends AbstractStatefulBean
      * @return a Flux stream of the generated tokens
      */
@@ -117,7 +229,10 @@ public class StreamingNode<T extends AbstractStatefulBean> extends Node<T, Flux<
             T statefulBean,
             List<ChatMessage> messages,
             Function<T, ChatMessage> doUserMessage, //TODO: Function could return a list of ChatMessage
-            StreamingChatLanguageModel streamingChatLanguageModel) {
+            StreamingChatLanguageModel streamingChatLanguageModel,
+            Consumer<GenerationTrace> traceConsumer,
+            String nodeName,
+            String modelName) {
         Sinks.Many<String> sink = Sinks.many().unicast().onBackpressureBuffer();
         CompletableFuture<AiMessage> futureResponse = new CompletableFuture<>();
         if (messages == null || messages.isEmpty()) {
@@ -126,28 +241,141 @@ public class StreamingNode<T extends AbstractStatefulBean> extends Node<T, Flux<
                     List.of(UserMessage.from(getOrDefault(statefulBean.getQuestion(),"No question provided.")));
         }
 
+        GenerationTrace.Recorder recorder = GenerationTrace.start(nodeName, modelName, ChatMessages.textLength(messages));
         streamingChatLanguageModel.generate(
                 messages,
                 new StreamingResponseHandler<AiMessage>() {
                     @Override
                     public void onNext(String token) {
+                        recorder.onToken();
                         sink.tryEmitNext(token);
                     }
 
                     @Override
                     public void onComplete(Response<AiMessage> response) {
+                        traceConsumer.accept(recorder.onComplete(response.tokenUsage()));
                         futureResponse.complete(response.content());
                         sink.tryEmitComplete();
                     }
 
                     @Override
                     public void onError(Throwable throwable) {
+                        traceConsumer.accept(recorder.onError(throwable));
                         sink.tryEmitError(throwable);
+                        futureResponse.completeExceptionally(throwable);
                     }
                 }
         );
         statefulBean.setGenerationStream(sink.asFlux().cache());
-        statefulBean.setGeneration(futureResponse.join().text());
+        try {
+            statefulBean.setGeneration(futureResponse.join().text());
+        } catch (CompletionException e) {
+            throw e.getCause() instanceof RuntimeException cause ? cause : e;
+        }
         return statefulBean.getGenerationStream();
     }
+
+    private static String modelName(String modelName, StreamingChatLanguageModel streamingChatLanguageModel) {
+        if (modelName != null) {
+            return modelName;
+        }
+        String simpleName = streamingChatLanguageModel.getClass().getSimpleName();
+        return simpleName.isEmpty() ? streamingChatLanguageModel.getClass().getName() : simpleName;
+    }
+
+    /**
+     * Builder class for {@link StreamingNode}.
+     *
+     * @param <T> the type of the stateful bean, which extends AbstractStatefulBean
+     */
+    public static class StreamingNodeBuilder<T extends AbstractStatefulBean> {
+        private String name;
+        private List<ChatMessage> messages;
+        private Function<T, ChatMessage> doUserMessage;
+        private StreamingChatLanguageModel streamingChatLanguageModel;
+        private StreamingMetrics streamingMetrics;
+        private String modelName;
+
+        /**
+         * Sets the name of the node.
+         *
+         * @param name the name of the node
+         * @return the current {@link StreamingNodeBuilder} instance
+         */
+        public StreamingNodeBuilder<T> name(String name) {
+            this.name = name;
+            return this;
+        }
+
+        /**
+         * Sets the messages sent to the model. Defaults to the message built by
+         * {@link #doUserMessage(Function)}, or else to the question of the stateful bean.
+         *
+         * @param messages the messages sent to the model
+         * @return the current {@link StreamingNodeBuilder} instance
+         */
+        public StreamingNodeBuilder<T> messages(List<ChatMessage> messages) {
+            this.messages = messages;
+            return this;
+        }
+
+        /**
+         * Sets the function building the user message from the stateful bean, used when no messages are set.
+         *
+         * @param doUserMessage a function to generate a user message from the stateful bean
+         * @return the current {@link StreamingNodeBuilder} instance
+         */
+        public StreamingNodeBuilder<T> doUserMessage(Function<T, ChatMessage> doUserMessage) {
+            this.doUserMessage = doUserMessage;
+            return this;
+        }
+
+        /**
+         * Sets the streaming chat language model generating the responses.
+         *
+         * @param streamingChatLanguageModel the streaming chat language model
+         * @return the current {@link StreamingNodeBuilder} instance
+         */
+        public StreamingNodeBuilder<T> streamingChatLanguageModel(StreamingChatLanguageModel streamingChatLanguageModel) {
+            this.streamingChatLanguageModel = streamingChatLanguageModel;
+            return this;
+        }
+
+        /**
+         * Sets the metrics recording the generation traces. Defaults to {@link StreamingMetrics#getDefault()}.
+         *
+         * @param streamingMetrics the metrics recording the generation traces, per model
+         * @return the current {@link StreamingNodeBuilder} instance
+         */
+        public StreamingNodeBuilder<T> streamingMetrics(StreamingMetrics streamingMetrics) {
+            this.streamingMetrics = streamingMetrics;
+            return this;
+        }
+
+        /**
+         * Sets the name of the model in the generation traces and the metrics, e.g. {@code gpt-4o-mini}. Defaults to
+         * the simple name of the model class.
+         *
+         * @param modelName the model name
+         * @return the current {@link StreamingNodeBuilder} instance
+         */
+        public StreamingNodeBuilder<T> modelName(String modelName) {
+            this.modelName = modelName;
+            return this;
+        }
+
+        /**
+         * Builds and returns a new {@link StreamingNode} instance.
+         *
+         * @return a new {@link StreamingNode} instance
+         * @throws IllegalArgumentException if the name or the model name is blank
+         * @throws NullPointerException if the streaming chat language model is null
+         */
+        public StreamingNode<T> build() {
+            if (modelName != null) {
+                ensureNotBlank(modelName, "modelName");
+            }
+            return new StreamingNode<>(this);
+        }
+    }
 }
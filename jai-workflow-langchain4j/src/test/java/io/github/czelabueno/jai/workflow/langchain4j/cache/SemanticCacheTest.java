@@ -0,0 +1,167 @@
+package io.github.czelabueno.jai.workflow.langchain4j.cache;
+
+import dev.langchain4j.data.embedding.Embedding;
+import dev.langchain4j.data.segment.TextSegment;
+import dev.langchain4j.model.embedding.EmbeddingModel;
+import dev.langchain4j.model.output.Response;
+import io.github.czelabueno.jai.workflow.langchain4j.AbstractStatefulBean;
+import io.github.czelabueno.jai.workflow.langchain4j.JAiWorkflow;
+import io.github.czelabueno.jai.workflow.langchain4j.internal.DefaultJAiWorkflow;
+import io.github.czelabueno.jai.workflow.langchain4j.node.SemanticCacheNode;
+import io.github.czelabueno.jai.workflow.node.Node;
+import io.github.czelabueno.jai.workflow.transition.Transition;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static io.github.czelabueno.jai.workflow.WorkflowStateName.END;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.within;
+
+class SemanticCacheTest {
+
+    // Local bag-of-words embedding model, no network required
+    static class BagOfWordsEmbeddingModel implements EmbeddingModel {
+        final AtomicInteger calls = new AtomicInteger();
+
+        @Override
+        public Response<List<Embedding>> embedAll(List<TextSegment> textSegments) {
+            calls.addAndGet(textSegments.size());
+            return Response.from(textSegments.stream()
+                    .map(segment -> {
+                        float[] vector = new float[64];
+                        Arrays.stream(segment.text().toLowerCase().split("[^a-z0-9]+"))
+                                .filter(word -> !word.isEmpty())
+                                .forEach(word -> vector[Math.floorMod(word.hashCode(), 64)] += 1f);
+                        return Embedding.from(vector);
+                    })
+                    .toList());
+        }
+    }
+
+    static class MyStatefulBean extends AbstractStatefulBean {
+    }
+
+    private BagOfWordsEmbeddingModel embeddingModel;
+    private SemanticCache semanticCache;
+
+    @BeforeEach
+    void setUp() {
+        embeddingModel = new BagOfWordsEmbeddingModel();
+        semanticCache = SemanticCache.builder()
+                .embeddingModel(embeddingModel)
+                .similarityThreshold(0.8)
+                .maxEntries(2)
+                .build();
+    }
+
+    @Test
+    void should_hit_paraphrased_question() {
+        // given
+        semanticCache.put("What is the capital of France?", "Paris");
+        // when
+        String answer = semanticCache.lookup("what is the capital city of France").orElse(null);
+        String unrelated = semanticCache.lookup("How do I bake sourdough bread?").orElse(null);
+        // then
+        assertThat(answer).isEqualTo("Paris");
+        assertThat(unrelated).isNull();
+        SemanticCacheMetrics metrics = semanticCache.metrics();
+        assertThat(metrics.hits()).isEqualTo(1);
+        assertThat(metrics.misses()).isEqualTo(1);
+        assertThat(metrics.hitRate()).isCloseTo(0.5, within(0.001));
+    }
+
+    @Test
+    void should_evict_least_recently_used_entry() {
+        // given
+        semanticCache.put("What is the capital of France?", "Paris");
+        semanticCache.put("What is the capital of Peru?", "Lima");
+        semanticCache.lookup("What is the capital of France?"); // refresh France
+        // when
+        semanticCache.put("What is the capital of Japan?", "Tokyo");
+        // then
+        assertThat(semanticCache.size()).isEqualTo(2);
+        assertThat(semanticCache.metrics().evictions()).isEqualTo(1);
+        assertThat(semanticCache.lookup("What is the capital of France?")).contains("Paris");
+        assertThat(semanticCache.lookup("What is the capital of Japan?")).contains("Tokyo");
+    }
+
+    @Test
+    void should_find_nearest_vector_with_approximate_search() {
+        // given
+        Random random = new Random(7);
+        FloatVectorIndex index = new FloatVectorIndex(32, 8, 10, 0, 42L); // always approximate
+        float[][] vectors = new float[2000][32];
+        for (float[] vector : vectors) {
+            for (int d = 0; d < vector.length; d++) vector[d] = (float) random.nextGaussian();
+            index.add(vector);
+        }
+        float[] query = vectors[1234].clone();
+        query[0] += 0.01f;
+        // when
+        FloatVectorIndex.Match match = index.nearest(query);
+        // then
+        assertThat(match).isNotNull();
+        assertThat(match.slot()).isEqualTo(1234);
+        assertThat(match.similarity()).isGreaterThan(0.99f);
+        assertThat(index.remove(1234)).isTrue();
+        assertThat(index.size()).isEqualTo(1999);
+    }
+
+    @Test
+    void should_short_circuit_workflow_to_end_on_cache_hit() {
+        // given
+        AtomicInteger generations = new AtomicInteger();
+        MyStatefulBean statefulBean = new MyStatefulBean();
+        SemanticCacheNode<MyStatefulBean> cacheNode = SemanticCacheNode.from("Semantic Cache", semanticCache);
+        SemanticCacheNode.CachedAnswerNode<MyStatefulBean> cachedAnswerNode = cacheNode.cachedAnswerNode();
+        Node<MyStatefulBean, MyStatefulBean> generateNode = Node.from("Generate", bean -> {
+            generations.incrementAndGet();
+            bean.setGeneration("Paris is the capital of France.");
+            return bean;
+        });
+        JAiWorkflow workflow = new DefaultJAiWorkflow<>(
+                statefulBean,
+                Arrays.asList(
+                        Transition.from(cacheNode, cacheNode.route(cachedAnswerNode, generateNode)),
+                        Transition.from(cachedAnswerNode, END),
+                        Transition.from(generateNode, END)
+                ),
+                cacheNode,
+                false);
+        // when
+        String first = workflow.answer("What is the capital of France?");
+        String second = workflow.answer("what is the capital city of France");
+        // then
+        assertThat(first).isEqualTo("Paris is the capital of France.");
+        assertThat(second).isEqualTo(first);
+        assertThat(generations.get()).isEqualTo(1);
+        assertThat(cacheNode.wasHit(statefulBean)).isTrue();
+        assertThat(semanticCache.metrics().hits()).isEqualTo(1);
+        assertThat(embeddingModel.calls.get()).isEqualTo(2); // missed embedding is reused to store the answer
+    }
+
+    @Test
+    void should_keep_lookups_of_overlapping_runs_apart() {
+        // given - two runs miss the same node before either stores its generation
+        SemanticCacheNode<MyStatefulBean> cacheNode = SemanticCacheNode.from("Semantic Cache", semanticCache);
+        MyStatefulBean runA = new MyStatefulBean();
+        MyStatefulBean runB = new MyStatefulBean();
+        runA.setQuestion("What is the capital of France?");
+        runB.setQuestion("How do I bake sourdough bread?");
+        cacheNode.execute(runA);
+        cacheNode.execute(runB);
+        // when
+        runA.setGeneration("Paris");
+        cacheNode.store(runA);
+        // then - run A's answer is stored under run A's question only
+        assertThat(cacheNode.wasHit(runA)).isFalse();
+        assertThat(semanticCache.lookup("what is the capital city of France")).contains("Paris");
+        assertThat(semanticCache.lookup("How do I bake sourdough bread?")).isEmpty();
+        assertThat(runB.semanticCacheLookup().question()).isEqualTo("How do I bake sourdough bread?");
+    }
+}
@@ -0,0 +1,139 @@
+package io.github.czelabueno.jai.workflow.langchain4j.limit;
+
+import io.github.czelabueno.jai.workflow.DefaultStateWorkflow;
+import io.github.czelabueno.jai.workflow.WorkflowStateName;
+import io.github.czelabueno.jai.workflow.langchain4j.workflow.StatefulBeanMock;
+import io.github.czelabueno.jai.workflow.node.Node;
+import io.github.czelabueno.jai.workflow.transition.Transition;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class AdaptiveConcurrencyLimiterTest {
+
+    @Test
+    void should_reject_immediately_when_queue_is_full() {
+        // given
+        AdaptiveConcurrencyLimiter limiter = AdaptiveConcurrencyLimiter.builder()
+                .limitAlgorithm(AimdLimit.builder().initialLimit(2).build())
+                .maxQueueSize(0)
+                .build();
+        AdaptiveConcurrencyLimiter.Permit first = limiter.acquire();
+        AdaptiveConcurrencyLimiter.Permit second = limiter.acquire();
+        // when
+        long start = System.nanoTime();
+        assertThatThrownBy(limiter::acquire)
+                .isInstanceOf(ConcurrencyLimitExceededException.class)
+                .hasMessageContaining("queue is full");
+        // then
+        assertThat(Duration.ofNanos(System.nanoTime() - start)).isLessThan(Duration.ofMillis(100));
+        assertThat(limiter.getRejected()).isEqualTo(1);
+        first.onSuccess();
+        second.onSuccess();
+        assertThat(limiter.getInFlight()).isZero();
+    }
+
+    @Test
+    void should_give_released_permit_to_queued_call() throws Exception {
+        // given
+        AdaptiveConcurrencyLimiter limiter = AdaptiveConcurrencyLimiter.builder()
+                .limitAlgorithm(AimdLimit.builder().initialLimit(1).build())
+                .maxWait(Duration.ofSeconds(5))
+                .build();
+        AdaptiveConcurrencyLimiter.Permit permit = limiter.acquire();
+        CompletableFuture<AdaptiveConcurrencyLimiter.Permit> queuedCall = CompletableFuture.supplyAsync(limiter::acquire);
+        while (limiter.getQueued() == 0) {
+            Thread.onSpinWait();
+        }
+        // when
+        permit.onSuccess();
+        // then
+        queuedCall.get(5, TimeUnit.SECONDS).onSuccess();
+        assertThat(limiter.getQueued()).isZero();
+        assertThat(limiter.getRejected()).isZero();
+    }
+
+    @Test
+    void should_decrease_limit_on_dropped_calls_and_increase_on_success() {
+        // given
+        AdaptiveConcurrencyLimiter limiter = AdaptiveConcurrencyLimiter.builder()
+                .limitAlgorithm(AimdLimit.builder().initialLimit(10).backoffRatio(0.5).build())
+                .build();
+        // when
+        for (int i = 0; i < 2; i++) {
+            assertThatThrownBy(() -> limiter.execute(() -> {
+                throw new IllegalStateException("429 Too Many Requests");
+            })).isInstanceOf(IllegalStateException.class);
+        }
+        // then
+        assertThat(limiter.getLimit()).isEqualTo(2);
+
+        // when
+        List<AdaptiveConcurrencyLimiter.Permit> permits = List.of(limiter.acquire(), limiter.acquire());
+        permits.forEach(AdaptiveConcurrencyLimiter.Permit::onSuccess);
+        // then
+        assertThat(limiter.getLimit()).isEqualTo(3);
+    }
+
+    @Test
+    void should_limit_model_nodes_across_concurrent_workflow_runs() throws Exception {
+        // given
+        AdaptiveConcurrencyLimiter limiter = AdaptiveConcurrencyLimiter.builder()
+                .limitAlgorithm(AimdLimit.builder().initialLimit(2).maxLimit(2).build())
+                .maxWait(Duration.ofSeconds(5))
+                .build();
+        ConcurrencyLimitInterceptor interceptor = ConcurrencyLimitInterceptor.shared(limiter);
+        AtomicInteger concurrentCalls = new AtomicInteger();
+        AtomicInteger maxConcurrentCalls = new AtomicInteger();
+        ExecutorService runs = Executors.newFixedThreadPool(6);
+        CountDownLatch started = new CountDownLatch(6);
+        // when
+        List<CompletableFuture<Void>> results = new ArrayList<>();
+        for (int i = 0; i < 6; i++) {
+            results.add(CompletableFuture.runAsync(() -> {
+                Node<StatefulBeanMock, StatefulBeanMock> retrieve = Node.from("retrieve", bean -> {
+                    started.countDown();
+                    return bean;
+                });
+                Node<StatefulBeanMock, StatefulBeanMock> generate = Node.from("generate", bean -> {
+                    maxConcurrentCalls.accumulateAndGet(concurrentCalls.incrementAndGet(), Math::max);
+                    try {
+                        Thread.sleep(20);
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                    }
+                    concurrentCalls.decrementAndGet();
+                    bean.setGeneration("answer");
+                    return bean;
+                });
+                generate.setLabels(ConcurrencyLimitInterceptor.MODEL_LABEL);
+                DefaultStateWorkflow<StatefulBeanMock> workflow = DefaultStateWorkflow.<StatefulBeanMock>builder()
+                        .statefulBean(new StatefulBeanMock())
+                        .addEdges(Transition.from(retrieve, generate), Transition.from(generate, WorkflowStateName.END))
+                        .nodeInterceptors(interceptor)
+                        .build(retrieve);
+                workflow.run();
+            }, runs));
+        }
+        // then
+        try {
+            CompletableFuture.allOf(results.toArray(CompletableFuture[]::new)).get(10, TimeUnit.SECONDS);
+            assertThat(started.getCount()).isZero();
+            assertThat(maxConcurrentCalls.get()).isLessThanOrEqualTo(2);
+            assertThat(limiter.getInFlight()).isZero();
+        } finally {
+            runs.shutdown();
+        }
+    }
+}
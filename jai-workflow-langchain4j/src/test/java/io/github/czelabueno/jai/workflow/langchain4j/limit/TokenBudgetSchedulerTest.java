@@ -0,0 +1,170 @@
+package io.github.czelabueno.jai.workflow.langchain4j.limit;
+
+import dev.langchain4j.data.message.AiMessage;
+import dev.langchain4j.data.message.UserMessage;
+import dev.langchain4j.model.StreamingResponseHandler;
+import dev.langchain4j.model.chat.ChatLanguageModel;
+import dev.langchain4j.model.chat.StreamingChatLanguageModel;
+import dev.langchain4j.model.output.Response;
+import dev.langchain4j.model.output.TokenUsage;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class TokenBudgetSchedulerTest {
+
+    @Test
+    void should_estimate_prompt_and_expected_output_tokens() {
+        // given
+        TokenBudgetScheduler scheduler = TokenBudgetScheduler.builder()
+                .tokensPerMinute(10_000)
+                .expectedOutputTokens(100)
+                .build();
+        // when
+        int tokens = scheduler.estimateTokens(List.of(UserMessage.from("a".repeat(400))));
+        // then
+        assertThat(tokens).isEqualTo(200);
+    }
+
+    @Test
+    void should_delay_call_until_budget_is_refilled() {
+        // given
+        TokenBudgetScheduler scheduler = TokenBudgetScheduler.builder()
+                .tokensPerMinute(6_000) // 100 tokens per second
+                .build();
+        scheduler.reserve(6_000, Priority.NORMAL);
+        // when
+        long start = System.nanoTime();
+        scheduler.reserve(30, Priority.NORMAL);
+        // then
+        assertThat(Duration.ofNanos(System.nanoTime() - start)).isBetween(Duration.ofMillis(250), Duration.ofSeconds(2));
+    }
+
+    @Test
+    void should_serve_higher_priority_call_first() throws Exception {
+        // given
+        TokenBudgetScheduler scheduler = TokenBudgetScheduler.builder()
+                .tokensPerMinute(6_000)
+                .build();
+        scheduler.reserve(6_000, Priority.NORMAL);
+        List<Priority> served = new CopyOnWriteArrayList<>();
+        // when
+        CompletableFuture<Void> low = CompletableFuture.runAsync(() -> {
+            scheduler.reserve(30, Priority.LOW);
+            served.add(Priority.LOW);
+        });
+        awaitWaiting(scheduler, 1);
+        CompletableFuture<Void> high = CompletableFuture.runAsync(() -> {
+            scheduler.reserve(30, Priority.HIGH);
+            served.add(Priority.HIGH);
+        });
+        // then
+        CompletableFuture.allOf(low, high).get(5, TimeUnit.SECONDS);
+        assertThat(served).containsExactly(Priority.HIGH, Priority.LOW);
+    }
+
+    @Test
+    void should_reconcile_reservation_with_actual_token_usage() {
+        // given
+        TokenBudgetScheduler scheduler = TokenBudgetScheduler.builder()
+                .tokensPerMinute(10_000)
+                .expectedOutputTokens(4_000)
+                .build();
+        ChatLanguageModel model = messages -> Response.from(AiMessage.from("answer"), new TokenUsage(10, 40));
+        ChatLanguageModel budgetedModel = scheduler.budgeted(model, Priority.NORMAL);
+        // when
+        budgetedModel.generate(List.of(UserMessage.from("question")));
+        // then
+        assertThat(scheduler.availableTokens()).isGreaterThanOrEqualTo(10_000 - 50);
+    }
+
+    @Test
+    void should_rethrow_the_failure_of_a_streaming_model_that_also_reports_it() {
+        // given
+        TokenBudgetScheduler scheduler = TokenBudgetScheduler.builder()
+                .tokensPerMinute(10_000)
+                .build();
+        IllegalStateException failure = new IllegalStateException("Provider failed");
+        StreamingChatLanguageModel model = (messages, handler) -> {
+            handler.onError(failure);
+            throw failure;
+        };
+        StreamingChatLanguageModel budgetedModel = scheduler.budgeted(model, Priority.NORMAL);
+        List<Throwable> reported = new CopyOnWriteArrayList<>();
+        // when
+        assertThatThrownBy(() -> budgetedModel.generate(List.of(UserMessage.from("question")), new StreamingResponseHandler<>() {
+            @Override
+            public void onNext(String token) {
+            }
+
+            @Override
+            public void onError(Throwable error) {
+                reported.add(error);
+            }
+        }))
+                // then
+                .isSameAs(failure);
+        assertThat(reported).containsExactly(failure);
+        assertThat(scheduler.availableTokens()).isEqualTo(10_000);
+    }
+
+    @Test
+    void should_keep_the_reconciled_usage_when_a_streaming_model_throws_after_completing() {
+        // given
+        TokenBudgetScheduler scheduler = TokenBudgetScheduler.builder()
+                .tokensPerMinute(10_000)
+                .expectedOutputTokens(4_000)
+                .build();
+        IllegalStateException failure = new IllegalStateException("Connection reset");
+        StreamingChatLanguageModel model = (messages, handler) -> {
+            handler.onComplete(Response.from(AiMessage.from("answer"), new TokenUsage(10, 40)));
+            throw failure;
+        };
+        StreamingChatLanguageModel budgetedModel = scheduler.budgeted(model, Priority.NORMAL);
+        // when
+        assertThatThrownBy(() -> budgetedModel.generate(List.of(UserMessage.from("question")), new StreamingResponseHandler<>() {
+            @Override
+            public void onNext(String token) {
+            }
+
+            @Override
+            public void onError(Throwable error) {
+            }
+        }))
+                // then
+                .isSameAs(failure);
+        assertThat(scheduler.availableTokens()).isGreaterThanOrEqualTo(10_000 - 50);
+    }
+
+    @Test
+    void should_fail_when_budget_is_not_available_within_max_wait() {
+        // given
+        TokenBudgetScheduler scheduler = TokenBudgetScheduler.builder()
+                .tokensPerMinute(60)
+                .requestsPerMinute(1)
+                .maxWait(Duration.ofMillis(50))
+                .build();
+        ChatLanguageModel budgetedModel = scheduler.budgeted(
+                messages -> Response.from(AiMessage.from("answer"), new TokenUsage(1, 1)), Priority.NORMAL);
+        budgetedModel.generate(List.of(UserMessage.from("q")));
+        // when
+        assertThatThrownBy(() -> budgetedModel.generate(List.of(UserMessage.from("q"))))
+                // then
+                .isInstanceOf(TokenBudgetExceededException.class);
+        assertThat(scheduler.waiting()).isZero();
+    }
+
+    private static void awaitWaiting(TokenBudgetScheduler scheduler, int waiting) {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        while (scheduler.waiting() < waiting && System.nanoTime() < deadline) {
+            Thread.onSpinWait();
+        }
+    }
+}
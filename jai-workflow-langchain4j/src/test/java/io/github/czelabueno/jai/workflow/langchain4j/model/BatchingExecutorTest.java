@@ -0,0 +1,122 @@
+package io.github.czelabueno.jai.workflow.langchain4j.model;
+
+import dev.langchain4j.data.message.AiMessage;
+import dev.langchain4j.data.message.ChatMessage;
+import dev.langchain4j.data.message.UserMessage;
+import dev.langchain4j.model.chat.ChatLanguageModel;
+import dev.langchain4j.model.output.Response;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class BatchingExecutorTest {
+
+    private final List<Integer> batchSizes = new CopyOnWriteArrayList<>();
+
+    // echoes every request, so each response can be matched with its request
+    private final BatchChatLanguageModel echoBatchModel = requests -> {
+        batchSizes.add(requests.size());
+        return requests.stream()
+                .map(messages -> Response.from(AiMessage.from("graded: " + ((UserMessage) messages.get(0)).singleText())))
+                .toList();
+    };
+
+    @Test
+    void should_submit_a_batch_when_max_batch_size_is_reached() throws Exception {
+        // given
+        try (BatchingExecutor executor = BatchingExecutor.builder()
+                .batchModel(echoBatchModel)
+                .maxBatchSize(4)
+                .maxDelay(Duration.ofSeconds(10)) // never reached by full batches
+                .build()) {
+            // when
+            List<CompletableFuture<Response<AiMessage>>> responses = new ArrayList<>();
+            for (int i = 0; i < 8; i++) {
+                responses.add(executor.submit(List.of(UserMessage.from("doc" + i))));
+            }
+            // then
+            for (int i = 0; i < 8; i++) {
+                assertThat(responses.get(i).get(5, TimeUnit.SECONDS).content().text()).isEqualTo("graded: doc" + i);
+            }
+            assertThat(batchSizes).containsExactly(4, 4);
+            assertThat(executor.averageBatchSize()).isEqualTo(4d);
+        }
+    }
+
+    @Test
+    void should_submit_a_partial_batch_after_max_delay() throws Exception {
+        // given
+        try (BatchingExecutor executor = BatchingExecutor.builder()
+                .batchModel(echoBatchModel)
+                .maxBatchSize(16)
+                .maxDelay(Duration.ofMillis(20))
+                .build()) {
+            // when
+            CompletableFuture<Response<AiMessage>> first = executor.submit(List.of(UserMessage.from("doc1")));
+            CompletableFuture<Response<AiMessage>> second = executor.submit(List.of(UserMessage.from("doc2")));
+            // then
+            assertThat(first.get(5, TimeUnit.SECONDS).content().text()).isEqualTo("graded: doc1");
+            assertThat(second.get(5, TimeUnit.SECONDS).content().text()).isEqualTo("graded: doc2");
+            assertThat(batchSizes).containsExactly(2);
+        }
+    }
+
+    @Test
+    void should_batch_blocking_calls_from_concurrent_runs() throws Exception {
+        // given
+        ExecutorService runs = Executors.newFixedThreadPool(12);
+        try (BatchingExecutor executor = BatchingExecutor.builder()
+                .batchModel(echoBatchModel)
+                .maxBatchSize(6)
+                .maxDelay(Duration.ofMillis(50))
+                .build()) {
+            ChatLanguageModel gradingModel = executor.asChatLanguageModel();
+            // when
+            List<CompletableFuture<String>> grades = new ArrayList<>();
+            for (int i = 0; i < 12; i++) {
+                String document = "doc" + i;
+                grades.add(CompletableFuture.supplyAsync(() -> gradingModel.generate(document), runs));
+            }
+            // then
+            for (int i = 0; i < 12; i++) {
+                assertThat(grades.get(i).get(5, TimeUnit.SECONDS)).isEqualTo("graded: doc" + i);
+            }
+            assertThat(executor.batches()).isLessThan(12);
+        } finally {
+            runs.shutdown();
+        }
+    }
+
+    @Test
+    void should_fail_every_request_of_a_failed_batch() {
+        // given
+        BatchChatLanguageModel failingModel = requests -> {
+            throw new IllegalStateException("429 Too Many Requests");
+        };
+        try (BatchingExecutor executor = BatchingExecutor.builder()
+                .batchModel(failingModel)
+                .maxBatchSize(2)
+                .build()) {
+            // when
+            CompletableFuture<Response<AiMessage>> first = executor.submit(List.<ChatMessage>of(UserMessage.from("doc1")));
+            CompletableFuture<Response<AiMessage>> second = executor.submit(List.<ChatMessage>of(UserMessage.from("doc2")));
+            // then
+            assertThatThrownBy(() -> first.get(5, TimeUnit.SECONDS))
+                    .isInstanceOf(ExecutionException.class)
+                    .hasMessageContaining("429 Too Many Requests");
+            assertThatThrownBy(() -> second.get(5, TimeUnit.SECONDS))
+                    .isInstanceOf(ExecutionException.class);
+        }
+    }
+}
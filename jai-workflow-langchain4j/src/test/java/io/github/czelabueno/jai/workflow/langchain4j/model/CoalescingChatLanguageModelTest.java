@@ -0,0 +1,221 @@
+package io.github.czelabueno.jai.workflow.langchain4j.model;
+
+import dev.langchain4j.data.message.AiMessage;
+import dev.langchain4j.data.message.ChatMessage;
+import dev.langchain4j.data.message.UserMessage;
+import dev.langchain4j.model.StreamingResponseHandler;
+import dev.langchain4j.model.chat.ChatLanguageModel;
+import dev.langchain4j.model.chat.StreamingChatLanguageModel;
+import dev.langchain4j.model.output.Response;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class CoalescingChatLanguageModelTest {
+
+    private static final List<String> TOKENS = List.of("Paris", " is", " the", " capital");
+
+    @Test
+    void should_share_one_streaming_call_among_identical_concurrent_requests() throws Exception {
+        // given
+        CountDownLatch release = new CountDownLatch(1);
+        AtomicInteger calls = new AtomicInteger();
+        StreamingChatLanguageModel slowModel = (messages, handler) -> {
+            calls.incrementAndGet();
+            new Thread(() -> {
+                handler.onNext(TOKENS.get(0)); // streamed before the followers join
+                await(release);
+                TOKENS.subList(1, TOKENS.size()).forEach(handler::onNext);
+                handler.onComplete(Response.from(AiMessage.from(String.join("", TOKENS))));
+            }).start();
+        };
+        CoalescingStreamingChatLanguageModel model = CoalescingStreamingChatLanguageModel.from(slowModel);
+        List<ChatMessage> messages = List.of(UserMessage.from("What is the capital of France?"));
+        int requests = 10;
+        List<CompletableFuture<String>> answers = new ArrayList<>();
+        List<List<String>> streams = new ArrayList<>();
+        // when
+        for (int i = 0; i < requests; i++) {
+            CompletableFuture<String> answer = new CompletableFuture<>();
+            List<String> tokens = new ArrayList<>();
+            model.generate(messages, new StreamingResponseHandler<>() {
+                @Override
+                public void onNext(String token) {
+                    tokens.add(token);
+                }
+
+                @Override
+                public void onComplete(Response<AiMessage> response) {
+                    answer.complete(response.content().text());
+                }
+
+                @Override
+                public void onError(Throwable error) {
+                    answer.completeExceptionally(error);
+                }
+            });
+            answers.add(answer);
+            streams.add(tokens);
+        }
+        release.countDown();
+        // then
+        for (int i = 0; i < requests; i++) {
+            assertThat(answers.get(i).get(5, TimeUnit.SECONDS)).isEqualTo("Paris is the capital");
+            assertThat(streams.get(i)).containsExactlyElementsOf(TOKENS);
+        }
+        assertThat(calls.get()).isEqualTo(1);
+        assertThat(model.delegateCalls()).isEqualTo(1);
+        assertThat(model.coalescedRequests()).isEqualTo(requests - 1);
+    }
+
+    @Test
+    void should_start_a_new_streaming_call_once_the_previous_one_completed() {
+        // given
+        AtomicInteger calls = new AtomicInteger();
+        StreamingChatLanguageModel fastModel = (messages, handler) -> {
+            calls.incrementAndGet();
+            handler.onComplete(Response.from(AiMessage.from("done")));
+        };
+        CoalescingStreamingChatLanguageModel model = CoalescingStreamingChatLanguageModel.from(fastModel);
+        // when
+        model.generate("hello", new NoOpHandler());
+        model.generate("hello", new NoOpHandler());
+        // then
+        assertThat(calls.get()).isEqualTo(2);
+        assertThat(model.coalescedRequests()).isZero();
+    }
+
+    @Test
+    void should_share_one_synchronous_call_among_identical_concurrent_requests() throws Exception {
+        // given
+        CountDownLatch release = new CountDownLatch(1);
+        AtomicInteger calls = new AtomicInteger();
+        ChatLanguageModel slowModel = messages -> {
+            calls.incrementAndGet();
+            await(release);
+            return Response.from(AiMessage.from("Paris"));
+        };
+        CoalescingChatLanguageModel model = CoalescingChatLanguageModel.from(slowModel);
+        ExecutorService executor = Executors.newFixedThreadPool(8);
+        // when
+        List<CompletableFuture<String>> answers = new ArrayList<>();
+        for (int i = 0; i < 8; i++) {
+            answers.add(CompletableFuture.supplyAsync(() -> model.generate("What is the capital of France?"), executor));
+        }
+        while (model.delegateCalls() + model.coalescedRequests() < 8) {
+            Thread.onSpinWait();
+        }
+        release.countDown();
+        // then
+        for (CompletableFuture<String> answer : answers) {
+            assertThat(answer.get(5, TimeUnit.SECONDS)).isEqualTo("Paris");
+        }
+        assertThat(calls.get()).isEqualTo(1);
+        assertThat(model.coalescedRequests()).isEqualTo(7);
+        executor.shutdown();
+    }
+
+    @Test
+    void should_isolate_a_failing_subscriber_from_the_others() throws Exception {
+        // given - the first subscriber throws on every token
+        CountDownLatch release = new CountDownLatch(1);
+        StreamingChatLanguageModel slowModel = (messages, handler) -> new Thread(() -> {
+            await(release);
+            TOKENS.forEach(handler::onNext);
+            handler.onComplete(Response.from(AiMessage.from(String.join("", TOKENS))));
+        }).start();
+        CoalescingStreamingChatLanguageModel model = CoalescingStreamingChatLanguageModel.from(slowModel);
+        CompletableFuture<Throwable> failed = new CompletableFuture<>();
+        CompletableFuture<String> answer = new CompletableFuture<>();
+        List<String> tokens = new ArrayList<>();
+        // when
+        model.generate("hello", new StreamingResponseHandler<>() {
+            @Override
+            public void onNext(String token) {
+                throw new IllegalStateException("slow consumer gave up");
+            }
+
+            @Override
+            public void onError(Throwable error) {
+                failed.complete(error);
+            }
+        });
+        model.generate("hello", new StreamingResponseHandler<>() {
+            @Override
+            public void onNext(String token) {
+                tokens.add(token);
+            }
+
+            @Override
+            public void onComplete(Response<AiMessage> response) {
+                answer.complete(response.content().text());
+            }
+
+            @Override
+            public void onError(Throwable error) {
+                answer.completeExceptionally(error);
+            }
+        });
+        release.countDown();
+        // then - the failing subscriber gets its own error, the other one the whole answer
+        assertThat(failed.get(5, TimeUnit.SECONDS)).hasMessage("slow consumer gave up");
+        assertThat(answer.get(5, TimeUnit.SECONDS)).isEqualTo("Paris is the capital");
+        assertThat(tokens).containsExactlyElementsOf(TOKENS);
+    }
+
+    @Test
+    void should_fail_joined_requests_when_the_synchronous_call_throws_an_error() throws Exception {
+        // given - the delegate throws an Error once a second request joined its call
+        CountDownLatch release = new CountDownLatch(1);
+        ChatLanguageModel failingModel = messages -> {
+            await(release);
+            throw new AssertionError("model crashed");
+        };
+        CoalescingChatLanguageModel model = CoalescingChatLanguageModel.from(failingModel);
+        ExecutorService executor = Executors.newFixedThreadPool(2);
+        // when
+        List<CompletableFuture<String>> answers = new ArrayList<>();
+        for (int i = 0; i < 2; i++) {
+            answers.add(CompletableFuture.supplyAsync(() -> model.generate("hello"), executor));
+        }
+        while (model.delegateCalls() + model.coalescedRequests() < 2) {
+            Thread.onSpinWait();
+        }
+        release.countDown();
+        // then
+        for (CompletableFuture<String> answer : answers) {
+            assertThat(answer).failsWithin(5, TimeUnit.SECONDS)
+                    .withThrowableOfType(ExecutionException.class)
+                    .withCauseInstanceOf(AssertionError.class);
+        }
+        executor.shutdown();
+    }
+
+    static class NoOpHandler implements StreamingResponseHandler<AiMessage> {
+        @Override
+        public void onNext(String token) {
+        }
+
+        @Override
+        public void onError(Throwable error) {
+        }
+    }
+
+    private static void await(CountDownLatch latch) {
+        try {
+            latch.await(5, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
@@ -1,22 +1,31 @@
 package io.github.czelabueno.jai.workflow.langchain4j.node;
 
 import io.github.czelabueno.jai.workflow.langchain4j.AbstractStatefulBean;
+import io.github.czelabueno.jai.workflow.langchain4j.metrics.GenerationTrace;
+import io.github.czelabueno.jai.workflow.langchain4j.metrics.StreamingMetrics;
 import dev.langchain4j.data.message.AiMessage;
 import dev.langchain4j.data.message.ChatMessage;
 import dev.langchain4j.data.message.UserMessage;
 import dev.langchain4j.model.StreamingResponseHandler;
 import dev.langchain4j.model.chat.StreamingChatLanguageModel;
 import dev.langchain4j.model.output.Response;
+import dev.langchain4j.model.output.TokenUsage;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import reactor.test.StepVerifier;
 
 import java.util.Arrays;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
 
 import static org.mockito.ArgumentMatchers.any;
 import static org.assertj.core.api.Assertions.assertThat;
 import static org.assertj.core.api.Assertions.assertThatExceptionOfType;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
 import static org.mockito.Mockito.*;
 
 class StreamingNodeTest {
@@ -91,4 +100,128 @@ class StreamingNodeTest {
                 .isThrownBy(() -> StreamingNode.from(null, messages, model))
                 .withMessage("name cannot be null or blank");
     }
+
+    @Test
+    void should_record_generation_trace_and_metrics_per_model() {
+        // given
+        StreamingMetrics metrics = new StreamingMetrics();
+        StreamingChatLanguageModel slowModel = (chatMessages, handler) -> {
+            sleep(30); // time to first token
+            for (String token : List.of("The", "weather", "is", "sunny")) {
+                handler.onNext(token);
+                sleep(10);
+            }
+            handler.onComplete(Response.from(AiMessage.from("The weather is sunny"), new TokenUsage(6, 4)));
+        };
+        StreamingNode<MyStatefulBean> node = new StreamingNode<>("streamingNode1", messages, null, slowModel, metrics);
+        // when
+        node.execute(statefulBean);
+        // then
+        GenerationTrace trace = node.getLastGenerationTrace();
+        assertThat(trace.nodeName()).isEqualTo("streamingNode1");
+        assertThat(trace.promptCharacters()).isEqualTo("What is the weather today?".length());
+        assertThat(trace.tokenCount()).isEqualTo(4);
+        assertThat(trace.timeToFirstToken().toMillis()).isGreaterThanOrEqualTo(30);
+        assertThat(trace.timeToLastToken()).isGreaterThan(trace.timeToFirstToken());
+        assertThat(trace.tokensPerSecond()).isBetween(1d, 300d);
+        assertThat(trace.tokenUsage().totalTokenCount()).isEqualTo(10);
+        assertThat(node.metadata()).containsEntry(GenerationTrace.METADATA_KEY, trace);
+
+        StreamingMetrics.ModelMetrics modelMetrics = metrics.model(trace.modelName());
+        assertThat(modelMetrics.calls()).isEqualTo(1);
+        assertThat(modelMetrics.timeToFirstTokenMicros().percentile(50)).isGreaterThanOrEqualTo(30_000);
+        assertThat(modelMetrics.tokensPerSecond().count()).isEqualTo(1);
+    }
+
+    @Test
+    void should_record_error_of_failed_generation() {
+        // given
+        StreamingMetrics metrics = new StreamingMetrics();
+        StreamingChatLanguageModel failingModel = (chatMessages, handler) -> {
+            handler.onNext("The");
+            handler.onError(new IllegalStateException("stream reset"));
+        };
+        StreamingNode<MyStatefulBean> node = new StreamingNode<>("streamingNode1", messages, null, failingModel, metrics);
+        // when
+        assertThatThrownBy(() -> node.execute(statefulBean))
+                .isInstanceOf(IllegalStateException.class)
+                .hasMessage("stream reset");
+        // then
+        GenerationTrace trace = node.getLastGenerationTrace();
+        assertThat(trace.failed()).isTrue();
+        assertThat(trace.tokenCount()).isEqualTo(1);
+        assertThat(metrics.model(trace.modelName()).errors()).isEqualTo(1);
+    }
+
+    @Test
+    void should_record_metrics_under_the_given_model_name() {
+        // given - two models of a same client class
+        StreamingMetrics metrics = new StreamingMetrics();
+        StreamingChatLanguageModel answeringModel = (chatMessages, handler) ->
+                handler.onComplete(Response.from(AiMessage.from("sunny")));
+        StreamingNode<MyStatefulBean> large = StreamingNode.<MyStatefulBean>builder()
+                .name("large").messages(messages).streamingChatLanguageModel(answeringModel)
+                .streamingMetrics(metrics).modelName("gpt-4o").build();
+        StreamingNode<MyStatefulBean> small = StreamingNode.<MyStatefulBean>builder()
+                .name("small").messages(messages).streamingChatLanguageModel(answeringModel)
+                .streamingMetrics(metrics).modelName("gpt-4o-mini").build();
+        StreamingNode<MyStatefulBean> unnamed = new StreamingNode<>("unnamed", messages, null, model, metrics);
+        // when
+        large.execute(statefulBean);
+        small.execute(statefulBean);
+        small.execute(statefulBean);
+        // then
+        assertThat(large.getLastGenerationTrace().modelName()).isEqualTo("gpt-4o");
+        assertThat(metrics.model("gpt-4o").calls()).isEqualTo(1);
+        assertThat(metrics.model("gpt-4o-mini").calls()).isEqualTo(2);
+        assertThat(unnamed.getModelName()).isEqualTo(model.getClass().getSimpleName());
+        assertThatExceptionOfType(IllegalArgumentException.class)
+                .isThrownBy(() -> StreamingNode.<MyStatefulBean>builder().name("blank").streamingChatLanguageModel(model).modelName(" ").build())
+                .withMessage("modelName cannot be null or blank");
+    }
+
+    @Test
+    void should_keep_the_trace_of_each_concurrent_execution() throws Exception {
+        // given - the first call completes only once the second one, on the same node, completed
+        CountDownLatch secondCompleted = new CountDownLatch(1);
+        StreamingChatLanguageModel model = (chatMessages, handler) -> {
+            String question = ((UserMessage) chatMessages.get(0)).singleText();
+            if (question.equals("first")) {
+                await(secondCompleted);
+            }
+            handler.onNext(question);
+            handler.onComplete(Response.from(AiMessage.from(question)));
+        };
+        StreamingNode<MyStatefulBean> node = StreamingNode.from("streamingNode1", model);
+        MyStatefulBean firstBean = new MyStatefulBean(List.of());
+        firstBean.setQuestion("first");
+        MyStatefulBean secondBean = new MyStatefulBean(List.of());
+        secondBean.setQuestion("second question");
+        Map<String, Object> firstMetadata = new LinkedHashMap<>();
+        Map<String, Object> secondMetadata = new LinkedHashMap<>();
+        // when
+        CompletableFuture<Void> first = CompletableFuture.runAsync(() -> node.execute(firstBean, firstMetadata));
+        node.execute(secondBean, secondMetadata);
+        secondCompleted.countDown();
+        first.get(5, TimeUnit.SECONDS);
+        // then
+        assertThat(((GenerationTrace) firstMetadata.get(GenerationTrace.METADATA_KEY)).promptCharacters()).isEqualTo("first".length());
+        assertThat(((GenerationTrace) secondMetadata.get(GenerationTrace.METADATA_KEY)).promptCharacters()).isEqualTo("second question".length());
+    }
+
+    private static void await(CountDownLatch latch) {
+        try {
+            latch.await(5, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private static void sleep(long millis) {
+        try {
+            Thread.sleep(millis);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
 }
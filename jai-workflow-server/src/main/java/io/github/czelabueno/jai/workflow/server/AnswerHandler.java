@@ -0,0 +1,44 @@
+package io.github.czelabueno.jai.workflow.server;
+
+import com.sun.net.httpserver.HttpExchange;
+import io.github.czelabueno.jai.workflow.langchain4j.JAiWorkflow;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+/**
+ * Handles {@code POST {basePath}/answer}: runs the workflow synchronously and answers {@code {"answer": "..."}}.
+ */
+class AnswerHandler extends WorkflowRunHandler {
+
+    private static final Logger log = LoggerFactory.getLogger(AnswerHandler.class);
+
+    AnswerHandler(JAiWorkflowServer server) {
+        super(server, Set.of("POST"));
+    }
+
+    @Override
+    void run(HttpExchange exchange, AdmittedRun admittedRun, JAiWorkflow workflow, String question) throws IOException {
+        Future<String> answer = admittedRun.submit(() -> workflow.answer(question));
+        try {
+            Exchanges.sendJson(exchange, 200, Map.of("answer", answer.get(server.requestTimeout().toNanos(), TimeUnit.NANOSECONDS)));
+        } catch (TimeoutException e) {
+            answer.cancel(true);
+            Exchanges.sendError(exchange, 504, "Workflow run timed out after " + server.requestTimeout());
+        } catch (ExecutionException e) {
+            log.warn("Workflow run failed", e.getCause());
+            Exchanges.sendError(exchange, 500, "Workflow run failed: " + e.getCause().getMessage());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            answer.cancel(true);
+            Exchanges.sendError(exchange, 503, "Server is stopping");
+        }
+    }
+}
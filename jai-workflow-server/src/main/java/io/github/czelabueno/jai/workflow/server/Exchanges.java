@@ -0,0 +1,95 @@
+package io.github.czelabueno.jai.workflow.server;
+
+import com.google.gson.Gson;
+import com.google.gson.JsonElement;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParseException;
+import com.google.gson.JsonParser;
+import com.sun.net.httpserver.HttpExchange;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.URLDecoder;
+import java.nio.charset.StandardCharsets;
+import java.util.Map;
+
+/**
+ * Helpers reading the question of a request and writing JSON responses.
+ */
+final class Exchanges {
+
+    static final Gson GSON = new Gson();
+
+    private Exchanges() {
+    }
+
+    /**
+     * Reads the question from the {@code question} field of a JSON body, or from the {@code question} query parameter
+     * for GET requests such as the ones of a browser EventSource.
+     *
+     * @param exchange the exchange
+     * @return the question
+     * @throws BadRequestException if the request has no question
+     */
+    static String readQuestion(HttpExchange exchange) throws IOException {
+        if ("GET".equals(exchange.getRequestMethod())) {
+            String query = exchange.getRequestURI().getRawQuery();
+            if (query != null) {
+                for (String parameter : query.split("&")) {
+                    int separator = parameter.indexOf('=');
+                    if (separator > 0 && parameter.substring(0, separator).equals("question")) {
+                        return requireQuestion(URLDecoder.decode(parameter.substring(separator + 1), StandardCharsets.UTF_8));
+                    }
+                }
+            }
+            throw new BadRequestException("Missing 'question' query parameter");
+        }
+        String body;
+        try (InputStream requestBody = exchange.getRequestBody()) {
+            body = new String(requestBody.readAllBytes(), StandardCharsets.UTF_8);
+        }
+        try {
+            JsonElement json = JsonParser.parseString(body);
+            if (json.isJsonObject()) {
+                JsonObject object = json.getAsJsonObject();
+                if (object.has("question") && object.get("question").isJsonPrimitive()) {
+                    return requireQuestion(object.get("question").getAsString());
+                }
+            }
+        } catch (JsonParseException e) {
+            throw new BadRequestException("Request body is not valid JSON");
+        }
+        throw new BadRequestException("Missing 'question' field in request body");
+    }
+
+    static void sendJson(HttpExchange exchange, int status, Object body) throws IOException {
+        byte[] bytes = GSON.toJson(body).getBytes(StandardCharsets.UTF_8);
+        exchange.getResponseHeaders().set("Content-Type", "application/json; charset=utf-8");
+        exchange.sendResponseHeaders(status, bytes.length);
+        try (OutputStream responseBody = exchange.getResponseBody()) {
+            responseBody.write(bytes);
+        }
+    }
+
+    static void sendError(HttpExchange exchange, int status, String message) throws IOException {
+        sendJson(exchange, status, Map.of("error", message));
+    }
+
+    private static String requireQuestion(String question) {
+        if (question == null || question.isBlank()) {
+            throw new BadRequestException("Question cannot be blank");
+        }
+        return question;
+    }
+
+    /**
+     * Thrown when a request cannot be processed because of the client, answered with a 400.
+     */
+    static final class BadRequestException extends RuntimeException {
+
+        BadRequestException(String message) {
+            super(message);
+        }
+    }
+}
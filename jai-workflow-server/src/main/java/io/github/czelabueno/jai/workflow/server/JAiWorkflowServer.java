@@ -0,0 +1,314 @@
+package io.github.czelabueno.jai.workflow.server;
+
+import com.sun.net.httpserver.HttpServer;
+import io.github.czelabueno.jai.workflow.langchain4j.JAiWorkflow;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.URI;
+import java.time.Duration;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+
+import static dev.langchain4j.internal.ValidationUtils.ensureGreaterThanZero;
+import static dev.langchain4j.internal.ValidationUtils.ensureNotNull;
+
+/**
+ * Publishes a {@link JAiWorkflow} as an HTTP API on the JDK {@link HttpServer}.
+ * <p>
+ * Endpoints, relative to the base path:
+ * </p>
+ * <ul>
+ *     <li>{@code POST /answer} with {@code {"question": "..."}}: runs the workflow and answers {@code {"answer": "..."}}.</li>
+ *     <li>{@code POST /stream} with {@code {"question": "..."}}, or {@code GET /stream?question=...}: runs the workflow in
+ *     stream mode and sends the tokens as server-sent events. The generation is buffered: the tokens are sent once the
+ *     model completed its response, not as they are generated.</li>
+ *     <li>{@code GET /health}: answers {@code {"status": "UP"}}.</li>
+ * </ul>
+ * <p>
+ * A workflow holds the state of its run, so a new instance is created by the workflow factory for every request.
+ * Exchanges and runs are executed on virtual threads when the runtime supports them (Java 21+). Runs above the maximum
+ * number of concurrent runs are rejected with a 503, and runs longer than the request timeout end with a 504, or an
+ * {@code error} event for streams. A timed out run keeps its permit until it really ends, since a run waiting for the
+ * model cannot be interrupted, so the maximum number of concurrent runs bounds the runs actually in progress.
+ * </p>
+ * <pre>{@code
+ * JAiWorkflowServer server = JAiWorkflowServer.builder()
+ *         .workflowFactory(() -> new DefaultJAiWorkflow<>(new MyStatefulBean(), transitions, retrieveNode, true))
+ *         .port(8080)
+ *         .build()
+ *         .start();
+ * }</pre>
+ */
+public class JAiWorkflowServer implements AutoCloseable {
+
+    private static final Logger log = LoggerFactory.getLogger(JAiWorkflowServer.class);
+
+    private final Supplier<JAiWorkflow> workflowFactory;
+    private final InetSocketAddress address;
+    private final String basePath;
+    private final Duration requestTimeout;
+    private final Duration keepAliveInterval;
+    private final int maxConcurrentRuns;
+    private final int streamBufferSize;
+    private final Semaphore runPermits;
+
+    private HttpServer httpServer;
+    private ExecutorService executor;
+
+    private JAiWorkflowServer(JAiWorkflowServerBuilder builder) {
+        this.workflowFactory = ensureNotNull(builder.workflowFactory, "workflowFactory");
+        this.address = new InetSocketAddress(ensureNotNull(builder.host, "host"), builder.port);
+        this.basePath = normalize(ensureNotNull(builder.basePath, "basePath"));
+        this.requestTimeout = ensureNotNull(builder.requestTimeout, "requestTimeout");
+        this.keepAliveInterval = ensureNotNull(builder.keepAliveInterval, "keepAliveInterval");
+        this.maxConcurrentRuns = ensureGreaterThanZero(builder.maxConcurrentRuns, "maxConcurrentRuns");
+        this.streamBufferSize = ensureGreaterThanZero(builder.streamBufferSize, "streamBufferSize");
+        this.runPermits = new Semaphore(maxConcurrentRuns);
+    }
+
+    /**
+     * Returns a new builder instance for creating a {@link JAiWorkflowServer}.
+     *
+     * @return a new {@link JAiWorkflowServerBuilder} instance
+     */
+    public static JAiWorkflowServerBuilder builder() {
+        return new JAiWorkflowServerBuilder();
+    }
+
+    /**
+     * Binds the server and starts accepting requests.
+     *
+     * @return this server
+     * @throws IOException if the server cannot be bound
+     * @throws IllegalStateException if the server is already started
+     */
+    public synchronized JAiWorkflowServer start() throws IOException {
+        if (httpServer != null) {
+            throw new IllegalStateException("Server already started");
+        }
+        executor = ServerExecutors.newPerTaskExecutor("jai-workflow-server-");
+        httpServer = HttpServer.create(address, 0);
+        httpServer.setExecutor(executor);
+        httpServer.createContext(basePath + "/answer", new AnswerHandler(this));
+        httpServer.createContext(basePath + "/stream", new StreamHandler(this));
+        httpServer.createContext(basePath + "/health", exchange -> {
+            try {
+                Exchanges.sendJson(exchange, 200, Map.of("status", "UP"));
+            } finally {
+                exchange.close();
+            }
+        });
+        httpServer.start();
+        log.info("jAI workflow server listening on {}", getUri());
+        return this;
+    }
+
+    /**
+     * Stops the server, waiting at most the given delay for the running exchanges to complete.
+     *
+     * @param delay the maximum time to wait for the running exchanges
+     */
+    public synchronized void stop(Duration delay) {
+        if (httpServer == null) {
+            return;
+        }
+        httpServer.stop((int) Math.max(0, delay.toSeconds()));
+        executor.shutdownNow();
+        try {
+            executor.awaitTermination(delay.toMillis(), TimeUnit.MILLISECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        httpServer = null;
+        executor = null;
+    }
+
+    @Override
+    public void close() {
+        stop(Duration.ZERO);
+    }
+
+    /**
+     * Returns the port the server is bound to, useful when it was built with port 0.
+     *
+     * @return the bound port
+     * @throws IllegalStateException if the server is not started
+     */
+    public synchronized int getPort() {
+        if (httpServer == null) {
+            throw new IllegalStateException("Server not started");
+        }
+        return httpServer.getAddress().getPort();
+    }
+
+    /**
+     * Returns the URI of the base path of the server.
+     *
+     * @return the base URI
+     * @throws IllegalStateException if the server is not started
+     */
+    public URI getUri() {
+        return URI.create("http://" + address.getHostString() + ":" + getPort() + basePath);
+    }
+
+    /**
+     * Returns the number of workflow runs in progress.
+     *
+     * @return the number of active runs
+     */
+    public int activeRuns() {
+        return maxConcurrentRuns - runPermits.availablePermits();
+    }
+
+    JAiWorkflow newWorkflow() {
+        return workflowFactory.get();
+    }
+
+    boolean tryAcquireRun() {
+        return runPermits.tryAcquire();
+    }
+
+    void releaseRun() {
+        runPermits.release();
+    }
+
+    ExecutorService executor() {
+        return executor;
+    }
+
+    Duration requestTimeout() {
+        return requestTimeout;
+    }
+
+    Duration keepAliveInterval() {
+        return keepAliveInterval;
+    }
+
+    int streamBufferSize() {
+        return streamBufferSize;
+    }
+
+    private static String normalize(String basePath) {
+        String path = basePath.startsWith("/") ? basePath : "/" + basePath;
+        return path.endsWith("/") ? path.substring(0, path.length() - 1) : path;
+    }
+
+    /**
+     * Builder class for {@link JAiWorkflowServer}.
+     */
+    public static class JAiWorkflowServerBuilder {
+        private Supplier<JAiWorkflow> workflowFactory;
+        private String host = "localhost";
+        private int port = 8080;
+        private String basePath = "/workflow";
+        private Duration requestTimeout = Duration.ofSeconds(60);
+        private Duration keepAliveInterval = Duration.ofSeconds(15);
+        private Integer maxConcurrentRuns = 256;
+        private Integer streamBufferSize = 64;
+
+        /**
+         * Sets the factory creating a workflow instance for every request. Required.
+         *
+         * @param workflowFactory the workflow factory
+         * @return the current {@link JAiWorkflowServerBuilder} instance
+         */
+        public JAiWorkflowServerBuilder workflowFactory(Supplier<JAiWorkflow> workflowFactory) {
+            this.workflowFactory = workflowFactory;
+            return this;
+        }
+
+        /**
+         * Sets the host the server binds to. Defaults to "localhost".
+         *
+         * @param host the host
+         * @return the current {@link JAiWorkflowServerBuilder} instance
+         */
+        public JAiWorkflowServerBuilder host(String host) {
+            this.host = host;
+            return this;
+        }
+
+        /**
+         * Sets the port the server binds to, 0 for an ephemeral port. Defaults to 8080.
+         *
+         * @param port the port
+         * @return the current {@link JAiWorkflowServerBuilder} instance
+         */
+        public JAiWorkflowServerBuilder port(int port) {
+            this.port = port;
+            return this;
+        }
+
+        /**
+         * Sets the base path of the endpoints. Defaults to "/workflow".
+         *
+         * @param basePath the base path
+         * @return the current {@link JAiWorkflowServerBuilder} instance
+         */
+        public JAiWorkflowServerBuilder basePath(String basePath) {
+            this.basePath = basePath;
+            return this;
+        }
+
+        /**
+         * Sets the maximum duration of a run, including the streaming of its tokens. Defaults to 60 seconds.
+         *
+         * @param requestTimeout the request timeout
+         * @return the current {@link JAiWorkflowServerBuilder} instance
+         */
+        public JAiWorkflowServerBuilder requestTimeout(Duration requestTimeout) {
+            this.requestTimeout = requestTimeout;
+            return this;
+        }
+
+        /**
+         * Sets the maximum time without sending anything on a stream before a keep-alive comment is sent.
+         * Defaults to 15 seconds.
+         *
+         * @param keepAliveInterval the keep-alive interval
+         * @return the current {@link JAiWorkflowServerBuilder} instance
+         */
+        public JAiWorkflowServerBuilder keepAliveInterval(Duration keepAliveInterval) {
+            this.keepAliveInterval = keepAliveInterval;
+            return this;
+        }
+
+        /**
+         * Sets the maximum number of concurrent runs, requests above are rejected with a 503. Defaults to 256.
+         *
+         * @param maxConcurrentRuns the maximum number of concurrent runs
+         * @return the current {@link JAiWorkflowServerBuilder} instance
+         */
+        public JAiWorkflowServerBuilder maxConcurrentRuns(int maxConcurrentRuns) {
+            this.maxConcurrentRuns = maxConcurrentRuns;
+            return this;
+        }
+
+        /**
+         * Sets the maximum number of tokens queued per stream connection between the replayed token stream and the
+         * handler writing them. Defaults to 64.
+         *
+         * @param streamBufferSize the stream buffer size
+         * @return the current {@link JAiWorkflowServerBuilder} instance
+         */
+        public JAiWorkflowServerBuilder streamBufferSize(int streamBufferSize) {
+            this.streamBufferSize = streamBufferSize;
+            return this;
+        }
+
+        /**
+         * Builds and returns a new {@link JAiWorkflowServer} instance, not started yet.
+         *
+         * @return a new {@link JAiWorkflowServer} instance
+         */
+        public JAiWorkflowServer build() {
+            return new JAiWorkflowServer(this);
+        }
+    }
+}
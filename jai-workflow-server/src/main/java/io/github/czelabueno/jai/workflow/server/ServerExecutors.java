@@ -0,0 +1,45 @@
+package io.github.czelabueno.jai.workflow.server;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.lang.reflect.Method;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Creates the executor running the exchanges and the workflow runs of a {@link JAiWorkflowServer}.
+ * <p>
+ * On Java 21+ every task gets its own virtual thread, so a run blocked on a model call costs no platform thread.
+ * The module targets Java 17, so the virtual-thread executor is looked up reflectively and a cached pool of daemon
+ * platform threads is used on older runtimes.
+ * </p>
+ */
+final class ServerExecutors {
+
+    private static final Logger log = LoggerFactory.getLogger(ServerExecutors.class);
+
+    private ServerExecutors() {
+    }
+
+    static ExecutorService newPerTaskExecutor(String threadNamePrefix) {
+        try {
+            Method newVirtualThreadPerTaskExecutor = Executors.class.getMethod("newVirtualThreadPerTaskExecutor");
+            return (ExecutorService) newVirtualThreadPerTaskExecutor.invoke(null);
+        } catch (ReflectiveOperationException e) {
+            log.debug("Virtual threads are not available on Java {}, using platform threads", Runtime.version().feature());
+            return Executors.newCachedThreadPool(daemonThreadFactory(threadNamePrefix));
+        }
+    }
+
+    private static ThreadFactory daemonThreadFactory(String threadNamePrefix) {
+        AtomicInteger threadNumber = new AtomicInteger();
+        return runnable -> {
+            Thread thread = new Thread(runnable, threadNamePrefix + threadNumber.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        };
+    }
+}
@@ -0,0 +1,62 @@
+package io.github.czelabueno.jai.workflow.server;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Writes server-sent events to a response body.
+ * <p>
+ * Events are buffered until {@link #flush()}, so a burst of tokens is sent in one chunk. Writes block when the client
+ * reads slower than the handler sends, which only holds back the handler thread: the generation is not throttled.
+ * </p>
+ */
+class SseWriter {
+
+    private final OutputStream output;
+    private final StringBuilder pending = new StringBuilder();
+
+    SseWriter(OutputStream output) {
+        this.output = output;
+    }
+
+    /**
+     * Appends an event, splitting multi-line data into one {@code data:} line per line as required by the SSE format.
+     *
+     * @param event the event name
+     * @param data  the event data
+     */
+    void event(String event, String data) {
+        pending.append("event: ").append(event).append('\n');
+        int start = 0;
+        int end;
+        while ((end = data.indexOf('\n', start)) >= 0) {
+            pending.append("data: ").append(data, start, end).append('\n');
+            start = end + 1;
+        }
+        pending.append("data: ").append(data, start, data.length()).append("\n\n");
+    }
+
+    /**
+     * Appends a comment line, ignored by clients and used as a keep-alive heartbeat by proxies and load balancers.
+     *
+     * @param comment the comment
+     */
+    void comment(String comment) {
+        pending.append(": ").append(comment).append("\n\n");
+    }
+
+    /**
+     * Sends the pending events.
+     *
+     * @throws IOException if the client disconnected
+     */
+    void flush() throws IOException {
+        if (pending.isEmpty()) {
+            return;
+        }
+        output.write(pending.toString().getBytes(StandardCharsets.UTF_8));
+        output.flush();
+        pending.setLength(0);
+    }
+}
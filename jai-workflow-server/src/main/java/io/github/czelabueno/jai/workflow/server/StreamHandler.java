@@ -0,0 +1,196 @@
+package io.github.czelabueno.jai.workflow.server;
+
+import com.sun.net.httpserver.HttpExchange;
+import io.github.czelabueno.jai.workflow.langchain4j.JAiWorkflow;
+import org.reactivestreams.Subscription;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import reactor.core.publisher.BaseSubscriber;
+import reactor.core.publisher.Flux;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+/**
+ * Handles {@code POST {basePath}/stream} (JSON body) and {@code GET {basePath}/stream?question=...} (EventSource):
+ * runs the workflow in stream mode and sends the tokens as server-sent events.
+ * <p>
+ * Events are {@code token} for each token, then {@code done}, or {@code error} if the run fails or times out.
+ * A keep-alive comment is sent whenever no event was sent during the keep-alive interval while the workflow runs.
+ * </p>
+ * <p>
+ * This endpoint buffers the whole generation: {@link JAiWorkflow#answerStream(String)} returns once the workflow run
+ * is over, the {@code StreamingNode} having waited for the whole response of the model, and only then are the tokens
+ * replayed from the cached stream. The first {@code token} event is therefore sent after the last token was generated;
+ * only keep-alive comments are sent before. The endpoint keeps the SSE contract of clients, it does not lower the time
+ * to first token nor throttle the model. The subscriber holds at most {@code streamBufferSize} tokens and the handler
+ * thread requests more only after writing them, which bounds the tokens queued per connection.
+ * </p>
+ */
+class StreamHandler extends WorkflowRunHandler {
+
+    private static final Logger log = LoggerFactory.getLogger(StreamHandler.class);
+
+    private static final String KEEP_ALIVE = "keep-alive";
+
+    StreamHandler(JAiWorkflowServer server) {
+        super(server, Set.of("GET", "POST"));
+    }
+
+    @Override
+    void run(HttpExchange exchange, AdmittedRun admittedRun, JAiWorkflow workflow, String question) throws IOException {
+        long deadline = System.nanoTime() + server.requestTimeout().toNanos();
+        long keepAliveNanos = server.keepAliveInterval().toNanos();
+        exchange.getResponseHeaders().set("Content-Type", "text/event-stream; charset=utf-8");
+        exchange.getResponseHeaders().set("Cache-Control", "no-cache");
+        exchange.getResponseHeaders().set("X-Accel-Buffering", "no");
+        exchange.sendResponseHeaders(200, 0);
+        SseWriter writer = new SseWriter(exchange.getResponseBody());
+
+        Future<Flux<String>> run = admittedRun.submit(() -> workflow.answerStream(question));
+        Flux<String> tokens;
+        try {
+            tokens = awaitRun(run, writer, deadline, keepAliveNanos);
+        } catch (TimeoutException e) {
+            run.cancel(true);
+            sendError(writer, "Workflow run timed out after " + server.requestTimeout());
+            return;
+        } catch (ExecutionException e) {
+            log.warn("Workflow run failed", e.getCause());
+            sendError(writer, "Workflow run failed: " + e.getCause().getMessage());
+            return;
+        } catch (IOException e) {
+            run.cancel(true);
+            throw e;
+        }
+
+        TokenSubscriber subscriber = new TokenSubscriber(server.streamBufferSize());
+        tokens.subscribe(subscriber);
+        try {
+            writeTokens(subscriber, writer, deadline, keepAliveNanos);
+        } finally {
+            subscriber.dispose();
+        }
+    }
+
+    private Flux<String> awaitRun(Future<Flux<String>> run, SseWriter writer, long deadline, long keepAliveNanos)
+            throws IOException, TimeoutException, ExecutionException {
+        while (true) {
+            long remainingNanos = deadline - System.nanoTime();
+            if (remainingNanos <= 0) {
+                throw new TimeoutException();
+            }
+            try {
+                return run.get(Math.min(keepAliveNanos, remainingNanos), TimeUnit.NANOSECONDS);
+            } catch (TimeoutException e) {
+                writer.comment(KEEP_ALIVE);
+                writer.flush();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new TimeoutException();
+            }
+        }
+    }
+
+    private void writeTokens(TokenSubscriber subscriber, SseWriter writer, long deadline, long keepAliveNanos) throws IOException {
+        List<Signal> signals = new ArrayList<>();
+        while (true) {
+            long remainingNanos = deadline - System.nanoTime();
+            if (remainingNanos <= 0) {
+                sendError(writer, "Workflow run timed out after " + server.requestTimeout());
+                return;
+            }
+            Signal signal;
+            try {
+                signal = subscriber.signals.poll(Math.min(keepAliveNanos, remainingNanos), TimeUnit.NANOSECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            }
+            if (signal == null) {
+                writer.comment(KEEP_ALIVE);
+                writer.flush();
+                continue;
+            }
+            // write every signal already received in the same chunk
+            signals.clear();
+            signals.add(signal);
+            subscriber.signals.drainTo(signals);
+            int consumedTokens = 0;
+            for (Signal received : signals) {
+                if (received.error() != null) {
+                    writer.flush();
+                    sendError(writer, "Generation failed: " + received.error().getMessage());
+                    return;
+                }
+                if (received.complete()) {
+                    writer.event("done", "[DONE]");
+                    writer.flush();
+                    return;
+                }
+                writer.event("token", received.token());
+                consumedTokens++;
+            }
+            writer.flush();
+            subscriber.requestMore(consumedTokens);
+        }
+    }
+
+    private static void sendError(SseWriter writer, String message) throws IOException {
+        writer.event("error", Exchanges.GSON.toJson(Map.of("error", message)));
+        writer.flush();
+    }
+
+    private record Signal(String token, Throwable error, boolean complete) {
+    }
+
+    /**
+     * Buffers the tokens in a bounded queue, requesting only what the queue can hold.
+     */
+    private static final class TokenSubscriber extends BaseSubscriber<String> {
+
+        private final BlockingQueue<Signal> signals;
+        private final int bufferSize;
+
+        private TokenSubscriber(int bufferSize) {
+            this.bufferSize = bufferSize;
+            // one extra slot for the terminal signal
+            this.signals = new ArrayBlockingQueue<>(bufferSize + 1);
+        }
+
+        @Override
+        protected void hookOnSubscribe(Subscription subscription) {
+            request(bufferSize);
+        }
+
+        @Override
+        protected void hookOnNext(String token) {
+            signals.offer(new Signal(token, null, false));
+        }
+
+        @Override
+        protected void hookOnComplete() {
+            signals.offer(new Signal(null, null, true));
+        }
+
+        @Override
+        protected void hookOnError(Throwable throwable) {
+            signals.offer(new Signal(null, throwable, false));
+        }
+
+        private void requestMore(int tokens) {
+            if (tokens > 0) {
+                request(tokens);
+            }
+        }
+    }
+}
@@ -0,0 +1,119 @@
+package io.github.czelabueno.jai.workflow.server;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import io.github.czelabueno.jai.workflow.langchain4j.JAiWorkflow;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
+
+/**
+ * Base handler of the endpoints running a workflow: it checks the method, reads the question and admits the run
+ * within the maximum number of concurrent runs, answering 503 when the server is saturated.
+ * <p>
+ * The permit of an admitted run is released when the task submitted with {@link AdmittedRun#submit(Callable)} ends,
+ * not when the response is sent: a run timing out cannot be interrupted while it waits for the model, so it keeps
+ * counting against the maximum number of concurrent runs until it really ends.
+ * </p>
+ */
+abstract class WorkflowRunHandler implements HttpHandler {
+
+    private static final Logger log = LoggerFactory.getLogger(WorkflowRunHandler.class);
+
+    protected final JAiWorkflowServer server;
+    private final Set<String> allowedMethods;
+
+    WorkflowRunHandler(JAiWorkflowServer server, Set<String> allowedMethods) {
+        this.server = server;
+        this.allowedMethods = allowedMethods;
+    }
+
+    @Override
+    public void handle(HttpExchange exchange) {
+        try {
+            if (!allowedMethods.contains(exchange.getRequestMethod())) {
+                exchange.getResponseHeaders().set("Allow", String.join(", ", allowedMethods));
+                Exchanges.sendError(exchange, 405, "Method not allowed");
+                return;
+            }
+            String question;
+            try {
+                question = Exchanges.readQuestion(exchange);
+            } catch (Exchanges.BadRequestException e) {
+                Exchanges.sendError(exchange, 400, e.getMessage());
+                return;
+            }
+            if (!server.tryAcquireRun()) {
+                exchange.getResponseHeaders().set("Retry-After", "1");
+                Exchanges.sendError(exchange, 503, "Too many concurrent runs");
+                return;
+            }
+            AdmittedRun admittedRun = new AdmittedRun();
+            try {
+                run(exchange, admittedRun, server.newWorkflow(), question);
+            } finally {
+                admittedRun.releaseUnlessSubmitted();
+            }
+        } catch (IOException e) {
+            log.debug("Client of {} disconnected: {}", exchange.getRequestURI(), e.getMessage());
+        } catch (RuntimeException e) {
+            log.warn("Unexpected error handling {}", exchange.getRequestURI(), e);
+        } finally {
+            exchange.close();
+        }
+    }
+
+    /**
+     * Runs the workflow and writes the response.
+     *
+     * @param exchange    the exchange
+     * @param admittedRun the admitted run, submitting the task running the workflow
+     * @param workflow    the workflow instance dedicated to this run
+     * @param question    the question of the request
+     * @throws IOException if the response cannot be written
+     */
+    abstract void run(HttpExchange exchange, AdmittedRun admittedRun, JAiWorkflow workflow, String question) throws IOException;
+
+    /**
+     * Admission permit of a run, handed over to the task running the workflow once it is submitted.
+     */
+    final class AdmittedRun {
+
+        private boolean submitted; // only read and written by the exchange thread
+
+        /**
+         * Submits the task running the workflow, which releases the permit of the run when it ends, even if it is
+         * cancelled before it started.
+         *
+         * @param task the task running the workflow
+         * @param <T>  the type of the result of the task
+         * @return the future of the result of the task
+         */
+        <T> Future<T> submit(Callable<T> task) {
+            FutureTask<T> future = new FutureTask<>(task) {
+                @Override
+                public void run() {
+                    try {
+                        super.run(); // returns at once if the task was cancelled
+                    } finally {
+                        server.releaseRun();
+                    }
+                }
+            };
+            server.executor().execute(future);
+            submitted = true;
+            return future;
+        }
+
+        private void releaseUnlessSubmitted() {
+            if (!submitted) {
+                server.releaseRun();
+            }
+        }
+    }
+}
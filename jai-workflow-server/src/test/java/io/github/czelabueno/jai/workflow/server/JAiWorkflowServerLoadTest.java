@@ -0,0 +1,85 @@
+package io.github.czelabueno.jai.workflow.server;
+
+import org.junit.jupiter.api.Test;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Drives concurrent streaming runs against a local fake model, to check the server keeps up with many
+ * long-lived SSE connections and to report its throughput and tail latency.
+ */
+class JAiWorkflowServerLoadTest {
+
+    private static final Logger log = LoggerFactory.getLogger(JAiWorkflowServerLoadTest.class);
+
+    private static final int CONCURRENT_CLIENTS = 50;
+    private static final int REQUESTS_PER_CLIENT = 4;
+
+    @Test
+    void should_serve_concurrent_streams_without_errors() throws Exception {
+        // given
+        ExecutorService clients = Executors.newFixedThreadPool(CONCURRENT_CLIENTS);
+        try (JAiWorkflowServer server = JAiWorkflowServer.builder()
+                .workflowFactory(() -> TestWorkflows.newWorkflow(Duration.ofMillis(5), Duration.ofMillis(2)))
+                .port(0)
+                .maxConcurrentRuns(CONCURRENT_CLIENTS * 2) // a run is released just after its response is sent
+                .build()
+                .start()) {
+            HttpClient client = HttpClient.newHttpClient();
+            HttpRequest request = HttpRequest.newBuilder(URI.create(server.getUri() + "/stream"))
+                    .POST(HttpRequest.BodyPublishers.ofString("{\"question\": \"How many streams can one JVM sustain?\"}"))
+                    .build();
+            // when
+            long start = System.nanoTime();
+            List<CompletableFuture<List<Long>>> results = new ArrayList<>();
+            for (int i = 0; i < CONCURRENT_CLIENTS; i++) {
+                results.add(CompletableFuture.supplyAsync(() -> {
+                    List<Long> latencies = new ArrayList<>();
+                    for (int r = 0; r < REQUESTS_PER_CLIENT; r++) {
+                        long requestStart = System.nanoTime();
+                        HttpResponse<String> response = client.sendAsync(request, HttpResponse.BodyHandlers.ofString()).join();
+                        assertThat(response.statusCode()).isEqualTo(200);
+                        assertThat(response.body()).endsWith("event: done\ndata: [DONE]\n\n");
+                        latencies.add(System.nanoTime() - requestStart);
+                    }
+                    return latencies;
+                }, clients));
+            }
+            List<Long> latencies = new ArrayList<>();
+            for (CompletableFuture<List<Long>> result : results) {
+                latencies.addAll(result.get(60, TimeUnit.SECONDS));
+            }
+            long elapsedNanos = System.nanoTime() - start;
+            // then
+            assertThat(latencies).hasSize(CONCURRENT_CLIENTS * REQUESTS_PER_CLIENT);
+            latencies.sort(Long::compare);
+            log.info("{} streams in {} ms: {} streams/s, p50={} ms, p99={} ms",
+                    latencies.size(),
+                    TimeUnit.NANOSECONDS.toMillis(elapsedNanos),
+                    String.format("%.1f", latencies.size() * 1e9 / elapsedNanos),
+                    TimeUnit.NANOSECONDS.toMillis(latencies.get(latencies.size() / 2)),
+                    TimeUnit.NANOSECONDS.toMillis(latencies.get((int) (latencies.size() * 0.99))));
+            long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+            while (server.activeRuns() > 0 && System.nanoTime() < deadline) {
+                Thread.onSpinWait();
+            }
+            assertThat(server.activeRuns()).isZero();
+        } finally {
+            clients.shutdown();
+        }
+    }
+}
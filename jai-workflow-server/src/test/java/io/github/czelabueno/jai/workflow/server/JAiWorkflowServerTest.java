@@ -0,0 +1,171 @@
+package io.github.czelabueno.jai.workflow.server;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.stream.Collectors;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class JAiWorkflowServerTest {
+
+    private final HttpClient client = HttpClient.newHttpClient();
+    private JAiWorkflowServer server;
+
+    @AfterEach
+    void tearDown() {
+        if (server != null) {
+            server.close();
+        }
+    }
+
+    @Test
+    void should_answer_question_synchronously() throws Exception {
+        // given
+        server = startServer(JAiWorkflowServer.builder()
+                .workflowFactory(() -> TestWorkflows.newWorkflow(Duration.ZERO, Duration.ZERO)));
+        // when
+        HttpResponse<String> response = client.send(post("/answer", "{\"question\": \"What is jAI?\"}"), HttpResponse.BodyHandlers.ofString());
+        // then
+        assertThat(response.statusCode()).isEqualTo(200);
+        assertThat(response.headers().firstValue("Content-Type")).hasValueSatisfying(type -> assertThat(type).startsWith("application/json"));
+        assertThat(response.body()).isEqualTo("{\"answer\":\"Answer to: What is jAI?\"}");
+    }
+
+    @Test
+    void should_stream_tokens_as_server_sent_events() throws Exception {
+        // given
+        server = startServer(JAiWorkflowServer.builder()
+                .workflowFactory(() -> TestWorkflows.newWorkflow(Duration.ZERO, Duration.ofMillis(1))));
+        // when
+        HttpResponse<java.util.stream.Stream<String>> response = client.send(
+                post("/stream", "{\"question\": \"What is jAI?\"}"), HttpResponse.BodyHandlers.ofLines());
+        // then
+        assertThat(response.statusCode()).isEqualTo(200);
+        assertThat(response.headers().firstValue("Content-Type")).hasValueSatisfying(type -> assertThat(type).startsWith("text/event-stream"));
+        List<String> lines = response.body().filter(line -> !line.isEmpty()).collect(Collectors.toList());
+        assertThat(lines).containsExactly(
+                "event: token", "data: Answer ",
+                "event: token", "data: to: ",
+                "event: token", "data: What ",
+                "event: token", "data: is ",
+                "event: token", "data: jAI? ",
+                "event: done", "data: [DONE]");
+    }
+
+    @Test
+    void should_stream_from_event_source_get_request() throws Exception {
+        // given
+        server = startServer(JAiWorkflowServer.builder()
+                .workflowFactory(() -> TestWorkflows.newWorkflow(Duration.ZERO, Duration.ZERO)));
+        HttpRequest request = HttpRequest.newBuilder(URI.create(server.getUri() + "/stream?question=What%20is%20jAI%3F")).GET().build();
+        // when
+        HttpResponse<String> response = client.send(request, HttpResponse.BodyHandlers.ofString());
+        // then
+        assertThat(response.statusCode()).isEqualTo(200);
+        assertThat(response.body()).contains("data: jAI? ").endsWith("event: done\ndata: [DONE]\n\n");
+    }
+
+    @Test
+    void should_send_keep_alive_while_the_workflow_runs() throws Exception {
+        // given
+        server = startServer(JAiWorkflowServer.builder()
+                .workflowFactory(() -> TestWorkflows.newWorkflow(Duration.ofMillis(300), Duration.ZERO))
+                .keepAliveInterval(Duration.ofMillis(50)));
+        // when
+        HttpResponse<String> response = client.send(post("/stream", "{\"question\": \"q\"}"), HttpResponse.BodyHandlers.ofString());
+        // then
+        assertThat(response.body()).startsWith(": keep-alive\n\n").contains("event: done");
+    }
+
+    @Test
+    void should_time_out_slow_runs() throws Exception {
+        // given
+        server = startServer(JAiWorkflowServer.builder()
+                .workflowFactory(() -> TestWorkflows.newWorkflow(Duration.ofSeconds(5), Duration.ZERO))
+                .requestTimeout(Duration.ofMillis(100)));
+        // when
+        HttpResponse<String> answer = client.send(post("/answer", "{\"question\": \"q\"}"), HttpResponse.BodyHandlers.ofString());
+        HttpResponse<String> stream = client.send(post("/stream", "{\"question\": \"q\"}"), HttpResponse.BodyHandlers.ofString());
+        // then
+        assertThat(answer.statusCode()).isEqualTo(504);
+        assertThat(stream.body()).contains("event: error").contains("timed out");
+    }
+
+    @Test
+    void should_reject_runs_above_max_concurrent_runs() throws Exception {
+        // given
+        server = startServer(JAiWorkflowServer.builder()
+                .workflowFactory(() -> TestWorkflows.newWorkflow(Duration.ofMillis(500), Duration.ZERO))
+                .maxConcurrentRuns(1));
+        CompletableFuture<HttpResponse<String>> first = client.sendAsync(post("/answer", "{\"question\": \"q1\"}"), HttpResponse.BodyHandlers.ofString());
+        while (server.activeRuns() == 0) {
+            Thread.onSpinWait();
+        }
+        // when
+        HttpResponse<String> second = client.send(post("/answer", "{\"question\": \"q2\"}"), HttpResponse.BodyHandlers.ofString());
+        // then
+        assertThat(second.statusCode()).isEqualTo(503);
+        assertThat(second.headers().firstValue("Retry-After")).hasValue("1");
+        assertThat(first.get().statusCode()).isEqualTo(200);
+    }
+
+    @Test
+    void should_hold_the_run_permit_until_a_timed_out_run_ends() throws Exception {
+        // given - a run that cannot be interrupted once it timed out
+        CountDownLatch release = new CountDownLatch(1);
+        server = startServer(JAiWorkflowServer.builder()
+                .workflowFactory(() -> TestWorkflows.newUninterruptibleWorkflow(release))
+                .requestTimeout(Duration.ofMillis(100))
+                .maxConcurrentRuns(1));
+        // when
+        HttpResponse<String> timedOut = client.send(post("/answer", "{\"question\": \"q1\"}"), HttpResponse.BodyHandlers.ofString());
+        HttpResponse<String> rejected = client.send(post("/answer", "{\"question\": \"q2\"}"), HttpResponse.BodyHandlers.ofString());
+        int activeRunsBeforeRelease = server.activeRuns();
+        release.countDown();
+        while (server.activeRuns() > 0) {
+            Thread.onSpinWait();
+        }
+        HttpResponse<String> admitted = client.send(post("/answer", "{\"question\": \"q3\"}"), HttpResponse.BodyHandlers.ofString());
+        // then
+        assertThat(timedOut.statusCode()).isEqualTo(504);
+        assertThat(rejected.statusCode()).isEqualTo(503);
+        assertThat(activeRunsBeforeRelease).isEqualTo(1);
+        assertThat(admitted.statusCode()).isEqualTo(200);
+    }
+
+    @Test
+    void should_reject_request_without_question() throws Exception {
+        // given
+        server = startServer(JAiWorkflowServer.builder()
+                .workflowFactory(() -> TestWorkflows.newWorkflow(Duration.ZERO, Duration.ZERO)));
+        // when
+        HttpResponse<String> missingQuestion = client.send(post("/answer", "{}"), HttpResponse.BodyHandlers.ofString());
+        HttpResponse<String> invalidJson = client.send(post("/answer", "question"), HttpResponse.BodyHandlers.ofString());
+        HttpResponse<String> wrongMethod = client.send(
+                HttpRequest.newBuilder(URI.create(server.getUri() + "/answer")).GET().build(), HttpResponse.BodyHandlers.ofString());
+        // then
+        assertThat(missingQuestion.statusCode()).isEqualTo(400);
+        assertThat(invalidJson.statusCode()).isEqualTo(400);
+        assertThat(wrongMethod.statusCode()).isEqualTo(405);
+    }
+
+    private static JAiWorkflowServer startServer(JAiWorkflowServer.JAiWorkflowServerBuilder builder) throws Exception {
+        return builder.port(0).build().start();
+    }
+
+    private HttpRequest post(String path, String body) {
+        return HttpRequest.newBuilder(URI.create(server.getUri() + path))
+                .header("Content-Type", "application/json")
+                .POST(HttpRequest.BodyPublishers.ofString(body))
+                .build();
+    }
+}
@@ -0,0 +1,87 @@
+package io.github.czelabueno.jai.workflow.server;
+
+import dev.langchain4j.data.message.AiMessage;
+import dev.langchain4j.data.message.UserMessage;
+import dev.langchain4j.model.chat.StreamingChatLanguageModel;
+import dev.langchain4j.model.output.Response;
+import io.github.czelabueno.jai.workflow.WorkflowStateName;
+import io.github.czelabueno.jai.workflow.langchain4j.AbstractStatefulBean;
+import io.github.czelabueno.jai.workflow.langchain4j.JAiWorkflow;
+import io.github.czelabueno.jai.workflow.langchain4j.internal.DefaultJAiWorkflow;
+import io.github.czelabueno.jai.workflow.langchain4j.node.StreamingNode;
+import io.github.czelabueno.jai.workflow.node.Node;
+import io.github.czelabueno.jai.workflow.transition.Transition;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.function.Function;
+
+/**
+ * Workflows answering with a local fake streaming model: a retrieval node followed by a generation node
+ * streaming the words of "Answer to: {question}".
+ */
+class TestWorkflows {
+
+    static class QuestionBean extends AbstractStatefulBean {
+    }
+
+    static JAiWorkflow newWorkflow(Duration retrievalDelay, Duration tokenDelay) {
+        return newWorkflow(bean -> {
+            sleep(retrievalDelay);
+            return bean;
+        }, tokenDelay);
+    }
+
+    /**
+     * Returns a workflow whose retrieval waits for the release latch and ignores the interrupts, like a run joining
+     * the stream of a model.
+     */
+    static JAiWorkflow newUninterruptibleWorkflow(CountDownLatch release) {
+        return newWorkflow(bean -> {
+            boolean interrupted = false;
+            while (true) {
+                try {
+                    release.await();
+                    break;
+                } catch (InterruptedException e) {
+                    interrupted = true;
+                }
+            }
+            if (interrupted) {
+                Thread.currentThread().interrupt();
+            }
+            return bean;
+        }, Duration.ZERO);
+    }
+
+    private static JAiWorkflow newWorkflow(Function<QuestionBean, QuestionBean> retrieval, Duration tokenDelay) {
+        StreamingChatLanguageModel fakeModel = (messages, handler) -> {
+            String answer = "Answer to: " + ((UserMessage) messages.get(0)).singleText();
+            for (String word : answer.split(" ")) {
+                sleep(tokenDelay);
+                handler.onNext(word + " ");
+            }
+            handler.onComplete(Response.from(AiMessage.from(answer)));
+        };
+        Node<QuestionBean, QuestionBean> retrieve = Node.from("retrieve", retrieval);
+        StreamingNode<QuestionBean> generate = StreamingNode.from("generate", fakeModel);
+        return new DefaultJAiWorkflow<>(
+                new QuestionBean(),
+                List.of(Transition.from(retrieve, generate), Transition.from(generate, WorkflowStateName.END)),
+                retrieve,
+                true);
+    }
+
+    private static void sleep(Duration duration) {
+        if (duration.isZero()) {
+            return;
+        }
+        try {
+            Thread.sleep(duration.toMillis());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted", e);
+        }
+    }
+}
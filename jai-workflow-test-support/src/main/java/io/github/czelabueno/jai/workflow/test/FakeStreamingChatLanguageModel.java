@@ -0,0 +1,307 @@
+package io.github.czelabueno.jai.workflow.test;
+
+import dev.langchain4j.data.message.AiMessage;
+import dev.langchain4j.data.message.ChatMessage;
+import dev.langchain4j.model.StreamingResponseHandler;
+import dev.langchain4j.model.chat.StreamingChatLanguageModel;
+import dev.langchain4j.model.output.Response;
+import dev.langchain4j.model.output.TokenUsage;
+import io.github.czelabueno.jai.workflow.langchain4j.internal.ChatMessages;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.SplittableRandom;
+import java.util.concurrent.Executor;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+
+import static dev.langchain4j.internal.ValidationUtils.ensureBetween;
+import static dev.langchain4j.internal.ValidationUtils.ensureNotNull;
+
+/**
+ * {@link StreamingChatLanguageModel} that simulates a provider without calling the network, to test and benchmark
+ * workflows with StreamingNode and DefaultJAiWorkflow offline.
+ * <p>
+ * Each call waits for a time to first token drawn from a {@link LatencyDistribution}, then streams its tokens with a
+ * per-token delay, and completes with a {@link TokenUsage} estimated from the prompt. Errors and timeouts can be injected
+ * at a given rate. The random generator of the n-th call is derived from the seed and n, so a run with the same seed and
+ * the same sequence of calls produces the same latencies, tokens and failures.
+ * </p>
+ * <pre>{@code
+ * FakeStreamingChatLanguageModel model = FakeStreamingChatLanguageModel.builder()
+ *         .timeToFirstToken(LatencyDistribution.logNormal(Duration.ofMillis(300), 0.5))
+ *         .interTokenDelay(LatencyDistribution.fixed(Duration.ofMillis(20)))
+ *         .tokenCount(200)
+ *         .errorRate(0.01)
+ *         .seed(42)
+ *         .build();
+ * }</pre>
+ */
+public class FakeStreamingChatLanguageModel implements StreamingChatLanguageModel {
+
+    private final LatencyDistribution timeToFirstToken;
+    private final LatencyDistribution interTokenDelay;
+    private final List<String> responseTokens;
+    private final int tokenCount;
+    private final double errorRate;
+    private final double timeoutRate;
+    private final Duration timeout;
+    private final long seed;
+    private final Executor executor;
+
+    private final AtomicLong calls = new AtomicLong();
+    private final AtomicLong errors = new AtomicLong();
+    private final AtomicLong timeouts = new AtomicLong();
+
+    private FakeStreamingChatLanguageModel(FakeStreamingChatLanguageModelBuilder builder) {
+        this.timeToFirstToken = ensureNotNull(builder.timeToFirstToken, "timeToFirstToken");
+        this.interTokenDelay = ensureNotNull(builder.interTokenDelay, "interTokenDelay");
+        this.responseTokens = builder.responseText == null ? null : tokenize(builder.responseText);
+        this.tokenCount = responseTokens == null ? builder.tokenCount : responseTokens.size();
+        this.errorRate = ensureBetween(builder.errorRate, 0.0, 1.0, "errorRate");
+        this.timeoutRate = ensureBetween(builder.timeoutRate, 0.0, 1.0, "timeoutRate");
+        this.timeout = ensureNotNull(builder.timeout, "timeout");
+        this.seed = builder.seed;
+        this.executor = builder.executor;
+        if (tokenCount <= 0) {
+            throw new IllegalArgumentException("tokenCount must be greater than zero");
+        }
+        if (errorRate + timeoutRate > 1.0) {
+            throw new IllegalArgumentException("errorRate + timeoutRate cannot be greater than 1");
+        }
+    }
+
+    /**
+     * Returns a new builder instance for creating a {@link FakeStreamingChatLanguageModel}.
+     *
+     * @return a new {@link FakeStreamingChatLanguageModelBuilder} instance
+     */
+    public static FakeStreamingChatLanguageModelBuilder builder() {
+        return new FakeStreamingChatLanguageModelBuilder();
+    }
+
+    @Override
+    public void generate(List<ChatMessage> messages, StreamingResponseHandler<AiMessage> handler) {
+        SplittableRandom random = new SplittableRandom(seed ^ (calls.incrementAndGet() * 0x9E3779B97F4A7C15L));
+        int promptTokens = Math.max(1, ChatMessages.textLength(messages) / 4);
+        Runnable call = () -> stream(random, promptTokens, handler);
+        if (executor == null) {
+            call.run();
+        } else {
+            executor.execute(call);
+        }
+    }
+
+    /**
+     * Returns the number of calls made to the model.
+     *
+     * @return the number of calls
+     */
+    public long calls() {
+        return calls.get();
+    }
+
+    /**
+     * Returns the number of calls that ended with an injected error.
+     *
+     * @return the number of errors
+     */
+    public long errors() {
+        return errors.get();
+    }
+
+    /**
+     * Returns the number of calls that ended with an injected timeout.
+     *
+     * @return the number of timeouts
+     */
+    public long timeouts() {
+        return timeouts.get();
+    }
+
+    private void stream(SplittableRandom random, int promptTokens, StreamingResponseHandler<AiMessage> handler) {
+        double failure = random.nextDouble();
+        boolean failsWithError = failure < errorRate;
+        boolean timesOut = !failsWithError && failure < errorRate + timeoutRate;
+        // a failing call fails at a random point of the stream, possibly before the first token
+        int failAfterTokens = failsWithError ? random.nextInt(tokenCount) : tokenCount;
+
+        if (timesOut) {
+            pause(timeout);
+            timeouts.incrementAndGet();
+            handler.onError(new TimeoutException("Fake model timed out after " + timeout));
+            return;
+        }
+        pause(timeToFirstToken.sample(random));
+        StringBuilder text = new StringBuilder();
+        for (int i = 0; i < tokenCount; i++) {
+            if (i == failAfterTokens) {
+                errors.incrementAndGet();
+                handler.onError(new RuntimeException("Fake model error after " + i + " tokens"));
+                return;
+            }
+            if (i > 0) {
+                pause(interTokenDelay.sample(random));
+            }
+            String token = responseTokens != null ? responseTokens.get(i) : "token" + i + " ";
+            text.append(token);
+            handler.onNext(token);
+        }
+        handler.onComplete(Response.from(AiMessage.from(text.toString()), new TokenUsage(promptTokens, tokenCount)));
+    }
+
+    private static void pause(Duration duration) {
+        long remainingNanos = duration.toNanos();
+        long deadline = System.nanoTime() + remainingNanos;
+        while (remainingNanos > 0) {
+            LockSupport.parkNanos(remainingNanos);
+            if (Thread.currentThread().isInterrupted()) {
+                return;
+            }
+            remainingNanos = deadline - System.nanoTime();
+        }
+    }
+
+    private static List<String> tokenize(String text) {
+        // split after each whitespace, so that the concatenated tokens restore the text
+        List<String> tokens = new ArrayList<>();
+        int start = 0;
+        for (int i = 0; i < text.length(); i++) {
+            if (Character.isWhitespace(text.charAt(i))) {
+                tokens.add(text.substring(start, i + 1));
+                start = i + 1;
+            }
+        }
+        if (start < text.length()) {
+            tokens.add(text.substring(start));
+        }
+        return tokens;
+    }
+
+    /**
+     * Builder class for {@link FakeStreamingChatLanguageModel}.
+     */
+    public static class FakeStreamingChatLanguageModelBuilder {
+        private LatencyDistribution timeToFirstToken = LatencyDistribution.none();
+        private LatencyDistribution interTokenDelay = LatencyDistribution.none();
+        private String responseText;
+        private int tokenCount = 32;
+        private Double errorRate = 0.0;
+        private Double timeoutRate = 0.0;
+        private Duration timeout = Duration.ofSeconds(30);
+        private long seed = 42;
+        private Executor executor;
+
+        /**
+         * Sets the distribution of the time to first token. No latency by default.
+         *
+         * @param timeToFirstToken the time to first token distribution
+         * @return the current {@link FakeStreamingChatLanguageModelBuilder} instance
+         */
+        public FakeStreamingChatLanguageModelBuilder timeToFirstToken(LatencyDistribution timeToFirstToken) {
+            this.timeToFirstToken = timeToFirstToken;
+            return this;
+        }
+
+        /**
+         * Sets the distribution of the delay between two tokens. No latency by default.
+         *
+         * @param interTokenDelay the inter-token delay distribution
+         * @return the current {@link FakeStreamingChatLanguageModelBuilder} instance
+         */
+        public FakeStreamingChatLanguageModelBuilder interTokenDelay(LatencyDistribution interTokenDelay) {
+            this.interTokenDelay = interTokenDelay;
+            return this;
+        }
+
+        /**
+         * Sets the text of every response, streamed one word at a time. Overrides the token count.
+         *
+         * @param responseText the response text
+         * @return the current {@link FakeStreamingChatLanguageModelBuilder} instance
+         */
+        public FakeStreamingChatLanguageModelBuilder responseText(String responseText) {
+            this.responseText = responseText;
+            return this;
+        }
+
+        /**
+         * Sets the number of tokens of every response, streamed as "token0 ", "token1 "... Defaults to 32.
+         *
+         * @param tokenCount the number of tokens
+         * @return the current {@link FakeStreamingChatLanguageModelBuilder} instance
+         */
+        public FakeStreamingChatLanguageModelBuilder tokenCount(int tokenCount) {
+            this.tokenCount = tokenCount;
+            return this;
+        }
+
+        /**
+         * Sets the fraction of calls failing with an error at a random point of the stream. Defaults to 0.
+         *
+         * @param errorRate the error rate, between 0 and 1
+         * @return the current {@link FakeStreamingChatLanguageModelBuilder} instance
+         */
+        public FakeStreamingChatLanguageModelBuilder errorRate(double errorRate) {
+            this.errorRate = errorRate;
+            return this;
+        }
+
+        /**
+         * Sets the fraction of calls that produce no token and fail with a {@link TimeoutException} after the timeout.
+         * Defaults to 0.
+         *
+         * @param timeoutRate the timeout rate, between 0 and 1
+         * @return the current {@link FakeStreamingChatLanguageModelBuilder} instance
+         */
+        public FakeStreamingChatLanguageModelBuilder timeoutRate(double timeoutRate) {
+            this.timeoutRate = timeoutRate;
+            return this;
+        }
+
+        /**
+         * Sets how long a timed out call hangs before failing. Defaults to 30 seconds.
+         *
+         * @param timeout the timeout
+         * @return the current {@link FakeStreamingChatLanguageModelBuilder} instance
+         */
+        public FakeStreamingChatLanguageModelBuilder timeout(Duration timeout) {
+            this.timeout = timeout;
+            return this;
+        }
+
+        /**
+         * Sets the seed of the random generators. Defaults to 42.
+         *
+         * @param seed the seed
+         * @return the current {@link FakeStreamingChatLanguageModelBuilder} instance
+         */
+        public FakeStreamingChatLanguageModelBuilder seed(long seed) {
+            this.seed = seed;
+            return this;
+        }
+
+        /**
+         * Sets the executor streaming the responses, like the I/O threads of a real client.
+         * By default the response is streamed on the calling thread.
+         *
+         * @param executor the executor
+         * @return the current {@link FakeStreamingChatLanguageModelBuilder} instance
+         */
+        public FakeStreamingChatLanguageModelBuilder executor(Executor executor) {
+            this.executor = executor;
+            return this;
+        }
+
+        /**
+         * Builds and returns a new {@link FakeStreamingChatLanguageModel} instance.
+         *
+         * @return a new {@link FakeStreamingChatLanguageModel} instance
+         */
+        public FakeStreamingChatLanguageModel build() {
+            return new FakeStreamingChatLanguageModel(this);
+        }
+    }
+}
@@ -0,0 +1,89 @@
+package io.github.czelabueno.jai.workflow.test;
+
+import java.time.Duration;
+import java.util.SplittableRandom;
+
+/**
+ * Distribution of the latencies simulated by a {@link FakeStreamingChatLanguageModel}.
+ * <p>
+ * Samples are drawn from the random generator of the call, so a seeded model produces the same latencies on every run.
+ * </p>
+ */
+@FunctionalInterface
+public interface LatencyDistribution {
+
+    /**
+     * Draws a latency.
+     *
+     * @param random the random generator of the call
+     * @return a non-negative latency
+     */
+    Duration sample(SplittableRandom random);
+
+    /**
+     * Returns a distribution without latency.
+     *
+     * @return the zero latency distribution
+     */
+    static LatencyDistribution none() {
+        return random -> Duration.ZERO;
+    }
+
+    /**
+     * Returns a distribution always drawing the same latency.
+     *
+     * @param latency the latency
+     * @return the fixed latency distribution
+     */
+    static LatencyDistribution fixed(Duration latency) {
+        ensureNotNegative(latency);
+        return random -> latency;
+    }
+
+    /**
+     * Returns a distribution drawing latencies uniformly between a minimum and a maximum.
+     *
+     * @param min the minimum latency
+     * @param max the maximum latency
+     * @return the uniform latency distribution
+     */
+    static LatencyDistribution uniform(Duration min, Duration max) {
+        ensureNotNegative(min);
+        if (max.compareTo(min) < 0) {
+            throw new IllegalArgumentException("max cannot be lower than min");
+        }
+        long minNanos = min.toNanos();
+        long rangeNanos = max.toNanos() - minNanos;
+        return random -> Duration.ofNanos(minNanos + (rangeNanos == 0 ? 0 : random.nextLong(rangeNanos + 1)));
+    }
+
+    /**
+     * Returns a log-normal distribution, the long-tailed shape of model latencies: most calls are close to the median
+     * and a few are several times slower.
+     *
+     * @param median the median latency
+     * @param sigma  the standard deviation of the logarithm of the latency, e.g. 0.5 for a p99 about 3 times the median
+     * @return the log-normal latency distribution
+     */
+    static LatencyDistribution logNormal(Duration median, double sigma) {
+        ensureNotNegative(median);
+        if (sigma < 0) {
+            throw new IllegalArgumentException("sigma cannot be negative");
+        }
+        double mu = Math.log(Math.max(1, median.toNanos()));
+        return random -> Duration.ofNanos((long) Math.exp(mu + sigma * nextGaussian(random)));
+    }
+
+    private static double nextGaussian(SplittableRandom random) {
+        // Box-Muller transform, SplittableRandom has no nextGaussian on Java 17
+        double u1 = 1.0 - random.nextDouble();
+        double u2 = random.nextDouble();
+        return Math.sqrt(-2 * Math.log(u1)) * Math.cos(2 * Math.PI * u2);
+    }
+
+    private static void ensureNotNegative(Duration latency) {
+        if (latency == null || latency.isNegative()) {
+            throw new IllegalArgumentException("Latency cannot be null or negative");
+        }
+    }
+}
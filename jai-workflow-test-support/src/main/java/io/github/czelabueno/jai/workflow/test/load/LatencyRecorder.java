@@ -0,0 +1,73 @@
+package io.github.czelabueno.jai.workflow.test.load;
+
+import io.github.czelabueno.jai.workflow.langchain4j.metrics.Histogram;
+
+import java.time.Duration;
+
+/**
+ * Records latencies in nanoseconds, correcting the coordinated omission of closed-loop load.
+ * <p>
+ * A closed-loop client waits for each response before sending the next request, so while the system stalls it stops
+ * sending requests and the stall is recorded once instead of for every request that would have been sent meanwhile.
+ * {@link #record(long, long)} back-fills these missing samples from the expected interval between requests, as
+ * HdrHistogram does. Open-loop load needs no correction when latencies are measured from the intended start time.
+ * </p>
+ */
+public class LatencyRecorder {
+
+    private final Histogram histogram = new Histogram();
+
+    /**
+     * Records a latency.
+     *
+     * @param latencyNanos the latency in nanoseconds
+     */
+    public void record(long latencyNanos) {
+        histogram.record(latencyNanos);
+    }
+
+    /**
+     * Records a latency and the samples a client sending a request every expected interval would have recorded
+     * during it: {@code latency - interval}, {@code latency - 2 * interval}... while greater than the interval.
+     *
+     * @param latencyNanos          the latency in nanoseconds
+     * @param expectedIntervalNanos the expected interval between two requests of the client, 0 for no correction
+     */
+    public void record(long latencyNanos, long expectedIntervalNanos) {
+        histogram.record(latencyNanos);
+        if (expectedIntervalNanos <= 0) {
+            return;
+        }
+        for (long missing = latencyNanos - expectedIntervalNanos; missing >= expectedIntervalNanos; missing -= expectedIntervalNanos) {
+            histogram.record(missing);
+        }
+    }
+
+    /**
+     * Returns the number of recorded samples, including the corrections.
+     *
+     * @return the number of samples
+     */
+    public long count() {
+        return histogram.count();
+    }
+
+    /**
+     * Returns the latency below which the given percentage of the samples fall.
+     *
+     * @param percentile the percentile, between 0 and 100
+     * @return the latency at the percentile
+     */
+    public Duration percentile(double percentile) {
+        return Duration.ofNanos(histogram.percentile(percentile));
+    }
+
+    /**
+     * Returns the maximum recorded latency.
+     *
+     * @return the maximum latency
+     */
+    public Duration max() {
+        return Duration.ofNanos(histogram.max());
+    }
+}
@@ -0,0 +1,372 @@
+package io.github.czelabueno.jai.workflow.test.load;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryMXBean;
+import java.lang.reflect.Method;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+
+import static dev.langchain4j.internal.ValidationUtils.ensureGreaterThanZero;
+import static dev.langchain4j.internal.ValidationUtils.ensureNotNull;
+
+/**
+ * Drives a {@link Workload} at a configurable concurrency or rate and reports throughput, tail latency, time to first
+ * token and heap usage.
+ * <p>
+ * Two load modes are available:
+ * </p>
+ * <ul>
+ *     <li>closed loop: a fixed number of clients each send a request as soon as the previous one completes, optionally
+ *     after a think time. It answers "how many concurrent sessions can one JVM sustain?". Latencies are corrected for
+ *     coordinated omission with the intended cycle of a client as expected interval: the think time plus the mean
+ *     latency measured during the warmup, or during the measurement so far when there is no warmup.</li>
+ *     <li>open loop: requests are started at a fixed rate whatever the response times, as real users do. Latencies are
+ *     measured from the intended start time, so queueing caused by a stall is fully accounted for, including the wait
+ *     for a slot when {@code maxInFlight} requests are in flight.</li>
+ * </ul>
+ * <pre>{@code
+ * LoadReport report = LoadHarness.builder()
+ *         .workload(Workload.answerStream(() -> newWorkflow(fakeModel), "What is jAI?"))
+ *         .closedLoop(256)
+ *         .warmup(Duration.ofSeconds(5))
+ *         .duration(Duration.ofSeconds(30))
+ *         .build()
+ *         .run();
+ * }</pre>
+ */
+public class LoadHarness {
+
+    private static final Logger log = LoggerFactory.getLogger(LoadHarness.class);
+
+    private static final long HEAP_SAMPLING_MILLIS = 50;
+
+    private final Workload workload;
+    private final Integer concurrency;
+    private final Duration thinkTime;
+    private final Double requestsPerSecond;
+    private final int maxInFlight;
+    private final Duration warmup;
+    private final Duration duration;
+
+    private LoadHarness(LoadHarnessBuilder builder) {
+        this.workload = ensureNotNull(builder.workload, "workload");
+        this.concurrency = builder.concurrency;
+        this.thinkTime = builder.thinkTime;
+        this.requestsPerSecond = builder.requestsPerSecond;
+        this.maxInFlight = ensureGreaterThanZero(builder.maxInFlight, "maxInFlight");
+        this.warmup = ensureNotNull(builder.warmup, "warmup");
+        this.duration = ensureNotNull(builder.duration, "duration");
+        if ((concurrency == null) == (requestsPerSecond == null)) {
+            throw new IllegalArgumentException("Either closedLoop or openLoop must be configured");
+        }
+    }
+
+    /**
+     * Returns a new builder instance for creating a {@link LoadHarness}.
+     *
+     * @return a new {@link LoadHarnessBuilder} instance
+     */
+    public static LoadHarnessBuilder builder() {
+        return new LoadHarnessBuilder();
+    }
+
+    /**
+     * Runs the warmup, then the measurement.
+     *
+     * @return the report of the measurement
+     */
+    public LoadReport run() {
+        ExecutorService executor = newPerTaskExecutor();
+        try {
+            long baselineLatencyNanos = 0;
+            if (!warmup.isZero()) {
+                log.info("Warming up for {}", warmup);
+                Phase warmupPhase = new Phase(0);
+                runPhase(executor, warmupPhase, warmup);
+                baselineLatencyNanos = warmupPhase.meanLatencyNanos();
+            }
+            log.info("Measuring for {}", duration);
+            LoadReport report = runPhase(executor, new Phase(baselineLatencyNanos), duration);
+            log.info("{}", report);
+            return report;
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    private LoadReport runPhase(ExecutorService executor, Phase phase, Duration phaseDuration) {
+        MemoryMXBean memory = ManagementFactory.getMemoryMXBean();
+        ScheduledExecutorService heapSampler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "load-harness-heap-sampler");
+            thread.setDaemon(true);
+            return thread;
+        });
+        heapSampler.scheduleAtFixedRate(() -> phase.peakHeapBytes.accumulate(memory.getHeapMemoryUsage().getUsed()),
+                0, HEAP_SAMPLING_MILLIS, TimeUnit.MILLISECONDS);
+        long start = System.nanoTime();
+        try {
+            if (concurrency != null) {
+                runClosedLoop(executor, phase, start + phaseDuration.toNanos());
+            } else {
+                runOpenLoop(executor, phase, start, start + phaseDuration.toNanos());
+            }
+        } finally {
+            heapSampler.shutdownNow();
+        }
+        long elapsedNanos = System.nanoTime() - start;
+        return new LoadReport(
+                concurrency != null
+                        ? "closed-loop, " + concurrency + " clients"
+                        : "open-loop, " + requestsPerSecond + " req/s",
+                phase.completed.get(),
+                phase.failed.get(),
+                phase.delayed.get(),
+                Duration.ofNanos(elapsedNanos),
+                phase.latency,
+                phase.timeToFirstToken,
+                Math.max(phase.peakHeapBytes.get(), memory.getHeapMemoryUsage().getUsed()),
+                memory.getHeapMemoryUsage().getUsed());
+    }
+
+    private void runClosedLoop(ExecutorService executor, Phase phase, long end) {
+        long thinkTimeNanos = thinkTime.toNanos();
+        AtomicLong activeClients = new AtomicLong(concurrency);
+        Thread coordinator = Thread.currentThread();
+        for (int i = 0; i < concurrency; i++) {
+            executor.execute(() -> {
+                try {
+                    while (System.nanoTime() < end && !Thread.currentThread().isInterrupted()) {
+                        long latencyNanos = execute(phase, System.nanoTime());
+                        if (latencyNanos >= 0) {
+                            phase.latency.record(latencyNanos, thinkTimeNanos + phase.baselineLatencyNanos());
+                        }
+                        if (thinkTimeNanos > 0) {
+                            LockSupport.parkNanos(thinkTimeNanos);
+                        }
+                    }
+                } finally {
+                    activeClients.decrementAndGet();
+                    LockSupport.unpark(coordinator);
+                }
+            });
+        }
+        while (activeClients.get() > 0) {
+            LockSupport.parkNanos(TimeUnit.MILLISECONDS.toNanos(10));
+        }
+    }
+
+    private void runOpenLoop(ExecutorService executor, Phase phase, long start, long end) {
+        long intervalNanos = (long) (1_000_000_000d / requestsPerSecond);
+        Semaphore slots = new Semaphore(maxInFlight);
+        for (long request = 0; ; request++) {
+            long intendedStart = start + request * intervalNanos;
+            if (intendedStart >= end) {
+                break;
+            }
+            long waitNanos;
+            while ((waitNanos = intendedStart - System.nanoTime()) > 0) {
+                LockSupport.parkNanos(waitNanos);
+            }
+            // a request waiting for a slot is sent late, its latency still runs from its intended start
+            if (!slots.tryAcquire()) {
+                phase.delayed.incrementAndGet();
+                slots.acquireUninterruptibly();
+            }
+            executor.execute(() -> {
+                try {
+                    long latencyNanos = execute(phase, intendedStart);
+                    if (latencyNanos >= 0) {
+                        phase.latency.record(latencyNanos);
+                    }
+                } finally {
+                    slots.release();
+                }
+            });
+        }
+        slots.acquireUninterruptibly(maxInFlight);
+    }
+
+    /**
+     * Executes one request, returning its latency from the given start, or -1 if it failed.
+     */
+    private long execute(Phase phase, long startNanos) {
+        AtomicBoolean firstTokenSeen = new AtomicBoolean();
+        Probe probe = receivedAt -> {
+            if (firstTokenSeen.compareAndSet(false, true)) {
+                long receivedNanos = System.nanoTime() - Duration.between(receivedAt, Instant.now()).toNanos();
+                phase.timeToFirstToken.record(Math.max(0, receivedNanos - startNanos));
+            }
+        };
+        try {
+            workload.execute(probe);
+            long latencyNanos = System.nanoTime() - startNanos;
+            phase.completed.incrementAndGet();
+            phase.latencySumNanos.add(latencyNanos);
+            return latencyNanos;
+        } catch (Exception e) {
+            if (phase.failed.incrementAndGet() == 1) {
+                log.warn("Request failed, further failures are only counted", e);
+            }
+            return -1;
+        }
+    }
+
+    private static ExecutorService newPerTaskExecutor() {
+        try {
+            Method newVirtualThreadPerTaskExecutor = Executors.class.getMethod("newVirtualThreadPerTaskExecutor");
+            return (ExecutorService) newVirtualThreadPerTaskExecutor.invoke(null);
+        } catch (ReflectiveOperationException e) {
+            return Executors.newCachedThreadPool(runnable -> {
+                Thread thread = new Thread(runnable, "load-harness-client");
+                thread.setDaemon(true);
+                return thread;
+            });
+        }
+    }
+
+    private static final class Phase {
+        private final LatencyRecorder latency = new LatencyRecorder();
+        private final LatencyRecorder timeToFirstToken = new LatencyRecorder();
+        private final AtomicLong completed = new AtomicLong();
+        private final AtomicLong failed = new AtomicLong();
+        private final AtomicLong delayed = new AtomicLong();
+        private final LongAdder latencySumNanos = new LongAdder(); // uncorrected, to derive the intended cycle
+        private final LongAccumulator peakHeapBytes = new LongAccumulator(Math::max, 0);
+        private final long warmupLatencyNanos;
+
+        private Phase(long warmupLatencyNanos) {
+            this.warmupLatencyNanos = warmupLatencyNanos;
+        }
+
+        private long meanLatencyNanos() {
+            long count = completed.get();
+            return count == 0 ? 0 : latencySumNanos.sum() / count;
+        }
+
+        /**
+         * Returns the latency a client expects from a request: the mean of the warmup, else the mean so far.
+         */
+        private long baselineLatencyNanos() {
+            return warmupLatencyNanos > 0 ? warmupLatencyNanos : meanLatencyNanos();
+        }
+    }
+
+    /**
+     * Builder class for {@link LoadHarness}.
+     */
+    public static class LoadHarnessBuilder {
+        private Workload workload;
+        private Integer concurrency;
+        private Duration thinkTime = Duration.ZERO;
+        private Double requestsPerSecond;
+        private Integer maxInFlight = 10_000;
+        private Duration warmup = Duration.ofSeconds(5);
+        private Duration duration = Duration.ofSeconds(30);
+
+        /**
+         * Sets the request executed by the harness. Required.
+         *
+         * @param workload the workload
+         * @return the current {@link LoadHarnessBuilder} instance
+         */
+        public LoadHarnessBuilder workload(Workload workload) {
+            this.workload = workload;
+            return this;
+        }
+
+        /**
+         * Runs a closed loop of clients sending a request as soon as their previous one completes.
+         *
+         * @param concurrency the number of clients
+         * @return the current {@link LoadHarnessBuilder} instance
+         */
+        public LoadHarnessBuilder closedLoop(int concurrency) {
+            return closedLoop(concurrency, Duration.ZERO);
+        }
+
+        /**
+         * Runs a closed loop of clients waiting a think time between two requests.
+         *
+         * @param concurrency the number of clients
+         * @param thinkTime   the time between a response and the next request of a client
+         * @return the current {@link LoadHarnessBuilder} instance
+         */
+        public LoadHarnessBuilder closedLoop(int concurrency, Duration thinkTime) {
+            this.concurrency = ensureGreaterThanZero(concurrency, "concurrency");
+            this.thinkTime = ensureNotNull(thinkTime, "thinkTime");
+            this.requestsPerSecond = null;
+            return this;
+        }
+
+        /**
+         * Runs an open loop starting requests at a fixed rate.
+         *
+         * @param requestsPerSecond the rate of requests
+         * @return the current {@link LoadHarnessBuilder} instance
+         */
+        public LoadHarnessBuilder openLoop(double requestsPerSecond) {
+            if (requestsPerSecond <= 0) {
+                throw new IllegalArgumentException("requestsPerSecond must be greater than zero");
+            }
+            this.requestsPerSecond = requestsPerSecond;
+            this.concurrency = null;
+            return this;
+        }
+
+        /**
+         * Sets the maximum number of open-loop requests in flight, requests above wait for a slot and are counted as
+         * delayed, their latency including the wait. Defaults to 10000.
+         *
+         * @param maxInFlight the maximum number of requests in flight
+         * @return the current {@link LoadHarnessBuilder} instance
+         */
+        public LoadHarnessBuilder maxInFlight(int maxInFlight) {
+            this.maxInFlight = maxInFlight;
+            return this;
+        }
+
+        /**
+         * Sets the duration of the warmup, whose results are discarded. Defaults to 5 seconds.
+         *
+         * @param warmup the warmup duration
+         * @return the current {@link LoadHarnessBuilder} instance
+         */
+        public LoadHarnessBuilder warmup(Duration warmup) {
+            this.warmup = warmup;
+            return this;
+        }
+
+        /**
+         * Sets the duration of the measurement. Defaults to 30 seconds.
+         *
+         * @param duration the measurement duration
+         * @return the current {@link LoadHarnessBuilder} instance
+         */
+        public LoadHarnessBuilder duration(Duration duration) {
+            this.duration = duration;
+            return this;
+        }
+
+        /**
+         * Builds and returns a new {@link LoadHarness} instance.
+         *
+         * @return a new {@link LoadHarness} instance
+         */
+        public LoadHarness build() {
+            return new LoadHarness(this);
+        }
+    }
+}
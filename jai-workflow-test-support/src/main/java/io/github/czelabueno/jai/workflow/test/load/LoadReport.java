@@ -0,0 +1,66 @@
+package io.github.czelabueno.jai.workflow.test.load;
+
+import java.time.Duration;
+
+/**
+ * Results of a {@link LoadHarness} run, excluding the warmup.
+ *
+ * @param mode            the load mode, e.g. "closed-loop, 64 clients"
+ * @param completed       the number of completed requests
+ * @param failed          the number of failed requests
+ * @param delayed         the number of open-loop requests sent after their intended start because too many were in flight
+ * @param elapsed         the duration of the measurement
+ * @param latency         the latencies of the completed requests
+ * @param timeToFirstToken the times to first token of the requests reporting one
+ * @param peakHeapBytes   the highest heap usage sampled during the measurement
+ * @param heapAfterBytes  the heap usage after the measurement
+ */
+public record LoadReport(String mode,
+                         long completed,
+                         long failed,
+                         long delayed,
+                         Duration elapsed,
+                         LatencyRecorder latency,
+                         LatencyRecorder timeToFirstToken,
+                         long peakHeapBytes,
+                         long heapAfterBytes) {
+
+    /**
+     * Returns the number of completed requests per second.
+     *
+     * @return the throughput
+     */
+    public double throughput() {
+        return elapsed.isZero() ? 0 : completed * 1_000_000_000d / elapsed.toNanos();
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder report = new StringBuilder()
+                .append(mode).append(": ")
+                .append(completed).append(" completed, ")
+                .append(failed).append(" failed, ")
+                .append(delayed).append(" delayed in ").append(elapsed.toMillis()).append(" ms (")
+                .append(String.format("%.1f", throughput())).append(" req/s)\n")
+                .append("  latency ").append(percentiles(latency)).append('\n');
+        if (timeToFirstToken.count() > 0) {
+            report.append("  ttft    ").append(percentiles(timeToFirstToken)).append('\n');
+        }
+        return report
+                .append("  heap    peak=").append(peakHeapBytes / (1024 * 1024)).append(" MB, after=")
+                .append(heapAfterBytes / (1024 * 1024)).append(" MB")
+                .toString();
+    }
+
+    private static String percentiles(LatencyRecorder recorder) {
+        return String.format("p50=%.2f ms, p99=%.2f ms, p999=%.2f ms, max=%.2f ms",
+                millis(recorder.percentile(50)),
+                millis(recorder.percentile(99)),
+                millis(recorder.percentile(99.9)),
+                millis(recorder.max()));
+    }
+
+    private static double millis(Duration duration) {
+        return duration.toNanos() / 1_000_000d;
+    }
+}
@@ -0,0 +1,25 @@
+package io.github.czelabueno.jai.workflow.test.load;
+
+import java.time.Instant;
+
+/**
+ * Lets a {@link Workload} report the progress of one request to the {@link LoadHarness}.
+ */
+@FunctionalInterface
+public interface Probe {
+
+    /**
+     * Marks the arrival of the first token of the request now. Only the first call of a request is recorded.
+     */
+    default void firstToken() {
+        firstToken(Instant.now());
+    }
+
+    /**
+     * Marks the arrival of the first token of the request at the given time, for a token observed after the fact,
+     * e.g. from a generation trace. Only the first call of a request is recorded.
+     *
+     * @param receivedAt when the first token was received
+     */
+    void firstToken(Instant receivedAt);
+}
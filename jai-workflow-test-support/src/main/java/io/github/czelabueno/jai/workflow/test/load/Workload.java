@@ -0,0 +1,72 @@
+package io.github.czelabueno.jai.workflow.test.load;
+
+import io.github.czelabueno.jai.workflow.StateWorkflow;
+import io.github.czelabueno.jai.workflow.langchain4j.JAiWorkflow;
+import io.github.czelabueno.jai.workflow.langchain4j.metrics.GenerationTrace;
+import io.github.czelabueno.jai.workflow.transition.ComputedTransition;
+import lombok.NonNull;
+
+import java.util.function.Supplier;
+
+/**
+ * One request executed by the {@link LoadHarness}. A request completes when {@link #execute(Probe)} returns and fails
+ * when it throws.
+ */
+@FunctionalInterface
+public interface Workload {
+
+    /**
+     * Executes one request.
+     *
+     * @param probe reports the progress of the request
+     * @throws Exception if the request fails
+     */
+    void execute(Probe probe) throws Exception;
+
+    /**
+     * Runs a new workflow in stream mode for every request and consumes its tokens.
+     * <p>
+     * {@link JAiWorkflow#answerStream(String)} only returns the stream once the generation completed, so the time to
+     * first token is not taken from the tokens received by the caller but from the {@link GenerationTrace} of the
+     * first streaming node of the run: the time until the model streamed its first token.
+     * </p>
+     *
+     * @param workflowFactory creates a workflow for every request, a workflow holds the state of its run
+     * @param question        the question of every request
+     * @return the streaming workload
+     */
+    static Workload answerStream(@NonNull Supplier<? extends JAiWorkflow> workflowFactory, @NonNull String question) {
+        return probe -> {
+            JAiWorkflow workflow = workflowFactory.get();
+            workflow.answerStream(question).blockLast();
+            for (Object computedTransition : workflow.getComputedTransitions()) {
+                Object trace = ((ComputedTransition) computedTransition).getMetadata().get(GenerationTrace.METADATA_KEY);
+                if (trace instanceof GenerationTrace generationTrace && generationTrace.timeToFirstToken() != null) {
+                    probe.firstToken(generationTrace.startedAt().plus(generationTrace.timeToFirstToken()));
+                    return;
+                }
+            }
+        };
+    }
+
+    /**
+     * Runs a new workflow synchronously for every request.
+     *
+     * @param workflowFactory creates a workflow for every request, a workflow holds the state of its run
+     * @param question        the question of every request
+     * @return the synchronous workload
+     */
+    static Workload answer(@NonNull Supplier<? extends JAiWorkflow> workflowFactory, @NonNull String question) {
+        return probe -> workflowFactory.get().answer(question);
+    }
+
+    /**
+     * Runs a new state workflow for every request.
+     *
+     * @param workflowFactory creates a workflow for every request, a workflow holds the state of its run
+     * @return the state workflow workload
+     */
+    static Workload run(@NonNull Supplier<? extends StateWorkflow<?>> workflowFactory) {
+        return probe -> workflowFactory.get().run();
+    }
+}
@@ -0,0 +1,161 @@
+package io.github.czelabueno.jai.workflow.test;
+
+import dev.langchain4j.data.message.AiMessage;
+import dev.langchain4j.data.message.ChatMessage;
+import dev.langchain4j.data.message.UserMessage;
+import dev.langchain4j.model.StreamingResponseHandler;
+import dev.langchain4j.model.output.Response;
+import io.github.czelabueno.jai.workflow.WorkflowStateName;
+import io.github.czelabueno.jai.workflow.langchain4j.AbstractStatefulBean;
+import io.github.czelabueno.jai.workflow.langchain4j.JAiWorkflow;
+import io.github.czelabueno.jai.workflow.langchain4j.internal.DefaultJAiWorkflow;
+import io.github.czelabueno.jai.workflow.langchain4j.node.StreamingNode;
+import io.github.czelabueno.jai.workflow.node.Node;
+import io.github.czelabueno.jai.workflow.transition.Transition;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.SplittableRandom;
+import java.util.concurrent.TimeoutException;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class FakeStreamingChatLanguageModelTest {
+
+    private static final List<ChatMessage> PROMPT = List.of(UserMessage.from("What is jAI Workflow?"));
+
+    static class QuestionBean extends AbstractStatefulBean {
+    }
+
+    @Test
+    void should_stream_tokens_with_configured_latencies() {
+        // given
+        FakeStreamingChatLanguageModel model = FakeStreamingChatLanguageModel.builder()
+                .timeToFirstToken(LatencyDistribution.fixed(Duration.ofMillis(50)))
+                .interTokenDelay(LatencyDistribution.fixed(Duration.ofMillis(10)))
+                .tokenCount(5)
+                .build();
+        RecordingHandler handler = new RecordingHandler();
+        // when
+        long start = System.nanoTime();
+        model.generate(PROMPT, handler);
+        // then
+        assertThat(Duration.ofNanos(handler.firstTokenNanos - start)).isGreaterThanOrEqualTo(Duration.ofMillis(50));
+        assertThat(Duration.ofNanos(System.nanoTime() - start)).isGreaterThanOrEqualTo(Duration.ofMillis(90));
+        assertThat(handler.tokens).containsExactly("token0 ", "token1 ", "token2 ", "token3 ", "token4 ");
+        assertThat(handler.response.content().text()).isEqualTo("token0 token1 token2 token3 token4 ");
+        assertThat(handler.response.tokenUsage().inputTokenCount()).isEqualTo(5);
+        assertThat(handler.response.tokenUsage().outputTokenCount()).isEqualTo(5);
+    }
+
+    @Test
+    void should_inject_the_same_failures_for_the_same_seed() {
+        // given
+        FakeStreamingChatLanguageModel model = FakeStreamingChatLanguageModel.builder().errorRate(0.5).seed(7).build();
+        FakeStreamingChatLanguageModel sameSeedModel = FakeStreamingChatLanguageModel.builder().errorRate(0.5).seed(7).build();
+        // when
+        List<String> outcomes = outcomesOf(model, 50);
+        List<String> sameSeedOutcomes = outcomesOf(sameSeedModel, 50);
+        // then
+        assertThat(outcomes).isEqualTo(sameSeedOutcomes);
+        assertThat(model.errors()).isBetween(10L, 40L);
+        assertThat(model.calls()).isEqualTo(50);
+    }
+
+    @Test
+    void should_draw_the_same_latencies_for_the_same_seed() {
+        // given
+        LatencyDistribution distribution = LatencyDistribution.logNormal(Duration.ofMillis(300), 0.5);
+        SplittableRandom random = new SplittableRandom(42);
+        SplittableRandom sameSeedRandom = new SplittableRandom(42);
+        // when
+        List<Duration> latencies = new ArrayList<>();
+        List<Duration> sameSeedLatencies = new ArrayList<>();
+        for (int i = 0; i < 1000; i++) {
+            latencies.add(distribution.sample(random));
+            sameSeedLatencies.add(distribution.sample(sameSeedRandom));
+        }
+        // then
+        assertThat(latencies).isEqualTo(sameSeedLatencies);
+        latencies.sort(Duration::compareTo);
+        assertThat(latencies.get(500).toMillis()).isBetween(250L, 350L);
+        assertThat(latencies.get(990)).isGreaterThan(latencies.get(500).multipliedBy(2));
+    }
+
+    @Test
+    void should_fail_with_timeout_after_configured_timeout() {
+        // given
+        FakeStreamingChatLanguageModel model = FakeStreamingChatLanguageModel.builder()
+                .timeoutRate(1.0)
+                .timeout(Duration.ofMillis(50))
+                .build();
+        RecordingHandler handler = new RecordingHandler();
+        // when
+        long start = System.nanoTime();
+        model.generate(PROMPT, handler);
+        // then
+        assertThat(Duration.ofNanos(System.nanoTime() - start)).isGreaterThanOrEqualTo(Duration.ofMillis(50));
+        assertThat(handler.error).isInstanceOf(TimeoutException.class);
+        assertThat(handler.tokens).isEmpty();
+        assertThat(model.timeouts()).isEqualTo(1);
+    }
+
+    @Test
+    void should_answer_stream_in_default_jai_workflow() {
+        // given
+        FakeStreamingChatLanguageModel model = FakeStreamingChatLanguageModel.builder()
+                .responseText("jAI Workflow is a workflow engine")
+                .interTokenDelay(LatencyDistribution.uniform(Duration.ZERO, Duration.ofMillis(2)))
+                .build();
+        Node<QuestionBean, QuestionBean> retrieve = Node.from("retrieve", bean -> bean);
+        StreamingNode<QuestionBean> generate = StreamingNode.from("generate", model);
+        JAiWorkflow workflow = new DefaultJAiWorkflow<>(
+                new QuestionBean(),
+                List.of(Transition.from(retrieve, generate), Transition.from(generate, WorkflowStateName.END)),
+                retrieve,
+                true);
+        // when
+        List<String> tokens = workflow.answerStream("What is jAI Workflow?").collectList().block();
+        // then
+        assertThat(tokens).containsExactly("jAI ", "Workflow ", "is ", "a ", "workflow ", "engine");
+        assertThat(String.join("", tokens)).isEqualTo("jAI Workflow is a workflow engine");
+    }
+
+    private static List<String> outcomesOf(FakeStreamingChatLanguageModel model, int calls) {
+        List<String> outcomes = new ArrayList<>();
+        for (int i = 0; i < calls; i++) {
+            RecordingHandler handler = new RecordingHandler();
+            model.generate(PROMPT, handler);
+            outcomes.add(handler.error == null ? "ok" : "error after " + handler.tokens.size());
+        }
+        return outcomes;
+    }
+
+    private static class RecordingHandler implements StreamingResponseHandler<AiMessage> {
+
+        private final List<String> tokens = new ArrayList<>();
+        private long firstTokenNanos;
+        private Response<AiMessage> response;
+        private Throwable error;
+
+        @Override
+        public void onNext(String token) {
+            if (tokens.isEmpty()) {
+                firstTokenNanos = System.nanoTime();
+            }
+            tokens.add(token);
+        }
+
+        @Override
+        public void onComplete(Response<AiMessage> response) {
+            this.response = response;
+        }
+
+        @Override
+        public void onError(Throwable error) {
+            this.error = error;
+        }
+    }
+}
@@ -0,0 +1,180 @@
+package io.github.czelabueno.jai.workflow.test.load;
+
+import io.github.czelabueno.jai.workflow.DefaultStateWorkflow;
+import io.github.czelabueno.jai.workflow.WorkflowStateName;
+import io.github.czelabueno.jai.workflow.langchain4j.AbstractStatefulBean;
+import io.github.czelabueno.jai.workflow.langchain4j.internal.DefaultJAiWorkflow;
+import io.github.czelabueno.jai.workflow.langchain4j.node.StreamingNode;
+import io.github.czelabueno.jai.workflow.node.Node;
+import io.github.czelabueno.jai.workflow.test.FakeStreamingChatLanguageModel;
+import io.github.czelabueno.jai.workflow.test.LatencyDistribution;
+import io.github.czelabueno.jai.workflow.transition.Transition;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatIllegalArgumentException;
+
+class LoadHarnessTest {
+
+    static class CounterBean {
+        int value;
+    }
+
+    static class QuestionBean extends AbstractStatefulBean {
+    }
+
+    @Test
+    void should_measure_closed_loop_state_workflow() {
+        // given
+        AtomicInteger runs = new AtomicInteger();
+        Workload workload = Workload.run(() -> {
+            Node<CounterBean, CounterBean> increment = Node.from("increment", bean -> {
+                bean.value++;
+                return bean;
+            });
+            Node<CounterBean, CounterBean> count = Node.from("count", bean -> {
+                runs.incrementAndGet();
+                return bean;
+            });
+            return DefaultStateWorkflow.<CounterBean>builder()
+                    .statefulBean(new CounterBean())
+                    .addEdges(Transition.from(increment, count), Transition.from(count, WorkflowStateName.END))
+                    .build(increment);
+        });
+        LoadHarness harness = LoadHarness.builder()
+                .workload(workload)
+                .closedLoop(8)
+                .warmup(Duration.ofMillis(100))
+                .duration(Duration.ofMillis(300))
+                .build();
+        // when
+        LoadReport report = harness.run();
+        // then
+        assertThat(report.completed()).isPositive();
+        assertThat(report.failed()).isZero();
+        assertThat(report.latency().count()).isGreaterThanOrEqualTo(report.completed()); // plus the corrections
+        assertThat(report.throughput()).isPositive();
+        assertThat(report.timeToFirstToken().count()).isZero();
+        assertThat(report.peakHeapBytes()).isPositive();
+        // the warmup runs are not reported
+        assertThat(runs.get()).isGreaterThan((int) report.completed());
+    }
+
+    @Test
+    void should_measure_open_loop_streaming_workflow_with_time_to_first_token() {
+        // given
+        FakeStreamingChatLanguageModel model = FakeStreamingChatLanguageModel.builder()
+                .timeToFirstToken(LatencyDistribution.fixed(Duration.ofMillis(20)))
+                .interTokenDelay(LatencyDistribution.fixed(Duration.ofMillis(1)))
+                .tokenCount(10)
+                .build();
+        Workload workload = Workload.answerStream(() -> {
+            Node<QuestionBean, QuestionBean> retrieve = Node.from("retrieve", bean -> bean);
+            StreamingNode<QuestionBean> generate = StreamingNode.from("generate", model);
+            return new DefaultJAiWorkflow<>(
+                    new QuestionBean(),
+                    List.of(Transition.from(retrieve, generate), Transition.from(generate, WorkflowStateName.END)),
+                    retrieve,
+                    true);
+        }, "What is jAI Workflow?");
+        LoadHarness harness = LoadHarness.builder()
+                .workload(workload)
+                .openLoop(50)
+                .warmup(Duration.ZERO)
+                .duration(Duration.ofMillis(300))
+                .build();
+        // when
+        LoadReport report = harness.run();
+        // then
+        assertThat(report.completed()).isBetween(10L, 16L);
+        assertThat(report.failed()).isZero();
+        assertThat(report.delayed()).isZero();
+        assertThat(report.latency().percentile(50)).isGreaterThanOrEqualTo(Duration.ofMillis(29));
+        assertThat(report.timeToFirstToken().count()).isEqualTo(report.completed());
+        assertThat(report.timeToFirstToken().percentile(50)).isGreaterThanOrEqualTo(Duration.ofMillis(19))
+                .isLessThan(report.latency().percentile(50)); // the first token, not the end of the generation
+        assertThat(report.toString()).contains("open-loop", "p999=", "ttft");
+    }
+
+    @Test
+    void should_count_failed_requests() {
+        // given
+        AtomicInteger requests = new AtomicInteger();
+        LoadHarness harness = LoadHarness.builder()
+                .workload(probe -> {
+                    if (requests.incrementAndGet() % 2 == 0) {
+                        throw new IllegalStateException("Request failed");
+                    }
+                    Thread.sleep(1);
+                })
+                .closedLoop(1)
+                .warmup(Duration.ZERO)
+                .duration(Duration.ofMillis(100))
+                .build();
+        // when
+        LoadReport report = harness.run();
+        // then
+        assertThat(report.failed()).isPositive();
+        assertThat(report.completed() - report.failed()).isBetween(-1L, 1L);
+        assertThat(report.latency().count()).isGreaterThanOrEqualTo(report.completed()); // plus the corrections
+    }
+
+    @Test
+    void should_measure_open_loop_requests_delayed_by_max_in_flight_from_their_intended_start() {
+        // given - one request in flight at a time, each taking 5 times the interval
+        LoadHarness harness = LoadHarness.builder()
+                .workload(probe -> Thread.sleep(50))
+                .openLoop(100)
+                .maxInFlight(1)
+                .warmup(Duration.ZERO)
+                .duration(Duration.ofMillis(200))
+                .build();
+        // when
+        LoadReport report = harness.run();
+        // then - every intended start is sent, the last ones after queueing behind the others
+        assertThat(report.completed()).isEqualTo(20);
+        assertThat(report.delayed()).isPositive();
+        assertThat(report.latency().max()).isGreaterThan(Duration.ofMillis(500));
+    }
+
+    @Test
+    void should_correct_closed_loop_stall_from_the_intended_cycle_of_the_clients() {
+        // given - requests take 5 ms, except one stall of 200 ms, and no think time
+        AtomicInteger requests = new AtomicInteger();
+        LoadHarness harness = LoadHarness.builder()
+                .workload(probe -> Thread.sleep(requests.incrementAndGet() == 30 ? 200 : 5))
+                .closedLoop(1)
+                .warmup(Duration.ofMillis(100))
+                .duration(Duration.ofMillis(400))
+                .build();
+        // when
+        LoadReport report = harness.run();
+        // then - the requests the client would have sent during the stall are back-filled
+        assertThat(report.latency().count()).isGreaterThan(report.completed() + 10);
+        assertThat(report.latency().max()).isGreaterThanOrEqualTo(Duration.ofMillis(200));
+    }
+
+    @Test
+    void should_back_fill_samples_omitted_by_closed_loop() {
+        // given
+        LatencyRecorder recorder = new LatencyRecorder();
+        // when
+        recorder.record(Duration.ofSeconds(1).toNanos(), Duration.ofMillis(100).toNanos());
+        // then
+        assertThat(recorder.count()).isEqualTo(10);
+        assertThat(recorder.max()).isGreaterThanOrEqualTo(Duration.ofMillis(990));
+        assertThat(recorder.percentile(50)).isBetween(Duration.ofMillis(450), Duration.ofMillis(650));
+    }
+
+    @Test
+    void should_require_a_load_mode() {
+        assertThatIllegalArgumentException()
+                .isThrownBy(() -> LoadHarness.builder().workload(probe -> {
+                }).build())
+                .withMessageContaining("closedLoop or openLoop");
+    }
+}